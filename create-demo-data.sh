@@ -1,13 +1,14 @@
 #!/bin/bash
 
-curl -X POST --header "Content-Type:application/json" -d "Station 1" http://localhost:8778/api/stations
-curl -X POST --header "Content-Type:application/json" -d "Station 2" http://localhost:8778/api/stations
-curl -X POST --header "Content-Type:application/json" -d "Station 3" http://localhost:8778/api/stations
-curl -X POST --header "Content-Type:application/json" -d "Station 4" http://localhost:8778/api/stations
-curl -X POST --header "Content-Type:application/json" -d "Station 5" http://localhost:8778/api/stations
-
-curl -X POST --header "Content-Type:application/json" -d "{\"cost\":38.5,\"station1\":\"Station 3\",\"station2\":\"Station 1\"}" http://localhost:8778/api/routes
-curl -X POST --header "Content-Type:application/json" -d "{\"cost\":41.5,\"station1\":\"Station 3\",\"station2\":\"Station 2\"}" http://localhost:8778/api/routes
-curl -X POST --header "Content-Type:application/json" -d "{\"cost\":10,\"station1\":\"Station 1\",\"station2\":\"Station 5\"}" http://localhost:8778/api/routes
-curl -X POST --header "Content-Type:application/json" -d "{\"cost\":5,\"station1\":\"Station 5\",\"station2\":\"Station 4\"}" http://localhost:8778/api/routes
-curl -X POST --header "Content-Type:application/json" -d "{\"cost\":10,\"station1\":\"Station 4\",\"station2\":\"Station 2\"}" http://localhost:8778/api/routes
+curl -X POST --header "Content-Type:text/csv" --data-binary @- http://localhost:8778/api/import <<CSV
+station,Station 1
+station,Station 2
+station,Station 3
+station,Station 4
+station,Station 5
+route,Station 3,Station 1,38.5
+route,Station 3,Station 2,41.5
+route,Station 1,Station 5,10
+route,Station 5,Station 4,5
+route,Station 4,Station 2,10
+CSV
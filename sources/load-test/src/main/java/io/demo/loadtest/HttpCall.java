@@ -0,0 +1,79 @@
+package io.demo.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An HTTP request of the load test. Sent over a plain {@link HttpURLConnection}, which keeps connections alive between requests
+ */
+class HttpCall {
+
+    private static final int TIMEOUT_MILLIS = 60000;
+
+    private final String method;
+    private final String path;
+    private final String contentType;
+    private final String body;
+
+    private HttpCall(String method, String path, String contentType, String body) {
+        this.method = method;
+        this.path = path;
+        this.contentType = contentType;
+        this.body = body;
+    }
+
+    static HttpCall get(String path) {
+        return new HttpCall("GET", path, null, null);
+    }
+
+    static HttpCall post(String path, String contentType, String body) {
+        return new HttpCall("POST", path, contentType, body);
+    }
+
+    /**
+     * Send the request and read the whole response
+     * @param baseUrl url of the service, like http://localhost:8080
+     * @return response status
+     * @throws IOException if request can't be sent
+     */
+    int send(String baseUrl) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", contentType);
+
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+
+        // response is read to the end, so the connection is reused by the next request
+        if (in != null) {
+            try (InputStream response = in) {
+                byte[] buffer = new byte[8192];
+
+                while (response.read(buffer) >= 0) {
+                    // discard
+                }
+            }
+        }
+
+        return status;
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + path;
+    }
+}
@@ -0,0 +1,131 @@
+package io.demo.loadtest;
+
+import io.demo.storage.service.grpc.domain.StorageServiceGrpc;
+import io.demo.trainstations.config.StorageServiceProperties;
+import io.demo.trainstations.service.StorageServiceChannels;
+import io.demo.trainstations.service.TrainStationServiceImpl;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of both services in one JVM. storage-service runs on TinkerGraph and serves gRPC over in-process transport,
+ * train-stations-service calls it with the same deadlines and retries as in production and serves its REST API on a random port.
+ * A generated network is imported, then a mix of operations is sent at a fixed rate, see {@link OpenLoopDriver}.
+ * Latency percentiles of every operation are printed at the end
+ */
+public class LoadTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadTest.class);
+
+    private static final String STORAGE_SERVICE = "storage-service";
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        LOGGER.info("Starting load test, {}", options);
+
+        ConfigurableApplicationContext storageService = new SpringApplicationBuilder(io.demo.storage.Application.class, TinkerGraphConfiguration.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .properties("spring.config.name=storage-service", "grpc.inProcessServerName=" + STORAGE_SERVICE)
+                .run();
+        ConfigurableApplicationContext trainStationsService = new SpringApplicationBuilder(io.demo.trainstations.Application.class)
+                .properties("spring.config.name=train-stations-service")
+                .run();
+        ManagedChannel channel = InProcessChannelBuilder.forName(STORAGE_SERVICE)
+                .defaultServiceConfig(StorageServiceChannels.serviceConfig(withoutHedging(trainStationsService.getBean(StorageServiceProperties.class))))
+                .enableRetry()
+                .build();
+
+        try {
+            trainStationsService.getBean(TrainStationServiceImpl.class).setStorageService(StorageServiceGrpc.newBlockingStub(channel));
+            String baseUrl = "http://localhost:" + ((WebServerApplicationContext) trainStationsService).getWebServer().getPort();
+
+            Network network = new Network(options.getStations());
+            int status = HttpCall.post("/api/import", "text/csv", network.toCsv()).send(baseUrl);
+
+            if (status != 200) {
+                throw new IllegalStateException("Network import failed with status " + status);
+            }
+
+            Map<Operation, OperationStats> stats = new OpenLoopDriver(options, network, baseUrl).run();
+            report(options, stats);
+        } finally {
+            trainStationsService.close();
+            // calls still in flight, e.g. losing hedged attempts, complete before storage-service stops
+            channel.shutdown().awaitTermination(10, TimeUnit.SECONDS);
+            storageService.close();
+        }
+    }
+
+    /**
+     * Call policies of storage-service with retries instead of hedging. In-process transport fails with NullPointerException
+     * when a hedged attempt is cancelled before it reaches the server, and there is a single replica anyway
+     */
+    private static StorageServiceProperties withoutHedging(StorageServiceProperties properties) {
+        StorageServiceProperties result = new StorageServiceProperties();
+        result.setRead(withoutHedging(properties.getRead()));
+        result.setSearch(withoutHedging(properties.getSearch()));
+        result.setWrite(withoutHedging(properties.getWrite()));
+        return result;
+    }
+
+    private static StorageServiceProperties.MethodPolicy withoutHedging(StorageServiceProperties.MethodPolicy policy) {
+        return new StorageServiceProperties.MethodPolicy(policy.getDeadlineMillis(), policy.getMaxAttempts(), 0);
+    }
+
+    private static void report(LoadTestOptions options, Map<Operation, OperationStats> stats) throws FileNotFoundException {
+        PrintStream out = System.out;
+        out.printf("%nResponse time from scheduled send, ms (service time from actual send, ms), %d requests/s for %d s%n",
+                options.getRate(), options.getDurationSeconds());
+        out.printf("%-20s %8s %8s %16s %16s %16s %16s %16s%n", "operation", "count", "errors", "p50", "p90", "p99", "p99.9", "max");
+
+        for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+            Histogram response = entry.getValue().getResponseTime();
+            Histogram service = entry.getValue().getServiceTime();
+            out.printf("%-20s %8d %8d %16s %16s %16s %16s %16s%n", entry.getKey(), response.getTotalCount(), entry.getValue().getErrors(),
+                    percentile(response, service, 50), percentile(response, service, 90), percentile(response, service, 99),
+                    percentile(response, service, 99.9), percentile(response, service, 100));
+
+            if (!entry.getValue().getErrorStatuses().isEmpty()) {
+                out.printf("%-20s errors by status (-1 is no response): %s%n", "", entry.getValue().getErrorStatuses());
+            }
+        }
+
+        if (!options.getReportDir().isEmpty()) {
+            File dir = new File(options.getReportDir());
+            dir.mkdirs();
+
+            for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+                writeDistribution(new File(dir, entry.getKey() + ".hgrm"), entry.getValue().getResponseTime());
+                writeDistribution(new File(dir, entry.getKey() + "-service.hgrm"), entry.getValue().getServiceTime());
+            }
+
+            out.printf("Percentile distributions are written to %s%n", dir.getAbsolutePath());
+        }
+    }
+
+    private static String percentile(Histogram response, Histogram service, double percentile) {
+        return String.format("%.2f (%.2f)", response.getValueAtPercentile(percentile) / MICROS_PER_MILLI,
+                service.getValueAtPercentile(percentile) / MICROS_PER_MILLI);
+    }
+
+    private static void writeDistribution(File file, Histogram histogram) throws FileNotFoundException {
+        try (PrintStream out = new PrintStream(file)) {
+            histogram.outputPercentileDistribution(out, MICROS_PER_MILLI);
+        }
+    }
+}
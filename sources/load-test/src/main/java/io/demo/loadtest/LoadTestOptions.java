@@ -0,0 +1,140 @@
+package io.demo.loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Options of a load test run, parsed from "--name=value" arguments. Defaults give a short run over a small network
+ */
+public class LoadTestOptions {
+
+    // requests per second, sent on schedule whether previous requests completed or not
+    private int rate = 100;
+    private int warmupSeconds = 10;
+    private int durationSeconds = 30;
+    // max requests in flight, further requests wait in a queue and their wait counts as latency
+    private int connections = 64;
+    // stations of generated network, a square grid with routes between neighbours
+    private int stations = 400;
+    private long seed = 42;
+    // relative weights of operations, e.g. routeExists=50,findCheapestRoutes=20
+    private Map<Operation, Integer> mix = defaultMix();
+    // directory for .hgrm percentile distributions, not written if empty
+    private String reportDir = "";
+
+    /**
+     * Parse arguments, unknown ones are rejected
+     * @param args arguments like "--rate=200"
+     * @return options
+     */
+    public static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Argument should be --name=value, got '" + arg + "'");
+            }
+
+            String name = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+
+            switch (name) {
+                case "rate":
+                    options.rate = Integer.parseInt(value);
+                    break;
+                case "warmup-seconds":
+                    options.warmupSeconds = Integer.parseInt(value);
+                    break;
+                case "duration-seconds":
+                    options.durationSeconds = Integer.parseInt(value);
+                    break;
+                case "connections":
+                    options.connections = Integer.parseInt(value);
+                    break;
+                case "stations":
+                    options.stations = Integer.parseInt(value);
+                    break;
+                case "seed":
+                    options.seed = Long.parseLong(value);
+                    break;
+                case "mix":
+                    options.mix = parseMix(value);
+                    break;
+                case "report-dir":
+                    options.reportDir = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument " + name);
+            }
+        }
+
+        return options;
+    }
+
+    private static Map<Operation, Integer> defaultMix() {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        mix.put(Operation.ROUTE_EXISTS, 40);
+        mix.put(Operation.FIND_CHEAPEST_ROUTES, 25);
+        mix.put(Operation.FIND_ROUTES, 5);
+        mix.put(Operation.LIST_STATIONS, 10);
+        mix.put(Operation.CREATE_ROUTE, 15);
+        mix.put(Operation.CREATE_STATION, 5);
+        return mix;
+    }
+
+    private static Map<Operation, Integer> parseMix(String value) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+
+        for (String entry : value.split(",")) {
+            String[] parts = entry.split("=");
+
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Mix entry should be operation=weight, got '" + entry + "'");
+            }
+
+            mix.put(Operation.fromName(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+        }
+
+        return mix;
+    }
+
+    public int getRate() {
+        return rate;
+    }
+
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public int getConnections() {
+        return connections;
+    }
+
+    public int getStations() {
+        return stations;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public Map<Operation, Integer> getMix() {
+        return mix;
+    }
+
+    public String getReportDir() {
+        return reportDir;
+    }
+
+    @Override
+    public String toString() {
+        return "LoadTestOptions{rate=" + rate + ", warmupSeconds=" + warmupSeconds + ", durationSeconds=" + durationSeconds
+                + ", connections=" + connections + ", stations=" + stations + ", seed=" + seed + ", mix=" + mix + "}";
+    }
+}
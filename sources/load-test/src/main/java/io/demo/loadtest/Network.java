@@ -0,0 +1,93 @@
+package io.demo.loadtest;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A generated network of stations, a square grid with routes between horizontal and vertical neighbours.
+ * It is loaded once by import, operations then pick stations and routes of it at random
+ */
+class Network {
+
+    private final int stations;
+    private final int side;
+    private final AtomicInteger created = new AtomicInteger();
+
+    Network(int stations) {
+        this.stations = stations;
+        this.side = (int) Math.ceil(Math.sqrt(stations));
+    }
+
+    /**
+     * Name of a station of the grid
+     * @param index station index
+     * @return name
+     */
+    String station(int index) {
+        return "Station " + index;
+    }
+
+    /**
+     * Name of a station picked at random
+     * @param random source of randomness
+     * @return name
+     */
+    String randomStation(Random random) {
+        return station(random.nextInt(stations));
+    }
+
+    /**
+     * A station and one of its neighbours, connected by a route
+     * @param random source of randomness
+     * @return names of both stations
+     */
+    String[] randomRoute(Random random) {
+        while (true) {
+            int station = random.nextInt(stations);
+            int neighbour = random.nextBoolean() ? station + 1 : station + side;
+
+            if (neighbour < stations && (neighbour != station + 1 || neighbour % side != 0)) {
+                return new String[]{station(station), station(neighbour)};
+            }
+        }
+    }
+
+    /**
+     * Name of a new station, not part of the grid
+     * @return name
+     */
+    String newStation() {
+        return "Created station " + created.incrementAndGet();
+    }
+
+    /**
+     * Network in import CSV format, stations first, then routes
+     * @return CSV body
+     */
+    String toCsv() {
+        StringBuilder csv = new StringBuilder();
+        Random random = new Random(stations);
+
+        for (int i = 0; i < stations; i++) {
+            csv.append("station,").append(station(i)).append('\n');
+        }
+
+        for (int i = 0; i < stations; i++) {
+            if ((i + 1) % side != 0 && i + 1 < stations) {
+                appendRoute(csv, i, i + 1, random);
+            }
+
+            if (i + side < stations) {
+                appendRoute(csv, i, i + side, random);
+            }
+        }
+
+        return csv.toString();
+    }
+
+    private void appendRoute(StringBuilder csv, int station1, int station2, Random random) {
+        csv.append("route,").append(station(station1)).append(',').append(station(station2)).append(',')
+                .append(String.format(Locale.ROOT, "%.1f", 1 + random.nextDouble() * 99)).append('\n');
+    }
+}
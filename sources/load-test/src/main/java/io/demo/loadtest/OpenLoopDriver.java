@@ -0,0 +1,131 @@
+package io.demo.loadtest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends requests at a fixed arrival rate, whether previous requests completed or not (open loop).
+ * A closed loop client waits for a response before sending the next request, so a slow service gets less load
+ * and its stalls are under-reported. Here a single thread schedules requests, a pool of workers sends them,
+ * requests which find no free worker wait in a queue, with their wait counted as latency
+ */
+class OpenLoopDriver {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OpenLoopDriver.class);
+
+    private final LoadTestOptions options;
+    private final Network network;
+    private final String baseUrl;
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    OpenLoopDriver(LoadTestOptions options, Network network, String baseUrl) {
+        this.options = options;
+        this.network = network;
+        this.baseUrl = baseUrl;
+
+        operations = options.getMix().keySet().toArray(new Operation[0]);
+        cumulativeWeights = new int[operations.length];
+        int total = 0;
+
+        for (int i = 0; i < operations.length; i++) {
+            total += options.getMix().get(operations[i]);
+            cumulativeWeights[i] = total;
+            stats.put(operations[i], new OperationStats());
+        }
+
+        if (total <= 0) {
+            throw new IllegalArgumentException("Operation mix should have positive weights: " + options.getMix());
+        }
+    }
+
+    /**
+     * Run warmup and measurement, block until all sent requests complete
+     * @return stats of measured requests, by operation
+     * @throws InterruptedException if interrupted
+     */
+    Map<Operation, OperationStats> run() throws InterruptedException {
+        AtomicInteger threads = new AtomicInteger();
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(options.getConnections(), options.getConnections(),
+                0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "load-test-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Random random = new Random(options.getSeed());
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / options.getRate();
+        long start = System.nanoTime();
+        long measureStart = start + TimeUnit.SECONDS.toNanos(options.getWarmupSeconds());
+        long end = measureStart + TimeUnit.SECONDS.toNanos(options.getDurationSeconds());
+        int maxQueued = 0;
+
+        LOGGER.info("Warming up for {} s", options.getWarmupSeconds());
+
+        for (long i = 0; ; i++) {
+            long scheduled = start + i * intervalNanos;
+
+            if (scheduled >= end) {
+                break;
+            }
+
+            // if the scheduler falls behind, late requests are sent at once, their schedule is not shifted
+            for (long delay = scheduled - System.nanoTime(); delay > 0; delay = scheduled - System.nanoTime()) {
+                LockSupport.parkNanos(delay);
+            }
+
+            Operation operation = pick(random);
+            HttpCall call = operation.call(network, random);
+            OperationStats operationStats = scheduled >= measureStart ? stats.get(operation) : null;
+
+            workers.execute(() -> send(operation, call, scheduled, operationStats));
+            maxQueued = Math.max(maxQueued, workers.getQueue().size());
+        }
+
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.MINUTES);
+        LOGGER.info("Completed, max {} requests waited for a free connection", maxQueued);
+        return stats;
+    }
+
+    private void send(Operation operation, HttpCall call, long scheduled, OperationStats operationStats) {
+        long sent = System.nanoTime();
+        int status;
+
+        try {
+            status = call.send(baseUrl);
+        } catch (IOException e) {
+            LOGGER.debug("{} failed", call, e);
+            status = -1;
+        }
+
+        if (operationStats != null) {
+            // a route which does not exist is an expected answer
+            boolean success = (status >= 200 && status < 300) || (status == 404 && operation == Operation.ROUTE_EXISTS);
+            operationStats.record(scheduled, sent, System.nanoTime(), status, success);
+        }
+    }
+
+    private Operation pick(Random random) {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+
+        return operations[operations.length - 1];
+    }
+}
@@ -0,0 +1,106 @@
+package io.demo.loadtest;
+
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Operations of train-stations-service REST API driven by the load test, named like operations of its swagger spec
+ */
+public enum Operation {
+
+    ROUTE_EXISTS("routeExists") {
+        @Override
+        HttpCall call(Network network, Random random) {
+            // half of checked routes exist
+            String[] route = random.nextBoolean()
+                    ? network.randomRoute(random)
+                    : new String[]{network.randomStation(random), network.randomStation(random)};
+            return HttpCall.get("/api/route/" + segment(route[0]) + "/" + segment(route[1]));
+        }
+    },
+
+    FIND_CHEAPEST_ROUTES("findCheapestRoutes") {
+        @Override
+        HttpCall call(Network network, Random random) {
+            return HttpCall.get("/api/routes/" + segment(network.randomStation(random)) + "/" + segment(network.randomStation(random))
+                    + "/cheapest?count=3");
+        }
+    },
+
+    FIND_ROUTES("findRoutes") {
+        @Override
+        HttpCall call(Network network, Random random) {
+            return HttpCall.get("/api/routes/" + segment(network.randomStation(random)) + "/" + segment(network.randomStation(random))
+                    + "?maxRoutes=10&timeoutMillis=1000");
+        }
+    },
+
+    LIST_STATIONS("listStations") {
+        @Override
+        HttpCall call(Network network, Random random) {
+            return HttpCall.get("/api/stations?pageSize=100");
+        }
+    },
+
+    CREATE_ROUTE("createRoute") {
+        @Override
+        HttpCall call(Network network, Random random) {
+            // the route exists, so its cost is updated and the network does not grow
+            String[] route = network.randomRoute(random);
+            return HttpCall.post("/api/routes", "application/json", String.format(Locale.ROOT,
+                    "{\"station1\":\"%s\",\"station2\":\"%s\",\"cost\":%.1f}", route[0], route[1], 1 + random.nextDouble() * 99));
+        }
+    },
+
+    CREATE_STATION("createStation") {
+        @Override
+        HttpCall call(Network network, Random random) {
+            return HttpCall.post("/api/stations", "application/json", "\"" + network.newStation() + "\"");
+        }
+    };
+
+    private final String operationName;
+
+    Operation(String operationName) {
+        this.operationName = operationName;
+    }
+
+    /**
+     * Find operation by its name
+     * @param operationName name, like "routeExists"
+     * @return operation
+     */
+    public static Operation fromName(String operationName) {
+        for (Operation operation : values()) {
+            if (operation.operationName.equals(operationName)) {
+                return operation;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown operation " + operationName);
+    }
+
+    public String getOperationName() {
+        return operationName;
+    }
+
+    /**
+     * Build a request of this operation
+     * @param network network to pick stations from
+     * @param random source of randomness
+     * @return request
+     */
+    abstract HttpCall call(Network network, Random random);
+
+    @Override
+    public String toString() {
+        return operationName;
+    }
+
+    private static String segment(String value) {
+        return UriUtils.encodePathSegment(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,57 @@
+package io.demo.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latencies and errors of an operation, in microseconds.
+ * Response time is measured from the time a request was scheduled to be sent, so time spent waiting for a free connection
+ * is counted, and a stalled service is not hidden by requests which were not sent (coordinated omission).
+ * Service time is measured from the time the request was actually sent, the difference shows queueing in the load generator
+ */
+class OperationStats {
+
+    private final Histogram responseTime = new ConcurrentHistogram(3);
+    private final Histogram serviceTime = new ConcurrentHistogram(3);
+    private final AtomicLong errors = new AtomicLong();
+    private final Map<Integer, AtomicLong> errorStatuses = new ConcurrentHashMap<>();
+
+    /**
+     * Record a completed request
+     * @param scheduledNanos time the request was scheduled at
+     * @param sentNanos time the request was sent at
+     * @param completedNanos time the response was read at
+     * @param status response status, negative if request failed without response
+     * @param success whether the status is an expected one
+     */
+    void record(long scheduledNanos, long sentNanos, long completedNanos, int status, boolean success) {
+        responseTime.recordValue(TimeUnit.NANOSECONDS.toMicros(completedNanos - scheduledNanos));
+        serviceTime.recordValue(TimeUnit.NANOSECONDS.toMicros(completedNanos - sentNanos));
+
+        if (!success) {
+            errors.incrementAndGet();
+            errorStatuses.computeIfAbsent(status, key -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    Histogram getResponseTime() {
+        return responseTime;
+    }
+
+    Histogram getServiceTime() {
+        return serviceTime;
+    }
+
+    long getErrors() {
+        return errors.get();
+    }
+
+    Map<Integer, AtomicLong> getErrorStatuses() {
+        return errorStatuses;
+    }
+}
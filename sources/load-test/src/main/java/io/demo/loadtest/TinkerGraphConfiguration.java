@@ -0,0 +1,21 @@
+package io.demo.loadtest;
+
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * In-memory graph of storage-service, which runs with "test" profile, like in its own tests
+ */
+@Configuration
+public class TinkerGraphConfiguration {
+
+    @Bean
+    public Graph sqlgGraph() {
+        TinkerGraph graph = TinkerGraph.open();
+        graph.createIndex("name", Vertex.class);
+        return graph;
+    }
+}
@@ -0,0 +1,176 @@
+package io.demo.storage.benchmark;
+
+import io.demo.storage.Application;
+import io.demo.storage.domain.GraphEdge;
+import io.demo.storage.domain.GraphVertex;
+import io.demo.storage.service.StorageService;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A generated graph behind {@link StorageService}, shared by all benchmark threads. The application is started without
+ * web and gRPC servers once per trial, for every combination of backend, traversals, snapshot, shape and size.
+ * "tinkergraph" backend is an in-memory TinkerGraph ("test" profile), "hsqldb" backend is Sqlg over an in-memory HSQLDB database,
+ * "sqlg" backend is Sqlg over the database given by benchmark.jdbc.url, benchmark.jdbc.username and benchmark.jdbc.password
+ * system properties. Sqlg backends use their own labels, dropped before and after the trial.
+ * Traversals are storage.gremlin.backend, "compiled" or "groovy", snapshot is storage.snapshot.enabled
+ */
+@State(Scope.Benchmark)
+public class BenchmarkGraph {
+
+    static final String V_LABEL = "benchmark_station";
+    static final String E_LABEL = "benchmark_route";
+
+    private static final int CHUNK_SIZE = 1000;
+    private static final long SEED = 42;
+
+    @Param({"tinkergraph", "hsqldb"})
+    public String backend;
+
+    @Param({"compiled", "groovy"})
+    public String traversals;
+
+    @Param({"false"})
+    public boolean snapshot;
+
+    @Param({"LINE", "GRID", "RANDOM_GEOMETRIC", "HUB_AND_SPOKE"})
+    public GraphShape shape;
+
+    @Param({"100", "1000", "10000"})
+    public int size;
+
+    StorageService storageService;
+    List<GraphVertex> vertices;
+    List<GraphEdge> edges;
+
+    private ConfigurableApplicationContext context;
+    private Graph graph;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .profiles("tinkergraph".equals(backend) ? "test" : "default")
+                .run(arguments());
+        storageService = context.getBean(StorageService.class);
+        graph = context.getBean(Graph.class);
+        dropAll();
+
+        vertices = shape.vertices(size, V_LABEL);
+        edges = shape.edges(vertices, E_LABEL, new Random(SEED));
+        storageService.importVertices(chunks(vertices), count -> { });
+        storageService.importEdges(chunks(edges), count -> { });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dropAll();
+        context.close();
+    }
+
+    /**
+     * Name of a vertex, picked at random
+     * @param random source of randomness
+     * @return vertex name
+     */
+    String randomName(Random random) {
+        return vertices.get(random.nextInt(vertices.size())).getName();
+    }
+
+    /**
+     * An edge, picked at random
+     * @param random source of randomness
+     * @return edge
+     */
+    GraphEdge randomEdge(Random random) {
+        return edges.get(random.nextInt(edges.size()));
+    }
+
+    /**
+     * Application settings of the trial: benchmark labels in the schema and the snapshot, no servers, warnings only.
+     * Passed as command line arguments, which take precedence over application.yml
+     */
+    private String[] arguments() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("grpc.enabled", false);
+        properties.put("logging.level.io.demo", "warn");
+        properties.put("logging.level.org.springframework", "warn");
+        properties.put("storage.gremlin.backend", traversals);
+        properties.put("storage.snapshot.enabled", snapshot);
+        properties.put("storage.snapshot.vertex-label", V_LABEL);
+        properties.put("storage.snapshot.edge-label", E_LABEL);
+        properties.put("storage.import.chunk-size", CHUNK_SIZE);
+        properties.put("storage.schema.vertex-labels[0].label", V_LABEL);
+        properties.put("storage.schema.vertex-labels[0].properties.name", "STRING");
+        properties.put("storage.schema.vertex-labels[0].unique-indexes[0]", "name");
+        properties.put("storage.schema.edge-labels[0].label", E_LABEL);
+        properties.put("storage.schema.edge-labels[0].out-vertex-label", V_LABEL);
+        properties.put("storage.schema.edge-labels[0].in-vertex-label", V_LABEL);
+        properties.put("storage.schema.edge-labels[0].properties.weight", "DOUBLE");
+
+        switch (backend) {
+            case "tinkergraph":
+                break;
+            case "hsqldb":
+                // Sqlg picks its dialect by the url, sqlg-hsqldb of "benchmark" maven profile
+                properties.put("sqlg.jdbc.url", "jdbc:hsqldb:mem:benchmark");
+                properties.put("sqlg.jdbc.username", "SA");
+                properties.put("sqlg.jdbc.password", "");
+                break;
+            case "sqlg":
+                properties.put("sqlg.jdbc.url", requiredProperty("benchmark.jdbc.url"));
+                properties.put("sqlg.jdbc.username", System.getProperty("benchmark.jdbc.username", ""));
+                properties.put("sqlg.jdbc.password", System.getProperty("benchmark.jdbc.password", ""));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown backend " + backend + ", should be tinkergraph, hsqldb or sqlg");
+        }
+
+        List<String> arguments = new ArrayList<>();
+        properties.forEach((name, value) -> arguments.add("--" + name + "=" + value));
+        return arguments.toArray(new String[0]);
+    }
+
+    private static String requiredProperty(String name) {
+        String value = System.getProperty(name);
+
+        if (value == null) {
+            throw new IllegalStateException("System property " + name + " is required by sqlg backend");
+        }
+
+        return value;
+    }
+
+    private void dropAll() {
+        graph.traversal().V().hasLabel(V_LABEL).drop().iterate();
+
+        if (graph.features().graph().supportsTransactions()) {
+            graph.tx().commit();
+        }
+    }
+
+    static <T> Iterator<List<T>> chunks(List<T> items) {
+        List<List<T>> chunks = new ArrayList<>();
+
+        for (int i = 0; i < items.size(); i += CHUNK_SIZE) {
+            chunks.add(items.subList(i, Math.min(items.size(), i + CHUNK_SIZE)));
+        }
+
+        return chunks.iterator();
+    }
+}
@@ -0,0 +1,135 @@
+package io.demo.storage.benchmark;
+
+import io.demo.storage.domain.GraphEdge;
+import io.demo.storage.domain.GraphVertex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Shapes of generated graphs. Vertices are named "v0", "v1" ... and every shape is connected,
+ * so any two vertices have a path between them
+ */
+public enum GraphShape {
+
+    /**
+     * A chain of vertices, paths are long and unique
+     */
+    LINE {
+        @Override
+        List<GraphEdge> edges(List<GraphVertex> vertices, String eLabel, Random random) {
+            List<GraphEdge> edges = new ArrayList<>();
+
+            for (int i = 1; i < vertices.size(); i++) {
+                edges.add(new GraphEdge(vertices.get(i - 1), vertices.get(i), eLabel, 1 + random.nextInt(100)));
+            }
+
+            return edges;
+        }
+    },
+
+    /**
+     * A square grid, every vertex is connected to its right and lower neighbours. Many paths of equal length
+     */
+    GRID {
+        @Override
+        List<GraphEdge> edges(List<GraphVertex> vertices, String eLabel, Random random) {
+            List<GraphEdge> edges = new ArrayList<>();
+            int side = (int) Math.ceil(Math.sqrt(vertices.size()));
+
+            for (int i = 0; i < vertices.size(); i++) {
+                if ((i + 1) % side != 0 && i + 1 < vertices.size()) {
+                    edges.add(new GraphEdge(vertices.get(i), vertices.get(i + 1), eLabel, 1 + random.nextInt(100)));
+                }
+
+                if (i + side < vertices.size()) {
+                    edges.add(new GraphEdge(vertices.get(i), vertices.get(i + side), eLabel, 1 + random.nextInt(100)));
+                }
+            }
+
+            return edges;
+        }
+    },
+
+    /**
+     * Vertices are random points of a unit square, connected if closer than a radius giving about 6 neighbours each,
+     * weight is the distance. Looks like a real railway network. Consecutive vertices are chained, to keep the graph connected
+     */
+    RANDOM_GEOMETRIC {
+        @Override
+        List<GraphEdge> edges(List<GraphVertex> vertices, String eLabel, Random random) {
+            List<GraphEdge> edges = new ArrayList<>();
+            int size = vertices.size();
+            double[] x = new double[size];
+            double[] y = new double[size];
+
+            for (int i = 0; i < size; i++) {
+                x[i] = random.nextDouble();
+                y[i] = random.nextDouble();
+            }
+
+            double radius = Math.sqrt(6.0 / (Math.PI * size));
+
+            for (int i = 0; i < size; i++) {
+                for (int j = i + 1; j < size; j++) {
+                    double distance = Math.hypot(x[i] - x[j], y[i] - y[j]);
+
+                    if (distance < radius || j == i + 1) {
+                        edges.add(new GraphEdge(vertices.get(i), vertices.get(j), eLabel, 1 + distance * 1000));
+                    }
+                }
+            }
+
+            return edges;
+        }
+    },
+
+    /**
+     * A few hubs connected to each other, every other vertex is connected to a single hub. Hubs have high degree
+     */
+    HUB_AND_SPOKE {
+        @Override
+        List<GraphEdge> edges(List<GraphVertex> vertices, String eLabel, Random random) {
+            List<GraphEdge> edges = new ArrayList<>();
+            int hubs = Math.max(1, (int) Math.sqrt(vertices.size()) / 4);
+
+            for (int i = 0; i < hubs; i++) {
+                for (int j = i + 1; j < hubs; j++) {
+                    edges.add(new GraphEdge(vertices.get(i), vertices.get(j), eLabel, 1 + random.nextInt(100)));
+                }
+            }
+
+            for (int i = hubs; i < vertices.size(); i++) {
+                edges.add(new GraphEdge(vertices.get(i), vertices.get(i % hubs), eLabel, 1 + random.nextInt(100)));
+            }
+
+            return edges;
+        }
+    };
+
+    /**
+     * Generate vertices of the graph
+     * @param size number of vertices
+     * @param vLabel vertex label
+     * @return vertices
+     */
+    List<GraphVertex> vertices(int size, String vLabel) {
+        List<GraphVertex> vertices = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            vertices.add(new GraphVertex(vLabel, "v" + i));
+        }
+
+        return vertices;
+    }
+
+    /**
+     * Generate edges of the graph
+     * @param vertices vertices of the graph
+     * @param eLabel edge label
+     * @param random source of weights and positions, seeded for repeatable graphs
+     * @return edges
+     */
+    abstract List<GraphEdge> edges(List<GraphVertex> vertices, String eLabel, Random random);
+}
@@ -0,0 +1,97 @@
+package io.demo.storage.benchmark;
+
+import io.demo.storage.domain.GraphEdge;
+import io.demo.storage.domain.GraphRoute;
+import io.demo.storage.domain.GraphVertex;
+import io.demo.storage.domain.PathSearchLimits;
+import io.demo.storage.util.CompiledGremlinBackend;
+import io.demo.storage.util.GremlinBackend;
+import io.demo.storage.util.GroovyGremlinBackend;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.T;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to the first results of a freshly started JVM: the backend is created, then a vertex is looked up, an edge is checked
+ * and cheapest paths are searched, once. It includes class loading, Groovy call site bootstrapping and interpretation before JIT,
+ * which throughput benchmarks of {@link StorageServiceBenchmark} leave out in warmup. Every fork measures a single call.
+ * The graph is created with plain TinkerPop API, so no backend class is loaded before the measurement
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class GremlinBackendStartupBenchmark {
+
+    private static final long SEED = 42;
+
+    @State(Scope.Benchmark)
+    public static class FreshGraph {
+
+        @Param({"compiled", "groovy"})
+        public String traversals;
+
+        Graph graph;
+        List<GraphVertex> vertices;
+        List<GraphEdge> edges;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            TinkerGraph tinkerGraph = TinkerGraph.open();
+            tinkerGraph.createIndex("name", Vertex.class);
+            graph = tinkerGraph;
+            vertices = GraphShape.GRID.vertices(1000, BenchmarkGraph.V_LABEL);
+            edges = GraphShape.GRID.edges(vertices, BenchmarkGraph.E_LABEL, new Random(SEED));
+            Map<String, Vertex> created = new HashMap<>();
+
+            for (GraphVertex vertex : vertices) {
+                created.put(vertex.getName(), graph.addVertex(T.label, vertex.getLabel(), "name", vertex.getName()));
+            }
+
+            for (GraphEdge edge : edges) {
+                created.get(edge.getVertex1().getName()).addEdge(edge.getLabel(), created.get(edge.getVertex2().getName()),
+                        "weight", edge.getWeight());
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            graph.close();
+        }
+    }
+
+    @Benchmark
+    public List<GraphRoute> firstCalls(FreshGraph fresh) {
+        GremlinBackend gremlin = "groovy".equals(fresh.traversals) ? new GroovyGremlinBackend(fresh.graph) : new CompiledGremlinBackend(fresh.graph);
+        GraphEdge edge = fresh.edges.get(0);
+        String first = fresh.vertices.get(0).getName();
+        String last = fresh.vertices.get(fresh.vertices.size() - 1).getName();
+
+        gremlin.findVertexId(false, BenchmarkGraph.V_LABEL, first);
+        gremlin.edgeExistsBidirectional(false, BenchmarkGraph.V_LABEL, edge.getVertex1().getName(), null,
+                BenchmarkGraph.V_LABEL, edge.getVertex2().getName(), null, BenchmarkGraph.E_LABEL);
+        return gremlin.findShortestPathsBidirectional(false, BenchmarkGraph.V_LABEL, first, null,
+                BenchmarkGraph.V_LABEL, last, null, BenchmarkGraph.E_LABEL, 3, new PathSearchLimits());
+    }
+}
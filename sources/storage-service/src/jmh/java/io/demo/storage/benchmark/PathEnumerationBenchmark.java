@@ -0,0 +1,94 @@
+package io.demo.storage.benchmark;
+
+import io.demo.storage.domain.GraphEdge;
+import io.demo.storage.domain.GraphVertex;
+import io.demo.storage.graph.CsrGraph;
+import io.demo.storage.graph.IntPath;
+import io.demo.storage.graph.ParallelPathEnumerator;
+import io.demo.storage.graph.PathEnumerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enumeration of all paths up to a hop limit between opposite corners of the route graph snapshot, over a {@link CsrGraph} of generated shape:
+ * sequential {@link PathEnumerator}, and {@link ParallelPathEnumerator} on a fork-join pool of "parallelism" workers
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PathEnumerationBenchmark {
+
+    private static final long SEED = 42;
+
+    // paths within max hops grow exponentially with degree, denser shapes need a lower max hops
+    @Param({"GRID"})
+    public GraphShape shape;
+
+    @Param({"1000"})
+    public int size;
+
+    @Param({"14"})
+    public int maxHops;
+
+    @Param({"4"})
+    public int parallelism;
+
+    private CsrGraph graph;
+    private ForkJoinPool pool;
+    private int source;
+    private int target;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<GraphVertex> vertices = shape.vertices(size, BenchmarkGraph.V_LABEL);
+        CsrGraph.Builder builder = CsrGraph.builder();
+        vertices.forEach(vertex -> builder.addVertex(vertex.getName()));
+
+        for (GraphEdge edge : shape.edges(vertices, BenchmarkGraph.E_LABEL, new Random(SEED))) {
+            builder.putEdge(edge.getVertex1().getName(), edge.getVertex2().getName(), edge.getWeight());
+        }
+
+        graph = builder.build();
+        pool = new ForkJoinPool(parallelism);
+        // a few hops apart, so paths within max hops exist
+        source = 0;
+        target = graph.indexOf(vertices.get(size / 100).getName());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    public List<IntPath> sequential() {
+        List<IntPath> paths = new ArrayList<>();
+        new PathEnumerator(graph).withMaxHops(maxHops).enumerate(source, target, paths::add);
+        return paths;
+    }
+
+    @Benchmark
+    public List<IntPath> parallel() {
+        return new ParallelPathEnumerator(graph, pool).withMaxHops(maxHops).enumerate(source, target);
+    }
+}
@@ -0,0 +1,128 @@
+package io.demo.storage.benchmark;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.demo.storage.domain.GraphRoute;
+import io.demo.storage.service.grpc.CompactRoutes;
+import io.demo.storage.service.grpc.domain.CompactGraphRoute;
+import io.demo.storage.service.grpc.domain.FindPathsBidirectionalResponse;
+import io.demo.storage.service.grpc.domain.RouteEncoding;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Path search responses with vertex names ({@link RouteEncoding#NAMES}) versus dictionary encoded ({@link RouteEncoding#COMPACT}):
+ * building and serializing a response on the server side, parsing it and resolving station names on the client side.
+ * Routes are alternatives between the same two stations through a pool of stations with long names, like disruption planning results.
+ * Besides time, "bytes" and "responses" report bytes and responses serialized per iteration, bytes / responses is the response size
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteEncodingBenchmark {
+
+    private static final long SEED = 42;
+
+    @State(Scope.Benchmark)
+    public static class Routes {
+
+        @Param({"NAMES", "COMPACT"})
+        public RouteEncoding encoding;
+
+        @Param({"10", "100"})
+        public int routes;
+
+        @Param({"12"})
+        public int hops;
+
+        @Param({"50"})
+        public int stations;
+
+        List<GraphRoute> paths;
+        byte[] serialized;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(SEED);
+            paths = new ArrayList<>();
+
+            for (int i = 0; i < routes; i++) {
+                GraphRoute path = new GraphRoute();
+                path.getVertices().add(name(0));
+
+                for (int hop = 1; hop < hops; hop++) {
+                    path.getVertices().add(name(1 + random.nextInt(stations - 2)));
+                }
+
+                path.getVertices().add(name(stations - 1));
+                path.setTotalWeight(10.0 * hops + random.nextInt(100));
+                paths.add(path);
+            }
+
+            serialized = CompactRoutes.encode(paths, encoding).toByteArray();
+        }
+
+        private static String name(int station) {
+            return "Station " + station + " Central Interchange";
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Size {
+
+        public long bytes;
+        public long responses;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            bytes = 0;
+            responses = 0;
+        }
+    }
+
+    @Benchmark
+    public byte[] serialize(Routes routes, Size size) {
+        byte[] serialized = CompactRoutes.encode(routes.paths, routes.encoding).toByteArray();
+        size.bytes += serialized.length;
+        size.responses++;
+        return serialized;
+    }
+
+    @Benchmark
+    public List<List<String>> deserialize(Routes routes) throws InvalidProtocolBufferException {
+        FindPathsBidirectionalResponse response = FindPathsBidirectionalResponse.parseFrom(routes.serialized);
+        List<List<String>> stations = new ArrayList<>();
+
+        response.getPathsList().forEach(path -> stations.add(path.getVerticesList()));
+
+        for (CompactGraphRoute path : response.getCompactPathsList()) {
+            List<String> names = new ArrayList<>(path.getVerticesCount());
+
+            for (int i = 0; i < path.getVerticesCount(); i++) {
+                names.add(response.getNames(path.getVertices(i)));
+            }
+
+            stations.add(names);
+        }
+
+        return stations;
+    }
+}
@@ -0,0 +1,134 @@
+package io.demo.storage.benchmark;
+
+import io.demo.storage.domain.GraphEdge;
+import io.demo.storage.domain.GraphVertex;
+import io.demo.storage.graph.CsrGraph;
+import io.demo.storage.graph.IntPath;
+import io.demo.storage.graph.Landmarks;
+import io.demo.storage.graph.PathFinder;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cheapest path searches of the route graph snapshot, over a {@link CsrGraph} of generated shape, by algorithm:
+ * one-sided Dijkstra's algorithm, bidirectional Dijkstra's algorithm, or A* over landmarks (ALT). Pairs of vertices are far apart, both ends are picked
+ * from opposite tenths of vertex numbers, like cross-country queries. Besides time, "settled" and "searches" report vertices settled
+ * and searches performed per iteration, settled / searches is the number of vertices settled per search
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShortestPathBenchmark {
+
+    private static final long SEED = 42;
+
+    @State(Scope.Benchmark)
+    public static class Snapshot {
+
+        @Param({"GRID", "RANDOM_GEOMETRIC"})
+        public GraphShape shape;
+
+        @Param({"10000"})
+        public int size;
+
+        @Param({"8"})
+        public int landmarkCount;
+
+        CsrGraph graph;
+        Landmarks landmarks;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            List<GraphVertex> vertices = shape.vertices(size, BenchmarkGraph.V_LABEL);
+            CsrGraph.Builder builder = CsrGraph.builder();
+            vertices.forEach(vertex -> builder.addVertex(vertex.getName()));
+
+            for (GraphEdge edge : shape.edges(vertices, BenchmarkGraph.E_LABEL, new Random(SEED))) {
+                builder.putEdge(edge.getVertex1().getName(), edge.getVertex2().getName(), edge.getWeight());
+            }
+
+            graph = builder.build();
+            landmarks = Landmarks.select(graph, landmarkCount);
+        }
+    }
+
+    /**
+     * Random far apart pairs picked by a benchmark thread, repeatable from run to run, and vertices settled by its searches
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Search {
+
+        Random random;
+        public long settled;
+        public long searches;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            random = new Random(7);
+            settled = 0;
+            searches = 0;
+        }
+
+        int source(Snapshot snapshot) {
+            return random.nextInt(snapshot.size / 10);
+        }
+
+        int target(Snapshot snapshot) {
+            return snapshot.size - 1 - random.nextInt(snapshot.size / 10);
+        }
+    }
+
+    @Benchmark
+    public IntPath dijkstra(Snapshot snapshot, Search search) {
+        PathFinder pathFinder = new PathFinder(snapshot.graph);
+        IntPath path = pathFinder.shortestPath(search.source(snapshot), search.target(snapshot));
+        search.settled += pathFinder.getSettledVertices();
+        search.searches++;
+        return path;
+    }
+
+    @Benchmark
+    public IntPath bidirectional(Snapshot snapshot, Search search) {
+        PathFinder pathFinder = new PathFinder(snapshot.graph).withBidirectionalSearch(true);
+        IntPath path = pathFinder.shortestPath(search.source(snapshot), search.target(snapshot));
+        search.settled += pathFinder.getSettledVertices();
+        search.searches++;
+        return path;
+    }
+
+    @Benchmark
+    public IntPath alt(Snapshot snapshot, Search search) {
+        PathFinder pathFinder = new PathFinder(snapshot.graph).withLowerBound(snapshot.landmarks);
+        IntPath path = pathFinder.shortestPath(search.source(snapshot), search.target(snapshot));
+        search.settled += pathFinder.getSettledVertices();
+        search.searches++;
+        return path;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 5)
+    public Landmarks selectLandmarks(Snapshot snapshot) {
+        return Landmarks.select(snapshot.graph, snapshot.landmarkCount);
+    }
+}
@@ -0,0 +1,156 @@
+package io.demo.storage.benchmark;
+
+import io.demo.storage.domain.GraphEdge;
+import io.demo.storage.domain.GraphRoute;
+import io.demo.storage.domain.GraphVertex;
+import io.demo.storage.domain.PathSearchLimits;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmarks of {@link io.demo.storage.service.StorageService} operations, over generated graphs of {@link BenchmarkGraph}.
+ * Calls go through the service as gRPC calls do, with vertex id cache, edge filter, graph version and snapshot (if enabled),
+ * only gRPC itself is left out. Every operation is measured as throughput and as sampled latency, which gives percentiles.
+ * Allocation rate is reported by "-prof gc" profiler, enabled by default in "benchmark" maven profile.
+ * Path searches are limited, otherwise they would not finish on large graphs
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageServiceBenchmark {
+
+    private static final int LOOKUP_SIZE = 100;
+    private static final int IMPORT_SIZE = 100;
+
+    /**
+     * Random vertices and edges picked by a benchmark thread, repeatable from run to run
+     */
+    @State(Scope.Thread)
+    public static class Picks {
+
+        Random random;
+        PathSearchLimits limits;
+        long created;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            random = new Random(7);
+            limits = new PathSearchLimits();
+            limits.setMaxPaths(10);
+            limits.setTimeoutMillis(1000);
+        }
+
+        List<GraphEdge> randomEdges(BenchmarkGraph graph, int count) {
+            List<GraphEdge> edges = new ArrayList<>(count);
+
+            for (int i = 0; i < count; i++) {
+                edges.add(graph.randomEdge(random));
+            }
+
+            return edges;
+        }
+    }
+
+    @Benchmark
+    public List<String> listAllVertexNamesByLabel(BenchmarkGraph graph) {
+        return graph.storageService.listAllVertexNamesByLabel(BenchmarkGraph.V_LABEL);
+    }
+
+    @Benchmark
+    public List<String> listVertexNamesByLabel(BenchmarkGraph graph, Picks picks) {
+        return graph.storageService.listVertexNamesByLabel(BenchmarkGraph.V_LABEL, graph.randomName(picks.random), 100);
+    }
+
+    @Benchmark
+    public void createDeleteVertex(BenchmarkGraph graph, Picks picks) {
+        String name = "created-" + picks.created++;
+        graph.storageService.createVertex(BenchmarkGraph.V_LABEL, name);
+        graph.storageService.deleteVertex(BenchmarkGraph.V_LABEL, name);
+    }
+
+    @Benchmark
+    public void createEdgeBidirectional(BenchmarkGraph graph, Picks picks) {
+        // the edge exists, so its weight is updated, the graph does not grow
+        GraphEdge edge = graph.randomEdge(picks.random);
+        graph.storageService.createEdgeBidirectional(BenchmarkGraph.V_LABEL, edge.getVertex1().getName(),
+                BenchmarkGraph.V_LABEL, edge.getVertex2().getName(), BenchmarkGraph.E_LABEL, edge.getWeight());
+    }
+
+    @Benchmark
+    public Double edgeExistsBidirectional(BenchmarkGraph graph, Picks picks) {
+        GraphEdge edge = graph.randomEdge(picks.random);
+        return graph.storageService.edgeExistsBidirectional(BenchmarkGraph.V_LABEL, edge.getVertex1().getName(),
+                BenchmarkGraph.V_LABEL, edge.getVertex2().getName(), BenchmarkGraph.E_LABEL);
+    }
+
+    @Benchmark
+    public List<Double> edgesExistBidirectional(BenchmarkGraph graph, Picks picks) {
+        return graph.storageService.edgesExistBidirectional(picks.randomEdges(graph, LOOKUP_SIZE));
+    }
+
+    @Benchmark
+    public void deleteCreateEdgeBidirectional(BenchmarkGraph graph, Picks picks) {
+        GraphEdge edge = graph.randomEdge(picks.random);
+        graph.storageService.deleteEdgeBidirectional(BenchmarkGraph.V_LABEL, edge.getVertex1().getName(),
+                BenchmarkGraph.V_LABEL, edge.getVertex2().getName(), BenchmarkGraph.E_LABEL);
+        graph.storageService.createEdgeBidirectional(BenchmarkGraph.V_LABEL, edge.getVertex1().getName(),
+                BenchmarkGraph.V_LABEL, edge.getVertex2().getName(), BenchmarkGraph.E_LABEL, edge.getWeight());
+    }
+
+    @Benchmark
+    public long importVertices(BenchmarkGraph graph, Picks picks) {
+        // new vertices every call, the graph grows by IMPORT_SIZE vertices without edges
+        List<GraphVertex> vertices = new ArrayList<>(IMPORT_SIZE);
+
+        for (int i = 0; i < IMPORT_SIZE; i++) {
+            vertices.add(new GraphVertex(BenchmarkGraph.V_LABEL, "imported-" + picks.created++));
+        }
+
+        return graph.storageService.importVertices(Collections.singletonList(vertices).iterator(), count -> { });
+    }
+
+    @Benchmark
+    public long importEdges(BenchmarkGraph graph, Picks picks) {
+        // the edges exist, so their weights are updated, the graph does not grow
+        return graph.storageService.importEdges(Collections.singletonList(picks.randomEdges(graph, IMPORT_SIZE)).iterator(), count -> { });
+    }
+
+    @Benchmark
+    public List<GraphRoute> findPathsBidirectional(BenchmarkGraph graph, Picks picks) {
+        return graph.storageService.findPathsBidirectional(BenchmarkGraph.V_LABEL, graph.randomName(picks.random),
+                BenchmarkGraph.V_LABEL, graph.randomName(picks.random), BenchmarkGraph.E_LABEL, picks.limits);
+    }
+
+    @Benchmark
+    public int streamPathsBidirectional(BenchmarkGraph graph, Picks picks) {
+        AtomicInteger streamed = new AtomicInteger();
+        graph.storageService.streamPathsBidirectional(BenchmarkGraph.V_LABEL, graph.randomName(picks.random),
+                BenchmarkGraph.V_LABEL, graph.randomName(picks.random), BenchmarkGraph.E_LABEL, picks.limits,
+                route -> streamed.incrementAndGet() > 0);
+        return streamed.get();
+    }
+
+    @Benchmark
+    public List<GraphRoute> findShortestPathsBidirectional(BenchmarkGraph graph, Picks picks) {
+        return graph.storageService.findShortestPathsBidirectional(BenchmarkGraph.V_LABEL, graph.randomName(picks.random),
+                BenchmarkGraph.V_LABEL, graph.randomName(picks.random), BenchmarkGraph.E_LABEL, 3, picks.limits);
+    }
+}
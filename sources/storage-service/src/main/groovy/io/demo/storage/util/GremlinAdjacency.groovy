@@ -0,0 +1,119 @@
+package io.demo.storage.util
+
+import groovy.transform.CompileStatic
+import io.demo.storage.graph.Adjacency
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource
+import org.apache.tinkerpop.gremlin.structure.Edge
+import org.apache.tinkerpop.gremlin.structure.T
+
+/**
+ * A {@link GremlinAdjacency} is an {@link Adjacency} which loads neighbors from TinkerPop graph lazily, on first access.
+ * Vertex ids are mapped to dense int indexes in order of discovery. Loaded neighbors are memoized, so repeated searches
+ * (like spur searches of Yen's algorithm) don't query the graph again. Valid within a single query only.
+ * Neighbors are loaded once per settled vertex of a search, so it is statically compiled
+ */
+@CompileStatic
+class GremlinAdjacency implements Adjacency {
+
+    private static final String ID = "id"
+
+    private final GraphTraversalSource g
+    private final String eLabel
+
+    private final Map<Object, Integer> indexes = new HashMap<>()
+    private final List<Object> ids = new ArrayList<>()
+    private final Map<Integer, Neighbors> neighbors = new HashMap<>()
+
+    GremlinAdjacency(GraphTraversalSource g, String eLabel) {
+        this.g = g
+        this.eLabel = eLabel
+    }
+
+    /**
+     * Get index of vertex, assign a new one if vertex is seen for the first time
+     * @param id TinkerPop vertex id
+     * @return vertex index
+     */
+    int indexOf(Object id) {
+        Integer index = indexes.get(id)
+
+        if (index == null) {
+            index = ids.size()
+            indexes.put(id, index)
+            ids.add(id)
+        }
+
+        index
+    }
+
+    /**
+     * Get TinkerPop vertex id by index
+     * @param index vertex index
+     * @return vertex id
+     */
+    Object idOf(int index) {
+        ids.get(index)
+    }
+
+    /**
+     * Resolve "name" property of all vertices with specified indexes, using a single traversal
+     * @param vertices vertex indexes
+     * @return map of vertex index to vertex name
+     */
+    Map<Integer, String> namesOf(Collection<Integer> vertices) {
+        Map<Integer, String> result = new HashMap<>()
+
+        if (vertices.isEmpty()) {
+            return result
+        }
+
+        Object[] vertexIds = vertices.collect { idOf(it) }.toArray()
+        Iterator<Map<String, Object>> it = g.V(vertexIds).<Object>project(ID, GremlinManager.NAME)
+            .by(T.id).by(GremlinManager.NAME)
+
+        while (it.hasNext()) {
+            Map<String, Object> item = it.next()
+            result.put(indexOf(item.get(ID)), (String) item.get(GremlinManager.NAME))
+        }
+
+        result
+    }
+
+    @Override
+    void forEachNeighbor(int vertex, NeighborConsumer consumer) {
+        Neighbors loaded = neighbors.get(vertex)
+
+        if (loaded == null) {
+            loaded = load(vertex)
+            neighbors.put(vertex, loaded)
+        }
+
+        for (int i = 0; i < loaded.vertices.length; i++) {
+            consumer.accept(loaded.vertices[i], loaded.weights[i])
+        }
+    }
+
+    private Neighbors load(int vertex) {
+        Object id = idOf(vertex)
+        List<Edge> edges = g.V(id).bothE(eLabel).toList()
+        Neighbors result = new Neighbors(edges.size())
+
+        edges.eachWithIndex { Edge edge, int i ->
+            Object outId = edge.outVertex().id()
+            result.vertices[i] = indexOf(outId == id ? edge.inVertex().id() : outId)
+            result.weights[i] = ((Number) edge.property(GremlinManager.WEIGHT).orElse(0.0d)).doubleValue()
+        }
+
+        result
+    }
+
+    private static class Neighbors {
+        final int[] vertices
+        final double[] weights
+
+        Neighbors(int size) {
+            vertices = new int[size]
+            weights = new double[size]
+        }
+    }
+}
@@ -1,6 +1,14 @@
 package io.demo.storage.util
 
+import io.demo.storage.domain.GraphEdge
 import io.demo.storage.domain.GraphRoute
+import io.demo.storage.domain.GraphVertex
+import io.demo.storage.domain.PathSearchLimits
+import io.demo.storage.graph.CsrGraph
+import io.demo.storage.graph.IntPath
+import io.demo.storage.graph.PathFinder
+import org.apache.tinkerpop.gremlin.process.traversal.Operator
+import org.apache.tinkerpop.gremlin.process.traversal.P
 import org.apache.tinkerpop.gremlin.process.traversal.Path
 import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal
 import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource
@@ -9,6 +17,10 @@ import org.apache.tinkerpop.gremlin.structure.Edge
 import org.apache.tinkerpop.gremlin.structure.Graph
 import org.apache.tinkerpop.gremlin.structure.T
 import org.apache.tinkerpop.gremlin.structure.Vertex
+import org.umlg.sqlg.structure.SqlgGraph
+
+import java.util.function.IntConsumer
+import java.util.function.Predicate
 
 /**
  * A {@link GremlinManager} is a {@link io.demo.storage.service.StorageService} backend implementation, based on gremlin-groovy
@@ -20,6 +32,7 @@ class GremlinManager {
     static final String WEIGHT = "weight"
     static final String VERTEX = "vertex"
     static final String EDGE = "edge"
+    static final String ALL_LABELS = "all"
 
     /**
      * Create Vertex
@@ -27,14 +40,39 @@ class GremlinManager {
      * @param commit if true, perform transaction commit at the end
      * @param label vertex label
      * @param name value of vertex "name" property
+     * @return id of created vertex
      */
-    static void createVertex(Graph graph, boolean commit, String label, String name) {
-        GraphTraversalSource g = graph.traversal()
-        g.addV(label).property("name", name).next()
+    static Object createVertex(Graph graph, boolean commit, String label, String name) {
+        Object id = GremlinMetrics.traversal("createVertex", label) { ->
+            graph.traversal().addV(label).property("name", name).next().id()
+        }
+
+        if (commit) {
+            GremlinMetrics.commit(graph, "createVertex", label)
+        }
+
+        id
+    }
+
+    /**
+     * Find id of Vertex by label and name
+     * @param graph TinkerPop graph
+     * @param commit if true, perform transaction commit at the end
+     * @param label vertex label
+     * @param name value of vertex "name" property
+     * @return vertex id, null if there is no such vertex
+     */
+    static Object findVertexId(Graph graph, boolean commit, String label, String name) {
+        Object id = GremlinMetrics.traversal("findVertexId", label) { ->
+            GraphTraversal search = graph.traversal().V().has(label, NAME, name).id()
+            search.hasNext() ? search.next() : null
+        }
 
         if (commit) {
-            graph.tx().commit()
+            GremlinMetrics.commit(graph, "findVertexId", label)
         }
+
+        id
     }
 
     /**
@@ -46,15 +84,45 @@ class GremlinManager {
      */
     static List<String> listAllVertexNamesByLabel(Graph graph, boolean commit, String label) {
         List<String> result = new ArrayList<>()
-        GraphTraversalSource g = graph.traversal()
-        Iterator<String> it = g.V().has(T.label, label).values(NAME).iterator()
 
-        while (it.hasNext()) {
-            result.add(it.next())
+        GremlinMetrics.traversal("listAllVertexNamesByLabel", label) { ->
+            Iterator<String> it = graph.traversal().V().has(T.label, label).values(NAME).iterator()
+
+            while (it.hasNext()) {
+                result.add(it.next())
+            }
         }
 
         if (commit) {
-            graph.tx().commit()
+            GremlinMetrics.commit(graph, "listAllVertexNamesByLabel", label)
+        }
+
+        result
+    }
+
+    /**
+     * Find a page of Vertices with specified label, ordered by name
+     * @param graph TinkerPop graph
+     * @param commit if true, perform transaction commit at the end
+     * @param label vertex label
+     * @param after name of the last vertex of previous page, null for the first page
+     * @param limit max number of names to return
+     * @return a list of names
+     */
+    static List<String> listVertexNamesByLabel(Graph graph, boolean commit, String label, String after, int limit) {
+        List<String> result = GremlinMetrics.traversal("listVertexNamesByLabel", label) { ->
+            GraphTraversal search = graph.traversal().V().has(T.label, label)
+
+            if (after != null) {
+                search = search.has(NAME, P.gt(after))
+            }
+
+            // both the filter and the ordering use the name index, so a page costs the same wherever it starts
+            search.order().by(NAME).limit(limit).values(NAME).toList()
+        }
+
+        if (commit) {
+            GremlinMetrics.commit(graph, "listVertexNamesByLabel", label)
         }
 
         result
@@ -68,16 +136,17 @@ class GremlinManager {
      * @param name value of vertex "name" property
      */
     static void deleteVertex(Graph graph, boolean commit, String label, String name) {
-        GraphTraversalSource g = graph.traversal()
-        GraphTraversal search = g.V().has(label, NAME, name)
+        GremlinMetrics.traversal("deleteVertex", label) { ->
+            GraphTraversal search = graph.traversal().V().has(label, NAME, name)
 
-        if (search.hasNext()) {
-            Vertex vertex = search.next()
-            vertex.remove()
+            if (search.hasNext()) {
+                Vertex vertex = search.next()
+                vertex.remove()
+            }
         }
 
         if (commit) {
-            graph.tx().commit()
+            GremlinMetrics.commit(graph, "deleteVertex", label)
         }
     }
 
@@ -87,20 +156,24 @@ class GremlinManager {
      * @param commit if true, perform transaction commit at the end
      * @param vLabel1 vertex label of first vertex
      * @param name1 name of first vertex
+     * @param id1 id of first vertex if known, null otherwise
      * @param vLabel2 vertex label of second vertex
      * @param name2 name of second vertex
+     * @param id2 id of second vertex if known, null otherwise
      * @param eLabel edge label
      * @param weight value of edge "weight" property
      */
-    static void createEdgeBidirectional(Graph graph, boolean commit, String vLabel1, String name1, String vLabel2, String name2, String eLabel, double weight) {
-        graph.traversal()
-            .V().has(vLabel1, NAME, name1).as(VERTEX)
-            .V().has(vLabel2, NAME, name2).coalesce(
-                __.bothE(eLabel).where(__.bothV().as(VERTEX)).property(WEIGHT, weight),
-                __.addE(eLabel).from(VERTEX).property(WEIGHT, weight)).next()
+    static void createEdgeBidirectional(Graph graph, boolean commit, String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2, String eLabel, double weight) {
+        GremlinMetrics.traversal("createEdgeBidirectional", eLabel) { ->
+            GraphTraversal first = startAt(graph.traversal(), vLabel1, name1, id1).as(VERTEX)
+            GraphTraversal second = id2 != null ? first.V(id2) : first.V().has(vLabel2, NAME, name2)
+            second.coalesce(
+                    __.bothE(eLabel).where(__.bothV().as(VERTEX)).property(WEIGHT, weight),
+                    __.addE(eLabel).from(VERTEX).property(WEIGHT, weight)).next()
+        }
 
         if (commit) {
-            graph.tx().commit()
+            GremlinMetrics.commit(graph, "createEdgeBidirectional", eLabel)
         }
     }
 
@@ -110,99 +183,471 @@ class GremlinManager {
      * @param commit if true, perform transaction commit at the end
      * @param vLabel1 vertex label of first vertex
      * @param name1 name of first vertex
+     * @param id1 id of first vertex if known, null otherwise
      * @param vLabel2 vertex label of second vertex
      * @param name2 name of second vertex
+     * @param id2 id of second vertex if known, null otherwise
      * @param eLabel edge label
      * @return value of edge "weight" property
      */
-    static Double edgeExistsBidirectional(Graph graph, boolean commit, String vLabel1, String name1, String vLabel2, String name2, String eLabel) {
-        GraphTraversal search = graph.traversal()
-            .V().has(vLabel1, NAME, name1)
-                .bothE(eLabel).as(EDGE)
-                .bothV().has(vLabel2, NAME, name2).as(VERTEX).select(EDGE).values(WEIGHT)
+    static Double edgeExistsBidirectional(Graph graph, boolean commit, String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2, String eLabel) {
+        Double weight = GremlinMetrics.traversal("edgeExistsBidirectional", eLabel) { ->
+            GraphTraversal search = startAt(graph.traversal(), vLabel1, name1, id1)
+                    .bothE(eLabel).as(EDGE)
+                    .bothV()
+            search = matching(search, vLabel2, name2, id2).as(VERTEX).select(EDGE).values(WEIGHT)
+            search.hasNext() ? (Double) search.next() : null
+        }
 
-        if (search.hasNext()) {
-            return (Double) search.next()
+        if (weight != null) {
+            return weight
         }
 
         if (commit) {
-            graph.tx().commit()
+            GremlinMetrics.commit(graph, "edgeExistsBidirectional", eLabel)
         }
 
         null
     }
 
+    /**
+     * Check if many edges exist, return their weights. Vertices of all edges are resolved by a single query per vertex label,
+     * then edges between them by a single query
+     * @param graph TinkerPop graph
+     * @param commit if true, perform transaction commit at the end
+     * @param edges edges to check, weights are ignored
+     * @return value of "weight" property of every edge, in the same order, null if there is no such edge
+     */
+    static List<Double> edgesExistBidirectional(Graph graph, boolean commit, List<GraphEdge> edges) {
+        GraphTraversalSource g = graph.traversal()
+
+        List<Double> weights = GremlinMetrics.traversal("edgesExistBidirectional", ALL_LABELS) { ->
+            Map<List<String>, Vertex> vertices = verticesOf(g, edges)
+            Map<List<Object>, Edge> existing = edgesBetween(g, vertices, edges)
+
+            edges.collect { GraphEdge item ->
+                Vertex vertex1 = vertices.get([item.vertex1.label, item.vertex1.name])
+                Vertex vertex2 = vertices.get([item.vertex2.label, item.vertex2.name])
+                Edge edge = vertex1 != null && vertex2 != null ? existing.get(edgeKey(item.label, vertex1, vertex2)) : null
+                edge != null ? (Double) edge.property(WEIGHT).orElse(null) : null
+            }
+        }
+
+        if (commit) {
+            GremlinMetrics.commit(graph, "edgesExistBidirectional", ALL_LABELS)
+        }
+
+        weights
+    }
+
     /**
      * Delete edge between two vertices, if exists
      * @param graph TinkerPop graph
      * @param commit if true, perform transaction commit at the end
      * @param vLabel1 vertex label of first vertex
      * @param name1 name of first vertex
+     * @param id1 id of first vertex if known, null otherwise
      * @param vLabel2 vertex label of second vertex
      * @param name2 name of second vertex
+     * @param id2 id of second vertex if known, null otherwise
      * @param eLabel edge label
      */
-    static void deleteEdgeBidirectional(Graph graph, boolean commit, String vLabel1, String name1, String vLabel2, String name2, String eLabel) {
-        GraphTraversal search = graph.traversal()
-            .V().has(vLabel1, NAME, name1)
-                .bothE(eLabel).as(EDGE)
-                .bothV().has(vLabel2, NAME, name2).select(EDGE)
+    static void deleteEdgeBidirectional(Graph graph, boolean commit, String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2, String eLabel) {
+        GremlinMetrics.traversal("deleteEdgeBidirectional", eLabel) { ->
+            GraphTraversal search = startAt(graph.traversal(), vLabel1, name1, id1)
+                    .bothE(eLabel).as(EDGE)
+                    .bothV()
+            search = matching(search, vLabel2, name2, id2).select(EDGE)
 
-        if (search.hasNext()) {
-            Edge edge = (Edge) search.next()
-            edge.remove()
+            if (search.hasNext()) {
+                Edge edge = (Edge) search.next()
+                edge.remove()
+            }
         }
 
         if (commit) {
-            graph.tx().commit()
+            GremlinMetrics.commit(graph, "deleteEdgeBidirectional", eLabel)
         }
     }
 
     /**
-     * Perform BFS (Breadth First Search), and also calculate total weights of paths
+     * Perform BFS (Breadth First Search), and also calculate total weights of paths.
+     * Limits are applied inside the traversal: paths are pruned as soon as a limit is reached, instead of filtering complete result
      * @param graph TinkerPop graph
      * @param commit if true, perform transaction commit at the end
      * @param vLabel1 vertex label of first vertex
      * @param name1 name of first vertex
+     * @param id1 id of first vertex if known, null otherwise
      * @param vLabel2 vertex label of second vertex
      * @param name2 name of second vertex
+     * @param id2 id of second vertex if known, null otherwise
      * @param eLabel edge label
+     * @param limits search limits
      * @return list of paths found and their total weights
      */
-    static List<GraphRoute> findPathsBidirectional(Graph graph, boolean commit, String vLabel1, String name1, String vLabel2, String name2, String eLabel) {
+    static List<GraphRoute> findPathsBidirectional(Graph graph, boolean commit, String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2, String eLabel, PathSearchLimits limits) {
+        List<GraphRoute> result = new ArrayList<>()
+        streamPathsBidirectional(graph, commit, vLabel1, name1, id1, vLabel2, name2, id2, eLabel, limits, { GraphRoute route -> result.add(route) } as Predicate<GraphRoute>)
+        result
+    }
+
+    /**
+     * Same as {@link #findPathsBidirectional}, but paths are passed to consumer one by one, as soon as traversal yields them
+     * @param graph TinkerPop graph
+     * @param commit if true, perform transaction commit at the end
+     * @param vLabel1 vertex label of first vertex
+     * @param name1 name of first vertex
+     * @param id1 id of first vertex if known, null otherwise
+     * @param vLabel2 vertex label of second vertex
+     * @param name2 name of second vertex
+     * @param id2 id of second vertex if known, null otherwise
+     * @param eLabel edge label
+     * @param limits search limits
+     * @param consumer receives paths found, returns false to stop the search
+     */
+    static void streamPathsBidirectional(Graph graph, boolean commit, String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2, String eLabel, PathSearchLimits limits, Predicate<GraphRoute> consumer) {
         GraphTraversalSource g = graph.traversal()
+        GraphTraversal step = __.bothE()
+
+        if (limits.maxTotalWeight != null) {
+            // accumulate weight of the partial path in traverser's sack, drop the path when it gets too expensive
+            g = g.withSack(0.0d)
+            step = step.sack(Operator.sum).by(__.coalesce(__.values(WEIGHT), __.constant(0.0d)))
+                .bothV().simplePath().filter(__.sack().is(P.lte(limits.maxTotalWeight)))
+        } else {
+            step = step.bothV().simplePath()
+        }
+
+        if (limits.timeoutMillis > 0) {
+            step = step.timeLimit(limits.timeoutMillis)
+        }
+
+        GraphTraversal until = matching(__.start(), vLabel2, name2, id2)
+
+        if (limits.maxHops > 0) {
+            until = __.or(until, __.loops().is(P.gte(limits.maxHops)))
+        }
 
-        GraphTraversal search = g.V().has(vLabel1, NAME, name1)
-            .repeat(__.bothE().bothV().simplePath())
-                .until(__.has(vLabel2, NAME, name2)).path().as(eLabel)
+        GraphTraversal search = startAt(g, vLabel1, name1, id1).repeat(step).until(until)
+
+        if (limits.maxHops > 0) {
+            // paths stopped by hops limit did not reach the target
+            search = matching(search, vLabel2, name2, id2)
+        }
+
+        search = search.path().as(eLabel)
             .map(__.unfold().coalesce(__.values(WEIGHT), __.constant(0.0)).sum()).as(WEIGHT)
                 .select(WEIGHT, eLabel)
 
-        List<GraphRoute> result = new ArrayList<>();
+        if (limits.maxPaths > 0) {
+            search = search.limit(limits.maxPaths)
+        }
 
-        while (search.hasNext()) {
-            Map<String, Object> path = (Map) search.next()
-            GraphRoute graphRoute = new GraphRoute()
-            graphRoute.setTotalWeight(((BigDecimal) path.get(WEIGHT)).toDouble());
+        long deadline = limits.timeoutMillis > 0 ? System.currentTimeMillis() + limits.timeoutMillis : Long.MAX_VALUE
+        boolean proceed = true
+        int count = 0
+        // consumer is not timed, it sends paths to the client
+        GremlinMetrics.StreamTimer timer = GremlinMetrics.streamTimer("streamPathsBidirectional", eLabel)
 
-            Path route = (Path) path.get(eLabel)
-            Iterator<Object> it = route.iterator()
+        // consumer may be slow (or fail), the read transaction must be closed anyway
+        try {
+            while (proceed && System.currentTimeMillis() < deadline && timer.step { -> search.hasNext() }) {
+                Map<String, Object> path = (Map) timer.step { -> search.next() }
+                GraphRoute graphRoute = new GraphRoute()
+                graphRoute.setTotalWeight(((Number) path.get(WEIGHT)).doubleValue());
 
-            while (it.hasNext()) {
-                Object item = it.next()
+                Path route = (Path) path.get(eLabel)
+                Iterator<Object> it = route.iterator()
+
+                while (it.hasNext()) {
+                    Object item = it.next()
 
-                if (item instanceof Vertex) {
-                    graphRoute.getVertices().add(((Vertex) item).value(NAME))
+                    if (item instanceof Vertex) {
+                        graphRoute.getVertices().add(((Vertex) item).value(NAME))
+                    }
                 }
+
+                count++
+                proceed = consumer.test(graphRoute)
             }
+        } finally {
+            timer.close()
+            GremlinMetrics.paths("streamPathsBidirectional", eLabel, count)
+
+            if (commit) {
+                GremlinMetrics.commit(graph, "streamPathsBidirectional", eLabel)
+            }
+        }
+    }
+
+    /**
+     * Find cheapest paths between two vertices, using Dijkstra's algorithm, and Yen's algorithm for alternatives.
+     * Unlike {@link #findPathsBidirectional}, only vertices on the cheapest paths frontier are loaded from the graph
+     * @param graph TinkerPop graph
+     * @param commit if true, perform transaction commit at the end
+     * @param vLabel1 vertex label of first vertex
+     * @param name1 name of first vertex
+     * @param id1 id of first vertex if known, null otherwise
+     * @param vLabel2 vertex label of second vertex
+     * @param name2 name of second vertex
+     * @param id2 id of second vertex if known, null otherwise
+     * @param eLabel edge label
+     * @param count max number of paths to return
+     * @param limits search limits
+     * @param bidirectional search from both ends at once
+     * @return list of paths found and their total weights, ordered by total weight
+     */
+    static List<GraphRoute> findShortestPathsBidirectional(Graph graph, boolean commit, String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2, String eLabel, int count, PathSearchLimits limits, boolean bidirectional) {
+        GraphTraversalSource g = graph.traversal()
+        GraphTraversal source = startAt(g, vLabel1, name1, id1).id()
+        GraphTraversal target = startAt(g, vLabel2, name2, id2).id()
+
+        List<GraphRoute> result = new ArrayList<>()
+
+        GremlinMetrics.traversal("findShortestPathsBidirectional", eLabel) { ->
+            if (source.hasNext() && target.hasNext()) {
+                GremlinAdjacency adjacency = new GremlinAdjacency(g, eLabel)
+                int sourceIndex = adjacency.indexOf(source.next())
+                int targetIndex = adjacency.indexOf(target.next())
+                PathFinder pathFinder = new PathFinder(adjacency).withBidirectionalSearch(bidirectional).withMaxHops(limits.maxHops)
+
+                if (limits.maxTotalWeight != null) {
+                    pathFinder.withMaxTotalWeight(limits.maxTotalWeight)
+                }
+
+                if (limits.timeoutMillis > 0) {
+                    pathFinder.withTimeout(limits.timeoutMillis)
+                }
+
+                List<IntPath> paths = pathFinder.shortestPaths(sourceIndex, targetIndex, limits.maxPaths > 0 ? Math.min(count, limits.maxPaths) : count)
+                Map<Integer, String> names = adjacency.namesOf(paths.collectMany { it.vertices.toList() }.toSet())
 
-            result.add(graphRoute)
+                paths.each { IntPath path ->
+                    GraphRoute graphRoute = new GraphRoute()
+                    graphRoute.setTotalWeight(path.totalWeight)
+                    path.vertices.each { graphRoute.getVertices().add(names.get(it)) }
+                    result.add(graphRoute)
+                }
+
+                GremlinMetrics.verticesVisited("findShortestPathsBidirectional", eLabel, pathFinder.settledVertices)
+            }
         }
 
+        GremlinMetrics.paths("findShortestPathsBidirectional", eLabel, result.size())
+
         if (commit) {
-            graph.tx().commit()
+            GremlinMetrics.commit(graph, "findShortestPathsBidirectional", eLabel)
         }
 
         result
     }
+
+    /**
+     * Load all vertices with specified label, and all edges between them, into in-memory {@link CsrGraph}
+     * @param graph TinkerPop graph
+     * @param commit if true, perform transaction commit at the end
+     * @param vLabel vertex label
+     * @param eLabel edge label
+     * @return in-memory graph
+     */
+    static CsrGraph loadCsrGraph(Graph graph, boolean commit, String vLabel, String eLabel) {
+        GraphTraversalSource g = graph.traversal()
+        CsrGraph.Builder builder = CsrGraph.builder()
+
+        GremlinMetrics.traversal("loadCsrGraph", eLabel) { ->
+            Iterator<String> names = g.V().hasLabel(vLabel).values(NAME)
+
+            while (names.hasNext()) {
+                builder.addVertex(names.next())
+            }
+
+            Iterator<Map<String, Object>> edges = g.E().hasLabel(eLabel)
+                .where(__.outV().hasLabel(vLabel)).where(__.inV().hasLabel(vLabel))
+                .project(VERTEX + 1, VERTEX + 2, WEIGHT)
+                    .by(__.outV().values(NAME))
+                    .by(__.inV().values(NAME))
+                    .by(__.coalesce(__.values(WEIGHT), __.constant(0.0d)))
+
+            while (edges.hasNext()) {
+                Map<String, Object> edge = edges.next()
+                builder.putEdge((String) edge.get(VERTEX + 1), (String) edge.get(VERTEX + 2), ((Number) edge.get(WEIGHT)).doubleValue())
+            }
+        }
+
+        if (commit) {
+            GremlinMetrics.commit(graph, "loadCsrGraph", eLabel)
+        }
+
+        builder.build()
+    }
+
+    /**
+     * Create vertices in bulk. Unlike {@link #createVertex}, vertices which exist already are skipped, so import can be repeated.
+     * If commit is true, all chunks are written within a single transaction, in Sqlg batch mode if available:
+     * each chunk is flushed to the database before the next one is taken
+     * @param graph TinkerPop graph
+     * @param commit if true, perform transaction commit at the end, or rollback on failure
+     * @param chunks chunks of vertices
+     * @param chunkImported receives number of vertices created from each chunk, after the chunk is flushed
+     * @return number of vertices created
+     */
+    static long importVertices(Graph graph, boolean commit, Iterator<List<GraphVertex>> chunks, IntConsumer chunkImported) {
+        GraphTraversalSource g = graph.traversal()
+
+        importChunks(graph, commit, "importVertices", chunks, chunkImported) { List<GraphVertex> chunk ->
+            int created = 0
+
+            chunk.groupBy { it.label }.each { String label, List<GraphVertex> vertices ->
+                Set<String> names = new LinkedHashSet<>(vertices.collect { it.name })
+                Set<String> existing = new HashSet<>(g.V().hasLabel(label).has(NAME, P.within(names)).values(NAME).toList())
+
+                names.each { String name ->
+                    if (existing.add(name)) {
+                        graph.addVertex(T.label, label, NAME, name)
+                        created++
+                    }
+                }
+            }
+
+            created
+        }
+    }
+
+    /**
+     * Create edges in bulk. Like {@link #createEdgeBidirectional}, if edge exists already, it's "weight" property is updated.
+     * Edges between vertices which do not exist are skipped. Transaction handling is the same as in {@link #importVertices}
+     * @param graph TinkerPop graph
+     * @param commit if true, perform transaction commit at the end, or rollback on failure
+     * @param chunks chunks of edges
+     * @param chunkImported receives number of edges created or updated from each chunk, after the chunk is flushed
+     * @return number of edges created or updated
+     */
+    static long importEdges(Graph graph, boolean commit, Iterator<List<GraphEdge>> chunks, IntConsumer chunkImported) {
+        GraphTraversalSource g = graph.traversal()
+
+        importChunks(graph, commit, "importEdges", chunks, chunkImported) { List<GraphEdge> chunk ->
+            Map<List<String>, Vertex> vertices = verticesOf(g, chunk)
+            Map<List<Object>, Edge> edges = edgesBetween(g, vertices, chunk)
+            int imported = 0
+
+            chunk.each { GraphEdge item ->
+                Vertex vertex1 = vertices.get([item.vertex1.label, item.vertex1.name])
+                Vertex vertex2 = vertices.get([item.vertex2.label, item.vertex2.name])
+
+                if (vertex1 == null || vertex2 == null) {
+                    return
+                }
+
+                List<Object> key = edgeKey(item.label, vertex1, vertex2)
+                Edge edge = edges.get(key)
+
+                if (edge != null) {
+                    edge.property(WEIGHT, item.weight)
+                } else {
+                    edges.put(key, vertex1.addEdge(item.label, vertex2, WEIGHT, item.weight))
+                }
+
+                imported++
+            }
+
+            imported
+        }
+    }
+
+    /**
+     * Start traversal at a vertex, by id if known, by label and name otherwise
+     */
+    private static GraphTraversal startAt(GraphTraversalSource g, String label, String name, Object id) {
+        id != null ? g.V(id) : g.V().has(label, NAME, name)
+    }
+
+    /**
+     * Keep traversers at a vertex, matched by id if known, by label and name otherwise
+     */
+    private static GraphTraversal matching(GraphTraversal traversal, String label, String name, Object id) {
+        id != null ? traversal.hasId(id) : traversal.has(label, NAME, name)
+    }
+
+    /**
+     * Resolve both vertices of all edges, a single query per vertex label, vertices are keyed by label and name
+     */
+    private static Map<List<String>, Vertex> verticesOf(GraphTraversalSource g, List<GraphEdge> edges) {
+        Map<List<String>, Vertex> vertices = new HashMap<>()
+
+        edges.collectMany { [it.vertex1, it.vertex2] }.groupBy { it.label }.each { String label, List<GraphVertex> ends ->
+            Set<String> names = new HashSet<>(ends.collect { it.name })
+            g.V().hasLabel(label).has(NAME, P.within(names)).toList().each { Vertex vertex ->
+                vertices.put([label, (String) vertex.value(NAME)], vertex)
+            }
+        }
+
+        vertices
+    }
+
+    /**
+     * Existing edges of the vertices with labels of the edges, a single query,
+     * keyed by label and unordered pair of vertex ids, so direction does not matter
+     */
+    private static Map<List<Object>, Edge> edgesBetween(GraphTraversalSource g, Map<List<String>, Vertex> vertices, List<GraphEdge> edges) {
+        Map<List<Object>, Edge> existing = new HashMap<>()
+
+        if (!vertices.isEmpty()) {
+            String[] eLabels = edges.collect { it.label }.toSet().toArray(new String[0])
+            Object[] ids = vertices.values().collect { it.id() }.toArray()
+            // edges to other vertices are filtered in the query, a hub station must not load all its routes
+            g.V(ids).bothE(eLabels).where(__.otherV().hasId(P.within(ids))).dedup().toList().each { Edge edge ->
+                existing.put(edgeKey(edge.label(), edge.outVertex(), edge.inVertex()), edge)
+            }
+        }
+
+        existing
+    }
+
+    private static List<Object> edgeKey(String eLabel, Vertex vertex1, Vertex vertex2) {
+        [eLabel, [vertex1.id(), vertex2.id()].toSet()]
+    }
+
+    /**
+     * Import chunks one by one, chunks may mix labels, so metrics are tagged with {@link #ALL_LABELS}
+     */
+    private static <T> long importChunks(Graph graph, boolean commit, String operation, Iterator<List<T>> chunks, IntConsumer chunkImported,
+                                         Closure<Integer> importChunk) {
+        boolean batch = commit && graph instanceof SqlgGraph
+
+        if (batch) {
+            ((SqlgGraph) graph).tx().normalBatchModeOn()
+        }
+
+        long imported = 0
+
+        try {
+            while (chunks.hasNext()) {
+                List<T> chunk = chunks.next()
+                int count = GremlinMetrics.traversal(operation, ALL_LABELS) { ->
+                    int created = importChunk.call(chunk)
+
+                    if (batch) {
+                        ((SqlgGraph) graph).tx().flush()
+                    }
+
+                    created
+                }
+
+                imported += count
+                chunkImported.accept(count)
+            }
+
+            if (commit) {
+                GremlinMetrics.commit(graph, operation, ALL_LABELS)
+            }
+        } catch (Exception e) {
+            if (commit) {
+                graph.tx().rollback()
+            }
+
+            throw e
+        }
+
+        imported
+    }
 }
@@ -0,0 +1,129 @@
+package io.demo.storage.util
+
+import groovy.transform.CompileStatic
+import io.micrometer.core.instrument.Metrics
+import org.apache.tinkerpop.gremlin.structure.Graph
+
+import java.util.concurrent.Callable
+import java.util.concurrent.TimeUnit
+
+/**
+ * Metrics of {@link GremlinManager} operations, tagged with operation and label (vertex label, or edge label for edges and paths).
+ * {@link GremlinManager} is static, so meters are registered in Micrometer's global registry, which Spring Boot adds its registry to.
+ * Outside of Spring (benchmarks) the global registry is empty and meters are no-op
+ * <ul>
+ *     <li>gremlin.traversal - time of traversal, up to commit, of a streamed traversal without time spent by its consumer</li>
+ *     <li>gremlin.commit - time of transaction commit</li>
+ *     <li>gremlin.errors - failed traversals and commits, tagged with phase and exception</li>
+ *     <li>graph.paths - number of paths returned by path searches</li>
+ *     <li>graph.vertices.visited - number of vertices settled by cheapest paths searches</li>
+ * </ul>
+ * Result sizes are tagged with backend "gremlin", {@link io.demo.storage.service.RouteGraphSnapshot} records them with backend "snapshot".
+ * Both {@link GremlinBackend} implementations record the same meters
+ */
+@CompileStatic
+class GremlinMetrics {
+
+    static final String TRAVERSAL = "traversal"
+    static final String COMMIT = "commit"
+    static final String BACKEND = "gremlin"
+
+    /**
+     * Time traversal, count it as an error if it throws
+     * @param operation operation name
+     * @param label vertex or edge label
+     * @param traversal traversal to run, a closure or a lambda
+     * @return result of traversal
+     */
+    static <T> T traversal(String operation, String label, Callable<T> traversal) {
+        long start = System.nanoTime()
+
+        try {
+            return traversal.call()
+        } catch (Exception e) {
+            error(operation, label, TRAVERSAL, e)
+            throw e
+        } finally {
+            Metrics.timer("gremlin.traversal", "operation", operation, "label", label).record(System.nanoTime() - start, TimeUnit.NANOSECONDS)
+        }
+    }
+
+    /**
+     * Commit transaction, time it, count it as an error if it throws
+     * @param graph TinkerPop graph
+     * @param operation operation name
+     * @param label vertex or edge label
+     */
+    static void commit(Graph graph, String operation, String label) {
+        long start = System.nanoTime()
+
+        try {
+            graph.tx().commit()
+        } catch (Exception e) {
+            error(operation, label, COMMIT, e)
+            throw e
+        } finally {
+            Metrics.timer("gremlin.commit", "operation", operation, "label", label).record(System.nanoTime() - start, TimeUnit.NANOSECONDS)
+        }
+    }
+
+    /**
+     * Timer of a streamed traversal, which times its hasNext and next calls only, not the consumer of its results
+     * @param operation operation name
+     * @param label vertex or edge label
+     * @return timer, to be closed once the stream ends
+     */
+    static StreamTimer streamTimer(String operation, String label) {
+        return new StreamTimer(operation, label)
+    }
+
+    static void paths(String operation, String label, int count) {
+        Metrics.summary("graph.paths", "operation", operation, "label", label, "backend", BACKEND).record(count)
+    }
+
+    static void verticesVisited(String operation, String label, long count) {
+        Metrics.summary("graph.vertices.visited", "operation", operation, "label", label, "backend", BACKEND).record(count)
+    }
+
+    private static void error(String operation, String label, String phase, Exception e) {
+        Metrics.counter("gremlin.errors", "operation", operation, "label", label, "phase", phase, "exception", e.getClass().getSimpleName())
+            .increment()
+    }
+
+    /**
+     * Sums time of traversal steps, records it as gremlin.traversal when closed. Failed steps are counted as errors
+     */
+    static class StreamTimer {
+
+        private final String operation
+        private final String label
+        private long nanos
+
+        private StreamTimer(String operation, String label) {
+            this.operation = operation
+            this.label = label
+        }
+
+        /**
+         * Time a step of traversal, count it as an error if it throws
+         * @param step e.g. hasNext or next of the traversal
+         * @return result of step
+         */
+        public <T> T step(Callable<T> step) {
+            long start = System.nanoTime()
+
+            try {
+                return step.call()
+            } catch (Exception e) {
+                error(operation, label, TRAVERSAL, e)
+                throw e
+            } finally {
+                nanos += System.nanoTime() - start
+            }
+        }
+
+        void close() {
+            Metrics.timer("gremlin.traversal", "operation", operation, "label", label).record(nanos, TimeUnit.NANOSECONDS)
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package io.demo.storage.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings of gRPC server threads and per-category concurrency limits, see {@link io.demo.storage.service.grpc.ConcurrencyLimitInterceptor}
+ */
+@Configuration
+@ConfigurationProperties(prefix = "storage.concurrency")
+public class ConcurrencyProperties {
+
+    private boolean enabled = true;
+    private int executorThreads = 8;
+    private Limit search = new Limit(4, 16);
+    private Limit read = new Limit(16, 64);
+    private Limit write = new Limit(4, 32);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Threads of gRPC server executor. Calls are only admitted and dispatched there, they run on threads of their category
+     * @return threads count
+     */
+    public int getExecutorThreads() {
+        return executorThreads;
+    }
+
+    public void setExecutorThreads(int executorThreads) {
+        this.executorThreads = executorThreads;
+    }
+
+    /**
+     * Limit of path searches: findPathsBidirectional, findPathsBidirectionalStream, findShortestPathsBidirectional,
+     * and of batch lookups: edgesExistBidirectional
+     * @return limit
+     */
+    public Limit getSearch() {
+        return search;
+    }
+
+    public void setSearch(Limit search) {
+        this.search = search;
+    }
+
+    /**
+     * Limit of point reads and listings
+     * @return limit
+     */
+    public Limit getRead() {
+        return read;
+    }
+
+    public void setRead(Limit read) {
+        this.read = read;
+    }
+
+    /**
+     * Limit of writes, including imports. With group commit, max concurrent is raised to max group size
+     * @return limit
+     */
+    public Limit getWrite() {
+        return write;
+    }
+
+    public void setWrite(Limit write) {
+        this.write = write;
+    }
+
+    public static class Limit {
+
+        private int maxConcurrent;
+        private int maxQueued;
+
+        public Limit() {
+        }
+
+        public Limit(int maxConcurrent, int maxQueued) {
+            this.maxConcurrent = maxConcurrent;
+            this.maxQueued = maxQueued;
+        }
+
+        /**
+         * Max number of calls running at once, each of them occupies a thread and, within a transaction, a database connection
+         * @return calls count
+         */
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        /**
+         * Max number of calls waiting for a thread, calls above it are rejected with RESOURCE_EXHAUSTED at once
+         * @return calls count
+         */
+        public int getMaxQueued() {
+            return maxQueued;
+        }
+
+        public void setMaxQueued(int maxQueued) {
+            this.maxQueued = maxQueued;
+        }
+    }
+}
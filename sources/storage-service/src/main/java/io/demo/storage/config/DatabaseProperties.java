@@ -12,6 +12,8 @@ public class DatabaseProperties {
     private String url;
     private String username;
     private String password;
+    private Pool pool = new Pool();
+    private Tuning tuning = new Tuning();
 
     public String getUrl() {
         return url;
@@ -36,4 +38,143 @@ public class DatabaseProperties {
     public void setPassword(String password) {
         this.password = password;
     }
+
+    public Pool getPool() {
+        return pool;
+    }
+
+    public void setPool(Pool pool) {
+        this.pool = pool;
+    }
+
+    public Tuning getTuning() {
+        return tuning;
+    }
+
+    public void setTuning(Tuning tuning) {
+        this.tuning = tuning;
+    }
+
+    /**
+     * Settings of c3p0 connection pool, which Sqlg creates. Every gRPC call holds a connection for the duration of its transaction,
+     * so max size should cover concurrent calls, streaming path searches and import threads
+     */
+    public static class Pool {
+
+        private int minSize = 5;
+        // null keeps Sqlg's default of 100
+        private Integer maxSize;
+        // 0 waits for a free connection forever
+        private long acquireTimeoutMillis = 10000;
+        private int maxIdleTimeSeconds = 3600;
+        // idle connections are tested periodically, so connections dropped by the database are replaced before they are used
+        private int idleTestPeriodSeconds = 60;
+        private boolean testOnCheckin = true;
+        // prepared statements cached per connection, 0 disables the cache
+        private int statementCacheSize = 100;
+
+        public int getMinSize() {
+            return minSize;
+        }
+
+        public void setMinSize(int minSize) {
+            this.minSize = minSize;
+        }
+
+        public Integer getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(Integer maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public long getAcquireTimeoutMillis() {
+            return acquireTimeoutMillis;
+        }
+
+        public void setAcquireTimeoutMillis(long acquireTimeoutMillis) {
+            this.acquireTimeoutMillis = acquireTimeoutMillis;
+        }
+
+        public int getMaxIdleTimeSeconds() {
+            return maxIdleTimeSeconds;
+        }
+
+        public void setMaxIdleTimeSeconds(int maxIdleTimeSeconds) {
+            this.maxIdleTimeSeconds = maxIdleTimeSeconds;
+        }
+
+        public int getIdleTestPeriodSeconds() {
+            return idleTestPeriodSeconds;
+        }
+
+        public void setIdleTestPeriodSeconds(int idleTestPeriodSeconds) {
+            this.idleTestPeriodSeconds = idleTestPeriodSeconds;
+        }
+
+        public boolean isTestOnCheckin() {
+            return testOnCheckin;
+        }
+
+        public void setTestOnCheckin(boolean testOnCheckin) {
+            this.testOnCheckin = testOnCheckin;
+        }
+
+        public int getStatementCacheSize() {
+            return statementCacheSize;
+        }
+
+        public void setStatementCacheSize(int statementCacheSize) {
+            this.statementCacheSize = statementCacheSize;
+        }
+    }
+
+    /**
+     * Sqlg settings, passed to {@link org.umlg.sqlg.structure.SqlgGraph#open} along with connection settings
+     */
+    public static class Tuning {
+
+        // rows fetched per round-trip by traversals, null keeps the dialect default
+        private Integer fetchSize;
+        // has(P.within(...)) with more values than this is resolved by joining a temporary table instead of an IN list,
+        // Sqlg default is 1, so any list goes to a temporary table
+        private int bulkWithinCount = 1;
+        // vertices loaded within a transaction are cached until it ends
+        private boolean cacheVertices = false;
+        // compare cached topology with the database at startup
+        private boolean validateTopology = false;
+
+        public Integer getFetchSize() {
+            return fetchSize;
+        }
+
+        public void setFetchSize(Integer fetchSize) {
+            this.fetchSize = fetchSize;
+        }
+
+        public int getBulkWithinCount() {
+            return bulkWithinCount;
+        }
+
+        public void setBulkWithinCount(int bulkWithinCount) {
+            this.bulkWithinCount = bulkWithinCount;
+        }
+
+        public boolean isCacheVertices() {
+            return cacheVertices;
+        }
+
+        public void setCacheVertices(boolean cacheVertices) {
+            this.cacheVertices = cacheVertices;
+        }
+
+        public boolean isValidateTopology() {
+            return validateTopology;
+        }
+
+        public void setValidateTopology(boolean validateTopology) {
+            this.validateTopology = validateTopology;
+        }
+    }
 }
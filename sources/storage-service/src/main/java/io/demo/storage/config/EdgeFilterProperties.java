@@ -0,0 +1,93 @@
+package io.demo.storage.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings of negative lookup filter of edges, see {@link io.demo.storage.service.EdgeFilter}
+ */
+@Configuration
+@ConfigurationProperties(prefix = "storage.edge-filter")
+public class EdgeFilterProperties {
+
+    private boolean enabled = true;
+    private String vertexLabel = "train_station";
+    private String edgeLabel = "route";
+    private long expectedEdges = 1000000;
+    private double falsePositiveProbability = 0.01;
+    private double staleRatio = 0.25;
+    private long maxStalenessMillis;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getVertexLabel() {
+        return vertexLabel;
+    }
+
+    public void setVertexLabel(String vertexLabel) {
+        this.vertexLabel = vertexLabel;
+    }
+
+    public String getEdgeLabel() {
+        return edgeLabel;
+    }
+
+    public void setEdgeLabel(String edgeLabel) {
+        this.edgeLabel = edgeLabel;
+    }
+
+    /**
+     * Min number of edges the filter is sized for, it is sized for twice the number of existing edges if there are more
+     * @return expected number of edges
+     */
+    public long getExpectedEdges() {
+        return expectedEdges;
+    }
+
+    public void setExpectedEdges(long expectedEdges) {
+        this.expectedEdges = expectedEdges;
+    }
+
+    /**
+     * Target false positive probability, the filter is rebuilt when its estimated probability gets twice as high
+     * @return false positive probability
+     */
+    public double getFalsePositiveProbability() {
+        return falsePositiveProbability;
+    }
+
+    public void setFalsePositiveProbability(double falsePositiveProbability) {
+        this.falsePositiveProbability = falsePositiveProbability;
+    }
+
+    /**
+     * Deleted edges stay in the filter, it is rebuilt when they exceed this share of added edges
+     * @return share of deleted edges
+     */
+    public double getStaleRatio() {
+        return staleRatio;
+    }
+
+    public void setStaleRatio(double staleRatio) {
+        this.staleRatio = staleRatio;
+    }
+
+    /**
+     * Negative answers check for writes of other instances first, unless the graph version was read less than that ago.
+     * Edges added by other instances within that time may be reported missing
+     * @return max staleness of negative answers in milliseconds, zero to check before every negative answer
+     */
+    public long getMaxStalenessMillis() {
+        return maxStalenessMillis;
+    }
+
+    public void setMaxStalenessMillis(long maxStalenessMillis) {
+        this.maxStalenessMillis = maxStalenessMillis;
+    }
+}
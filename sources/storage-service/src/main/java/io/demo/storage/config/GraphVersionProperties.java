@@ -0,0 +1,27 @@
+package io.demo.storage.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings of graph version, see {@link io.demo.storage.service.GraphVersion}
+ */
+@Configuration
+@ConfigurationProperties(prefix = "storage.graph-version")
+public class GraphVersionProperties {
+
+    private long refreshIntervalMillis = 1000;
+
+    /**
+     * Interval of reading graph version from the database, to notice writes of other storage-service instances.
+     * Bounds staleness of the snapshot and of version headers, version checks of clients read the database anyway
+     * @return interval in milliseconds, 0 to read version on version checks only
+     */
+    public long getRefreshIntervalMillis() {
+        return refreshIntervalMillis;
+    }
+
+    public void setRefreshIntervalMillis(long refreshIntervalMillis) {
+        this.refreshIntervalMillis = refreshIntervalMillis;
+    }
+}
@@ -0,0 +1,30 @@
+package io.demo.storage.config;
+
+import io.demo.storage.util.CompiledGremlinBackend;
+import io.demo.storage.util.GremlinBackend;
+import io.demo.storage.util.GroovyGremlinBackend;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class GremlinConfiguration {
+
+    @Autowired
+    private GremlinProperties gremlinProperties;
+
+    @Autowired
+    private PathSearchProperties pathSearchProperties;
+
+    @Bean
+    public GremlinBackend gremlinBackend(Graph graph) {
+        switch (gremlinProperties.getBackend()) {
+            case GROOVY:
+                return new GroovyGremlinBackend(graph, pathSearchProperties.isBidirectional());
+            case COMPILED:
+            default:
+                return new CompiledGremlinBackend(graph, pathSearchProperties.isBidirectional());
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package io.demo.storage.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings of graph traversals, see {@link io.demo.storage.util.GremlinBackend}
+ */
+@Configuration
+@ConfigurationProperties(prefix = "storage.gremlin")
+public class GremlinProperties {
+
+    private Backend backend = Backend.COMPILED;
+
+    /**
+     * Implementation of graph operations
+     * @return backend
+     */
+    public Backend getBackend() {
+        return backend;
+    }
+
+    public void setBackend(Backend backend) {
+        this.backend = backend;
+    }
+
+    public enum Backend {
+        /**
+         * Statically compiled traversals, {@link io.demo.storage.util.CompiledGremlinBackend}
+         */
+        COMPILED,
+        /**
+         * Dynamically typed Groovy traversals, {@link io.demo.storage.util.GroovyGremlinBackend}
+         */
+        GROOVY
+    }
+}
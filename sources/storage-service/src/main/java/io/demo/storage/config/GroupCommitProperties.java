@@ -0,0 +1,50 @@
+package io.demo.storage.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings of group commit of single writes, see {@link io.demo.storage.service.GroupCommitWriter}
+ */
+@Configuration
+@ConfigurationProperties(prefix = "storage.group-commit")
+public class GroupCommitProperties {
+
+    private boolean enabled;
+    private int maxSize = 64;
+    private long maxDelayMicros;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Max number of writes committed in one transaction. Write calls wait for their group on threads of the write category,
+     * so it raises max concurrent writes to the same number, see {@link ConcurrencyProperties#getWrite}
+     * @return max group size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * How long the first write of a group waits for more writes. With zero, a group is made of writes queued while
+     * the previous group was committed, so writes are grouped under load only and a single write is not delayed
+     * @return max delay in microseconds
+     */
+    public long getMaxDelayMicros() {
+        return maxDelayMicros;
+    }
+
+    public void setMaxDelayMicros(long maxDelayMicros) {
+        this.maxDelayMicros = maxDelayMicros;
+    }
+}
@@ -0,0 +1,44 @@
+package io.demo.storage.config;
+
+import io.grpc.ServerBuilder;
+import org.lognet.springboot.grpc.GRpcServerBuilderConfigurer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replaces unbounded cached thread pool of gRPC server with a fixed one. Calls only pass admission there,
+ * then run on threads of their category, see {@link io.demo.storage.service.grpc.ConcurrencyLimitInterceptor}
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "storage.concurrency", name = "enabled", matchIfMissing = true)
+public class GrpcServerConfiguration {
+
+    @Autowired
+    private ConcurrencyProperties concurrencyProperties;
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService grpcServerExecutor() {
+        AtomicInteger threads = new AtomicInteger();
+        return Executors.newFixedThreadPool(concurrencyProperties.getExecutorThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "grpc-server-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Bean
+    public GRpcServerBuilderConfigurer serverBuilderConfigurer(ExecutorService grpcServerExecutor) {
+        return new GRpcServerBuilderConfigurer() {
+            @Override
+            public void configure(ServerBuilder<?> serverBuilder) {
+                serverBuilder.executor(grpcServerExecutor);
+            }
+        };
+    }
+}
@@ -0,0 +1,39 @@
+package io.demo.storage.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings of bulk import operations
+ */
+@Configuration
+@ConfigurationProperties(prefix = "storage.import")
+public class ImportProperties {
+
+    private int chunkSize = 1000;
+    private int threads = 2;
+
+    /**
+     * Number of elements written and flushed at once, progress is reported after each chunk
+     * @return chunk size
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Max number of concurrent imports, each of them occupies a thread and a database connection
+     * @return threads count
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+}
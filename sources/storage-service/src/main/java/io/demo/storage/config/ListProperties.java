@@ -0,0 +1,27 @@
+package io.demo.storage.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings of vertex listing operations
+ */
+@Configuration
+@ConfigurationProperties(prefix = "storage.list")
+public class ListProperties {
+
+    private int maxPageSize = 1000;
+
+    /**
+     * Max number of names in a page, larger page sizes requested by clients are reduced to it.
+     * Streaming listing reads and sends names in pages of this size, unless client asks for smaller ones
+     * @return page size
+     */
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    public void setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+}
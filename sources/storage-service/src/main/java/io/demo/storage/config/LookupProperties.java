@@ -0,0 +1,39 @@
+package io.demo.storage.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings of batch edge lookups
+ */
+@Configuration
+@ConfigurationProperties(prefix = "storage.lookup")
+public class LookupProperties {
+
+    private int chunkSize = 500;
+    private int maxEdges = 10000;
+
+    /**
+     * Number of edges resolved by a single set-based query
+     * @return chunk size
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Max number of edges of a single call, larger calls are rejected
+     * @return max edges
+     */
+    public int getMaxEdges() {
+        return maxEdges;
+    }
+
+    public void setMaxEdges(int maxEdges) {
+        this.maxEdges = maxEdges;
+    }
+}
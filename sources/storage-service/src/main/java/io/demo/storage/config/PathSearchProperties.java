@@ -0,0 +1,94 @@
+package io.demo.storage.config;
+
+import io.demo.storage.domain.PathSearchLimits;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Server side limits of path search operations. Limits sent by clients can only make them stricter
+ */
+@Configuration
+@ConfigurationProperties(prefix = "storage.path-search")
+public class PathSearchProperties {
+
+    private int maxHops;
+    private int maxPaths = 1000;
+    private long timeoutMillis = 30000;
+    private int streamThreads = 8;
+    private boolean bidirectional = true;
+    private int parallelism;
+
+    public int getMaxHops() {
+        return maxHops;
+    }
+
+    public void setMaxHops(int maxHops) {
+        this.maxHops = maxHops;
+    }
+
+    public int getMaxPaths() {
+        return maxPaths;
+    }
+
+    public void setMaxPaths(int maxPaths) {
+        this.maxPaths = maxPaths;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Number of threads producing paths for streaming searches, each streaming search occupies one thread until completed
+     * @return stream threads
+     */
+    public int getStreamThreads() {
+        return streamThreads;
+    }
+
+    public void setStreamThreads(int streamThreads) {
+        this.streamThreads = streamThreads;
+    }
+
+    /**
+     * Search cheapest paths from both ends at once, see {@link io.demo.storage.graph.PathFinder}.
+     * Used by graph traversals, and by the snapshot unless it has landmarks
+     * @return true for bidirectional search
+     */
+    public boolean isBidirectional() {
+        return bidirectional;
+    }
+
+    public void setBidirectional(boolean bidirectional) {
+        this.bidirectional = bidirectional;
+    }
+
+    /**
+     * Number of fork-join workers enumerating paths of the snapshot in parallel, see {@link io.demo.storage.graph.ParallelPathEnumerator}.
+     * Used by list searches only, streaming searches stay sequential; zero disables parallel enumeration
+     * @return parallelism
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Server side limits as {@link PathSearchLimits}
+     * @return limits
+     */
+    public PathSearchLimits toLimits() {
+        PathSearchLimits limits = new PathSearchLimits();
+        limits.setMaxHops(maxHops);
+        limits.setMaxPaths(maxPaths);
+        limits.setTimeoutMillis(timeoutMillis);
+        return limits;
+    }
+}
@@ -0,0 +1,153 @@
+package io.demo.storage.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Vertex and edge labels, their properties and indexes, ensured at startup, see {@link io.demo.storage.service.GraphSchema}
+ */
+@Configuration
+@ConfigurationProperties(prefix = "storage.schema")
+public class SchemaProperties {
+
+    private boolean enabled = true;
+    private List<VertexLabelSchema> vertexLabels = new ArrayList<>(Collections.singletonList(
+            new VertexLabelSchema("train_station", Collections.singletonMap("name", "STRING"), Collections.singletonList("name"))));
+    private List<EdgeLabelSchema> edgeLabels = new ArrayList<>(Collections.singletonList(
+            new EdgeLabelSchema("route", "train_station", "train_station", Collections.singletonMap("weight", "DOUBLE"))));
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public List<VertexLabelSchema> getVertexLabels() {
+        return vertexLabels;
+    }
+
+    public void setVertexLabels(List<VertexLabelSchema> vertexLabels) {
+        this.vertexLabels = vertexLabels;
+    }
+
+    public List<EdgeLabelSchema> getEdgeLabels() {
+        return edgeLabels;
+    }
+
+    public void setEdgeLabels(List<EdgeLabelSchema> edgeLabels) {
+        this.edgeLabels = edgeLabels;
+    }
+
+    /**
+     * A vertex label, its properties (name to Sqlg property type, e.g. STRING) and indexed properties
+     */
+    public static class VertexLabelSchema {
+
+        private String label;
+        private Map<String, String> properties = new LinkedHashMap<>();
+        private List<String> uniqueIndexes = new ArrayList<>();
+        private List<String> indexes = new ArrayList<>();
+
+        public VertexLabelSchema() {
+        }
+
+        public VertexLabelSchema(String label, Map<String, String> properties, List<String> uniqueIndexes) {
+            this.label = label;
+            this.properties = new LinkedHashMap<>(properties);
+            this.uniqueIndexes = new ArrayList<>(uniqueIndexes);
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public void setLabel(String label) {
+            this.label = label;
+        }
+
+        public Map<String, String> getProperties() {
+            return properties;
+        }
+
+        public void setProperties(Map<String, String> properties) {
+            this.properties = properties;
+        }
+
+        public List<String> getUniqueIndexes() {
+            return uniqueIndexes;
+        }
+
+        public void setUniqueIndexes(List<String> uniqueIndexes) {
+            this.uniqueIndexes = uniqueIndexes;
+        }
+
+        public List<String> getIndexes() {
+            return indexes;
+        }
+
+        public void setIndexes(List<String> indexes) {
+            this.indexes = indexes;
+        }
+    }
+
+    /**
+     * An edge label between two vertex labels, and its properties. Edge foreign keys to both vertex labels are indexed
+     */
+    public static class EdgeLabelSchema {
+
+        private String label;
+        private String outVertexLabel;
+        private String inVertexLabel;
+        private Map<String, String> properties = new LinkedHashMap<>();
+
+        public EdgeLabelSchema() {
+        }
+
+        public EdgeLabelSchema(String label, String outVertexLabel, String inVertexLabel, Map<String, String> properties) {
+            this.label = label;
+            this.outVertexLabel = outVertexLabel;
+            this.inVertexLabel = inVertexLabel;
+            this.properties = new LinkedHashMap<>(properties);
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public void setLabel(String label) {
+            this.label = label;
+        }
+
+        public String getOutVertexLabel() {
+            return outVertexLabel;
+        }
+
+        public void setOutVertexLabel(String outVertexLabel) {
+            this.outVertexLabel = outVertexLabel;
+        }
+
+        public String getInVertexLabel() {
+            return inVertexLabel;
+        }
+
+        public void setInVertexLabel(String inVertexLabel) {
+            this.inVertexLabel = inVertexLabel;
+        }
+
+        public Map<String, String> getProperties() {
+            return properties;
+        }
+
+        public void setProperties(Map<String, String> properties) {
+            this.properties = properties;
+        }
+    }
+}
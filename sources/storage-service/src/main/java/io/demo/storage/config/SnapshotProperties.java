@@ -0,0 +1,91 @@
+package io.demo.storage.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings of in-memory read model of the graph, see {@link io.demo.storage.service.RouteGraphSnapshot}
+ */
+@Configuration
+@ConfigurationProperties(prefix = "storage.snapshot")
+public class SnapshotProperties {
+
+    private boolean enabled;
+    private String vertexLabel = "train_station";
+    private String edgeLabel = "route";
+    private long consistencyCheckIntervalSeconds;
+    private ShortestPathAlgorithm shortestPathAlgorithm = ShortestPathAlgorithm.ALT;
+    private int landmarks = 8;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getVertexLabel() {
+        return vertexLabel;
+    }
+
+    public void setVertexLabel(String vertexLabel) {
+        this.vertexLabel = vertexLabel;
+    }
+
+    public String getEdgeLabel() {
+        return edgeLabel;
+    }
+
+    public void setEdgeLabel(String edgeLabel) {
+        this.edgeLabel = edgeLabel;
+    }
+
+    /**
+     * Interval of background comparison of the snapshot with the graph, zero disables the check
+     * @return interval in seconds
+     */
+    public long getConsistencyCheckIntervalSeconds() {
+        return consistencyCheckIntervalSeconds;
+    }
+
+    public void setConsistencyCheckIntervalSeconds(long consistencyCheckIntervalSeconds) {
+        this.consistencyCheckIntervalSeconds = consistencyCheckIntervalSeconds;
+    }
+
+    /**
+     * Algorithm of cheapest path searches over the snapshot
+     * @return algorithm
+     */
+    public ShortestPathAlgorithm getShortestPathAlgorithm() {
+        return shortestPathAlgorithm;
+    }
+
+    public void setShortestPathAlgorithm(ShortestPathAlgorithm shortestPathAlgorithm) {
+        this.shortestPathAlgorithm = shortestPathAlgorithm;
+    }
+
+    /**
+     * Number of landmarks of {@link ShortestPathAlgorithm#ALT}, every landmark costs 8 bytes per vertex
+     * @return number of landmarks
+     */
+    public int getLandmarks() {
+        return landmarks;
+    }
+
+    public void setLandmarks(int landmarks) {
+        this.landmarks = landmarks;
+    }
+
+    public enum ShortestPathAlgorithm {
+        /**
+         * Dijkstra's algorithm, bidirectional unless storage.path-search.bidirectional is false
+         */
+        DIJKSTRA,
+        /**
+         * A* guided by distances to landmarks, {@link io.demo.storage.graph.Landmarks}. Landmarks are recomputed in background
+         * after every change of the snapshot, searches fall back to {@link #DIJKSTRA} meanwhile
+         */
+        ALT
+    }
+}
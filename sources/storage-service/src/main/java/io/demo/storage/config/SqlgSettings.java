@@ -0,0 +1,61 @@
+package io.demo.storage.config;
+
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+import org.apache.commons.configuration.MapConfiguration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings of Sqlg and its c3p0 connection pool, see {@link DatabaseProperties}
+ */
+final class SqlgSettings {
+
+    private SqlgSettings() {
+    }
+
+    /**
+     * Configuration to open Sqlg graph with. Sqlg sets only max pool size and idle time of the pool it creates,
+     * max pool size is passed only if configured, so Sqlg's default of 100 is kept otherwise
+     * @param databaseProperties database settings
+     * @return Sqlg configuration
+     */
+    static MapConfiguration configuration(DatabaseProperties databaseProperties) {
+        DatabaseProperties.Pool pool = databaseProperties.getPool();
+        DatabaseProperties.Tuning tuning = databaseProperties.getTuning();
+
+        Map<String, Object> jdbcParams = new HashMap<>();
+        jdbcParams.put("jdbc.url", databaseProperties.getUrl());
+        jdbcParams.put("jdbc.username", databaseProperties.getUsername());
+        jdbcParams.put("jdbc.password", databaseProperties.getPassword());
+        jdbcParams.put("maxIdleTime", pool.getMaxIdleTimeSeconds());
+        jdbcParams.put("bulk.within.count", tuning.getBulkWithinCount());
+        jdbcParams.put("cache.vertices", tuning.isCacheVertices());
+        jdbcParams.put("validate.topology", tuning.isValidateTopology());
+
+        if (pool.getMaxSize() != null) {
+            jdbcParams.put("maxPoolSize", pool.getMaxSize());
+        }
+
+        if (tuning.getFetchSize() != null) {
+            jdbcParams.put("fetch.size", tuning.getFetchSize());
+        }
+
+        return new MapConfiguration(jdbcParams);
+    }
+
+    /**
+     * Apply the rest of pool settings to the pool Sqlg created. Sqlg has acquired connections already, to load its topology,
+     * c3p0 replaces its pool when a setting changes, so new settings apply to all connections acquired afterwards
+     * @param pooled pool of Sqlg
+     * @param pool pool settings
+     */
+    static void configurePool(ComboPooledDataSource pooled, DatabaseProperties.Pool pool) {
+        pooled.setMinPoolSize(pool.getMinSize());
+        pooled.setInitialPoolSize(pool.getMinSize());
+        pooled.setCheckoutTimeout((int) pool.getAcquireTimeoutMillis());
+        pooled.setIdleConnectionTestPeriod(pool.getIdleTestPeriodSeconds());
+        pooled.setTestConnectionOnCheckin(pool.isTestOnCheckin());
+        pooled.setMaxStatementsPerConnection(pool.getStatementCacheSize());
+    }
+}
@@ -1,6 +1,8 @@
 package io.demo.storage.config;
 
-import org.apache.commons.configuration.MapConfiguration;
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.apache.tinkerpop.gremlin.structure.Graph;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
@@ -8,8 +10,8 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
 import org.umlg.sqlg.structure.SqlgGraph;
 
-import java.util.HashMap;
-import java.util.Map;
+import javax.sql.DataSource;
+import java.sql.SQLException;
 
 @Profile("!test")
 @Configuration
@@ -20,11 +22,47 @@ public class TinkerPopConfiguration {
 
     @Bean
     public Graph sqlgGraph() {
-        Map<String, String> jdbcParams = new HashMap<>();
-        jdbcParams.put("jdbc.url", databaseProperties.getUrl());
-        jdbcParams.put("jdbc.username", databaseProperties.getUsername());
-        jdbcParams.put("jdbc.password", databaseProperties.getPassword());
-        MapConfiguration configuration = new MapConfiguration(jdbcParams);
-        return SqlgGraph.open(configuration);
+        SqlgGraph graph = SqlgGraph.open(SqlgSettings.configuration(databaseProperties));
+        DataSource dataSource = graph.getSqlgDataSource().getDatasource();
+
+        if (dataSource instanceof ComboPooledDataSource) {
+            SqlgSettings.configurePool((ComboPooledDataSource) dataSource, databaseProperties.getPool());
+        }
+
+        return graph;
+    }
+
+    /**
+     * Connection pool utilisation: "sqlg.pool.connections" by state (busy, idle), "sqlg.pool.pending" threads waiting for a connection,
+     * and "sqlg.pool.max" max size of the pool
+     */
+    @Bean
+    public MeterBinder sqlgPoolMetrics(Graph sqlgGraph) {
+        return registry -> {
+            DataSource dataSource = ((SqlgGraph) sqlgGraph).getSqlgDataSource().getDatasource();
+
+            if (!(dataSource instanceof ComboPooledDataSource)) {
+                return;
+            }
+
+            ComboPooledDataSource pooled = (ComboPooledDataSource) dataSource;
+            Gauge.builder("sqlg.pool.connections", pooled, p -> count(p::getNumBusyConnectionsDefaultUser)).tag("state", "busy").register(registry);
+            Gauge.builder("sqlg.pool.connections", pooled, p -> count(p::getNumIdleConnectionsDefaultUser)).tag("state", "idle").register(registry);
+            Gauge.builder("sqlg.pool.pending", pooled, p -> count(p::getNumThreadsAwaitingCheckoutDefaultUser)).register(registry);
+            Gauge.builder("sqlg.pool.max", pooled, ComboPooledDataSource::getMaxPoolSize).register(registry);
+        };
+    }
+
+    private static double count(PoolCount count) {
+        try {
+            return count.get();
+        } catch (SQLException e) {
+            return Double.NaN;
+        }
+    }
+
+    @FunctionalInterface
+    private interface PoolCount {
+        int get() throws SQLException;
     }
 }
@@ -0,0 +1,58 @@
+package io.demo.storage.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings of vertex id cache, see {@link io.demo.storage.service.VertexIdCache}
+ */
+@Configuration
+@ConfigurationProperties(prefix = "storage.vertex-id-cache")
+public class VertexIdCacheProperties {
+
+    private boolean enabled = true;
+    private long maxSize = 100000;
+    private long ttlSeconds = 300;
+    private long statsLogIntervalSeconds;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Time after which a cached id is looked up again. Bounds staleness of ids of vertices deleted and created again
+     * through another storage-service instance, deletions through this instance are evicted immediately
+     * @return time to live in seconds
+     */
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    /**
+     * Interval of logging cache statistics, hit ratio in particular, zero disables logging
+     * @return interval in seconds
+     */
+    public long getStatsLogIntervalSeconds() {
+        return statsLogIntervalSeconds;
+    }
+
+    public void setStatsLogIntervalSeconds(long statsLogIntervalSeconds) {
+        this.statsLogIntervalSeconds = statsLogIntervalSeconds;
+    }
+}
@@ -0,0 +1,51 @@
+package io.demo.storage.domain;
+
+/**
+ * An Edge between two Vertices, used by bulk import
+ */
+public class GraphEdge {
+
+    private final GraphVertex vertex1;
+    private final GraphVertex vertex2;
+    private final String label;
+    private final double weight;
+
+    public GraphEdge(GraphVertex vertex1, GraphVertex vertex2, String label, double weight) {
+        this.vertex1 = vertex1;
+        this.vertex2 = vertex2;
+        this.label = label;
+        this.weight = weight;
+    }
+
+    /**
+     * First vertex
+     * @return vertex
+     */
+    public GraphVertex getVertex1() {
+        return vertex1;
+    }
+
+    /**
+     * Second vertex
+     * @return vertex
+     */
+    public GraphVertex getVertex2() {
+        return vertex2;
+    }
+
+    /**
+     * Edge label
+     * @return label
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Value of edge "weight" property
+     * @return weight
+     */
+    public double getWeight() {
+        return weight;
+    }
+}
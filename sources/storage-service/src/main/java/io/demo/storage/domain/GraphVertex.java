@@ -0,0 +1,31 @@
+package io.demo.storage.domain;
+
+/**
+ * A Vertex identified by label and name, used by bulk import
+ */
+public class GraphVertex {
+
+    private final String label;
+    private final String name;
+
+    public GraphVertex(String label, String name) {
+        this.label = label;
+        this.name = name;
+    }
+
+    /**
+     * Vertex label
+     * @return label
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Value of vertex "name" property
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+}
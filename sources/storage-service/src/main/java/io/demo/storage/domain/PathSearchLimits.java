@@ -0,0 +1,99 @@
+package io.demo.storage.domain;
+
+/**
+ * Limits of a path search. A search stops as soon as any limit is reached, and returns paths found so far.
+ * Zero (or null max total weight) means "not limited"
+ */
+public class PathSearchLimits {
+
+    private int maxHops;
+    private Double maxTotalWeight;
+    private int maxPaths;
+    private long timeoutMillis;
+
+    /**
+     * Max number of edges in a path, longer paths are not explored
+     * @return max hops
+     */
+    public int getMaxHops() {
+        return maxHops;
+    }
+
+    public void setMaxHops(int maxHops) {
+        this.maxHops = maxHops;
+    }
+
+    /**
+     * Max total weight of a path, more expensive paths are not explored
+     * @return max total weight
+     */
+    public Double getMaxTotalWeight() {
+        return maxTotalWeight;
+    }
+
+    public void setMaxTotalWeight(Double maxTotalWeight) {
+        this.maxTotalWeight = maxTotalWeight;
+    }
+
+    /**
+     * Max number of paths to return
+     * @return max paths
+     */
+    public int getMaxPaths() {
+        return maxPaths;
+    }
+
+    public void setMaxPaths(int maxPaths) {
+        this.maxPaths = maxPaths;
+    }
+
+    /**
+     * Time budget of the search, in milliseconds
+     * @return timeout
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Combine these limits with another ones, taking the strictest value of every limit
+     * @param other limits to combine with
+     * @return new limits
+     */
+    public PathSearchLimits restrictedBy(PathSearchLimits other) {
+        PathSearchLimits result = new PathSearchLimits();
+        result.setMaxHops(strictest(maxHops, other.maxHops));
+        result.setMaxPaths(strictest(maxPaths, other.maxPaths));
+        result.setTimeoutMillis(strictest(timeoutMillis, other.timeoutMillis));
+
+        if (maxTotalWeight == null || other.maxTotalWeight == null) {
+            result.setMaxTotalWeight(maxTotalWeight != null ? maxTotalWeight : other.maxTotalWeight);
+        } else {
+            result.setMaxTotalWeight(Math.min(maxTotalWeight, other.maxTotalWeight));
+        }
+
+        return result;
+    }
+
+    private static int strictest(int value1, int value2) {
+        return (int) strictest((long) value1, (long) value2);
+    }
+
+    private static long strictest(long value1, long value2) {
+        if (value1 <= 0 || value2 <= 0) {
+            return Math.max(value1, value2);
+        }
+
+        return Math.min(value1, value2);
+    }
+
+    @Override
+    public String toString() {
+        return "PathSearchLimits{maxHops=" + maxHops + ", maxTotalWeight=" + maxTotalWeight
+                + ", maxPaths=" + maxPaths + ", timeoutMillis=" + timeoutMillis + "}";
+    }
+}
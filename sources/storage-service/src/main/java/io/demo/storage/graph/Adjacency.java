@@ -0,0 +1,28 @@
+package io.demo.storage.graph;
+
+/**
+ * An {@link Adjacency} is a weighted undirected graph view used by path search algorithms.
+ * Vertices are identified by dense int indexes, which are assigned by implementation
+ */
+public interface Adjacency {
+
+    /**
+     * Visit all neighbors of vertex
+     * @param vertex vertex index
+     * @param consumer receives index of every neighbor, and weight of the edge leading to it
+     */
+    void forEachNeighbor(int vertex, NeighborConsumer consumer);
+
+    /**
+     * Callback for {@link #forEachNeighbor(int, NeighborConsumer)}
+     */
+    @FunctionalInterface
+    interface NeighborConsumer {
+
+        /**
+         * @param neighbor neighbor vertex index
+         * @param weight weight of the edge between vertex and neighbor
+         */
+        void accept(int neighbor, double weight);
+    }
+}
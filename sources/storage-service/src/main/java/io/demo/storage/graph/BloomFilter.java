@@ -0,0 +1,167 @@
+package io.demo.storage.graph;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter of string keys: a set which answers "definitely absent" or "maybe present", in a fixed number of bits.
+ * Keys are hashed once to 64 bits, bit positions are derived from the two halves of the hash (Kirsch-Mitzenmacher double hashing).
+ * Keys can't be removed. Thread safe: bits are set atomically, so keys may be added concurrently with lookups
+ */
+public final class BloomFilter {
+
+    private static final int OBJECT_HEADER = 16;
+    private static final int MAX_WORDS = 1 << 25;
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final AtomicLong bitsSet = new AtomicLong();
+    private final AtomicLong insertions = new AtomicLong();
+
+    /**
+     * Create filter sized for expected number of keys and false positive probability
+     * @param expectedInsertions expected number of keys
+     * @param falsePositiveProbability false positive probability when the filter holds expected number of keys, in (0, 1)
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("False positive probability should be in (0, 1), but was " + falsePositiveProbability);
+        }
+
+        long n = Math.max(1, expectedInsertions);
+        long bits = (long) Math.ceil(-n * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        // bit indexes are ints
+        int words = (int) Math.min(MAX_WORDS, Math.max(1, (bits + 63) / 64));
+
+        this.words = new AtomicLongArray(words);
+        this.bitCount = words * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    /**
+     * Add key
+     * @param key key
+     */
+    public void put(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+
+        for (int i = 1; i <= hashCount; i++) {
+            setBit(index(h1, h2, i));
+        }
+
+        insertions.incrementAndGet();
+    }
+
+    /**
+     * Check key
+     * @param key key
+     * @return false if key was never added, true if it may have been added
+     */
+    public boolean mightContain(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+
+        for (int i = 1; i <= hashCount; i++) {
+            long index = index(h1, h2, i);
+
+            if ((words.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Estimate false positive probability from the share of bits set
+     * @return current false positive probability
+     */
+    public double expectedFalsePositiveProbability() {
+        return Math.pow((double) bitsSet.get() / bitCount, hashCount);
+    }
+
+    /**
+     * @return number of keys added, including repeated ones
+     */
+    public long getInsertions() {
+        return insertions.get();
+    }
+
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * Estimate heap size occupied by the filter
+     * @return estimated size in bytes
+     */
+    public long estimateMemoryFootprint() {
+        return OBJECT_HEADER * 5L + (long) words.length() * Long.BYTES;
+    }
+
+    @Override
+    public String toString() {
+        return "BloomFilter{" +
+                "bits=" + bitCount +
+                ", hashes=" + hashCount +
+                ", insertions=" + insertions.get() +
+                '}';
+    }
+
+    private long index(int h1, int h2, int i) {
+        int combined = h1 + i * h2;
+
+        // flip all the bits if it's negative, guaranteed positive
+        if (combined < 0) {
+            combined = ~combined;
+        }
+
+        return combined % bitCount;
+    }
+
+    private void setBit(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+
+        while (true) {
+            long current = words.get(word);
+
+            if ((current & mask) != 0) {
+                return;
+            }
+
+            if (words.compareAndSet(word, current, current | mask)) {
+                bitsSet.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a hash of UTF-8 bytes, with MurmurHash3 finalizer to spread it over all bits
+     */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,763 @@
+package io.demo.storage.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An immutable weighted undirected graph in compressed sparse row (CSR) form.
+ * Neighbors of vertex v are stored in {@code neighbors[offsets[v] .. offsets[v + 1])}, and weights of the corresponding edges
+ * in the same positions of {@code weights}. Vertices are identified by unique names, mapped to int indexes by a dictionary.
+ * Modifications produce a new instance, so readers never need locking. They share the CSR arrays, a base, with the original graph,
+ * and add a delta overlay: new neighbor lists of changed vertices are appended to a tail, shared by versions derived one from another,
+ * and a small map of changed vertices points to them; changed names are kept in small maps too. So a change costs about the degrees
+ * of changed vertices and the size of the overlay, not the size of the graph. Once {@link #needsCompaction} the owner should replace
+ * the graph by {@link #compact}, which merges the overlay into a new base.
+ * A distance epoch tells which graphs have no shorter distances than the graph it started with: it is renewed by changes which may
+ * shorten distances, i.e. new edges and lower weights, and kept by the rest, so data bounding distances from below, e.g.
+ * {@link Landmarks}, stays valid across the epoch
+ */
+public final class CsrGraph implements Adjacency {
+
+    // rough JVM object sizes, used by memory footprint estimation
+    private static final int OBJECT_HEADER = 16;
+    private static final int REFERENCE = 8;
+    private static final int MAP_ENTRY = 48;
+    // overlays smaller than that never need compaction, overlays larger than a quarter of the base do
+    private static final int MIN_COMPACTION_SIZE = 4096;
+
+    // base
+    private final String[] names;
+    private final Map<String, Integer> indexes;
+    private final int[] offsets;
+    private final int[] neighbors;
+    private final double[] weights;
+    // overlay: names changed since the base, mapped to index or -1 if removed, and indexes changed, mapped to name or null
+    private final Map<String, Integer> changedIndexes;
+    private final Map<Integer, String> changedNames;
+    // overlay: changed vertices mapped to ranges of their neighbors, positions from neighbors.length on are in the tail
+    private final Ranges ranges;
+    private final int[] tailNeighbors;
+    private final double[] tailWeights;
+    private final int tailSize;
+    // tail positions taken by versions sharing the tail arrays, only the version which took the last one may append in place
+    private final AtomicInteger tailTaken;
+    private final int indexCount;
+    private final int vertexCount;
+    private final int edgeCount;
+    private final Object distanceEpoch;
+
+    private CsrGraph(String[] names, Map<String, Integer> indexes, int[] offsets, int[] neighbors, double[] weights, int edgeCount,
+                     Object distanceEpoch) {
+        this(names, indexes, offsets, neighbors, weights, Collections.emptyMap(), Collections.emptyMap(), Ranges.EMPTY,
+                new int[0], new double[0], 0, new AtomicInteger(), names.length, indexes.size(), edgeCount, distanceEpoch);
+    }
+
+    private CsrGraph(String[] names, Map<String, Integer> indexes, int[] offsets, int[] neighbors, double[] weights,
+                     Map<String, Integer> changedIndexes, Map<Integer, String> changedNames, Ranges ranges,
+                     int[] tailNeighbors, double[] tailWeights, int tailSize, AtomicInteger tailTaken,
+                     int indexCount, int vertexCount, int edgeCount, Object distanceEpoch) {
+        this.names = names;
+        this.indexes = indexes;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+        this.weights = weights;
+        this.changedIndexes = changedIndexes;
+        this.changedNames = changedNames;
+        this.ranges = ranges;
+        this.tailNeighbors = tailNeighbors;
+        this.tailWeights = tailWeights;
+        this.tailSize = tailSize;
+        this.tailTaken = tailTaken;
+        this.indexCount = indexCount;
+        this.vertexCount = vertexCount;
+        this.edgeCount = edgeCount;
+        this.distanceEpoch = distanceEpoch;
+    }
+
+    /**
+     * Create empty graph
+     * @return empty graph
+     */
+    public static CsrGraph empty() {
+        return builder().build();
+    }
+
+    /**
+     * Create builder of a new graph
+     * @return builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Create builder initialized with vertices and edges of this graph
+     * @return builder
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder();
+
+        for (int vertex = 0; vertex < indexCount; vertex++) {
+            builder.addVertex(nameOf(vertex));
+        }
+
+        for (int vertex = 0; vertex < indexCount; vertex++) {
+            for (int i = neighborsStart(vertex); i < neighborsEnd(vertex); i++) {
+                // every edge is stored twice, once for each end
+                if (neighborAt(i) >= vertex) {
+                    builder.putEdge(vertex, neighborAt(i), weightAt(i));
+                }
+            }
+        }
+
+        return builder;
+    }
+
+    /**
+     * Get index of vertex
+     * @param name vertex name
+     * @return vertex index, -1 if there is no such vertex
+     */
+    public int indexOf(String name) {
+        Integer index = changedIndexes.isEmpty() ? null : changedIndexes.get(name);
+
+        if (index == null) {
+            index = indexes.get(name);
+        }
+
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Get name of vertex
+     * @param index vertex index
+     * @return vertex name, null if vertex was removed
+     */
+    public String nameOf(int index) {
+        if (!changedNames.isEmpty() && changedNames.containsKey(index)) {
+            return changedNames.get(index);
+        }
+
+        return index < names.length ? names[index] : null;
+    }
+
+    /**
+     * Number of vertices
+     * @return vertex count
+     */
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * Number of vertex indexes, including indexes of removed vertices, which are kept until the graph is reloaded.
+     * Indexes survive {@link #compact}, so data computed per index, e.g. {@link Landmarks}, stays meaningful for the compacted graph
+     * @return upper bound of vertex indexes, exclusive
+     */
+    public int getIndexCount() {
+        return indexCount;
+    }
+
+    /**
+     * Number of undirected edges
+     * @return edge count
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * First position of vertex neighbors in {@link #neighborAt(int)} and {@link #weightAt(int)}
+     * @param vertex vertex index
+     * @return start position, inclusive
+     */
+    public int neighborsStart(int vertex) {
+        long range = ranges.get(vertex);
+
+        if (range >= 0) {
+            return (int) (range >>> 32);
+        }
+
+        return vertex < names.length ? offsets[vertex] : 0;
+    }
+
+    /**
+     * Position after the last neighbor of vertex
+     * @param vertex vertex index
+     * @return end position, exclusive
+     */
+    public int neighborsEnd(int vertex) {
+        long range = ranges.get(vertex);
+
+        if (range >= 0) {
+            return (int) range;
+        }
+
+        return vertex < names.length ? offsets[vertex + 1] : 0;
+    }
+
+    /**
+     * @param position position between {@link #neighborsStart(int)} and {@link #neighborsEnd(int)}
+     * @return neighbor vertex index
+     */
+    public int neighborAt(int position) {
+        return position < neighbors.length ? neighbors[position] : tailNeighbors[position - neighbors.length];
+    }
+
+    /**
+     * @param position position between {@link #neighborsStart(int)} and {@link #neighborsEnd(int)}
+     * @return weight of the edge leading to neighbor
+     */
+    public double weightAt(int position) {
+        return position < weights.length ? weights[position] : tailWeights[position - weights.length];
+    }
+
+    @Override
+    public void forEachNeighbor(int vertex, NeighborConsumer consumer) {
+        for (int i = neighborsStart(vertex), end = neighborsEnd(vertex); i < end; i++) {
+            consumer.accept(neighborAt(i), weightAt(i));
+        }
+    }
+
+    /**
+     * Get weight of the edge between two vertices
+     * @param vertex1 first vertex index
+     * @param vertex2 second vertex index
+     * @return edge weight, null if there is no such edge
+     */
+    public Double edgeWeight(int vertex1, int vertex2) {
+        int position = positionOf(vertex1, vertex2);
+        return position >= 0 ? weightAt(position) : null;
+    }
+
+    /**
+     * Copy of this graph with a vertex added, if it does not exist yet
+     * @param name vertex name
+     * @return new graph
+     */
+    public CsrGraph withVertex(String name) {
+        if (indexOf(name) >= 0) {
+            return this;
+        }
+
+        Map<String, Integer> newIndexes = new HashMap<>(changedIndexes);
+        Map<Integer, String> newNames = new HashMap<>(changedNames);
+        newIndexes.put(name, indexCount);
+        newNames.put(indexCount, name);
+        return new CsrGraph(names, indexes, offsets, neighbors, weights, newIndexes, newNames, ranges,
+                tailNeighbors, tailWeights, tailSize, tailTaken, indexCount + 1, vertexCount + 1, edgeCount, distanceEpoch);
+    }
+
+    /**
+     * Copy of this graph with a vertex and all its edges removed
+     * @param name vertex name
+     * @return new graph
+     */
+    public CsrGraph withoutVertex(String name) {
+        int vertex = indexOf(name);
+
+        if (vertex < 0) {
+            return this;
+        }
+
+        int start = neighborsStart(vertex);
+        int end = neighborsEnd(vertex);
+        // neighbor lists of all neighbors lose the vertex, and its own list becomes empty
+        Patch patch = new Patch(end - start + 1);
+        patch.put(vertex, new int[0], new double[0]);
+
+        for (int i = start; i < end; i++) {
+            int neighbor = neighborAt(i);
+
+            if (neighbor != vertex) {
+                patch.without(this, neighbor, vertex);
+            }
+        }
+
+        Map<String, Integer> newIndexes = new HashMap<>(changedIndexes);
+        Map<Integer, String> newNames = new HashMap<>(changedNames);
+        newIndexes.put(name, -1);
+        newNames.put(vertex, null);
+        return patched(patch, newIndexes, newNames, vertexCount - 1, edgeCount - (end - start), distanceEpoch);
+    }
+
+    /**
+     * Copy of this graph with an edge added, or its weight updated. Edges between unknown vertices are ignored
+     * @param name1 name of first vertex
+     * @param name2 name of second vertex
+     * @param weight edge weight
+     * @return new graph
+     */
+    public CsrGraph withEdge(String name1, String name2, double weight) {
+        int vertex1 = indexOf(name1);
+        int vertex2 = indexOf(name2);
+
+        if (vertex1 < 0 || vertex2 < 0) {
+            return this;
+        }
+
+        Double current = edgeWeight(vertex1, vertex2);
+
+        if (Objects.equals(current, weight)) {
+            return this;
+        }
+
+        Patch patch = new Patch(2);
+        patch.with(this, vertex1, vertex2, weight);
+
+        if (vertex1 != vertex2) {
+            patch.with(this, vertex2, vertex1, weight);
+        }
+
+        // a new edge or a lower weight may shorten distances
+        boolean shorter = current == null || weight < current;
+        return patched(patch, changedIndexes, changedNames, vertexCount, current == null ? edgeCount + 1 : edgeCount,
+                shorter ? new Object() : distanceEpoch);
+    }
+
+    /**
+     * Copy of this graph with an edge removed
+     * @param name1 name of first vertex
+     * @param name2 name of second vertex
+     * @return new graph
+     */
+    public CsrGraph withoutEdge(String name1, String name2) {
+        int vertex1 = indexOf(name1);
+        int vertex2 = indexOf(name2);
+
+        if (vertex1 < 0 || vertex2 < 0 || edgeWeight(vertex1, vertex2) == null) {
+            return this;
+        }
+
+        Patch patch = new Patch(2);
+        patch.without(this, vertex1, vertex2);
+
+        if (vertex1 != vertex2) {
+            patch.without(this, vertex2, vertex1);
+        }
+
+        return patched(patch, changedIndexes, changedNames, vertexCount, edgeCount - 1, distanceEpoch);
+    }
+
+    /**
+     * Check if the overlay of changes grew large enough to slow down reads and changes, see {@link #compact}
+     * @return true if the graph should be compacted
+     */
+    public boolean needsCompaction() {
+        return tailSize > Math.max(MIN_COMPACTION_SIZE, neighbors.length / 4)
+                || changedNames.size() > Math.max(MIN_COMPACTION_SIZE, names.length / 4);
+    }
+
+    /**
+     * Merge the overlay of changes into a new base. Costs about the size of the graph, vertex indexes stay the same
+     * @return compacted graph, this one if there are no changes since the base
+     */
+    public CsrGraph compact() {
+        if (ranges.size == 0 && changedNames.isEmpty()) {
+            return this;
+        }
+
+        CsrGraph built = toBuilder().build();
+        return new CsrGraph(built.names, built.indexes, built.offsets, built.neighbors, built.weights, built.edgeCount, distanceEpoch);
+    }
+
+    /**
+     * Identity of the distance epoch of this graph, see class description
+     * @return epoch, the same object for graphs of the same epoch
+     */
+    Object getDistanceEpoch() {
+        return distanceEpoch;
+    }
+
+    /**
+     * Estimate heap size occupied by this graph, including the name dictionary
+     * @return estimated size in bytes
+     */
+    public long estimateMemoryFootprint() {
+        long size = OBJECT_HEADER * 12L
+                + (long) names.length * REFERENCE
+                + (long) offsets.length * Integer.BYTES
+                + (long) neighbors.length * Integer.BYTES
+                + (long) weights.length * Double.BYTES
+                + (long) tailNeighbors.length * Integer.BYTES
+                + (long) tailWeights.length * Double.BYTES
+                + (long) ranges.keys.length * (Integer.BYTES + Long.BYTES)
+                + (long) changedNames.size() * 2 * (MAP_ENTRY + OBJECT_HEADER);
+
+        for (String name : names) {
+            if (name != null) {
+                // String object with its char array, and dictionary entry with boxed index
+                size += 2 * OBJECT_HEADER + 2L * name.length() + MAP_ENTRY + OBJECT_HEADER;
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Compare this graph with another one by vertex names and edge weights
+     * @param other graph to compare with
+     * @param maxDifferences stop comparing after that many differences found
+     * @return human readable differences, empty if graphs are equal
+     */
+    public List<String> differences(CsrGraph other, int maxDifferences) {
+        List<String> result = new ArrayList<>();
+
+        for (int vertex = 0; vertex < indexCount && result.size() < maxDifferences; vertex++) {
+            String name = nameOf(vertex);
+
+            if (name == null) {
+                continue;
+            }
+
+            int otherVertex = other.indexOf(name);
+
+            if (otherVertex < 0) {
+                result.add("vertex '" + name + "' is missing");
+                continue;
+            }
+
+            for (int i = neighborsStart(vertex); i < neighborsEnd(vertex) && result.size() < maxDifferences; i++) {
+                String neighborName = nameOf(neighborAt(i));
+                int otherNeighbor = other.indexOf(neighborName);
+                Double otherWeight = otherNeighbor >= 0 ? other.edgeWeight(otherVertex, otherNeighbor) : null;
+
+                if (otherWeight == null) {
+                    result.add("edge '" + name + "' - '" + neighborName + "' is missing");
+                } else if (otherWeight != weightAt(i)) {
+                    result.add("edge '" + name + "' - '" + neighborName + "' has weight " + otherWeight + " instead of " + weightAt(i));
+                }
+            }
+        }
+
+        for (int vertex = 0; vertex < other.indexCount && result.size() < maxDifferences; vertex++) {
+            String name = other.nameOf(vertex);
+
+            if (name != null && indexOf(name) < 0) {
+                result.add("vertex '" + name + "' is unexpected");
+            }
+        }
+
+        if (result.size() < maxDifferences && edgeCount != other.edgeCount) {
+            result.add("edge count is " + other.edgeCount + " instead of " + edgeCount);
+        }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "CsrGraph{vertices=" + vertexCount + ", edges=" + edgeCount + ", changedVertices=" + ranges.size + "}";
+    }
+
+    private int positionOf(int vertex1, int vertex2) {
+        // scan the shorter neighbors list
+        if (neighborsEnd(vertex1) - neighborsStart(vertex1) > neighborsEnd(vertex2) - neighborsStart(vertex2)) {
+            int vertex = vertex1;
+            vertex1 = vertex2;
+            vertex2 = vertex;
+        }
+
+        for (int i = neighborsStart(vertex1), end = neighborsEnd(vertex1); i < end; i++) {
+            if (neighborAt(i) == vertex2) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private CsrGraph patched(Patch patch, Map<String, Integer> newIndexes, Map<Integer, String> newNames, int newVertexCount, int newEdgeCount,
+                             Object newDistanceEpoch) {
+        int[] newTailNeighbors = tailNeighbors;
+        double[] newTailWeights = tailWeights;
+        AtomicInteger newTailTaken = tailTaken;
+        int newTailSize = tailSize + patch.size;
+
+        // a version derived from the same one earlier appended to the tail already, or there is no room left: copy the tail
+        if (newTailSize > tailNeighbors.length || !tailTaken.compareAndSet(tailSize, newTailSize)) {
+            int capacity = Math.max(newTailSize, Math.max(16, tailNeighbors.length * 2));
+            newTailNeighbors = Arrays.copyOf(tailNeighbors, capacity);
+            newTailWeights = Arrays.copyOf(tailWeights, capacity);
+            newTailTaken = new AtomicInteger(newTailSize);
+        }
+
+        long[] newRanges = new long[patch.count];
+        int position = tailSize;
+
+        for (int i = 0; i < patch.count; i++) {
+            int length = patch.neighbors[i].length;
+            System.arraycopy(patch.neighbors[i], 0, newTailNeighbors, position, length);
+            System.arraycopy(patch.weights[i], 0, newTailWeights, position, length);
+            long start = neighbors.length + position;
+            newRanges[i] = (start << 32) | (start + length);
+            position += length;
+        }
+
+        return new CsrGraph(names, indexes, offsets, neighbors, weights, newIndexes, newNames, ranges.with(patch.vertices, newRanges, patch.count),
+                newTailNeighbors, newTailWeights, newTailSize, newTailTaken, indexCount, newVertexCount, newEdgeCount, newDistanceEpoch);
+    }
+
+    /**
+     * New neighbor lists of vertices changed by a modification
+     */
+    private static final class Patch {
+
+        private final int[] vertices;
+        private final int[][] neighbors;
+        private final double[][] weights;
+        private int count;
+        private int size;
+
+        private Patch(int capacity) {
+            vertices = new int[capacity];
+            neighbors = new int[capacity][];
+            weights = new double[capacity][];
+        }
+
+        private void put(int vertex, int[] vertexNeighbors, double[] vertexWeights) {
+            vertices[count] = vertex;
+            neighbors[count] = vertexNeighbors;
+            weights[count++] = vertexWeights;
+            size += vertexNeighbors.length;
+        }
+
+        // copy of neighbors of vertex, with neighbor added or its weight updated
+        private void with(CsrGraph graph, int vertex, int neighbor, double weight) {
+            int start = graph.neighborsStart(vertex);
+            int degree = graph.neighborsEnd(vertex) - start;
+            int[] vertexNeighbors = new int[degree + 1];
+            double[] vertexWeights = new double[degree + 1];
+            int length = 0;
+
+            for (int i = 0; i < degree; i++) {
+                if (graph.neighborAt(start + i) != neighbor) {
+                    vertexNeighbors[length] = graph.neighborAt(start + i);
+                    vertexWeights[length++] = graph.weightAt(start + i);
+                }
+            }
+
+            vertexNeighbors[length] = neighbor;
+            vertexWeights[length++] = weight;
+            put(vertex, Arrays.copyOf(vertexNeighbors, length), Arrays.copyOf(vertexWeights, length));
+        }
+
+        // copy of neighbors of vertex, without neighbor
+        private void without(CsrGraph graph, int vertex, int neighbor) {
+            int start = graph.neighborsStart(vertex);
+            int degree = graph.neighborsEnd(vertex) - start;
+            int[] vertexNeighbors = new int[degree];
+            double[] vertexWeights = new double[degree];
+            int length = 0;
+
+            for (int i = 0; i < degree; i++) {
+                if (graph.neighborAt(start + i) != neighbor) {
+                    vertexNeighbors[length] = graph.neighborAt(start + i);
+                    vertexWeights[length++] = graph.weightAt(start + i);
+                }
+            }
+
+            put(vertex, Arrays.copyOf(vertexNeighbors, length), Arrays.copyOf(vertexWeights, length));
+        }
+    }
+
+    /**
+     * Immutable open addressing map of changed vertices to ranges of their neighbors, packed as {@code start << 32 | end}.
+     * Primitive, so lookups of neighbors do not allocate
+     */
+    private static final class Ranges {
+
+        private static final Ranges EMPTY = new Ranges(new int[0], new long[0], 0);
+
+        // vertex + 1, 0 marks a free slot
+        private final int[] keys;
+        private final long[] values;
+        private final int size;
+
+        private Ranges(int[] keys, long[] values, int size) {
+            this.keys = keys;
+            this.values = values;
+            this.size = size;
+        }
+
+        private long get(int vertex) {
+            if (size == 0) {
+                return -1;
+            }
+
+            int mask = keys.length - 1;
+
+            for (int slot = hash(vertex) & mask; ; slot = (slot + 1) & mask) {
+                if (keys[slot] == vertex + 1) {
+                    return values[slot];
+                }
+
+                if (keys[slot] == 0) {
+                    return -1;
+                }
+            }
+        }
+
+        private Ranges with(int[] vertices, long[] ranges, int count) {
+            int capacity = Integer.highestOneBit(Math.max(4, (size + count) * 2 - 1)) << 1;
+            int[] newKeys = new int[capacity];
+            long[] newValues = new long[capacity];
+            int newSize = 0;
+
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    newSize += put(newKeys, newValues, keys[i] - 1, values[i]);
+                }
+            }
+
+            for (int i = 0; i < count; i++) {
+                newSize += put(newKeys, newValues, vertices[i], ranges[i]);
+            }
+
+            return new Ranges(newKeys, newValues, newSize);
+        }
+
+        // returns 1 if the vertex is new
+        private static int put(int[] keys, long[] values, int vertex, long range) {
+            int mask = keys.length - 1;
+            int slot = hash(vertex) & mask;
+
+            while (keys[slot] != 0 && keys[slot] != vertex + 1) {
+                slot = (slot + 1) & mask;
+            }
+
+            int added = keys[slot] == 0 ? 1 : 0;
+            keys[slot] = vertex + 1;
+            values[slot] = range;
+            return added;
+        }
+
+        private static int hash(int vertex) {
+            int hash = vertex * 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    /**
+     * Mutable builder of {@link CsrGraph}. Edges are kept in insertion order, so neighbor order is deterministic
+     */
+    public static final class Builder {
+
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final Map<Long, Double> edges = new LinkedHashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Add vertex, if it does not exist yet. Removed vertices (null names) keep their index until the graph is rebuilt
+         * @param name vertex name, or null to reserve an index
+         * @return this builder
+         */
+        public Builder addVertex(String name) {
+            if (name == null || !indexes.containsKey(name)) {
+                if (name != null) {
+                    indexes.put(name, names.size());
+                }
+
+                names.add(name);
+            }
+
+            return this;
+        }
+
+        /**
+         * Remove vertex with all its edges
+         * @param name vertex name
+         * @return this builder
+         */
+        public Builder removeVertex(String name) {
+            Integer index = indexes.remove(name);
+
+            if (index != null) {
+                names.set(index, null);
+                edges.keySet().removeIf(key -> (int) (key >>> 32) == index || (int) (long) key == index);
+            }
+
+            return this;
+        }
+
+        /**
+         * Add edge, or update its weight. Edges between unknown vertices are ignored
+         * @param name1 name of first vertex
+         * @param name2 name of second vertex
+         * @param weight edge weight
+         * @return this builder
+         */
+        public Builder putEdge(String name1, String name2, double weight) {
+            Integer vertex1 = indexes.get(name1);
+            Integer vertex2 = indexes.get(name2);
+
+            if (vertex1 != null && vertex2 != null) {
+                putEdge(vertex1, vertex2, weight);
+            }
+
+            return this;
+        }
+
+        Builder putEdge(int vertex1, int vertex2, double weight) {
+            edges.put(PathFinder.edgeKey(vertex1, vertex2), weight);
+            return this;
+        }
+
+        Builder removeEdge(int vertex1, int vertex2) {
+            edges.remove(PathFinder.edgeKey(vertex1, vertex2));
+            return this;
+        }
+
+        /**
+         * Build immutable graph
+         * @return graph
+         */
+        public CsrGraph build() {
+            int vertexCount = names.size();
+            int[] offsets = new int[vertexCount + 1];
+
+            // count degrees, shifted by one, then turn them into offsets
+            edges.keySet().forEach(key -> {
+                int vertex1 = (int) (key >>> 32);
+                int vertex2 = (int) (long) key;
+                offsets[vertex1 + 1]++;
+
+                if (vertex1 != vertex2) {
+                    offsets[vertex2 + 1]++;
+                }
+            });
+
+            for (int vertex = 0; vertex < vertexCount; vertex++) {
+                offsets[vertex + 1] += offsets[vertex];
+            }
+
+            int[] neighbors = new int[offsets[vertexCount]];
+            double[] weights = new double[offsets[vertexCount]];
+            int[] positions = Arrays.copyOf(offsets, vertexCount);
+
+            edges.forEach((key, weight) -> {
+                int vertex1 = (int) (key >>> 32);
+                int vertex2 = (int) (long) key;
+                neighbors[positions[vertex1]] = vertex2;
+                weights[positions[vertex1]++] = weight;
+
+                if (vertex1 != vertex2) {
+                    neighbors[positions[vertex2]] = vertex1;
+                    weights[positions[vertex2]++] = weight;
+                }
+            });
+
+            return new CsrGraph(names.toArray(new String[0]), new HashMap<>(indexes), offsets, neighbors, weights, edges.size(), new Object());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package io.demo.storage.graph;
+
+import java.util.Arrays;
+
+/**
+ * A path found by {@link PathFinder}. Contains vertex indexes, weights of every edge ("leg") of the path,
+ * and the total weight
+ */
+public final class IntPath implements Comparable<IntPath> {
+
+    private final int[] vertices;
+    private final double[] legWeights;
+    private final double totalWeight;
+
+    public IntPath(int[] vertices, double[] legWeights) {
+        this.vertices = vertices;
+        this.legWeights = legWeights;
+
+        double total = 0;
+
+        for (double legWeight : legWeights) {
+            total += legWeight;
+        }
+
+        this.totalWeight = total;
+    }
+
+    /**
+     * Vertex indexes, starting from source vertex and ending with target vertex
+     * @return vertex indexes
+     */
+    public int[] getVertices() {
+        return vertices;
+    }
+
+    /**
+     * Weights of edges between consecutive vertices, one element shorter than {@link #getVertices()}
+     * @return leg weights
+     */
+    public double[] getLegWeights() {
+        return legWeights;
+    }
+
+    /**
+     * Get the sum of all leg weights
+     * @return total weight
+     */
+    public double getTotalWeight() {
+        return totalWeight;
+    }
+
+    /**
+     * Number of edges in this path
+     * @return hop count
+     */
+    public int getHops() {
+        return legWeights.length;
+    }
+
+    /**
+     * Paths are ordered by total weight, then by hop count, then by vertex indexes, which makes the order deterministic
+     */
+    @Override
+    public int compareTo(IntPath other) {
+        int result = Double.compare(totalWeight, other.totalWeight);
+
+        if (result == 0) {
+            result = Integer.compare(vertices.length, other.vertices.length);
+        }
+
+        for (int i = 0; result == 0 && i < vertices.length; i++) {
+            result = Integer.compare(vertices[i], other.vertices[i]);
+        }
+
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof IntPath)) {
+            return false;
+        }
+
+        return Arrays.equals(vertices, ((IntPath) o).vertices);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(vertices);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(vertices) + " " + totalWeight;
+    }
+}
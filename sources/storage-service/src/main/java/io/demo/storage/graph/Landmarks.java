@@ -0,0 +1,206 @@
+package io.demo.storage.graph;
+
+import java.util.Arrays;
+
+/**
+ * {@link Landmarks} are vertices with exact distances to every other vertex of a {@link CsrGraph}, precomputed by Dijkstra's algorithm.
+ * By triangle inequality {@code |d(L, v) - d(L, t)| <= d(v, t)} for every landmark L, so the largest difference over landmarks is
+ * a lower bound of the distance between v and t, which guides A* search of {@link PathFinder} (ALT: A*, landmarks, triangle inequality).
+ * Landmarks are picked by farthest-first selection, every next landmark is the vertex farthest from landmarks picked so far,
+ * so they lie on the periphery of the graph, and vertices of every connected component get a landmark.
+ * Distances are kept in a single primitive array, landmark by landmark. Immutable. Bounds stay valid while distances do not get shorter,
+ * so landmarks are valid for every graph of the distance epoch of the graph they were computed from, see {@link CsrGraph}:
+ * removed edges and vertices and higher weights keep them, vertices added later get no bound
+ */
+public final class Landmarks implements LowerBound {
+
+    private static final int OBJECT_HEADER = 16;
+
+    private final Object distanceEpoch;
+    private final int[] landmarks;
+    private final int indexCount;
+    // distances[landmark * indexCount + vertex], positive infinity if vertex is not reachable from landmark
+    private final double[] distances;
+
+    private Landmarks(CsrGraph graph, int[] landmarks, double[] distances) {
+        this.distanceEpoch = graph.getDistanceEpoch();
+        this.landmarks = landmarks;
+        this.indexCount = graph.getIndexCount();
+        this.distances = distances;
+    }
+
+    /**
+     * Pick landmarks of the graph, and compute their distances
+     * @param graph graph
+     * @param count max number of landmarks, fewer are picked if the graph has fewer vertices
+     * @return landmarks
+     */
+    public static Landmarks select(CsrGraph graph, int count) {
+        int indexCount = graph.getIndexCount();
+        int[] landmarks = new int[Math.min(count, graph.getVertexCount())];
+        double[] distances = new double[landmarks.length * indexCount];
+
+        // min distance of every vertex to landmarks picked so far, removed vertices are never picked
+        double[] nearest = new double[indexCount];
+        int first = -1;
+
+        for (int vertex = 0; vertex < indexCount; vertex++) {
+            if (graph.nameOf(vertex) != null) {
+                nearest[vertex] = Double.POSITIVE_INFINITY;
+                first = first < 0 ? vertex : first;
+            } else {
+                nearest[vertex] = Double.NEGATIVE_INFINITY;
+            }
+        }
+
+        if (landmarks.length == 0) {
+            return new Landmarks(graph, landmarks, distances);
+        }
+
+        // the first landmark is the farthest vertex from an arbitrary one
+        double[] fromFirst = new double[indexCount];
+        Dijkstra dijkstra = new Dijkstra(graph);
+        dijkstra.distancesFrom(first, fromFirst, 0);
+        int next = farthest(fromFirst, nearest);
+
+        for (int i = 0; i < landmarks.length; i++) {
+            landmarks[i] = next;
+            dijkstra.distancesFrom(next, distances, i * indexCount);
+
+            for (int vertex = 0; vertex < indexCount; vertex++) {
+                nearest[vertex] = Math.min(nearest[vertex], distances[i * indexCount + vertex]);
+            }
+
+            next = farthest(nearest, nearest);
+        }
+
+        return new Landmarks(graph, landmarks, distances);
+    }
+
+    /**
+     * Check if landmarks were computed for a graph of the same distance epoch
+     * @param graph graph
+     * @return true if bounds are valid for the graph
+     */
+    public boolean isFor(CsrGraph graph) {
+        return distanceEpoch == graph.getDistanceEpoch();
+    }
+
+    @Override
+    public double lowerBound(int vertex, int target) {
+        if (vertex >= indexCount || target >= indexCount) {
+            return 0;
+        }
+
+        double bound = 0;
+
+        for (int offset = 0; offset < distances.length; offset += indexCount) {
+            double fromVertex = distances[offset + vertex];
+            double fromTarget = distances[offset + target];
+
+            if (fromVertex == Double.POSITIVE_INFINITY || fromTarget == Double.POSITIVE_INFINITY) {
+                // landmark reaches one of them only, so they are in different components
+                if (fromVertex != fromTarget) {
+                    return Double.POSITIVE_INFINITY;
+                }
+
+                continue;
+            }
+
+            bound = Math.max(bound, Math.abs(fromVertex - fromTarget));
+        }
+
+        return bound;
+    }
+
+    /**
+     * @return number of landmarks
+     */
+    public int getCount() {
+        return landmarks.length;
+    }
+
+    /**
+     * @param i landmark number
+     * @return vertex index of landmark
+     */
+    public int landmarkAt(int i) {
+        return landmarks[i];
+    }
+
+    /**
+     * Estimate heap size occupied by landmarks, without the graph
+     * @return estimated size in bytes
+     */
+    public long estimateMemoryFootprint() {
+        return OBJECT_HEADER * 3L + (long) landmarks.length * Integer.BYTES + (long) distances.length * Double.BYTES;
+    }
+
+    @Override
+    public String toString() {
+        return "Landmarks{count=" + landmarks.length + ", vertices=" + indexCount + "}";
+    }
+
+    /**
+     * Vertex with the largest distance, among vertices which are not landmarks yet (their min distance is positive)
+     */
+    private static int farthest(double[] distances, double[] nearest) {
+        int farthest = -1;
+
+        for (int vertex = 0; vertex < distances.length; vertex++) {
+            if (nearest[vertex] > 0 && (farthest < 0 || distances[vertex] > distances[farthest])) {
+                farthest = vertex;
+            }
+        }
+
+        // all vertices are landmarks already, or reachable at zero cost; repeated landmarks are harmless
+        return farthest >= 0 ? farthest : 0;
+    }
+
+    /**
+     * Single source Dijkstra's algorithm over the whole graph
+     */
+    private static final class Dijkstra {
+
+        private final CsrGraph graph;
+        private final PathFinder.VertexHeap heap = new PathFinder.VertexHeap();
+        private final boolean[] settled;
+
+        Dijkstra(CsrGraph graph) {
+            this.graph = graph;
+            this.settled = new boolean[graph.getIndexCount()];
+        }
+
+        void distancesFrom(int source, double[] distances, int offset) {
+            int indexCount = settled.length;
+            Arrays.fill(distances, offset, offset + indexCount, Double.POSITIVE_INFINITY);
+            Arrays.fill(settled, false);
+            heap.clear();
+
+            distances[offset + source] = 0;
+            heap.push(source, 0);
+
+            while (!heap.isEmpty()) {
+                int vertex = heap.peekVertex();
+                double distance = heap.peekKey();
+                heap.pop();
+
+                if (settled[vertex]) {
+                    continue;
+                }
+
+                settled[vertex] = true;
+
+                for (int i = graph.neighborsStart(vertex); i < graph.neighborsEnd(vertex); i++) {
+                    int neighbor = graph.neighborAt(i);
+                    double reached = distance + graph.weightAt(i);
+
+                    if (reached < distances[offset + neighbor]) {
+                        distances[offset + neighbor] = reached;
+                        heap.push(neighbor, reached);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package io.demo.storage.graph;
+
+/**
+ * A {@link LowerBound} estimates distances between vertices of an {@link Adjacency} from below, it guides A* search of {@link PathFinder}.
+ * Estimates must never exceed real distances, and must be consistent: estimates of neighbors differ by no more than the weight of their edge
+ */
+@FunctionalInterface
+public interface LowerBound {
+
+    /**
+     * @param vertex vertex index
+     * @param target target vertex index
+     * @return lower bound of the distance, positive infinity if target is not reachable
+     */
+    double lowerBound(int vertex, int target);
+}
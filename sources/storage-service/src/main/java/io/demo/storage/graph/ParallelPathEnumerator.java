@@ -0,0 +1,258 @@
+package io.demo.storage.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ParallelPathEnumerator} lists the same simple paths as {@link PathEnumerator}, searched by tasks of a {@link ForkJoinPool}.
+ * Like {@link PathEnumerator}, it searches paths of one hop count at a time. For every hop count, the search forks a task per neighbor
+ * of the source, then per neighbor of deeper vertices while the worker has few queued tasks left, so idle workers always find a branch
+ * to steal. Deep branches are searched depth first by a single task. Paths of branches are merged in the order of branches, which is
+ * the order {@link PathEnumerator} finds them in, so max paths keeps the same paths as {@link PathEnumerator} does, whatever branches
+ * ran first. The result is sorted in {@link IntPath} order (total weight, hop count, vertex indexes), and depends on scheduling only
+ * when the search times out. Settings must not be changed while a search runs
+ */
+public class ParallelPathEnumerator {
+
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+    // branches are not split deeper, and not while the worker has more tasks queued than that
+    private static final int MAX_SPLIT_DEPTH = 8;
+    private static final int MAX_SURPLUS_TASKS = 2;
+
+    private final CsrGraph graph;
+    private final ForkJoinPool pool;
+
+    private int maxHops;
+    private double maxTotalWeight = Double.POSITIVE_INFINITY;
+    private int maxPaths;
+    private long deadline;
+    private boolean deadlineSet;
+
+    // shared by all branches of a search
+    private volatile boolean extendable;
+    private volatile boolean stopped;
+
+    public ParallelPathEnumerator(CsrGraph graph, ForkJoinPool pool) {
+        this.graph = graph;
+        this.pool = pool;
+    }
+
+    /**
+     * Paths with more edges are not explored
+     * @param maxHops max hops, zero means not limited
+     * @return this enumerator
+     */
+    public ParallelPathEnumerator withMaxHops(int maxHops) {
+        this.maxHops = maxHops;
+        return this;
+    }
+
+    /**
+     * Paths more expensive than max total weight are not explored
+     * @param maxTotalWeight max total weight
+     * @return this enumerator
+     */
+    public ParallelPathEnumerator withMaxTotalWeight(double maxTotalWeight) {
+        this.maxTotalWeight = maxTotalWeight;
+        return this;
+    }
+
+    /**
+     * Keep the paths {@link PathEnumerator} would find first: all paths of fewer hops, then paths of the last hop count
+     * in depth first order
+     * @param maxPaths max paths, zero means not limited
+     * @return this enumerator
+     */
+    public ParallelPathEnumerator withMaxPaths(int maxPaths) {
+        this.maxPaths = maxPaths;
+        return this;
+    }
+
+    /**
+     * Stop all branches after timeout
+     * @param timeoutMillis timeout in milliseconds, starting from now
+     * @return this enumerator
+     */
+    public ParallelPathEnumerator withTimeout(long timeoutMillis) {
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.deadlineSet = true;
+        return this;
+    }
+
+    /**
+     * Enumerate paths, wait for all branches to complete
+     * @param source source vertex index
+     * @param target target vertex index
+     * @return paths found, ordered by total weight
+     */
+    public List<IntPath> enumerate(int source, int target) {
+        List<IntPath> paths = new ArrayList<>();
+        stopped = false;
+
+        for (int depth = 1; !stopped && (maxHops <= 0 || depth <= maxHops); depth++) {
+            extendable = false;
+            int limit = maxPaths > 0 ? maxPaths - paths.size() : 0;
+            paths.addAll(pool.invoke(new Branch(target, depth, limit, new int[]{source}, new double[0], 0)));
+
+            if ((maxPaths > 0 && paths.size() >= maxPaths) || !extendable) {
+                break;
+            }
+        }
+
+        Collections.sort(paths);
+        return paths;
+    }
+
+    /**
+     * Paths of depth hops starting with a prefix, in depth first order. Paths to the target are not extended, so they do not pass
+     * through it. A branch keeps at most limit paths, paths after them would be cut off by the merge anyway
+     */
+    private final class Branch extends RecursiveTask<List<IntPath>> {
+
+        private final int target;
+        private final int depth;
+        private final int limit;
+        private final int[] prefix;
+        private final double[] prefixLegWeights;
+        private final double prefixTotal;
+        private long steps;
+
+        Branch(int target, int depth, int limit, int[] prefix, double[] prefixLegWeights, double prefixTotal) {
+            this.target = target;
+            this.depth = depth;
+            this.limit = limit;
+            this.prefix = prefix;
+            this.prefixLegWeights = prefixLegWeights;
+            this.prefixTotal = prefixTotal;
+        }
+
+        @Override
+        protected List<IntPath> compute() {
+            if (prefix.length < depth && prefix.length <= MAX_SPLIT_DEPTH && getSurplusQueuedTaskCount() <= MAX_SURPLUS_TASKS) {
+                return split();
+            }
+
+            return search();
+        }
+
+        /**
+         * Fork a branch for every neighbor of the last vertex of the prefix, merge their paths in the order of neighbors
+         */
+        private List<IntPath> split() {
+            List<IntPath> paths = new ArrayList<>();
+            List<Branch> branches = new ArrayList<>();
+            int vertex = prefix[prefix.length - 1];
+            // hops of paths extended by one more vertex
+            int hops = prefix.length;
+
+            for (int i = graph.neighborsStart(vertex); i < graph.neighborsEnd(vertex); i++) {
+                int neighbor = graph.neighborAt(i);
+                double total = prefixTotal + graph.weightAt(i);
+
+                // paths ending at target have fewer hops than depth, and paths must not pass through the target
+                if (total > maxTotalWeight || neighbor == target || contains(prefix, neighbor)) {
+                    continue;
+                }
+
+                int[] vertices = Arrays.copyOf(prefix, hops + 1);
+                double[] legWeights = Arrays.copyOf(prefixLegWeights, hops);
+                vertices[hops] = neighbor;
+                legWeights[hops - 1] = graph.weightAt(i);
+                branches.add(new Branch(target, depth, limit, vertices, legWeights, total));
+            }
+
+            invokeAll(branches);
+
+            for (Branch branch : branches) {
+                for (IntPath path : branch.join()) {
+                    if (limit > 0 && paths.size() >= limit) {
+                        return paths;
+                    }
+
+                    paths.add(path);
+                }
+            }
+
+            return paths;
+        }
+
+        /**
+         * Depth first search of all paths of depth hops starting with the prefix, within this task
+         */
+        private List<IntPath> search() {
+            List<IntPath> paths = new ArrayList<>();
+            int base = prefix.length - 1;
+            int[] path = Arrays.copyOf(prefix, depth + 1);
+            double[] legWeights = Arrays.copyOf(prefixLegWeights, depth);
+            double[] totals = new double[depth + 1];
+            int[] cursors = new int[depth + 1];
+            BitSet onPath = new BitSet();
+
+            for (int vertex : prefix) {
+                onPath.set(vertex);
+            }
+
+            int level = base;
+            totals[level] = prefixTotal;
+            cursors[level] = graph.neighborsStart(path[level]);
+
+            while (level >= base && !stopped && (limit <= 0 || paths.size() < limit)) {
+                int vertex = path[level];
+
+                if (cursors[level] == graph.neighborsEnd(vertex)) {
+                    onPath.clear(vertex);
+                    level--;
+                    continue;
+                }
+
+                if (deadlineSet && ++steps % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+                    stopped = true;
+                    break;
+                }
+
+                int position = cursors[level]++;
+                int neighbor = graph.neighborAt(position);
+                double total = totals[level] + graph.weightAt(position);
+
+                if (onPath.get(neighbor) || total > maxTotalWeight) {
+                    continue;
+                }
+
+                legWeights[level] = graph.weightAt(position);
+
+                if (level + 1 == depth) {
+                    if (neighbor == target) {
+                        path[depth] = neighbor;
+                        paths.add(new IntPath(Arrays.copyOf(path, depth + 1), Arrays.copyOf(legWeights, depth)));
+                    } else {
+                        extendable = true;
+                    }
+                } else if (neighbor != target) {
+                    level++;
+                    path[level] = neighbor;
+                    totals[level] = total;
+                    cursors[level] = graph.neighborsStart(neighbor);
+                    onPath.set(neighbor);
+                }
+            }
+
+            return paths;
+        }
+    }
+
+    private static boolean contains(int[] vertices, int vertex) {
+        for (int v : vertices) {
+            if (v == vertex) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
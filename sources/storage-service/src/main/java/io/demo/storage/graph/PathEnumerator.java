@@ -0,0 +1,150 @@
+package io.demo.storage.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * A {@link PathEnumerator} lists all simple paths between two vertices of a {@link CsrGraph}, which do not pass through the target.
+ * Search is an iterative deepening depth first search, so paths are produced in order of hop count (like BFS does),
+ * while memory usage is bounded by the longest path. Instances are not thread safe
+ */
+public class PathEnumerator {
+
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+
+    private final CsrGraph graph;
+
+    private int maxHops;
+    private double maxTotalWeight = Double.POSITIVE_INFINITY;
+    private int maxPaths;
+    private long deadline;
+    private boolean deadlineSet;
+
+    private int found;
+    private long steps;
+    private boolean stopped;
+
+    public PathEnumerator(CsrGraph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Paths with more edges are not explored
+     * @param maxHops max hops, zero means not limited
+     * @return this enumerator
+     */
+    public PathEnumerator withMaxHops(int maxHops) {
+        this.maxHops = maxHops;
+        return this;
+    }
+
+    /**
+     * Paths more expensive than max total weight are not explored
+     * @param maxTotalWeight max total weight
+     * @return this enumerator
+     */
+    public PathEnumerator withMaxTotalWeight(double maxTotalWeight) {
+        this.maxTotalWeight = maxTotalWeight;
+        return this;
+    }
+
+    /**
+     * Stop after that many paths found
+     * @param maxPaths max paths, zero means not limited
+     * @return this enumerator
+     */
+    public PathEnumerator withMaxPaths(int maxPaths) {
+        this.maxPaths = maxPaths;
+        return this;
+    }
+
+    /**
+     * Stop searching after timeout
+     * @param timeoutMillis timeout in milliseconds, starting from now
+     * @return this enumerator
+     */
+    public PathEnumerator withTimeout(long timeoutMillis) {
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.deadlineSet = true;
+        return this;
+    }
+
+    /**
+     * Enumerate paths
+     * @param source source vertex index
+     * @param target target vertex index
+     * @param consumer receives paths found, returns false to stop the search
+     */
+    public void enumerate(int source, int target, Predicate<IntPath> consumer) {
+        for (int depth = 1; !stopped && (maxHops <= 0 || depth <= maxHops); depth++) {
+            if (!enumerate(source, target, depth, consumer)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Emit all paths of exactly depth hops
+     * @return true if some path of depth hops can be extended further
+     */
+    private boolean enumerate(int source, int target, int depth, Predicate<IntPath> consumer) {
+        int[] path = new int[depth + 1];
+        double[] legWeights = new double[depth];
+        double[] totals = new double[depth + 1];
+        int[] cursors = new int[depth + 1];
+        BitSet onPath = new BitSet();
+        boolean extendable = false;
+
+        path[0] = source;
+        cursors[0] = graph.neighborsStart(source);
+        onPath.set(source);
+        int level = 0;
+
+        while (level >= 0 && !stopped) {
+            int vertex = path[level];
+
+            if (cursors[level] == graph.neighborsEnd(vertex)) {
+                onPath.clear(vertex);
+                level--;
+                continue;
+            }
+
+            if (deadlineSet && ++steps % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+                stopped = true;
+                break;
+            }
+
+            int position = cursors[level]++;
+            int neighbor = graph.neighborAt(position);
+            double total = totals[level] + graph.weightAt(position);
+
+            if (onPath.get(neighbor) || total > maxTotalWeight) {
+                continue;
+            }
+
+            legWeights[level] = graph.weightAt(position);
+
+            if (level + 1 == depth) {
+                if (neighbor == target) {
+                    path[depth] = neighbor;
+                    found++;
+                    stopped = !consumer.test(new IntPath(Arrays.copyOf(path, depth + 1), Arrays.copyOf(legWeights, depth)))
+                            || (maxPaths > 0 && found >= maxPaths);
+                } else {
+                    extendable = true;
+                }
+            } else if (neighbor != target) {
+                // paths ending at target were emitted by previous iterations, and paths must not pass through the target
+                level++;
+                path[level] = neighbor;
+                totals[level] = total;
+                cursors[level] = graph.neighborsStart(neighbor);
+                onPath.set(neighbor);
+            }
+        }
+
+        return extendable;
+    }
+}
@@ -0,0 +1,707 @@
+package io.demo.storage.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link PathFinder} performs weighted shortest path search over an {@link Adjacency}.
+ * The cheapest path is found with Dijkstra's algorithm, alternatives are found with Yen's k shortest loopless paths algorithm.
+ * With a {@link LowerBound} of remaining distance, e.g. {@link Landmarks}, every search is A*: vertices are expanded in order
+ * of distance plus lower bound, so the search heads towards the target and settles fewer vertices.
+ * Without a lower bound, searches may be bidirectional: two Dijkstra searches grow from both ends at once, the side with the nearer
+ * frontier is expanded next, and the search stops when the best known meeting of the frontiers can't be improved, which proves it optimal.
+ * Both frontiers have about half the radius of a one-sided search, so far fewer vertices are settled on large graphs.
+ * With max hops, searches are one-sided and settle (vertex, hop count) labels instead of vertices: a vertex may be settled again
+ * when reached with fewer hops at a higher cost, so the cheapest path within the hop limit is found, not just filtered out later.
+ * Edge weights must be non-negative. Instances keep search state between calls, so they are not thread safe
+ */
+public class PathFinder {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int DEADLINE_CHECK_INTERVAL = 64;
+    private static final BitSet NO_VERTICES = new BitSet();
+
+    private final Adjacency adjacency;
+    private final Adjacency.NeighborConsumer relax = this::relax;
+    private final Adjacency.NeighborConsumer relaxLabel = this::relaxLabel;
+    // search from source, and search from target of bidirectional search
+    private final Frontier forward = new Frontier();
+    private final Frontier backward = new Frontier();
+    // (vertex, hop count) labels of hop limited search
+    private final HopLabels labels = new HopLabels();
+    // marks are compared with current epoch, so arrays don't have to be cleared between searches
+    private int epoch;
+
+    // state of the vertex being expanded, used by relax()
+    private Frontier currentFrontier;
+    private Frontier oppositeFrontier;
+    private int currentVertex;
+    private double currentDistance;
+    private int currentTarget;
+    private double currentMaxWeight;
+    private int currentLabel;
+    private int currentHops;
+    private BitSet bannedVertices;
+    private Set<Long> bannedEdges;
+
+    // cheapest path through a vertex reached by both searches, found so far
+    private double meetingDistance;
+    private int meetingVertex;
+
+    private long settledVertices;
+
+    private LowerBound lowerBound;
+    private boolean bidirectional;
+    private double maxTotalWeight = Double.POSITIVE_INFINITY;
+    private int maxHops;
+    private long deadline;
+    private boolean deadlineSet;
+    private boolean timedOut;
+
+    public PathFinder(Adjacency adjacency) {
+        this.adjacency = adjacency;
+    }
+
+    /**
+     * Paths more expensive than max total weight are not explored
+     * @param maxTotalWeight max total weight
+     * @return this path finder
+     */
+    public PathFinder withMaxTotalWeight(double maxTotalWeight) {
+        this.maxTotalWeight = maxTotalWeight;
+        return this;
+    }
+
+    /**
+     * Paths with more edges than max hops are not explored
+     * @param maxHops max hops, zero means not limited
+     * @return this path finder
+     */
+    public PathFinder withMaxHops(int maxHops) {
+        this.maxHops = maxHops;
+        return this;
+    }
+
+    /**
+     * Search with A*, guided by lower bounds of remaining distance
+     * @param lowerBound lower bound of distances, must be consistent
+     * @return this path finder
+     */
+    public PathFinder withLowerBound(LowerBound lowerBound) {
+        this.lowerBound = lowerBound;
+        return this;
+    }
+
+    /**
+     * Search from both ends at once, unless a lower bound or max hops is set
+     * @param bidirectional true for bidirectional search
+     * @return this path finder
+     */
+    public PathFinder withBidirectionalSearch(boolean bidirectional) {
+        this.bidirectional = bidirectional;
+        return this;
+    }
+
+    /**
+     * Stop searching after timeout. Paths found so far are still returned
+     * @param timeoutMillis timeout in milliseconds, starting from now
+     * @return this path finder
+     */
+    public PathFinder withTimeout(long timeoutMillis) {
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.deadlineSet = true;
+        return this;
+    }
+
+    /**
+     * Check if any search was interrupted by timeout
+     * @return true if timed out
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Find the cheapest path between two vertices
+     * @param source source vertex index
+     * @param target target vertex index
+     * @return cheapest path, or null if target is not reachable
+     */
+    public IntPath shortestPath(int source, int target) {
+        return dijkstra(source, target, NO_VERTICES, Collections.emptySet(), maxTotalWeight, maxHops);
+    }
+
+    /**
+     * Find up to count cheapest loopless paths between two vertices (Yen's algorithm)
+     * @param source source vertex index
+     * @param target target vertex index
+     * @param count max number of paths to return
+     * @return paths found, ordered by total weight
+     */
+    public List<IntPath> shortestPaths(int source, int target, int count) {
+        List<IntPath> result = new ArrayList<>();
+        IntPath first = count > 0 ? shortestPath(source, target) : null;
+
+        if (first == null) {
+            return result;
+        }
+
+        result.add(first);
+        PriorityQueue<IntPath> candidates = new PriorityQueue<>();
+        Set<IntPath> known = new HashSet<>();
+        known.add(first);
+
+        while (result.size() < count && !timedOut) {
+            int[] last = result.get(result.size() - 1).getVertices();
+            double[] lastLegWeights = result.get(result.size() - 1).getLegWeights();
+            double rootWeight = 0;
+
+            for (int i = 0; i < last.length - 1; i++) {
+                // root path is last[0..i], it must not be revisited by spur path
+                BitSet spurBannedVertices = new BitSet();
+
+                for (int j = 0; j < i; j++) {
+                    spurBannedVertices.set(last[j]);
+                }
+
+                // edges which continue root path in already accepted paths must not be used again
+                Set<Long> spurBannedEdges = new HashSet<>();
+
+                for (IntPath path : result) {
+                    int[] vertices = path.getVertices();
+
+                    if (startsWith(vertices, last, i + 1)) {
+                        spurBannedEdges.add(edgeKey(vertices[i], vertices[i + 1]));
+                    }
+                }
+
+                // spur path gets what root path left of the limits
+                IntPath spurPath = dijkstra(last[i], target, spurBannedVertices, spurBannedEdges,
+                        maxTotalWeight - rootWeight, maxHops > 0 ? maxHops - i : 0);
+
+                if (timedOut) {
+                    break;
+                }
+
+                if (spurPath != null) {
+                    IntPath candidate = join(result.get(result.size() - 1), i, spurPath);
+
+                    // rounding of the root weight must not let a candidate exceed max total weight
+                    if (candidate.getTotalWeight() <= maxTotalWeight && known.add(candidate)) {
+                        candidates.add(candidate);
+                    }
+                }
+
+                rootWeight += lastLegWeights[i];
+            }
+
+            IntPath next = candidates.poll();
+
+            if (next == null) {
+                break;
+            }
+
+            result.add(next);
+        }
+
+        return result;
+    }
+
+    /**
+     * Number of vertices settled by all searches performed by this instance, useful to compare search strategies
+     * @return settled vertices count
+     */
+    public long getSettledVertices() {
+        return settledVertices;
+    }
+
+    static long edgeKey(int vertex1, int vertex2) {
+        int min = Math.min(vertex1, vertex2);
+        int max = Math.max(vertex1, vertex2);
+        return ((long) min << 32) | (max & 0xFFFFFFFFL);
+    }
+
+    private IntPath dijkstra(int source, int target, BitSet bannedVertices, Set<Long> bannedEdges, double maxWeight, int hops) {
+        this.currentTarget = target;
+        this.currentMaxWeight = maxWeight;
+        this.bannedVertices = bannedVertices;
+        this.bannedEdges = bannedEdges;
+        epoch++;
+
+        double estimate = lowerBound != null ? lowerBound.lowerBound(source, target) : 0;
+
+        if (estimate > maxWeight || estimate == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+
+        if (hops > 0) {
+            return hopLimitedDijkstra(source, target, estimate, hops);
+        }
+
+        if (bidirectional && lowerBound == null && source != target) {
+            return bidirectionalDijkstra(source, target);
+        }
+
+        currentFrontier = forward;
+        oppositeFrontier = null;
+        forward.start(source, estimate, epoch);
+
+        while (!forward.heap.isEmpty()) {
+            int vertex = forward.heap.peekVertex();
+            forward.heap.pop();
+
+            if (!settle(forward, vertex)) {
+                continue;
+            }
+
+            if (timedOut) {
+                return null;
+            }
+
+            if (vertex == target) {
+                return buildPath(source, target, target);
+            }
+
+            expand(vertex);
+        }
+
+        return null;
+    }
+
+    private IntPath bidirectionalDijkstra(int source, int target) {
+        meetingDistance = Double.POSITIVE_INFINITY;
+        meetingVertex = -1;
+        forward.start(source, 0, epoch);
+        backward.start(target, 0, epoch);
+
+        while (!forward.heap.isEmpty() && !backward.heap.isEmpty()) {
+            // no path through unsettled vertices can be cheaper than both nearest frontier distances together
+            if (forward.heap.peekKey() + backward.heap.peekKey() >= meetingDistance) {
+                break;
+            }
+
+            currentFrontier = forward.heap.peekKey() <= backward.heap.peekKey() ? forward : backward;
+            oppositeFrontier = currentFrontier == forward ? backward : forward;
+            int vertex = currentFrontier.heap.peekVertex();
+            currentFrontier.heap.pop();
+
+            if (!settle(currentFrontier, vertex)) {
+                continue;
+            }
+
+            if (timedOut) {
+                return null;
+            }
+
+            expand(vertex);
+        }
+
+        if (meetingVertex < 0 || meetingDistance > currentMaxWeight) {
+            return null;
+        }
+
+        return buildPath(source, meetingVertex, target);
+    }
+
+    /**
+     * Dijkstra's algorithm over (vertex, hop count) labels. Labels are settled in order of distance, so a label is dominated
+     * if its vertex was settled with fewer or as many hops already, and only labels with fewer hops than all settled ones are expanded.
+     * Every vertex is settled at most once per hop count, and a settled label never repeats a vertex of its own path,
+     * because the earlier visit would dominate it
+     */
+    private IntPath hopLimitedDijkstra(int source, int target, double estimate, int hops) {
+        labels.clear();
+        // the heap of forward search holds label numbers instead of vertex indexes
+        forward.heap.clear();
+        forward.heap.push(labels.add(source, 0, 0, -1, 0), estimate);
+
+        while (!forward.heap.isEmpty()) {
+            int label = forward.heap.peekVertex();
+            forward.heap.pop();
+            int vertex = labels.vertices[label];
+
+            if (labels.isDominated(vertex, labels.hops[label], epoch)) {
+                continue;
+            }
+
+            labels.settle(vertex, labels.hops[label], epoch);
+            countSettled();
+
+            if (timedOut) {
+                return null;
+            }
+
+            if (vertex == target) {
+                return labels.buildPath(label);
+            }
+
+            if (labels.hops[label] < hops) {
+                currentLabel = label;
+                currentVertex = vertex;
+                currentHops = labels.hops[label] + 1;
+                currentDistance = labels.distances[label];
+                adjacency.forEachNeighbor(vertex, relaxLabel);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Mark vertex as settled by the frontier, check timeout
+     * @return false if vertex was settled already
+     */
+    private boolean settle(Frontier frontier, int vertex) {
+        if (frontier.settledMarks[vertex] == epoch) {
+            return false;
+        }
+
+        frontier.settledMarks[vertex] = epoch;
+        countSettled();
+        return true;
+    }
+
+    private void countSettled() {
+        settledVertices++;
+
+        if (deadlineSet && settledVertices % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+            timedOut = true;
+        }
+    }
+
+    private void expand(int vertex) {
+        currentVertex = vertex;
+        // heap keys include lower bounds in A* search
+        currentDistance = currentFrontier.distances[vertex];
+        adjacency.forEachNeighbor(vertex, relax);
+    }
+
+    private void relax(int neighbor, double weight) {
+        if (bannedVertices.get(neighbor)
+                || (!bannedEdges.isEmpty() && bannedEdges.contains(edgeKey(currentVertex, neighbor)))) {
+            return;
+        }
+
+        Frontier frontier = currentFrontier;
+        frontier.ensureCapacity(neighbor);
+
+        if (frontier.settledMarks[neighbor] == epoch) {
+            return;
+        }
+
+        double distance = currentDistance + weight;
+
+        if (distance > currentMaxWeight) {
+            return;
+        }
+
+        if (frontier.reachedMarks[neighbor] != epoch || distance < frontier.distances[neighbor]) {
+            double key = heapKey(neighbor, distance);
+
+            // target is not reachable via neighbor within max total weight
+            if (key == Double.POSITIVE_INFINITY || key > currentMaxWeight) {
+                return;
+            }
+
+            frontier.reach(neighbor, distance, currentVertex, weight, epoch);
+            frontier.heap.push(neighbor, key);
+
+            if (oppositeFrontier != null && oppositeFrontier.isReached(neighbor, epoch)
+                    && distance + oppositeFrontier.distances[neighbor] < meetingDistance) {
+                meetingDistance = distance + oppositeFrontier.distances[neighbor];
+                meetingVertex = neighbor;
+            }
+        }
+    }
+
+    private void relaxLabel(int neighbor, double weight) {
+        if (bannedVertices.get(neighbor)
+                || (!bannedEdges.isEmpty() && bannedEdges.contains(edgeKey(currentVertex, neighbor)))
+                || labels.isDominated(neighbor, currentHops, epoch)) {
+            return;
+        }
+
+        double distance = currentDistance + weight;
+        double key = heapKey(neighbor, distance);
+
+        if (distance <= currentMaxWeight && key <= currentMaxWeight && key != Double.POSITIVE_INFINITY) {
+            forward.heap.push(labels.add(neighbor, currentHops, distance, currentLabel, weight), key);
+        }
+    }
+
+    /**
+     * Heap key of a vertex reached at distance, the distance plus lower bound of the remaining distance in A* search
+     * @return heap key, positive infinity if target is not reachable
+     */
+    private double heapKey(int vertex, double distance) {
+        return lowerBound != null ? distance + lowerBound.lowerBound(vertex, currentTarget) : distance;
+    }
+
+    /**
+     * Build path from source to meeting vertex by forward search, and from meeting vertex to target by backward search
+     */
+    private IntPath buildPath(int source, int meeting, int target) {
+        int forwardHops = 0;
+        int backwardHops = 0;
+
+        for (int vertex = meeting; vertex != source; vertex = forward.previous[vertex]) {
+            forwardHops++;
+        }
+
+        for (int vertex = meeting; vertex != target; vertex = backward.previous[vertex]) {
+            backwardHops++;
+        }
+
+        int[] vertices = new int[forwardHops + backwardHops + 1];
+        double[] legWeights = new double[forwardHops + backwardHops];
+        int vertex = meeting;
+        vertices[forwardHops] = meeting;
+
+        for (int i = forwardHops; i > 0; i--) {
+            legWeights[i - 1] = forward.previousWeights[vertex];
+            vertex = forward.previous[vertex];
+            vertices[i - 1] = vertex;
+        }
+
+        vertex = meeting;
+
+        for (int i = forwardHops; i < forwardHops + backwardHops; i++) {
+            legWeights[i] = backward.previousWeights[vertex];
+            vertex = backward.previous[vertex];
+            vertices[i + 1] = vertex;
+        }
+
+        return new IntPath(vertices, legWeights);
+    }
+
+    private static boolean startsWith(int[] vertices, int[] prefix, int length) {
+        if (vertices.length <= length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (vertices[i] != prefix[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static IntPath join(IntPath root, int spurIndex, IntPath spur) {
+        int[] spurVertices = spur.getVertices();
+        int[] vertices = Arrays.copyOf(root.getVertices(), spurIndex + spurVertices.length);
+        System.arraycopy(spurVertices, 0, vertices, spurIndex, spurVertices.length);
+
+        double[] spurLegWeights = spur.getLegWeights();
+        double[] legWeights = Arrays.copyOf(root.getLegWeights(), spurIndex + spurLegWeights.length);
+        System.arraycopy(spurLegWeights, 0, legWeights, spurIndex, spurLegWeights.length);
+
+        return new IntPath(vertices, legWeights);
+    }
+
+    /**
+     * Per vertex state of a search from one end, arrays are indexed by vertex index and grow on demand.
+     * Previous vertex of a backward search is the next one towards its target
+     */
+    private static final class Frontier {
+
+        final VertexHeap heap = new VertexHeap();
+        double[] distances = new double[INITIAL_CAPACITY];
+        int[] previous = new int[INITIAL_CAPACITY];
+        double[] previousWeights = new double[INITIAL_CAPACITY];
+        int[] reachedMarks = new int[INITIAL_CAPACITY];
+        int[] settledMarks = new int[INITIAL_CAPACITY];
+
+        void start(int vertex, double key, int epoch) {
+            heap.clear();
+            ensureCapacity(vertex);
+            reach(vertex, 0, -1, 0, epoch);
+            heap.push(vertex, key);
+        }
+
+        void reach(int vertex, double distance, int from, double weight, int epoch) {
+            reachedMarks[vertex] = epoch;
+            distances[vertex] = distance;
+            previous[vertex] = from;
+            previousWeights[vertex] = weight;
+        }
+
+        boolean isReached(int vertex, int epoch) {
+            return vertex < reachedMarks.length && reachedMarks[vertex] == epoch;
+        }
+
+        void ensureCapacity(int vertex) {
+            if (vertex < distances.length) {
+                return;
+            }
+
+            int capacity = Math.max(vertex + 1, distances.length * 2);
+            distances = Arrays.copyOf(distances, capacity);
+            previous = Arrays.copyOf(previous, capacity);
+            previousWeights = Arrays.copyOf(previousWeights, capacity);
+            reachedMarks = Arrays.copyOf(reachedMarks, capacity);
+            settledMarks = Arrays.copyOf(settledMarks, capacity);
+        }
+    }
+
+    /**
+     * Labels of hop limited search, appended to primitive arrays as vertices are reached, and the least hop count
+     * every vertex was settled with. Previous label of a label is the one it was reached from
+     */
+    private static final class HopLabels {
+
+        int[] vertices = new int[INITIAL_CAPACITY];
+        int[] hops = new int[INITIAL_CAPACITY];
+        double[] distances = new double[INITIAL_CAPACITY];
+        int[] previous = new int[INITIAL_CAPACITY];
+        double[] previousWeights = new double[INITIAL_CAPACITY];
+        int size;
+        int[] settledHops = new int[INITIAL_CAPACITY];
+        int[] settledMarks = new int[INITIAL_CAPACITY];
+
+        void clear() {
+            size = 0;
+        }
+
+        int add(int vertex, int hopCount, double distance, int from, double weight) {
+            if (size == vertices.length) {
+                vertices = Arrays.copyOf(vertices, size * 2);
+                hops = Arrays.copyOf(hops, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+                previous = Arrays.copyOf(previous, size * 2);
+                previousWeights = Arrays.copyOf(previousWeights, size * 2);
+            }
+
+            vertices[size] = vertex;
+            hops[size] = hopCount;
+            distances[size] = distance;
+            previous[size] = from;
+            previousWeights[size] = weight;
+            return size++;
+        }
+
+        boolean isDominated(int vertex, int hopCount, int epoch) {
+            return vertex < settledMarks.length && settledMarks[vertex] == epoch && settledHops[vertex] <= hopCount;
+        }
+
+        void settle(int vertex, int hopCount, int epoch) {
+            if (vertex >= settledMarks.length) {
+                int capacity = Math.max(vertex + 1, settledMarks.length * 2);
+                settledHops = Arrays.copyOf(settledHops, capacity);
+                settledMarks = Arrays.copyOf(settledMarks, capacity);
+            }
+
+            settledMarks[vertex] = epoch;
+            settledHops[vertex] = hopCount;
+        }
+
+        IntPath buildPath(int label) {
+            int[] path = new int[hops[label] + 1];
+            double[] legWeights = new double[hops[label]];
+
+            for (int i = hops[label]; label >= 0; label = previous[label], i--) {
+                path[i] = vertices[label];
+
+                if (i > 0) {
+                    legWeights[i - 1] = previousWeights[label];
+                }
+            }
+
+            return new IntPath(path, legWeights);
+        }
+    }
+
+    /**
+     * Binary min-heap of (distance, vertex) pairs on primitive arrays. Stale entries are not removed,
+     * they are skipped when popped (lazy deletion)
+     */
+    static final class VertexHeap {
+
+        private double[] keys = new double[INITIAL_CAPACITY];
+        private int[] vertices = new int[INITIAL_CAPACITY];
+        private int size;
+
+        void clear() {
+            size = 0;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int peekVertex() {
+            return vertices[0];
+        }
+
+        double peekKey() {
+            return keys[0];
+        }
+
+        void push(int vertex, double key) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                vertices = Arrays.copyOf(vertices, size * 2);
+            }
+
+            int i = size++;
+
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+
+                if (keys[parent] <= key) {
+                    break;
+                }
+
+                keys[i] = keys[parent];
+                vertices[i] = vertices[parent];
+                i = parent;
+            }
+
+            keys[i] = key;
+            vertices[i] = vertex;
+        }
+
+        void pop() {
+            size--;
+
+            if (size == 0) {
+                return;
+            }
+
+            double key = keys[size];
+            int vertex = vertices[size];
+            int i = 0;
+
+            while (true) {
+                int child = 2 * i + 1;
+
+                if (child >= size) {
+                    break;
+                }
+
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+
+                if (keys[child] >= key) {
+                    break;
+                }
+
+                keys[i] = keys[child];
+                vertices[i] = vertices[child];
+                i = child;
+            }
+
+            keys[i] = key;
+            vertices[i] = vertex;
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package io.demo.storage.service;
+
+import io.demo.storage.config.EdgeFilterProperties;
+import io.demo.storage.config.SnapshotProperties;
+import io.demo.storage.domain.GraphEdge;
+import io.demo.storage.graph.BloomFilter;
+import io.demo.storage.graph.CsrGraph;
+import io.demo.storage.util.GremlinBackend;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.umlg.sqlg.structure.SqlgGraph;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * An {@link EdgeFilter} is a Bloom filter of existing edges between vertices of configured labels, by edge label and unordered
+ * pair of vertex names. Edge existence checks of pairs which are definitely not connected are answered without a traversal.
+ * It is loaded at startup. Edges are added after they are committed, so the filter never misses an edge visible to readers.
+ * Deleted edges can't be removed from a Bloom filter, they stay as false positives until the filter is rebuilt in background,
+ * which happens when they exceed configured share of added edges, or when the filter gets too full.
+ * Edges added by other storage-service instances are not in the filter: once {@link GraphVersion} notices their writes, the filter
+ * is stale, it answers "may exist" for every edge until it is rebuilt in background. Before a negative answer, the graph version is
+ * refreshed unless it was read less than configured max staleness ago, so edges of other instances are missed for at most that long,
+ * and never with zero max staleness, which costs a version read per negative answer, shared by concurrent checks.
+ * Not used if {@link RouteGraphSnapshot} covers the same labels, it answers edge checks from memory anyway.
+ * Metrics: "edge.filter.checks" by result (negative, positive, stale), "edge.filter.false.positives" positives which had no edge,
+ * "edge.filter.fpp" estimated false positive probability, "edge.filter.memory" size in bytes, "edge.filter.rebuilds"
+ */
+@Component
+public class EdgeFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EdgeFilter.class);
+    private static final char SEPARATOR = '\u0000';
+
+    @Autowired
+    private Graph graph;
+
+    @Autowired
+    private GremlinBackend gremlinBackend;
+
+    @Autowired
+    private EdgeFilterProperties edgeFilterProperties;
+
+    @Autowired
+    private SnapshotProperties snapshotProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private GraphVersion graphVersion;
+
+    // guards swapping of the filter with keys added while it is rebuilt
+    private final Object lock = new Object();
+    // imports add edges before commit, so they must not overlap with a rebuild which would miss them
+    private final ReadWriteLock importLock = new ReentrantReadWriteLock();
+    private final AtomicLong removals = new AtomicLong();
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private volatile BloomFilter filter;
+    private List<String> addedWhileRebuilding;
+    private volatile boolean stale;
+    // incremented by every notification of foreign writes, guarded by lock
+    private int foreignWrites;
+    private boolean transactional;
+    private ScheduledExecutorService rebuildExecutor;
+    private Counter negatives;
+    private Counter positives;
+    private Counter staleChecks;
+    private Counter falsePositives;
+    private Counter rebuilds;
+
+    @PostConstruct
+    private void init() {
+        if (!edgeFilterProperties.isEnabled()) {
+            return;
+        }
+
+        if (snapshotProperties.isEnabled() && snapshotProperties.getVertexLabel().equals(edgeFilterProperties.getVertexLabel())
+                && snapshotProperties.getEdgeLabel().equals(edgeFilterProperties.getEdgeLabel())) {
+            LOGGER.info("Edge filter is not used, route graph snapshot covers the same labels");
+            return;
+        }
+
+        transactional = graph instanceof SqlgGraph;
+        filter = load();
+        LOGGER.info("Edge filter loaded: {}, ~{} bytes", filter, filter.estimateMemoryFootprint());
+
+        rebuildExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "edge-filter-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        negatives = meterRegistry.counter("edge.filter.checks", "result", "negative");
+        positives = meterRegistry.counter("edge.filter.checks", "result", "positive");
+        staleChecks = meterRegistry.counter("edge.filter.checks", "result", "stale");
+        falsePositives = meterRegistry.counter("edge.filter.false.positives");
+        rebuilds = meterRegistry.counter("edge.filter.rebuilds");
+        Gauge.builder("edge.filter.fpp", this, edgeFilter -> edgeFilter.filter.expectedFalsePositiveProbability()).register(meterRegistry);
+        Gauge.builder("edge.filter.memory", this, edgeFilter -> edgeFilter.filter.estimateMemoryFootprint()).baseUnit("bytes").register(meterRegistry);
+        graphVersion.onForeignWrite(this::foreignWrite);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        if (rebuildExecutor != null) {
+            rebuildExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Check if edges between vertices with specified labels are kept in the filter
+     * @param vLabel1 vertex label of first vertex
+     * @param vLabel2 vertex label of second vertex
+     * @param eLabel edge label
+     * @return true if filter is used and covers the labels
+     */
+    public boolean covers(String vLabel1, String vLabel2, String eLabel) {
+        return coversVertex(vLabel1) && coversVertex(vLabel2) && edgeFilterProperties.getEdgeLabel().equals(eLabel);
+    }
+
+    /**
+     * Check if edges of vertices with specified label may be kept in the filter
+     * @param vLabel vertex label
+     * @return true if filter is used and covers the label
+     */
+    public boolean coversVertex(String vLabel) {
+        return filter != null && edgeFilterProperties.getVertexLabel().equals(vLabel);
+    }
+
+    /**
+     * Check if an edge may exist, in any direction
+     * @param eLabel edge label
+     * @param name1 name of first vertex
+     * @param name2 name of second vertex
+     * @return false if edge definitely does not exist
+     */
+    public boolean mightExist(String eLabel, String name1, String name2) {
+        return mightExist(eLabel, name1, name2, System.nanoTime());
+    }
+
+    /**
+     * Check if an edge may exist, in any direction, as of a time checks of a call started at, so checks of the same call share
+     * a version read
+     * @param eLabel edge label
+     * @param name1 name of first vertex
+     * @param name2 name of second vertex
+     * @param checkStarted {@link System#nanoTime()} when the checks started
+     * @return false if edge definitely does not exist
+     */
+    public boolean mightExist(String eLabel, String name1, String name2, long checkStarted) {
+        boolean maybe = stale || filter.mightContain(key(eLabel, name1, name2));
+
+        if (!maybe) {
+            // other instances may have added the edge, noticing their writes makes the filter stale
+            try {
+                graphVersion.refreshSince(checkStarted - TimeUnit.MILLISECONDS.toNanos(edgeFilterProperties.getMaxStalenessMillis()));
+            } catch (RuntimeException e) {
+                LOGGER.warn("Graph version can't be refreshed, edge is checked in the graph: {}", e.toString());
+                maybe = true;
+            }
+        }
+
+        if (stale) {
+            staleChecks.increment();
+            return true;
+        }
+
+        (maybe ? positives : negatives).increment();
+        return maybe;
+    }
+
+    /**
+     * Count a positive answer of {@link #mightExist}, for which the graph had no edge
+     */
+    public void falsePositive() {
+        falsePositives.increment();
+    }
+
+    /**
+     * Add an edge, after it is committed
+     * @param eLabel edge label
+     * @param name1 name of first vertex
+     * @param name2 name of second vertex
+     */
+    public void added(String eLabel, String name1, String name2) {
+        String key = key(eLabel, name1, name2);
+
+        synchronized (lock) {
+            filter.put(key);
+
+            if (addedWhileRebuilding != null) {
+                addedWhileRebuilding.add(key);
+            }
+        }
+
+        if (filter.expectedFalsePositiveProbability() > 2 * edgeFilterProperties.getFalsePositiveProbability()) {
+            scheduleRebuild();
+        }
+    }
+
+    /**
+     * Count an edge, or a vertex with its edges, deleted from the graph; they stay in the filter until it is rebuilt
+     */
+    public void removed() {
+        if (removals.incrementAndGet() > edgeFilterProperties.getStaleRatio() * filter.getInsertions()) {
+            scheduleRebuild();
+        }
+    }
+
+    /**
+     * Run edge import, no rebuild may run meanwhile. Edges of chunks passed through {@link #adding} are added before they are committed
+     * @param importCall import
+     * @return result of import
+     */
+    public <T> T importing(Supplier<T> importCall) {
+        if (filter == null) {
+            return importCall.get();
+        }
+
+        importLock.readLock().lock();
+
+        try {
+            return importCall.get();
+        } finally {
+            importLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Add covered edges of every chunk to the filter as the chunk is taken, used within {@link #importing}
+     * @param chunks chunks of edges
+     * @return the same chunks
+     */
+    public Iterator<List<GraphEdge>> adding(Iterator<List<GraphEdge>> chunks) {
+        if (filter == null) {
+            return chunks;
+        }
+
+        return new Iterator<List<GraphEdge>>() {
+            @Override
+            public boolean hasNext() {
+                return chunks.hasNext();
+            }
+
+            @Override
+            public List<GraphEdge> next() {
+                List<GraphEdge> chunk = chunks.next();
+
+                for (GraphEdge edge : chunk) {
+                    if (covers(edge.getVertex1().getLabel(), edge.getVertex2().getLabel(), edge.getLabel())) {
+                        added(edge.getLabel(), edge.getVertex1().getName(), edge.getVertex2().getName());
+                    }
+                }
+
+                return chunk;
+            }
+        };
+    }
+
+    private void foreignWrite() {
+        synchronized (lock) {
+            stale = true;
+            foreignWrites++;
+        }
+
+        scheduleRebuild();
+    }
+
+    private void scheduleRebuild() {
+        // requests received while rebuilding schedule another rebuild, the running one may miss edges of foreign writes
+        if (rebuildScheduled.compareAndSet(false, true)) {
+            rebuildExecutor.execute(this::rebuild);
+        }
+    }
+
+    /**
+     * Load a new filter from the graph. Edges added meanwhile are collected, and added to the new filter before it replaces the old one,
+     * so edges committed after the graph was read are not lost
+     */
+    private void rebuild() {
+        rebuildScheduled.set(false);
+        importLock.writeLock().lock();
+
+        try {
+            int notified;
+
+            synchronized (lock) {
+                addedWhileRebuilding = new ArrayList<>();
+                notified = foreignWrites;
+            }
+
+            long removalsBefore = removals.get();
+            BloomFilter loaded = load();
+
+            synchronized (lock) {
+                addedWhileRebuilding.forEach(loaded::put);
+                addedWhileRebuilding = null;
+                filter = loaded;
+
+                if (notified == foreignWrites) {
+                    stale = false;
+                }
+            }
+
+            removals.addAndGet(-removalsBefore);
+            rebuilds.increment();
+            LOGGER.info("Edge filter rebuilt: {}, ~{} bytes", loaded, loaded.estimateMemoryFootprint());
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                addedWhileRebuilding = null;
+            }
+
+            LOGGER.error("Edge filter rebuild failed", e);
+
+            // a stale filter answers nothing, so retry
+            if (stale && rebuildScheduled.compareAndSet(false, true)) {
+                rebuildExecutor.schedule(this::rebuild, 1, TimeUnit.SECONDS);
+            }
+        } finally {
+            importLock.writeLock().unlock();
+        }
+    }
+
+    private BloomFilter load() {
+        CsrGraph csr = gremlinBackend.loadCsrGraph(transactional, edgeFilterProperties.getVertexLabel(), edgeFilterProperties.getEdgeLabel());
+        BloomFilter loaded = new BloomFilter(Math.max(edgeFilterProperties.getExpectedEdges(), 2L * csr.getEdgeCount()),
+                edgeFilterProperties.getFalsePositiveProbability());
+        String eLabel = edgeFilterProperties.getEdgeLabel();
+
+        for (int vertex = 0; vertex < csr.getVertexCount(); vertex++) {
+            String name = csr.nameOf(vertex);
+
+            for (int i = csr.neighborsStart(vertex); i < csr.neighborsEnd(vertex); i++) {
+                int neighbor = csr.neighborAt(i);
+
+                // every edge is stored at both ends
+                if (vertex <= neighbor) {
+                    loaded.put(key(eLabel, name, csr.nameOf(neighbor)));
+                }
+            }
+        }
+
+        return loaded;
+    }
+
+    /**
+     * Key of undirected edge, names are ordered so both directions have the same key
+     */
+    private static String key(String eLabel, String name1, String name2) {
+        boolean ordered = name1.compareTo(name2) <= 0;
+        return eLabel + SEPARATOR + (ordered ? name1 : name2) + SEPARATOR + (ordered ? name2 : name1);
+    }
+}
@@ -0,0 +1,218 @@
+package io.demo.storage.service;
+
+import io.demo.storage.config.SchemaProperties;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.umlg.sqlg.structure.PropertyType;
+import org.umlg.sqlg.structure.SqlgGraph;
+import org.umlg.sqlg.structure.topology.IndexType;
+import org.umlg.sqlg.structure.topology.PropertyColumn;
+import org.umlg.sqlg.structure.topology.Topology;
+import org.umlg.sqlg.structure.topology.VertexLabel;
+
+import javax.annotation.PostConstruct;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link GraphSchema} creates configured vertex and edge labels with their indexes at startup, instead of letting Sqlg
+ * create tables lazily on first write, without indexes. Then it checks that all indexes exist and reports missing ones.
+ * Vertex lookups by name, done by every operation, use these indexes instead of scanning the whole table.
+ * Other graphs are left as they are, e.g. TinkerGraph used by tests is indexed where it is created
+ */
+@Component
+public class GraphSchema {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GraphSchema.class);
+
+    @Autowired
+    private Graph graph;
+
+    @Autowired
+    private SchemaProperties schemaProperties;
+
+    @PostConstruct
+    private void init() {
+        if (!schemaProperties.isEnabled()) {
+            return;
+        }
+
+        if (!(graph instanceof SqlgGraph)) {
+            LOGGER.info("Graph schema is not ensured, {} is not a Sqlg graph", graph.getClass().getSimpleName());
+            return;
+        }
+
+        ensureSqlgSchema((SqlgGraph) graph);
+
+        List<String> missing = checkIndexes();
+
+        if (missing.isEmpty()) {
+            LOGGER.info("Graph schema is complete");
+        } else {
+            LOGGER.warn("Graph schema is incomplete, lookups will scan tables: {}", missing);
+        }
+    }
+
+    /**
+     * Check that tables of configured labels and their indexes exist in the database. Other graphs have no tables to check,
+     * TinkerGraph indexes are created along with the graph
+     * @return descriptions of missing labels and indexes, empty if schema is complete or graph is not a Sqlg graph
+     */
+    public List<String> checkIndexes() {
+        return graph instanceof SqlgGraph ? checkSqlgIndexes((SqlgGraph) graph) : Collections.emptyList();
+    }
+
+    private void ensureSqlgSchema(SqlgGraph sqlgGraph) {
+        Topology topology = sqlgGraph.getTopology();
+
+        // each label is committed separately, a failure (e.g. duplicate names prevent unique index) does not affect others
+        for (SchemaProperties.VertexLabelSchema schema : schemaProperties.getVertexLabels()) {
+            try {
+                VertexLabel vertexLabel = topology.ensureVertexLabelExist(schema.getLabel(), toPropertyTypes(schema.getProperties()));
+                ensureIndexes(vertexLabel, IndexType.UNIQUE, schema.getUniqueIndexes());
+                ensureIndexes(vertexLabel, IndexType.NON_UNIQUE, schema.getIndexes());
+                sqlgGraph.tx().commit();
+            } catch (RuntimeException e) {
+                sqlgGraph.tx().rollback();
+                LOGGER.error("Vertex label {} can't be ensured", schema.getLabel(), e);
+            }
+        }
+
+        for (SchemaProperties.EdgeLabelSchema schema : schemaProperties.getEdgeLabels()) {
+            try {
+                // Sqlg adds foreign key columns to both vertex labels, and indexes them
+                VertexLabel outVertexLabel = topology.ensureVertexLabelExist(schema.getOutVertexLabel());
+                VertexLabel inVertexLabel = topology.ensureVertexLabelExist(schema.getInVertexLabel());
+                topology.ensureEdgeLabelExist(schema.getLabel(), outVertexLabel, inVertexLabel, toPropertyTypes(schema.getProperties()));
+                sqlgGraph.tx().commit();
+            } catch (RuntimeException e) {
+                sqlgGraph.tx().rollback();
+                LOGGER.error("Edge label {} can't be ensured", schema.getLabel(), e);
+            }
+        }
+    }
+
+    private static void ensureIndexes(VertexLabel vertexLabel, IndexType indexType, List<String> properties) {
+        for (String property : properties) {
+            PropertyColumn column = vertexLabel.getProperty(property).orElseThrow(() -> new IllegalArgumentException(
+                    "Indexed property " + property + " is not a property of vertex label " + vertexLabel.getLabel()));
+            vertexLabel.ensureIndexExists(indexType, Collections.singletonList(column));
+        }
+    }
+
+    private List<String> checkSqlgIndexes(SqlgGraph sqlgGraph) {
+        try {
+            return checkIndexes(sqlgGraph.getConnection().getMetaData(), sqlgGraph.getSqlDialect().getPublicSchema());
+        } catch (SQLException e) {
+            LOGGER.error("Graph schema can't be checked", e);
+            return Collections.singletonList("indexes can't be read: " + e.getMessage());
+        } finally {
+            sqlgGraph.tx().rollback();
+        }
+    }
+
+    /**
+     * Check tables and indexes as the database reports them: unique and non-unique indexes of vertex properties,
+     * and indexes of foreign key columns of edges, which traversals from vertices to their edges use.
+     * Only an index led by the column serves lookups by it
+     * @param metaData database metadata
+     * @param schemaName schema of labels
+     * @return descriptions of missing labels and indexes, empty if schema is complete
+     */
+    List<String> checkIndexes(DatabaseMetaData metaData, String schemaName) throws SQLException {
+        List<String> missing = new ArrayList<>();
+
+        for (SchemaProperties.VertexLabelSchema schema : schemaProperties.getVertexLabels()) {
+            String table = Topology.VERTEX_PREFIX + schema.getLabel();
+
+            if (!tableExists(metaData, schemaName, table)) {
+                missing.add("vertex label " + schema.getLabel());
+                continue;
+            }
+
+            Map<String, Boolean> indexed = indexedColumns(metaData, schemaName, table);
+
+            for (String property : schema.getUniqueIndexes()) {
+                if (!Boolean.TRUE.equals(indexed.get(property))) {
+                    missing.add(IndexType.UNIQUE.getName().toLowerCase() + " index of " + schema.getLabel() + "." + property);
+                }
+            }
+
+            for (String property : schema.getIndexes()) {
+                if (!indexed.containsKey(property)) {
+                    missing.add(IndexType.NON_UNIQUE.getName().toLowerCase() + " index of " + schema.getLabel() + "." + property);
+                }
+            }
+        }
+
+        for (SchemaProperties.EdgeLabelSchema schema : schemaProperties.getEdgeLabels()) {
+            String table = Topology.EDGE_PREFIX + schema.getLabel();
+
+            if (!tableExists(metaData, schemaName, table)) {
+                missing.add("edge label " + schema.getLabel());
+                continue;
+            }
+
+            Map<String, Boolean> indexed = indexedColumns(metaData, schemaName, table);
+
+            // Sqlg names foreign key columns by schema and label of the vertex
+            if (!indexed.containsKey(schemaName + "." + schema.getOutVertexLabel() + Topology.OUT_VERTEX_COLUMN_END)) {
+                missing.add("index of foreign key of edge label " + schema.getLabel() + " to out vertex label " + schema.getOutVertexLabel());
+            }
+
+            if (!indexed.containsKey(schemaName + "." + schema.getInVertexLabel() + Topology.IN_VERTEX_COLUMN_END)) {
+                missing.add("index of foreign key of edge label " + schema.getLabel() + " to in vertex label " + schema.getInVertexLabel());
+            }
+        }
+
+        return missing;
+    }
+
+    private static boolean tableExists(DatabaseMetaData metaData, String schemaName, String table) throws SQLException {
+        try (ResultSet tables = metaData.getTables(catalog(metaData, schemaName), schema(metaData, schemaName), table, null)) {
+            return tables.next();
+        }
+    }
+
+    /**
+     * Columns which lead an index, each mapped to true if any of its indexes is unique
+     */
+    private static Map<String, Boolean> indexedColumns(DatabaseMetaData metaData, String schemaName, String table) throws SQLException {
+        Map<String, Boolean> columns = new HashMap<>();
+
+        try (ResultSet indexes = metaData.getIndexInfo(catalog(metaData, schemaName), schema(metaData, schemaName), table, false, true)) {
+            while (indexes.next()) {
+                if (indexes.getShort("ORDINAL_POSITION") == 1) {
+                    columns.merge(indexes.getString("COLUMN_NAME"), !indexes.getBoolean("NON_UNIQUE"), Boolean::logicalOr);
+                }
+            }
+        }
+
+        return columns;
+    }
+
+    // MariaDB has no schemas, Sqlg maps them to databases, which JDBC calls catalogs
+    private static String catalog(DatabaseMetaData metaData, String schemaName) throws SQLException {
+        return metaData.supportsSchemasInTableDefinitions() ? null : schemaName;
+    }
+
+    private static String schema(DatabaseMetaData metaData, String schemaName) throws SQLException {
+        return metaData.supportsSchemasInTableDefinitions() ? schemaName : null;
+    }
+
+    private static Map<String, PropertyType> toPropertyTypes(Map<String, String> properties) {
+        Map<String, PropertyType> result = new LinkedHashMap<>();
+        properties.forEach((name, type) -> result.put(name, PropertyType.valueOf(type.toUpperCase())));
+        return result;
+    }
+}
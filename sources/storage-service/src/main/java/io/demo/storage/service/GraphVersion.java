@@ -0,0 +1,315 @@
+package io.demo.storage.service;
+
+import io.demo.storage.config.GraphVersionProperties;
+import io.demo.storage.util.GremlinMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.T;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.umlg.sqlg.sql.dialect.SqlDialect;
+import org.umlg.sqlg.structure.PropertyType;
+import org.umlg.sqlg.structure.SqlgGraph;
+import org.umlg.sqlg.structure.topology.Topology;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link GraphVersion} is a counter of writes to the graph, the same for all storage-service instances sharing a database.
+ * Clients use it to check if cached query results are still valid. On a Sqlg graph it is a row of vertex label "graph_version",
+ * incremented by every write within the transaction of the write, so its row lock orders versions like commits of all instances.
+ * Other graphs are not shared, the counter is kept in memory, starting from current time, so versions differ after restarts.
+ * A version of this instance is published, i.e. returned by {@link #get}, after in-memory views reflect the write.
+ * Versions of other instances are noticed by {@link #refresh}, run periodically, by version checks of clients, and by views which
+ * must not miss recent writes of other instances, see {@link #refreshSince}.
+ * Listeners of {@link #onForeignWrite} are notified before such a version is published, so views can stop answering until reloaded.
+ * Metrics: "graph.version.foreign.writes" writes of other instances noticed
+ */
+@Component
+public class GraphVersion {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GraphVersion.class);
+    private static final String LABEL = "graph_version";
+    private static final String VERSION = "version";
+
+    @Autowired
+    private Graph graph;
+
+    @Autowired
+    private GraphVersionProperties graphVersionProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private SqlgGraph sqlgGraph;
+    private String table;
+    private String column;
+    private final AtomicLong localVersion = new AtomicLong(System.currentTimeMillis());
+    // versions of this instance above synced version, the rest of versions up to a synced one are foreign
+    private final NavigableSet<Long> produced = new ConcurrentSkipListSet<>();
+    // versions of this instance not reflected by views yet, versions from the first one on are not published
+    private final NavigableSet<Long> unpublished = new ConcurrentSkipListSet<>();
+    private final List<Runnable> foreignWriteListeners = new CopyOnWriteArrayList<>();
+    // callers of refreshSince share reads
+    private final Object refreshLock = new Object();
+    // System.nanoTime() when the latest completed read of the version started
+    private volatile long readStarted;
+    // the latest version committed to the graph, known to this instance
+    private long synced;
+    private volatile long version;
+    private ScheduledExecutorService refreshExecutor;
+
+    @PostConstruct
+    private void init() {
+        if (!(graph instanceof SqlgGraph)) {
+            synced = localVersion.get();
+            version = synced;
+            return;
+        }
+
+        sqlgGraph = (SqlgGraph) graph;
+        ensureCounter();
+        readStarted = System.nanoTime();
+        synced = readVersion();
+        version = synced;
+        long interval = graphVersionProperties.getRefreshIntervalMillis();
+
+        if (interval > 0) {
+            refreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "graph-version-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refreshExecutor.scheduleWithFixedDelay(() -> {
+                try {
+                    refresh();
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Graph version can't be refreshed: {}", e.toString());
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    private void destroy() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Get current version, reflected by views of this instance
+     * @return version
+     */
+    public long get() {
+        return version;
+    }
+
+    /**
+     * @return true if the version is shared by all instances, i.e. it is kept in the database
+     */
+    public boolean isShared() {
+        return sqlgGraph != null;
+    }
+
+    /**
+     * Read current version from the database, notify listeners if other instances changed the graph
+     * @return version, see {@link #get}
+     */
+    public long refresh() {
+        if (sqlgGraph != null) {
+            long started = System.nanoTime();
+            sync(readVersion(), false);
+
+            synchronized (refreshLock) {
+                if (started - readStarted > 0) {
+                    readStarted = started;
+                }
+            }
+        }
+
+        return version;
+    }
+
+    /**
+     * Refresh unless a read started at or after oldest has completed, so writes of other instances committed before oldest are
+     * noticed, and listeners notified, when it returns. Concurrent callers share a read
+     * @param oldest {@link System#nanoTime()} the latest read should have started at
+     * @return version, see {@link #get}
+     */
+    public long refreshSince(long oldest) {
+        if (sqlgGraph == null || readStarted - oldest >= 0) {
+            return version;
+        }
+
+        synchronized (refreshLock) {
+            if (readStarted - oldest >= 0) {
+                return version;
+            }
+
+            long started = System.nanoTime();
+            sync(readVersion(), false);
+            readStarted = started;
+        }
+
+        return version;
+    }
+
+    /**
+     * Register a listener of writes of other storage-service instances, run before their version is published
+     * @param listener listener, should not block
+     */
+    public void onForeignWrite(Runnable listener) {
+        foreignWriteListeners.add(listener);
+    }
+
+    /**
+     * Increment version within the transaction of a write and commit it. The new version must be published by {@link #publish},
+     * once views reflect the write, versions of later writes are not published until then.
+     * The caller should roll back if it throws
+     * @param operation operation name, for commit metrics
+     * @param label vertex or edge label, for commit metrics
+     * @return new version
+     */
+    public long commit(String operation, String label) {
+        if (sqlgGraph == null) {
+            if (graph.features().graph().supportsTransactions()) {
+                GremlinMetrics.commit(graph, operation, label);
+            }
+
+            synchronized (this) {
+                long next = localVersion.incrementAndGet();
+                produced.add(next);
+                unpublished.add(next);
+                return next;
+            }
+        }
+
+        // the row stays locked until commit, concurrent writes get the next versions in order of their commits
+        long next = increment();
+        produced.add(next);
+        unpublished.add(next);
+
+        try {
+            GremlinMetrics.commit(graph, operation, label);
+        } catch (RuntimeException e) {
+            produced.remove(next);
+            unpublished.remove(next);
+            // the version may be committed by another instance meanwhile and counted as ours, views must not trust it
+            sync(synced, true);
+            throw e;
+        }
+
+        return next;
+    }
+
+    /**
+     * Publish a version of {@link #commit} after views reflect the write
+     * @param committed version returned by commit
+     */
+    public void publish(long committed) {
+        unpublished.remove(committed);
+        sync(committed, false);
+    }
+
+    private synchronized void sync(long observed, boolean foreignSuspected) {
+        long foreign = 0;
+
+        if (observed > synced) {
+            NavigableSet<Long> local = produced.headSet(observed, true);
+            foreign = observed - synced - local.size();
+            local.clear();
+            synced = observed;
+        }
+
+        if (foreign > 0 || foreignSuspected) {
+            meterRegistry.counter("graph.version.foreign.writes").increment(Math.max(foreign, 1));
+            LOGGER.debug("Graph changed by other instances, version {}", observed);
+
+            for (Runnable listener : foreignWriteListeners) {
+                try {
+                    listener.run();
+                } catch (RuntimeException e) {
+                    LOGGER.error("Graph version listener failed", e);
+                }
+            }
+        }
+
+        Long first = unpublished.ceiling(Long.MIN_VALUE);
+        long publishable = first != null ? Math.min(synced, first - 1) : synced;
+
+        if (publishable > version) {
+            version = publishable;
+        }
+    }
+
+    private void ensureCounter() {
+        try {
+            sqlgGraph.getTopology().ensureVertexLabelExist(LABEL, Collections.singletonMap(VERSION, PropertyType.LONG));
+
+            // instances started together may add a row each, all rows are incremented and the highest one is the version
+            if (!sqlgGraph.traversal().V().hasLabel(LABEL).hasNext()) {
+                sqlgGraph.addVertex(T.label, LABEL, VERSION, localVersion.get());
+            }
+
+            sqlgGraph.tx().commit();
+        } catch (RuntimeException e) {
+            sqlgGraph.tx().rollback();
+            throw e;
+        }
+
+        SqlDialect dialect = sqlgGraph.getSqlDialect();
+        table = dialect.maybeWrapInQoutes(dialect.getPublicSchema()) + "." + dialect.maybeWrapInQoutes(Topology.VERTEX_PREFIX + LABEL);
+        column = dialect.maybeWrapInQoutes(VERSION);
+    }
+
+    private long increment() {
+        sqlgGraph.tx().readWrite();
+
+        try (Statement statement = sqlgGraph.tx().getConnection().createStatement()) {
+            statement.executeUpdate("UPDATE " + table + " SET " + column + " = " + column + " + 1");
+            return selectVersion(statement);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Graph version can't be incremented", e);
+        }
+    }
+
+    private long readVersion() {
+        try (Connection connection = sqlgGraph.getSqlgDataSource().getDatasource().getConnection();
+             Statement statement = connection.createStatement()) {
+            long result = selectVersion(statement);
+
+            // pooled connections may be left without auto-commit by Sqlg, the next read must not see this snapshot
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+            }
+
+            return result;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Graph version can't be read", e);
+        }
+    }
+
+    private long selectVersion(Statement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery("SELECT MAX(" + column + ") FROM " + table)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package io.demo.storage.service;
+
+import io.demo.storage.config.GroupCommitProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A {@link GroupCommitWriter} applies single writes of concurrent calls in one transaction, so a group of writes costs
+ * a single commit (and a single fsync of the database) instead of one per write, and a single {@link GraphVersion}.
+ * Writes are queued and applied by a single writer thread, Sqlg transactions are bound to a thread. A caller is released
+ * only after the commit of its group, with the result of its write. If a write or the commit of a group fails,
+ * the group is rolled back and its writes are retried one by one, each in its own transaction, so a failing write fails
+ * its own call only. Callers block until then, so the write bulkhead gets at least max group size threads, see
+ * {@link io.demo.storage.service.grpc.ConcurrencyLimitInterceptor}. Metrics: "graph.write.group.size" writes per group, "graph.write.group.retries" groups retried one by one
+ */
+@Component
+public class GroupCommitWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GroupCommitWriter.class);
+    private static final String OPERATION = "groupCommit";
+    private static final String ALL_LABELS = "all";
+    // callers check that often if the writer is still alive
+    private static final long WRITER_CHECK_MILLIS = 1000;
+
+    @Autowired
+    private Graph graph;
+
+    @Autowired
+    private GroupCommitProperties groupCommitProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private GraphVersion graphVersion;
+
+    private final BlockingQueue<PendingWrite<?>> queue = new LinkedBlockingQueue<>();
+    private boolean transactional;
+    private volatile boolean running;
+    private Thread writer;
+
+    @PostConstruct
+    private void init() {
+        if (!groupCommitProperties.isEnabled()) {
+            return;
+        }
+
+        transactional = graph.features().graph().supportsTransactions();
+        running = true;
+        writer = new Thread(this::run, "group-commit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    private void destroy() {
+        if (writer == null) {
+            return;
+        }
+
+        running = false;
+        writer.interrupt();
+
+        List<PendingWrite<?>> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        rest.forEach(pending -> pending.fail(new IllegalStateException("Group commit writer is stopped")));
+    }
+
+    /**
+     * @return true if writes should go through {@link #write}
+     */
+    public boolean isEnabled() {
+        return writer != null;
+    }
+
+    /**
+     * Apply a write within the next group, wait for the group to be committed
+     * @param write write operation, must not commit
+     * @param committed run by the writer after the commit, in order of writes, before the version of the group is published,
+     * e.g. to apply the same change to a snapshot; takes the result of write
+     * @return result of write
+     */
+    public <T> T write(Supplier<T> write, Consumer<T> committed) {
+        if (!running) {
+            throw new IllegalStateException("Group commit writer is stopped");
+        }
+
+        PendingWrite<T> pending = new PendingWrite<>(write, committed);
+        queue.add(pending);
+
+        // stopped after the check above, the write may have missed the final drain of the queue
+        if (!running && queue.remove(pending)) {
+            pending.fail(new IllegalStateException("Group commit writer is stopped"));
+        }
+
+        try {
+            while (true) {
+                try {
+                    return pending.result.get(WRITER_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    if (!writer.isAlive()) {
+                        queue.remove(pending);
+                        pending.fail(new IllegalStateException("Group commit writer is stopped"));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for group commit", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private void run() {
+        List<PendingWrite<?>> group = new ArrayList<>();
+
+        while (running) {
+            try {
+                group.add(queue.take());
+                collect(group);
+                commit(group);
+            } catch (InterruptedException e) {
+                group.forEach(pending -> pending.fail(new IllegalStateException("Group commit writer is stopped")));
+                return;
+            } catch (Throwable e) {
+                LOGGER.error("Group commit failed", e);
+                group.forEach(pending -> pending.fail(e));
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    /**
+     * Add writes queued already, then wait for more until the group is full or max delay since the first write is over
+     */
+    private void collect(List<PendingWrite<?>> group) throws InterruptedException {
+        int maxSize = groupCommitProperties.getMaxSize();
+        long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(groupCommitProperties.getMaxDelayMicros());
+        queue.drainTo(group, maxSize - group.size());
+
+        while (group.size() < maxSize) {
+            long wait = deadline - System.nanoTime();
+
+            if (wait <= 0) {
+                break;
+            }
+
+            PendingWrite<?> next = queue.poll(wait, TimeUnit.NANOSECONDS);
+
+            if (next == null) {
+                break;
+            }
+
+            group.add(next);
+            queue.drainTo(group, maxSize - group.size());
+        }
+    }
+
+    private void commit(List<PendingWrite<?>> group) {
+        meterRegistry.summary("graph.write.group.size").record(group.size());
+
+        // without transactions writes are independent anyway
+        if (!transactional || group.size() == 1) {
+            group.forEach(this::commitAlone);
+            return;
+        }
+
+        long version;
+
+        try {
+            group.forEach(PendingWrite::apply);
+            version = graphVersion.commit(OPERATION, ALL_LABELS);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Group of {} writes failed, retrying them one by one: {}", group.size(), e.toString());
+            meterRegistry.counter("graph.write.group.retries").increment();
+            rollback();
+            group.forEach(this::commitAlone);
+            return;
+        }
+
+        try {
+            group.forEach(PendingWrite::committed);
+        } finally {
+            graphVersion.publish(version);
+        }
+
+        group.forEach(PendingWrite::complete);
+    }
+
+    private void commitAlone(PendingWrite<?> pending) {
+        long version;
+
+        try {
+            pending.apply();
+            version = graphVersion.commit(OPERATION, ALL_LABELS);
+        } catch (RuntimeException e) {
+            if (transactional) {
+                rollback();
+            }
+
+            pending.fail(e);
+            return;
+        }
+
+        try {
+            pending.committed();
+        } finally {
+            graphVersion.publish(version);
+        }
+
+        pending.complete();
+    }
+
+    private void rollback() {
+        try {
+            graph.tx().rollback();
+        } catch (RuntimeException e) {
+            LOGGER.error("Rollback of group commit failed", e);
+        }
+    }
+
+    private static class PendingWrite<T> {
+        final Supplier<T> write;
+        final Consumer<T> committed;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        T value;
+        RuntimeException error;
+
+        PendingWrite(Supplier<T> write, Consumer<T> committed) {
+            this.write = write;
+            this.committed = committed;
+        }
+
+        void apply() {
+            value = write.get();
+        }
+
+        void committed() {
+            try {
+                committed.accept(value);
+            } catch (RuntimeException e) {
+                error = e;
+            }
+        }
+
+        void complete() {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        }
+
+        void fail(Throwable e) {
+            result.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,649 @@
+package io.demo.storage.service;
+
+import io.demo.storage.config.PathSearchProperties;
+import io.demo.storage.config.SnapshotProperties;
+import io.demo.storage.domain.GraphRoute;
+import io.demo.storage.domain.PathSearchLimits;
+import io.demo.storage.graph.CsrGraph;
+import io.demo.storage.graph.IntPath;
+import io.demo.storage.graph.Landmarks;
+import io.demo.storage.graph.ParallelPathEnumerator;
+import io.demo.storage.graph.PathEnumerator;
+import io.demo.storage.graph.PathFinder;
+import io.demo.storage.util.GremlinBackend;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import org.umlg.sqlg.structure.SqlgGraph;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * A {@link RouteGraphSnapshot} is an in-memory read model of vertices and edges with configured labels, see {@link CsrGraph}.
+ * It is loaded from the graph at startup and kept up to date by write operations of {@link StorageServiceImpl},
+ * which still go to the graph first. Path and edge existence queries are answered from memory without database round-trips.
+ * Writes of the same vertex are serialized by a lock stripe of its name, so they change the snapshot in the same order as the graph;
+ * writes of other vertices commute, they run concurrently and hold the global write lock only to apply their change, which costs
+ * about the degrees of changed vertices, see the overlay of {@link CsrGraph}. Once the overlay grows large, the snapshot is compacted
+ * in background, and changes applied meanwhile are replayed on the compacted graph.
+ * With {@link SnapshotProperties.ShortestPathAlgorithm#ALT}, cheapest paths are searched by A* over {@link Landmarks}, computed at startup,
+ * and recomputed in background after changes which may shorten distances, new edges and lower weights: landmarks of an earlier
+ * distance epoch are not used, their bounds could be too high, so searches use Dijkstra's algorithm (bidirectional, if configured)
+ * until landmarks catch up. Other changes keep landmarks, their bounds stay valid, see {@link CsrGraph}.
+ * With configured parallelism, paths are enumerated by {@link ParallelPathEnumerator} on a dedicated fork-join pool.
+ * Writes of other storage-service instances, noticed by {@link GraphVersion}, make the snapshot stale: it is reloaded in background,
+ * queries go to the graph until then, see {@link #answers}
+ */
+@Component
+@DependsOn("graphSchema")
+public class RouteGraphSnapshot {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RouteGraphSnapshot.class);
+    private static final int MAX_REPORTED_DIFFERENCES = 10;
+    private static final String BACKEND = "snapshot";
+    private static final int WRITE_STRIPES = 64;
+
+    @Autowired
+    private Graph graph;
+
+    @Autowired
+    private GremlinBackend gremlinBackend;
+
+    @Autowired
+    private SnapshotProperties snapshotProperties;
+
+    @Autowired
+    private PathSearchProperties pathSearchProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private GraphVersion graphVersion;
+
+    // writers of the same vertex are serialized by stripes, always locked in ascending order
+    private final ReentrantLock[] writeStripes = new ReentrantLock[WRITE_STRIPES];
+    // guards changes of the snapshot
+    private final Object writeLock = new Object();
+    private volatile CsrGraph csrGraph;
+    // changes applied while the snapshot is compacted, to replay on the compacted graph, null if not compacting; guarded by writeLock
+    private List<UnaryOperator<CsrGraph>> changesWhileCompacting;
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private boolean transactional;
+    private ScheduledExecutorService consistencyCheckExecutor;
+    private volatile Landmarks landmarks;
+    private final AtomicBoolean landmarksScheduled = new AtomicBoolean();
+    private ExecutorService landmarksExecutor;
+    private ForkJoinPool enumerationPool;
+    private volatile boolean stale;
+    // incremented by every notification of foreign writes, guarded by this
+    private int foreignWrites;
+    private final AtomicBoolean reloadScheduled = new AtomicBoolean();
+    private ScheduledExecutorService reloadExecutor;
+
+    @PostConstruct
+    private void init() {
+        for (int i = 0; i < WRITE_STRIPES; i++) {
+            writeStripes[i] = new ReentrantLock();
+        }
+
+        if (!snapshotProperties.isEnabled()) {
+            return;
+        }
+
+        transactional = graph instanceof SqlgGraph;
+        csrGraph = load();
+        LOGGER.info("Route graph snapshot loaded: {}, ~{} bytes", csrGraph, csrGraph.estimateMemoryFootprint());
+
+        if (snapshotProperties.getShortestPathAlgorithm() == SnapshotProperties.ShortestPathAlgorithm.ALT && snapshotProperties.getLandmarks() > 0) {
+            landmarksExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "snapshot-landmarks");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            computeLandmarks();
+        }
+
+        if (pathSearchProperties.getParallelism() > 0) {
+            enumerationPool = new ForkJoinPool(pathSearchProperties.getParallelism(), pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("path-enumeration-" + thread.getPoolIndex());
+                return thread;
+            }, null, false);
+        }
+
+        reloadExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        graphVersion.onForeignWrite(this::foreignWrite);
+
+        long interval = snapshotProperties.getConsistencyCheckIntervalSeconds();
+
+        if (interval > 0) {
+            consistencyCheckExecutor = Executors.newSingleThreadScheduledExecutor();
+            consistencyCheckExecutor.scheduleWithFixedDelay(this::checkConsistency, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    private void destroy() {
+        if (consistencyCheckExecutor != null) {
+            consistencyCheckExecutor.shutdownNow();
+        }
+
+        if (landmarksExecutor != null) {
+            landmarksExecutor.shutdownNow();
+        }
+
+        if (enumerationPool != null) {
+            enumerationPool.shutdownNow();
+        }
+
+        if (reloadExecutor != null) {
+            reloadExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Check if vertices with specified label are kept in the snapshot
+     * @param vLabel vertex label
+     * @return true if snapshot is enabled and covers the label
+     */
+    public boolean coversVertex(String vLabel) {
+        return csrGraph != null && snapshotProperties.getVertexLabel().equals(vLabel);
+    }
+
+    /**
+     * Check if edges between vertices with specified labels are kept in the snapshot
+     * @param vLabel1 vertex label of first vertex
+     * @param vLabel2 vertex label of second vertex
+     * @param eLabel edge label
+     * @return true if snapshot is enabled and covers the labels
+     */
+    public boolean coversEdge(String vLabel1, String vLabel2, String eLabel) {
+        return coversVertex(vLabel1) && coversVertex(vLabel2) && snapshotProperties.getEdgeLabel().equals(eLabel);
+    }
+
+    /**
+     * Check if queries of edges between vertices with specified labels can be answered by the snapshot: it covers the labels,
+     * and it is not stale, i.e. it is not waiting for reload after writes of other instances
+     * @param vLabel1 vertex label of first vertex
+     * @param vLabel2 vertex label of second vertex
+     * @param eLabel edge label
+     * @return true if snapshot covers the labels and is up to date
+     */
+    public boolean answers(String vLabel1, String vLabel2, String eLabel) {
+        return coversEdge(vLabel1, vLabel2, eLabel) && !stale;
+    }
+
+    /**
+     * Perform write operation on the graph, then apply the same change to the snapshot.
+     * Concurrent writes of the same vertices wait, other writes run concurrently
+     * @param write write operation, commits
+     * @param change change of the snapshot
+     * @param names names of vertices changed by the write, including ends of a changed edge
+     * @return result of write operation
+     */
+    public <T> T write(Supplier<T> write, UnaryOperator<CsrGraph> change, List<String> names) {
+        int[] stripes = names.stream().mapToInt(name -> Math.floorMod(name.hashCode(), WRITE_STRIPES)).sorted().distinct().toArray();
+
+        for (int stripe : stripes) {
+            writeStripes[stripe].lock();
+        }
+
+        try {
+            T result = write.get();
+            apply(change);
+            return result;
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                writeStripes[stripes[i]].unlock();
+            }
+        }
+    }
+
+    /**
+     * Apply a change of the graph, written and committed already, to the snapshot.
+     * Used by {@link GroupCommitWriter}, which serializes writes itself
+     * @param change change of the snapshot
+     */
+    public void apply(UnaryOperator<CsrGraph> change) {
+        boolean compaction;
+
+        synchronized (writeLock) {
+            csrGraph = change.apply(csrGraph);
+
+            if (changesWhileCompacting != null) {
+                changesWhileCompacting.add(change);
+            }
+
+            compaction = csrGraph.needsCompaction();
+        }
+
+        if (compaction) {
+            scheduleCompaction();
+        }
+
+        scheduleLandmarks();
+    }
+
+    /**
+     * Reload the snapshot from the graph, used after bulk changes.
+     * Writes committed while loading may be applied after it again, changes of the snapshot are idempotent
+     */
+    public void reload() {
+        if (csrGraph == null) {
+            return;
+        }
+
+        synchronized (writeLock) {
+            csrGraph = load();
+            // a compaction running now started from an older graph
+            changesWhileCompacting = null;
+        }
+
+        LOGGER.info("Route graph snapshot reloaded: {}, ~{} bytes", csrGraph, csrGraph.estimateMemoryFootprint());
+        scheduleLandmarks();
+    }
+
+    /**
+     * Get weight of the edge between two vertices
+     * @param name1 name of first vertex
+     * @param name2 name of second vertex
+     * @return edge weight, null if there is no such edge
+     */
+    public Double edgeWeight(String name1, String name2) {
+        CsrGraph csr = csrGraph;
+        int vertex1 = csr.indexOf(name1);
+        int vertex2 = csr.indexOf(name2);
+        return vertex1 >= 0 && vertex2 >= 0 ? csr.edgeWeight(vertex1, vertex2) : null;
+    }
+
+    /**
+     * Find paths between two vertices, see {@link PathEnumerator}
+     * @param name1 name of first vertex
+     * @param name2 name of second vertex
+     * @param limits search limits
+     * @param consumer receives paths found, returns false to stop the search
+     */
+    public void streamPaths(String name1, String name2, PathSearchLimits limits, Predicate<GraphRoute> consumer) {
+        CsrGraph csr = csrGraph;
+        int source = csr.indexOf(name1);
+        int target = csr.indexOf(name2);
+
+        if (source < 0 || target < 0) {
+            return;
+        }
+
+        PathEnumerator enumerator = new PathEnumerator(csr)
+                .withMaxHops(limits.getMaxHops())
+                .withMaxPaths(limits.getMaxPaths());
+
+        if (limits.getMaxTotalWeight() != null) {
+            enumerator.withMaxTotalWeight(limits.getMaxTotalWeight());
+        }
+
+        if (limits.getTimeoutMillis() > 0) {
+            enumerator.withTimeout(limits.getTimeoutMillis());
+        }
+
+        int[] count = new int[1];
+
+        try {
+            enumerator.enumerate(source, target, path -> {
+                count[0]++;
+                return consumer.test(toGraphRoute(csr, path));
+            });
+        } finally {
+            recordPaths("streamPathsBidirectional", count[0]);
+        }
+    }
+
+    /**
+     * Find paths between two vertices, by {@link ParallelPathEnumerator} if parallelism is configured, otherwise by {@link PathEnumerator}
+     * @param name1 name of first vertex
+     * @param name2 name of second vertex
+     * @param limits search limits
+     * @return list of paths found, in {@link IntPath} order: by total weight, then hop count, either way
+     */
+    public List<GraphRoute> findPaths(String name1, String name2, PathSearchLimits limits) {
+        List<GraphRoute> result = new ArrayList<>();
+        CsrGraph csr = csrGraph;
+        int source = csr.indexOf(name1);
+        int target = csr.indexOf(name2);
+
+        if (source < 0 || target < 0) {
+            return result;
+        }
+
+        List<IntPath> paths;
+
+        if (enumerationPool == null) {
+            PathEnumerator enumerator = new PathEnumerator(csr)
+                    .withMaxHops(limits.getMaxHops())
+                    .withMaxPaths(limits.getMaxPaths());
+
+            if (limits.getMaxTotalWeight() != null) {
+                enumerator.withMaxTotalWeight(limits.getMaxTotalWeight());
+            }
+
+            if (limits.getTimeoutMillis() > 0) {
+                enumerator.withTimeout(limits.getTimeoutMillis());
+            }
+
+            paths = new ArrayList<>();
+            enumerator.enumerate(source, target, paths::add);
+            // parallel enumeration sorts its paths, so results do not depend on parallelism
+            Collections.sort(paths);
+        } else {
+            ParallelPathEnumerator enumerator = new ParallelPathEnumerator(csr, enumerationPool)
+                    .withMaxHops(limits.getMaxHops())
+                    .withMaxPaths(limits.getMaxPaths());
+
+            if (limits.getMaxTotalWeight() != null) {
+                enumerator.withMaxTotalWeight(limits.getMaxTotalWeight());
+            }
+
+            if (limits.getTimeoutMillis() > 0) {
+                enumerator.withTimeout(limits.getTimeoutMillis());
+            }
+
+            paths = enumerator.enumerate(source, target);
+        }
+
+        for (IntPath path : paths) {
+            result.add(toGraphRoute(csr, path));
+        }
+
+        recordPaths("findPathsBidirectional", result.size());
+        return result;
+    }
+
+    /**
+     * Find cheapest paths between two vertices, see {@link PathFinder}
+     * @param name1 name of first vertex
+     * @param name2 name of second vertex
+     * @param count max number of paths to return
+     * @param limits search limits
+     * @return list of paths found, ordered by total weight
+     */
+    public List<GraphRoute> findShortestPaths(String name1, String name2, int count, PathSearchLimits limits) {
+        CsrGraph csr = csrGraph;
+        int source = csr.indexOf(name1);
+        int target = csr.indexOf(name2);
+
+        if (source < 0 || target < 0) {
+            return Collections.emptyList();
+        }
+
+        PathFinder pathFinder = new PathFinder(csr).withBidirectionalSearch(pathSearchProperties.isBidirectional())
+                .withMaxHops(limits.getMaxHops());
+        Landmarks current = landmarks;
+
+        if (current != null && current.isFor(csr)) {
+            pathFinder.withLowerBound(current);
+        }
+
+        if (limits.getMaxTotalWeight() != null) {
+            pathFinder.withMaxTotalWeight(limits.getMaxTotalWeight());
+        }
+
+        if (limits.getTimeoutMillis() > 0) {
+            pathFinder.withTimeout(limits.getTimeoutMillis());
+        }
+
+        List<GraphRoute> result = new ArrayList<>();
+
+        for (IntPath path : pathFinder.shortestPaths(source, target, limits.getMaxPaths() > 0 ? Math.min(count, limits.getMaxPaths()) : count)) {
+            result.add(toGraphRoute(csr, path));
+        }
+
+        recordPaths("findShortestPathsBidirectional", result.size());
+        meterRegistry.summary("graph.vertices.visited", "operation", "findShortestPathsBidirectional",
+                "label", snapshotProperties.getEdgeLabel(), "backend", BACKEND).record(pathFinder.getSettledVertices());
+        return result;
+    }
+
+    /**
+     * Estimate min total weight of paths between two vertices from distances to landmarks, without a search
+     * @param name1 name of first vertex
+     * @param name2 name of second vertex
+     * @return lower bound of total weight, positive infinity if vertices are not connected,
+     * null if landmarks are disabled, or not computed for the current snapshot yet
+     */
+    public Double estimateMinTotalWeight(String name1, String name2) {
+        CsrGraph csr = csrGraph;
+        Landmarks current = landmarks;
+
+        if (current == null || !current.isFor(csr)) {
+            return null;
+        }
+
+        int source = csr.indexOf(name1);
+        int target = csr.indexOf(name2);
+
+        if (source < 0 || target < 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        return current.lowerBound(source, target);
+    }
+
+    /**
+     * Reload the snapshot from the graph and compare it with the current one, report differences to the log.
+     * If they differ, the loaded graph replaces the snapshot
+     * @return differences found, empty if snapshot is consistent
+     */
+    public List<String> checkConsistency() {
+        CsrGraph current;
+        List<String> differences;
+
+        // writers are blocked while loading, otherwise in-flight writes would be reported as differences.
+        // Group commits apply changes after commit without stripes, one in flight may cause a needless replacement
+        for (ReentrantLock stripe : writeStripes) {
+            stripe.lock();
+        }
+
+        try {
+            synchronized (writeLock) {
+                current = csrGraph;
+                CsrGraph loaded = load();
+                differences = current.differences(loaded, MAX_REPORTED_DIFFERENCES);
+
+                if (!differences.isEmpty()) {
+                    csrGraph = loaded;
+                    changesWhileCompacting = null;
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Route graph snapshot consistency check failed", e);
+            return Collections.emptyList();
+        } finally {
+            for (int i = WRITE_STRIPES - 1; i >= 0; i--) {
+                writeStripes[i].unlock();
+            }
+        }
+
+        if (differences.isEmpty()) {
+            LOGGER.info("Route graph snapshot is consistent: {}, ~{} bytes", current, current.estimateMemoryFootprint());
+        } else {
+            meterRegistry.counter("graph.snapshot.inconsistencies", "label", snapshotProperties.getEdgeLabel()).increment();
+            LOGGER.warn("Route graph snapshot differs from the graph, replaced by the graph loaded, first differences: {}", differences);
+            scheduleLandmarks();
+        }
+
+        return differences;
+    }
+
+    /**
+     * Estimate heap size occupied by the snapshot
+     * @return estimated size in bytes, zero if snapshot is disabled
+     */
+    public long estimateMemoryFootprint() {
+        CsrGraph csr = csrGraph;
+        return csr != null ? csr.estimateMemoryFootprint() : 0;
+    }
+
+    private synchronized void foreignWrite() {
+        stale = true;
+        foreignWrites++;
+        scheduleReload(0);
+    }
+
+    private void scheduleReload(long delaySeconds) {
+        // notifications received while reloading schedule another reload, the running one may miss their writes
+        if (reloadScheduled.compareAndSet(false, true)) {
+            reloadExecutor.schedule(this::reloadStale, delaySeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private void reloadStale() {
+        reloadScheduled.set(false);
+        int notified;
+
+        synchronized (this) {
+            notified = foreignWrites;
+        }
+
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            LOGGER.error("Route graph snapshot can't be reloaded after writes of other instances", e);
+            scheduleReload(1);
+            return;
+        }
+
+        synchronized (this) {
+            if (notified == foreignWrites) {
+                stale = false;
+            }
+        }
+    }
+
+    private void scheduleCompaction() {
+        if (compactionScheduled.compareAndSet(false, true)) {
+            reloadExecutor.execute(this::compact);
+        }
+    }
+
+    private void compact() {
+        compactionScheduled.set(false);
+        List<UnaryOperator<CsrGraph>> changes = new ArrayList<>();
+        CsrGraph base;
+
+        synchronized (writeLock) {
+            base = csrGraph;
+            changesWhileCompacting = changes;
+        }
+
+        // the compaction copies the whole graph, writers go on meanwhile
+        long start = System.nanoTime();
+        CsrGraph compacted;
+
+        try {
+            compacted = base.compact();
+        } catch (RuntimeException e) {
+            LOGGER.error("Route graph snapshot compaction failed", e);
+
+            synchronized (writeLock) {
+                if (changesWhileCompacting == changes) {
+                    changesWhileCompacting = null;
+                }
+            }
+
+            return;
+        } finally {
+            meterRegistry.timer("graph.snapshot.compaction", "label", snapshotProperties.getEdgeLabel())
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        synchronized (writeLock) {
+            if (changesWhileCompacting != changes) {
+                // reloaded meanwhile
+                return;
+            }
+
+            for (UnaryOperator<CsrGraph> change : changes) {
+                compacted = change.apply(compacted);
+            }
+
+            csrGraph = compacted;
+            changesWhileCompacting = null;
+        }
+
+        // the compacted graph keeps the distance epoch, landmarks stay valid
+        LOGGER.debug("Route graph snapshot compacted: {}, {} changes replayed", compacted, changes.size());
+    }
+
+    private void scheduleLandmarks() {
+        Landmarks current = landmarks;
+
+        if (current != null && current.isFor(csrGraph)) {
+            return;
+        }
+
+        // changes made while landmarks are computed schedule another computation, bursts of changes are coalesced
+        if (landmarksExecutor != null && landmarksScheduled.compareAndSet(false, true)) {
+            landmarksExecutor.execute(() -> {
+                landmarksScheduled.set(false);
+                computeLandmarks();
+            });
+        }
+    }
+
+    private void computeLandmarks() {
+        try {
+            CsrGraph csr = csrGraph;
+            long start = System.nanoTime();
+            Landmarks computed = Landmarks.select(csr, snapshotProperties.getLandmarks());
+            meterRegistry.timer("graph.landmarks.compute", "label", snapshotProperties.getEdgeLabel())
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            landmarks = computed;
+            LOGGER.debug("Route graph landmarks computed: {}, ~{} bytes", computed, computed.estimateMemoryFootprint());
+        } catch (RuntimeException e) {
+            LOGGER.error("Route graph landmarks computation failed", e);
+        }
+    }
+
+    private CsrGraph load() {
+        return gremlinBackend.loadCsrGraph(transactional,
+                snapshotProperties.getVertexLabel(), snapshotProperties.getEdgeLabel());
+    }
+
+    private void recordPaths(String operation, int count) {
+        meterRegistry.summary("graph.paths", "operation", operation, "label", snapshotProperties.getEdgeLabel(), "backend", BACKEND).record(count);
+    }
+
+    private static GraphRoute toGraphRoute(CsrGraph csr, IntPath path) {
+        GraphRoute graphRoute = new GraphRoute();
+        graphRoute.setTotalWeight(path.getTotalWeight());
+
+        for (int vertex : path.getVertices()) {
+            graphRoute.getVertices().add(csr.nameOf(vertex));
+        }
+
+        return graphRoute;
+    }
+}
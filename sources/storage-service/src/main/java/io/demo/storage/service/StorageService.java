@@ -1,12 +1,18 @@
 package io.demo.storage.service;
 
+import io.demo.storage.domain.GraphEdge;
 import io.demo.storage.domain.GraphRoute;
+import io.demo.storage.domain.GraphVertex;
+import io.demo.storage.domain.PathSearchLimits;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
 
 /**
  * A {@link StorageService} is a core service used for graph manipulations
- * Under the hood, delegates calls to {@link io.demo.storage.util.GremlinManager} utility class
+ * Under the hood, delegates calls to {@link io.demo.storage.util.GremlinBackend}
  */
 public interface StorageService {
 
@@ -24,6 +30,15 @@ public interface StorageService {
      */
     List<String> listAllVertexNamesByLabel(String label);
 
+    /**
+     * Find a page of Vertices with specified label, ordered by name
+     * @param label vertex label
+     * @param after name of the last vertex of previous page, null for the first page
+     * @param limit max number of names to return
+     * @return a list of names
+     */
+    List<String> listVertexNamesByLabel(String label, String after, int limit);
+
     /**
      * Delete Vertex found by label and name
      * @param label vertex label
@@ -53,6 +68,13 @@ public interface StorageService {
      */
     Double edgeExistsBidirectional(String vLabel1, String name1, String vLabel2, String name2, String eLabel);
 
+    /**
+     * Check if many edges exist, return their weights
+     * @param edges edges to check, weights are ignored
+     * @return value of "weight" property of every edge, in the same order, null if there is no such edge
+     */
+    List<Double> edgesExistBidirectional(List<GraphEdge> edges);
+
     /**
      * Delete edge, if exists
      * @param vLabel1 vertex label of first vertex
@@ -70,7 +92,72 @@ public interface StorageService {
      * @param vLabel2 vertex label of second vertex
      * @param name2 name of second vertex
      * @param eLabel edge label
+     * @param limits search limits, restricted by server side limits
      * @return list of paths found
      */
-    List<GraphRoute> findPathsBidirectional(String vLabel1, String name1, String vLabel2, String name2, String eLabel);
+    List<GraphRoute> findPathsBidirectional(String vLabel1, String name1, String vLabel2, String name2, String eLabel, PathSearchLimits limits);
+
+    /**
+     * Find paths between two vertices, pass each path to consumer as soon as it is found
+     * @param vLabel1 vertex label of first vertex
+     * @param name1 name of first vertex
+     * @param vLabel2 vertex label of second vertex
+     * @param name2 name of second vertex
+     * @param eLabel edge label
+     * @param limits search limits, restricted by server side limits
+     * @param consumer receives paths found, returns false to stop the search
+     */
+    void streamPathsBidirectional(String vLabel1, String name1, String vLabel2, String name2, String eLabel, PathSearchLimits limits, Predicate<GraphRoute> consumer);
+
+    /**
+     * Find cheapest paths between two vertices, ordered by total weight
+     * @param vLabel1 vertex label of first vertex
+     * @param name1 name of first vertex
+     * @param vLabel2 vertex label of second vertex
+     * @param name2 name of second vertex
+     * @param eLabel edge label
+     * @param count max number of paths to return
+     * @param limits search limits, restricted by server side limits
+     * @return list of paths found
+     */
+    List<GraphRoute> findShortestPathsBidirectional(String vLabel1, String name1, String vLabel2, String name2, String eLabel, int count, PathSearchLimits limits);
+
+    /**
+     * Estimate min total weight of paths between two vertices, without a path search
+     * @param vLabel1 vertex label of first vertex
+     * @param name1 name of first vertex
+     * @param vLabel2 vertex label of second vertex
+     * @param name2 name of second vertex
+     * @param eLabel edge label
+     * @return lower bound of total weight, positive infinity if vertices are not connected, null if no estimate is available
+     */
+    Double estimateMinTotalWeight(String vLabel1, String name1, String vLabel2, String name2, String eLabel);
+
+    /**
+     * Create vertices in bulk, within a single transaction. Vertices which exist already are skipped
+     * @param chunks chunks of vertices, may block waiting for the next chunk
+     * @param chunkImported receives number of vertices created from each chunk, after the chunk is written
+     * @return number of vertices created
+     */
+    long importVertices(Iterator<List<GraphVertex>> chunks, IntConsumer chunkImported);
+
+    /**
+     * Create edges in bulk, within a single transaction. If edge exists already, update it's "weight" property
+     * @param chunks chunks of edges, may block waiting for the next chunk
+     * @param chunkImported receives number of edges created or updated from each chunk, after the chunk is written
+     * @return number of edges created or updated
+     */
+    long importEdges(Iterator<List<GraphEdge>> chunks, IntConsumer chunkImported);
+
+    /**
+     * Get current graph version, read from the database, see {@link GraphVersion}
+     * @return graph version
+     */
+    long getGraphVersion();
+
+    /**
+     * Check if graph version is shared by all instances, otherwise each instance has its own graph and version
+     * @return true if version is shared
+     */
+    boolean isGraphVersionShared();
 }
@@ -1,14 +1,33 @@
 package io.demo.storage.service;
 
+import io.demo.storage.config.LookupProperties;
+import io.demo.storage.config.PathSearchProperties;
+import io.demo.storage.domain.GraphEdge;
 import io.demo.storage.domain.GraphRoute;
-import io.demo.storage.util.GremlinManager;
+import io.demo.storage.domain.GraphVertex;
+import io.demo.storage.domain.PathSearchLimits;
+import io.demo.storage.graph.CsrGraph;
+import io.demo.storage.util.GremlinBackend;
 import org.apache.tinkerpop.gremlin.structure.Graph;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.umlg.sqlg.structure.SqlgGraph;
 
 import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 @Service
 public class StorageServiceImpl implements StorageService {
@@ -16,6 +35,30 @@ public class StorageServiceImpl implements StorageService {
     @Autowired
     private Graph graph;
 
+    @Autowired
+    private GremlinBackend gremlinBackend;
+
+    @Autowired
+    private PathSearchProperties pathSearchProperties;
+
+    @Autowired
+    private LookupProperties lookupProperties;
+
+    @Autowired
+    private RouteGraphSnapshot routeGraphSnapshot;
+
+    @Autowired
+    private GraphVersion graphVersion;
+
+    @Autowired
+    private VertexIdCache vertexIdCache;
+
+    @Autowired
+    private GroupCommitWriter groupCommitWriter;
+
+    @Autowired
+    private EdgeFilter edgeFilter;
+
     private boolean transactional = true;
 
     @PostConstruct
@@ -29,36 +72,285 @@ public class StorageServiceImpl implements StorageService {
 
     @Override
     public void createVertex(String label, String name) {
-        GremlinManager.createVertex(graph, transactional, label, name);
+        write("createVertex", label, Collections.singletonList(name), commit -> gremlinBackend.createVertex(commit, label, name),
+                routeGraphSnapshot.coversVertex(label) ? csr -> csr.withVertex(name) : null,
+                id -> vertexIdCache.put(label, name, id));
     }
 
     @Override
     public List<String> listAllVertexNamesByLabel(String label) {
-        return GremlinManager.listAllVertexNamesByLabel(graph, transactional, label);
+        return gremlinBackend.listAllVertexNamesByLabel(transactional, label);
+    }
+
+    @Override
+    public List<String> listVertexNamesByLabel(String label, String after, int limit) {
+        return gremlinBackend.listVertexNamesByLabel(transactional, label, after, limit);
     }
 
     @Override
     public void deleteVertex(String label, String name) {
-        GremlinManager.deleteVertex(graph, transactional, label, name);
+        write("deleteVertex", label, Collections.singletonList(name), commit -> {
+            gremlinBackend.deleteVertex(commit, label, name);
+            return null;
+        }, routeGraphSnapshot.coversVertex(label) ? csr -> csr.withoutVertex(name) : null, ignored -> {
+            if (edgeFilter.coversVertex(label)) {
+                edgeFilter.removed();
+            }
+
+            vertexIdCache.invalidate(label, name);
+        });
     }
 
     @Override
     public void createEdgeBidirectional(String vLabel1, String name1, String vLabel2, String name2, String eLabel, double weight) {
-        GremlinManager.createEdgeBidirectional(graph, transactional, vLabel1, name1, vLabel2, name2, eLabel, weight);
+        // the write fails if it starts from an id of no vertex, it is written only if both vertices are found
+        withIds(vLabel1, name1, vLabel2, name2, (id1, id2) -> write("createEdgeBidirectional", eLabel, Arrays.asList(name1, name2), commit -> {
+            gremlinBackend.createEdgeBidirectional(commit, vLabel1, name1, id1, vLabel2, name2, id2, eLabel, weight);
+            return Boolean.TRUE;
+        }, routeGraphSnapshot.coversEdge(vLabel1, vLabel2, eLabel) ? csr -> csr.withEdge(name1, name2, weight) : null, ignored -> {
+            if (edgeFilter.covers(vLabel1, vLabel2, eLabel)) {
+                edgeFilter.added(eLabel, name1, name2);
+            }
+        }), Boolean::booleanValue);
     }
 
     @Override
     public Double edgeExistsBidirectional(String vLabel1, String name1, String vLabel2, String name2, String eLabel) {
-        return GremlinManager.edgeExistsBidirectional(graph, transactional, vLabel1, name1, vLabel2, name2, eLabel);
+        if (routeGraphSnapshot.answers(vLabel1, vLabel2, eLabel)) {
+            return routeGraphSnapshot.edgeWeight(name1, name2);
+        }
+
+        boolean filtered = edgeFilter.covers(vLabel1, vLabel2, eLabel);
+
+        if (filtered && !edgeFilter.mightExist(eLabel, name1, name2)) {
+            return null;
+        }
+
+        Double weight = withIds(vLabel1, name1, vLabel2, name2, (id1, id2) -> gremlinBackend.edgeExistsBidirectional(transactional,
+                vLabel1, name1, id1, vLabel2, name2, id2, eLabel), Objects::nonNull);
+
+        if (filtered && weight == null) {
+            edgeFilter.falsePositive();
+        }
+
+        return weight;
+    }
+
+    @Override
+    public List<Double> edgesExistBidirectional(List<GraphEdge> edges) {
+        Double[] weights = new Double[edges.size()];
+        // positions of edges not answered by the snapshot or the edge filter
+        List<Integer> queried = new ArrayList<>();
+        long checkStarted = System.nanoTime();
+
+        for (int i = 0; i < edges.size(); i++) {
+            GraphEdge edge = edges.get(i);
+            String vLabel1 = edge.getVertex1().getLabel();
+            String vLabel2 = edge.getVertex2().getLabel();
+
+            if (routeGraphSnapshot.answers(vLabel1, vLabel2, edge.getLabel())) {
+                weights[i] = routeGraphSnapshot.edgeWeight(edge.getVertex1().getName(), edge.getVertex2().getName());
+            } else if (!edgeFilter.covers(vLabel1, vLabel2, edge.getLabel())
+                    || edgeFilter.mightExist(edge.getLabel(), edge.getVertex1().getName(), edge.getVertex2().getName(), checkStarted)) {
+                queried.add(i);
+            }
+        }
+
+        for (int from = 0; from < queried.size(); from += lookupProperties.getChunkSize()) {
+            List<Integer> chunk = queried.subList(from, Math.min(from + lookupProperties.getChunkSize(), queried.size()));
+            List<GraphEdge> chunkEdges = new ArrayList<>(chunk.size());
+            chunk.forEach(i -> chunkEdges.add(edges.get(i)));
+            List<Double> found = gremlinBackend.edgesExistBidirectional(transactional, chunkEdges);
+
+            for (int j = 0; j < chunk.size(); j++) {
+                GraphEdge edge = chunkEdges.get(j);
+                weights[chunk.get(j)] = found.get(j);
+
+                if (found.get(j) == null && edgeFilter.covers(edge.getVertex1().getLabel(), edge.getVertex2().getLabel(), edge.getLabel())) {
+                    edgeFilter.falsePositive();
+                }
+            }
+        }
+
+        return Arrays.asList(weights);
     }
 
     @Override
     public void deleteEdgeBidirectional(String vLabel1, String name1, String vLabel2, String name2, String eLabel) {
-        GremlinManager.deleteEdgeBidirectional(graph, transactional, vLabel1, name1, vLabel2, name2, eLabel);
+        // vertices are looked up by name, from a stale id the deletion would do nothing, unnoticed
+        write("deleteEdgeBidirectional", eLabel, Arrays.asList(name1, name2), commit -> {
+            gremlinBackend.deleteEdgeBidirectional(commit, vLabel1, name1, null, vLabel2, name2, null, eLabel);
+            return null;
+        }, routeGraphSnapshot.coversEdge(vLabel1, vLabel2, eLabel) ? csr -> csr.withoutEdge(name1, name2) : null, ignored -> {
+            if (edgeFilter.covers(vLabel1, vLabel2, eLabel)) {
+                edgeFilter.removed();
+            }
+        });
+    }
+
+    @Override
+    public List<GraphRoute> findPathsBidirectional(String vLabel1, String name1, String vLabel2, String name2, String eLabel, PathSearchLimits limits) {
+        if (routeGraphSnapshot.answers(vLabel1, vLabel2, eLabel)) {
+            return routeGraphSnapshot.findPaths(name1, name2, limits.restrictedBy(pathSearchProperties.toLimits()));
+        }
+
+        return withIds(vLabel1, name1, vLabel2, name2, (id1, id2) -> gremlinBackend.findPathsBidirectional(transactional,
+                vLabel1, name1, id1, vLabel2, name2, id2, eLabel, limits.restrictedBy(pathSearchProperties.toLimits())),
+                paths -> !paths.isEmpty());
     }
 
     @Override
-    public List<GraphRoute> findPathsBidirectional(String vLabel1, String name1, String vLabel2, String name2, String eLabel) {
-        return GremlinManager.findPathsBidirectional(graph, transactional, vLabel1, name1, vLabel2, name2, eLabel);
+    public void streamPathsBidirectional(String vLabel1, String name1, String vLabel2, String name2, String eLabel, PathSearchLimits limits, Predicate<GraphRoute> consumer) {
+        if (routeGraphSnapshot.answers(vLabel1, vLabel2, eLabel)) {
+            routeGraphSnapshot.streamPaths(name1, name2, limits.restrictedBy(pathSearchProperties.toLimits()), consumer);
+            return;
+        }
+
+        boolean[] streamed = new boolean[1];
+        withIds(vLabel1, name1, vLabel2, name2, (id1, id2) -> {
+            gremlinBackend.streamPathsBidirectional(transactional,
+                    vLabel1, name1, id1, vLabel2, name2, id2, eLabel, limits.restrictedBy(pathSearchProperties.toLimits()), route -> {
+                        streamed[0] = true;
+                        return consumer.test(route);
+                    });
+            return streamed[0];
+        }, Boolean::booleanValue);
+    }
+
+    @Override
+    public List<GraphRoute> findShortestPathsBidirectional(String vLabel1, String name1, String vLabel2, String name2, String eLabel, int count, PathSearchLimits limits) {
+        if (routeGraphSnapshot.answers(vLabel1, vLabel2, eLabel)) {
+            return routeGraphSnapshot.findShortestPaths(name1, name2, count, limits.restrictedBy(pathSearchProperties.toLimits()));
+        }
+
+        return withIds(vLabel1, name1, vLabel2, name2, (id1, id2) -> gremlinBackend.findShortestPathsBidirectional(transactional,
+                vLabel1, name1, id1, vLabel2, name2, id2, eLabel, count, limits.restrictedBy(pathSearchProperties.toLimits())),
+                paths -> !paths.isEmpty());
+    }
+
+    @Override
+    public Double estimateMinTotalWeight(String vLabel1, String name1, String vLabel2, String name2, String eLabel) {
+        // landmarks are kept by the snapshot only
+        return routeGraphSnapshot.answers(vLabel1, vLabel2, eLabel) ? routeGraphSnapshot.estimateMinTotalWeight(name1, name2) : null;
+    }
+
+    @Override
+    public long importVertices(Iterator<List<GraphVertex>> chunks, IntConsumer chunkImported) {
+        try {
+            return gremlinBackend.importVertices(transactional, chunks, chunkImported);
+        } finally {
+            afterImport();
+        }
+    }
+
+    @Override
+    public long importEdges(Iterator<List<GraphEdge>> chunks, IntConsumer chunkImported) {
+        try {
+            return edgeFilter.importing(() -> gremlinBackend.importEdges(transactional, edgeFilter.adding(chunks), chunkImported));
+        } finally {
+            afterImport();
+        }
+    }
+
+    @Override
+    public long getGraphVersion() {
+        return graphVersion.refresh();
+    }
+
+    @Override
+    public boolean isGraphVersionShared() {
+        return graphVersion.isShared();
+    }
+
+    /**
+     * Perform single write operation: in a group with concurrent writes, if group commit is enabled, or on its own.
+     * The write is committed along with a new {@link GraphVersion}, which is published once views of this instance reflect the write.
+     * If the snapshot covers labels of the write, the same change is applied to the snapshot, in the same order as to the graph
+     * @param operation operation name, for commit metrics
+     * @param label vertex or edge label, for commit metrics
+     * @param names names of vertices changed by the write, writes sharing none of them change the snapshot concurrently
+     * @param write write operation, takes a flag telling if it should commit, always false here
+     * @param change change of the snapshot, null if the snapshot does not cover labels of the write
+     * @param committed updates other views after commit, takes the result of write operation
+     * @return result of write operation
+     */
+    private <T> T write(String operation, String label, List<String> names, Function<Boolean, T> write,
+                        UnaryOperator<CsrGraph> change, Consumer<T> committed) {
+        if (groupCommitWriter.isEnabled()) {
+            return groupCommitWriter.write(() -> write.apply(false), result -> {
+                if (change != null) {
+                    routeGraphSnapshot.apply(change);
+                }
+
+                committed.accept(result);
+            });
+        }
+
+        Long[] version = new Long[1];
+        Supplier<T> commit = () -> {
+            try {
+                T result = write.apply(false);
+                version[0] = graphVersion.commit(operation, label);
+                return result;
+            } catch (RuntimeException e) {
+                if (transactional) {
+                    graph.tx().rollback();
+                }
+
+                throw e;
+            }
+        };
+
+        try {
+            T result = change != null ? routeGraphSnapshot.write(commit, change, names) : commit.get();
+            committed.accept(result);
+            return result;
+        } finally {
+            if (version[0] != null) {
+                graphVersion.publish(version[0]);
+            }
+        }
+    }
+
+    private Object idOf(String label, String name) {
+        return vertexIdCache.idOf(label, name, () -> gremlinBackend.findVertexId(transactional, label, name));
+    }
+
+    /**
+     * Run an operation on two vertices, starting from their ids, see {@link VertexIdCache}. If it found nothing, or failed
+     * to find a vertex, ids are checked by label and name, and the operation runs again if any of them was stale
+     * @param operation takes ids of both vertices, null if not known
+     * @param found tells if the result proves that vertices were found
+     * @return result of operation
+     */
+    private <T> T withIds(String vLabel1, String name1, String vLabel2, String name2, BiFunction<Object, Object, T> operation, Predicate<T> found) {
+        Object id1 = idOf(vLabel1, name1);
+        Object id2 = idOf(vLabel2, name2);
+
+        try {
+            T result = operation.apply(id1, id2);
+
+            if (found.test(result) || !isStale(vLabel1, name1, id1, vLabel2, name2, id2)) {
+                return result;
+            }
+        } catch (NoSuchElementException e) {
+            if (!isStale(vLabel1, name1, id1, vLabel2, name2, id2)) {
+                throw e;
+            }
+        }
+
+        return operation.apply(idOf(vLabel1, name1), idOf(vLabel2, name2));
+    }
+
+    private boolean isStale(String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2) {
+        boolean stale1 = vertexIdCache.isStale(vLabel1, name1, id1, () -> gremlinBackend.findVertexId(transactional, vLabel1, name1));
+        boolean stale2 = vertexIdCache.isStale(vLabel2, name2, id2, () -> gremlinBackend.findVertexId(transactional, vLabel2, name2));
+        return stale1 || stale2;
+    }
+
+    private void afterImport() {
+        // snapshot is reloaded before version changes, so clients never cache stale results under the new version
+        routeGraphSnapshot.reload();
+        graphVersion.publish(graphVersion.commit("import", "all"));
     }
 }
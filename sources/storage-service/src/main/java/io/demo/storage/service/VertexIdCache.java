@@ -0,0 +1,147 @@
+package io.demo.storage.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.demo.storage.config.VertexIdCacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A {@link VertexIdCache} is a bounded cache of vertex ids by vertex label and name.
+ * Traversals start from a cached id instead of looking the vertex up by name, which saves a query per vertex per operation.
+ * Only existing vertices are cached, so lookups of unknown names always go to the graph.
+ * A vertex deleted and created again through another storage-service instance gets a new id, the cached one points to no vertex.
+ * Operations which found nothing from a cached id check it with {@link #isStale}, which evicts it, and run again by the current id.
+ * Metrics: "cache.*" with cache "vertex.ids", "vertex.id.cache.hit.ratio", "vertex.id.cache.stale" stale ids evicted
+ */
+@Component
+public class VertexIdCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VertexIdCache.class);
+
+    @Autowired
+    private VertexIdCacheProperties vertexIdCacheProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<List<String>, Object> cache;
+    private Counter staleIds;
+    private ScheduledExecutorService statsExecutor;
+
+    @PostConstruct
+    private void init() {
+        if (!vertexIdCacheProperties.isEnabled()) {
+            return;
+        }
+
+        cache = Caffeine.newBuilder()
+                .maximumSize(vertexIdCacheProperties.getMaxSize())
+                .expireAfterWrite(vertexIdCacheProperties.getTtlSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "vertex.ids");
+        Gauge.builder("vertex.id.cache.hit.ratio", this, vertexIdCache -> vertexIdCache.stats().hitRate()).register(meterRegistry);
+        staleIds = meterRegistry.counter("vertex.id.cache.stale");
+
+        long interval = vertexIdCacheProperties.getStatsLogIntervalSeconds();
+
+        if (interval > 0) {
+            statsExecutor = Executors.newSingleThreadScheduledExecutor();
+            statsExecutor.scheduleWithFixedDelay(() -> LOGGER.info("Vertex id cache: {} entries, {}", cache.estimatedSize(), stats()),
+                    interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    private void destroy() {
+        if (statsExecutor != null) {
+            statsExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Get id of a vertex, look it up on cache miss
+     * @param label vertex label
+     * @param name vertex name
+     * @param lookup finds vertex id in the graph, returns null if there is no such vertex
+     * @return vertex id, null if vertex does not exist, or cache is disabled
+     */
+    public Object idOf(String label, String name, Supplier<Object> lookup) {
+        if (cache == null) {
+            // traversals look vertices up by name themselves, no point in a separate lookup
+            return null;
+        }
+
+        // the lookup runs atomically with other changes of the key, an invalidation after deletion waits for it,
+        // so an id read before the deletion is not cached after it; null results are not cached
+        return cache.get(Arrays.asList(label, name), key -> lookup.get());
+    }
+
+    /**
+     * Check an id returned by {@link #idOf}, after an operation starting from it found nothing, evict it if it is stale
+     * @param label vertex label
+     * @param name vertex name
+     * @param id id used by the operation
+     * @param lookup finds vertex id in the graph, returns null if there is no such vertex
+     * @return true if the id was stale, the operation should run again with the id returned by idOf now
+     */
+    public boolean isStale(String label, String name, Object id, Supplier<Object> lookup) {
+        if (cache == null || id == null || Objects.equals(id, lookup.get())) {
+            return false;
+        }
+
+        cache.asMap().remove(Arrays.asList(label, name), id);
+        staleIds.increment();
+        LOGGER.debug("Stale id {} of vertex {} {} evicted", id, label, name);
+        return true;
+    }
+
+    /**
+     * Remember id of a created vertex
+     * @param label vertex label
+     * @param name vertex name
+     * @param id vertex id
+     */
+    public void put(String label, String name, Object id) {
+        if (cache != null && id != null) {
+            cache.put(Arrays.asList(label, name), id);
+        }
+    }
+
+    /**
+     * Forget id of a deleted vertex
+     * @param label vertex label
+     * @param name vertex name
+     */
+    public void invalidate(String label, String name) {
+        if (cache != null) {
+            cache.invalidate(Arrays.asList(label, name));
+        }
+    }
+
+    /**
+     * Get cache statistics, including hit ratio
+     * @return statistics, empty if cache is disabled
+     */
+    public CacheStats stats() {
+        return cache != null ? cache.stats() : CacheStats.empty();
+    }
+}
@@ -0,0 +1,37 @@
+package io.demo.storage.service.grpc;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Categories of storage-service methods, each of them has its own concurrency limit, so expensive path searches
+ * can't starve point reads and writes
+ */
+public enum CallCategory {
+    // batch lookups are bounded by storage.lookup.max-edges only, they must not take slots of point reads
+    SEARCH("findPathsBidirectional", "findPathsBidirectionalStream", "findShortestPathsBidirectional", "edgesExistBidirectional"),
+    WRITE("createVertex", "deleteVertex", "createEdgeBidirectional", "deleteEdgeBidirectional", "importVertices", "importEdges"),
+    READ;
+
+    private final Set<String> methods;
+
+    CallCategory(String... methods) {
+        this.methods = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(methods)));
+    }
+
+    /**
+     * @param methodName gRPC method name, without service name
+     * @return category of method, methods not listed are point reads
+     */
+    public static CallCategory of(String methodName) {
+        for (CallCategory category : values()) {
+            if (category.methods.contains(methodName)) {
+                return category;
+            }
+        }
+
+        return READ;
+    }
+}
@@ -0,0 +1,118 @@
+package io.demo.storage.service.grpc;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+
+/**
+ * Inbound side of a client streaming call, which groups received messages into chunks for a consumer thread.
+ * Inbound flow control is manual: the next chunk is requested from the client only when the consumer takes the current one,
+ * so at most two chunks are kept in memory regardless of how fast the client sends
+ * @param <T> type of received messages
+ * @param <D> type of chunk elements
+ */
+class ChunkedRequestObserver<T, D> implements StreamObserver<T>, Iterator<List<D>> {
+
+    private static final List<Object> END = Collections.emptyList();
+
+    private final ServerCallStreamObserver<?> serverObserver;
+    private final int chunkSize;
+    private final Function<T, D> mapper;
+    private final BlockingQueue<Object> chunks = new LinkedBlockingQueue<>();
+
+    private List<D> receiving;
+    private Object next;
+    private volatile boolean failed;
+
+    /**
+     * Must be created inside of the call handler, before it returns
+     * @param serverObserver outbound side of the call
+     * @param chunkSize number of messages in a chunk
+     * @param mapper converts received messages to chunk elements
+     */
+    ChunkedRequestObserver(ServerCallStreamObserver<?> serverObserver, int chunkSize, Function<T, D> mapper) {
+        this.serverObserver = serverObserver;
+        this.chunkSize = chunkSize;
+        this.mapper = mapper;
+        this.receiving = new ArrayList<>(chunkSize);
+        serverObserver.disableAutoInboundFlowControl();
+        serverObserver.request(chunkSize);
+    }
+
+    @Override
+    public void onNext(T value) {
+        receiving.add(mapper.apply(value));
+
+        if (receiving.size() == chunkSize) {
+            chunks.add(receiving);
+            receiving = new ArrayList<>(chunkSize);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        failed = true;
+        chunks.add(t);
+    }
+
+    @Override
+    public void onCompleted() {
+        if (!receiving.isEmpty()) {
+            chunks.add(receiving);
+        }
+
+        chunks.add(END);
+    }
+
+    /**
+     * Check if the call failed on client side, or was cancelled
+     * @return true if failed
+     */
+    boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Block until the next chunk is received, or the client completes the call
+     * @return true if there is one more chunk
+     */
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = chunks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Status.CANCELLED.withDescription("import interrupted").asRuntimeException();
+            }
+        }
+
+        if (next instanceof Throwable) {
+            throw Status.CANCELLED.withDescription("import failed on client side").withCause((Throwable) next).asRuntimeException();
+        }
+
+        return next != END;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<D> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        List<D> chunk = (List<D>) next;
+        next = null;
+        serverObserver.request(chunkSize);
+        return chunk;
+    }
+}
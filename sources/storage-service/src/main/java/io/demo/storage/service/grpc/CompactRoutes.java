@@ -0,0 +1,58 @@
+package io.demo.storage.service.grpc;
+
+import io.demo.storage.domain.GraphRoute;
+import io.demo.storage.service.grpc.domain.CompactGraphRoute;
+import io.demo.storage.service.grpc.domain.FindPathsBidirectionalResponse;
+import io.demo.storage.service.grpc.domain.RouteEncoding;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary encoding of paths of {@link FindPathsBidirectionalResponse}, see {@link RouteEncoding#COMPACT}.
+ * Alternative paths between the same vertices share most of their vertices, so repeated names make most of a response
+ * with {@link RouteEncoding#NAMES}. Here every name is sent once, in order of first appearance, and paths are packed indices of names
+ */
+public final class CompactRoutes {
+
+    private CompactRoutes() {
+    }
+
+    /**
+     * Create response with paths encoded as requested
+     * @param paths paths
+     * @param encoding route encoding
+     * @return response
+     */
+    public static FindPathsBidirectionalResponse encode(List<GraphRoute> paths, RouteEncoding encoding) {
+        FindPathsBidirectionalResponse.Builder builder = FindPathsBidirectionalResponse.newBuilder();
+
+        if (encoding != RouteEncoding.COMPACT) {
+            paths.forEach(path -> builder.addPaths(StorageServiceGrpcImpl.toGrpcRoute(path)));
+            return builder.build();
+        }
+
+        Map<String, Integer> indexes = new HashMap<>();
+
+        for (GraphRoute path : paths) {
+            CompactGraphRoute.Builder route = CompactGraphRoute.newBuilder().setTotalWeight(path.getTotalWeight());
+
+            for (String name : path.getVertices()) {
+                Integer index = indexes.get(name);
+
+                if (index == null) {
+                    index = indexes.size();
+                    indexes.put(name, index);
+                    builder.addNames(name);
+                }
+
+                route.addVertices(index);
+            }
+
+            builder.addCompactPaths(route);
+        }
+
+        return builder.build();
+    }
+}
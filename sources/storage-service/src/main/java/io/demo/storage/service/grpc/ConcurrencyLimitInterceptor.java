@@ -0,0 +1,188 @@
+package io.demo.storage.service.grpc;
+
+import io.demo.storage.config.ConcurrencyProperties;
+import io.demo.storage.config.GroupCommitProperties;
+import io.grpc.Context;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.lognet.springboot.grpc.GRpcGlobalInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits concurrency of calls by {@link CallCategory}. Each category has a fixed number of threads, which run listener callbacks
+ * of its calls, and a bound on calls in flight: running, waiting for a thread, or streaming responses.
+ * A call above the bound is closed with RESOURCE_EXHAUSTED before it reaches the service, so overload is shed instead of queued.
+ * Calls cancelled while waiting, e.g. by deadline, are skipped. With group commit, write calls wait for the commit of their group
+ * on their threads, so writes get at least max group size threads, otherwise groups could never grow beyond the thread count.
+ * Metrics: "grpc.server.queued" calls waiting for a thread, "grpc.server.active" busy threads, by category,
+ * "grpc.server.rejected" rejected calls, by category and method
+ */
+@GRpcGlobalInterceptor
+@Order(20)
+public class ConcurrencyLimitInterceptor implements ServerInterceptor {
+
+    @Autowired
+    private ConcurrencyProperties concurrencyProperties;
+
+    @Autowired
+    private GroupCommitProperties groupCommitProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<CallCategory, Bulkhead> bulkheads = new EnumMap<>(CallCategory.class);
+
+    @PostConstruct
+    private void init() {
+        bulkheads.put(CallCategory.SEARCH, new Bulkhead(CallCategory.SEARCH, concurrencyProperties.getSearch()));
+        bulkheads.put(CallCategory.READ, new Bulkhead(CallCategory.READ, concurrencyProperties.getRead()));
+        ConcurrencyProperties.Limit write = concurrencyProperties.getWrite();
+
+        if (groupCommitProperties.isEnabled() && groupCommitProperties.getMaxSize() > write.getMaxConcurrent()) {
+            // waiting writers hold no database connection, the group is written by a single connection
+            write = new ConcurrencyProperties.Limit(groupCommitProperties.getMaxSize(), write.getMaxQueued());
+        }
+
+        bulkheads.put(CallCategory.WRITE, new Bulkhead(CallCategory.WRITE, write));
+    }
+
+    @PreDestroy
+    private void destroy() {
+        bulkheads.values().forEach(bulkhead -> bulkhead.executor.shutdownNow());
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        if (!concurrencyProperties.isEnabled()) {
+            return next.startCall(call, headers);
+        }
+
+        String method = call.getMethodDescriptor().getFullMethodName();
+        String methodName = method.substring(method.lastIndexOf('/') + 1);
+        Bulkhead bulkhead = bulkheads.get(CallCategory.of(methodName));
+
+        if (!bulkhead.tryAcquire()) {
+            meterRegistry.counter("grpc.server.rejected", "category", bulkhead.name, "method", methodName).increment();
+            call.close(Status.RESOURCE_EXHAUSTED.withDescription("Too many " + bulkhead.name + " calls in flight, limit is " + bulkhead.maxInFlight),
+                    new Metadata());
+            return new ServerCall.Listener<ReqT>() { };
+        }
+
+        ServerCall.Listener<ReqT> delegate;
+
+        try {
+            delegate = next.startCall(call, headers);
+        } catch (RuntimeException e) {
+            bulkhead.release();
+            throw e;
+        }
+
+        Executor serial = new SerialExecutor(bulkhead.executor);
+        Context context = Context.current();
+
+        return new ServerCall.Listener<ReqT>() {
+            @Override
+            public void onMessage(ReqT message) {
+                serial.execute(context.wrap(() -> {
+                    if (!context.isCancelled()) {
+                        delegate.onMessage(message);
+                    }
+                }));
+            }
+
+            @Override
+            public void onHalfClose() {
+                serial.execute(context.wrap(() -> {
+                    if (!context.isCancelled()) {
+                        delegate.onHalfClose();
+                    }
+                }));
+            }
+
+            @Override
+            public void onReady() {
+                serial.execute(context.wrap(delegate::onReady));
+            }
+
+            @Override
+            public void onCancel() {
+                serial.execute(context.wrap(() -> {
+                    try {
+                        delegate.onCancel();
+                    } finally {
+                        bulkhead.release();
+                    }
+                }));
+            }
+
+            @Override
+            public void onComplete() {
+                serial.execute(context.wrap(() -> {
+                    try {
+                        delegate.onComplete();
+                    } finally {
+                        bulkhead.release();
+                    }
+                }));
+            }
+        };
+    }
+
+    private class Bulkhead {
+        final String name;
+        final int maxInFlight;
+        final ThreadPoolExecutor executor;
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        Bulkhead(CallCategory category, ConcurrencyProperties.Limit limit) {
+            name = category.name().toLowerCase(Locale.ROOT);
+            maxInFlight = limit.getMaxConcurrent() + limit.getMaxQueued();
+            AtomicInteger threads = new AtomicInteger();
+            // queue is bounded by calls in flight
+            executor = new ThreadPoolExecutor(limit.getMaxConcurrent(), limit.getMaxConcurrent(), 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "grpc-" + name + "-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            Gauge.builder("grpc.server.queued", executor, e -> e.getQueue().size()).tag("category", name).register(meterRegistry);
+            Gauge.builder("grpc.server.active", executor, ThreadPoolExecutor::getActiveCount).tag("category", name).register(meterRegistry);
+        }
+
+        boolean tryAcquire() {
+            while (true) {
+                int current = inFlight.get();
+
+                if (current >= maxInFlight) {
+                    return false;
+                }
+
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            inFlight.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package io.demo.storage.service.grpc;
+
+import io.demo.storage.service.GraphVersion;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import org.lognet.springboot.grpc.GRpcGlobalInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Adds graph version to response headers of every call: "graph-version" is the version when response is sent,
+ * "graph-version-before" is the version when call started. If they are equal, no write completed during the call,
+ * so the response reflects that version of the graph and may be cached by clients.
+ * "graph-version" is added to trailers as well, since headers of streaming calls are sent before the call is over
+ */
+@GRpcGlobalInterceptor
+public class GraphVersionInterceptor implements ServerInterceptor {
+
+    public static final Metadata.Key<String> GRAPH_VERSION = Metadata.Key.of("graph-version", Metadata.ASCII_STRING_MARSHALLER);
+    public static final Metadata.Key<String> GRAPH_VERSION_BEFORE = Metadata.Key.of("graph-version-before", Metadata.ASCII_STRING_MARSHALLER);
+
+    @Autowired
+    private GraphVersion graphVersion;
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        long before = graphVersion.get();
+
+        return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT>(call) {
+            @Override
+            public void sendHeaders(Metadata responseHeaders) {
+                responseHeaders.put(GRAPH_VERSION_BEFORE, Long.toString(before));
+                responseHeaders.put(GRAPH_VERSION, Long.toString(graphVersion.get()));
+                super.sendHeaders(responseHeaders);
+            }
+
+            @Override
+            public void close(Status status, Metadata trailers) {
+                trailers.put(GRAPH_VERSION, Long.toString(graphVersion.get()));
+                super.close(status, trailers);
+            }
+        }, headers);
+    }
+}
@@ -0,0 +1,61 @@
+package io.demo.storage.service.grpc;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.lognet.springboot.grpc.GRpcGlobalInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Times every call of {@link StorageServiceGrpcImpl}, from its start to its close, including time spent streaming responses.
+ * Calls cancelled by clients (or by deadlines) are timed up to the cancellation with status CANCELLED.
+ * Timer "grpc.server.calls" is tagged with method name and response status code.
+ * It is the outermost interceptor, so calls rejected by {@link ConcurrencyLimitInterceptor} are timed as well
+ */
+@GRpcGlobalInterceptor
+@Order(10)
+public class GrpcServerMetricsInterceptor implements ServerInterceptor {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String method = call.getMethodDescriptor().getFullMethodName();
+        String methodName = method.substring(method.lastIndexOf('/') + 1);
+        // a cancelled call may be closed after the cancellation, or not at all, it is timed once
+        AtomicBoolean timed = new AtomicBoolean();
+
+        ServerCall.Listener<ReqT> listener = next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT>(call) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                stop(sample, timed, methodName, status.getCode());
+                super.close(status, trailers);
+            }
+        }, headers);
+
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT>(listener) {
+            @Override
+            public void onCancel() {
+                stop(sample, timed, methodName, Status.Code.CANCELLED);
+                super.onCancel();
+            }
+        };
+    }
+
+    private void stop(Timer.Sample sample, AtomicBoolean timed, String methodName, Status.Code code) {
+        if (timed.compareAndSet(false, true)) {
+            sample.stop(meterRegistry.timer("grpc.server.calls", "method", methodName, "status", code.name()));
+        }
+    }
+}
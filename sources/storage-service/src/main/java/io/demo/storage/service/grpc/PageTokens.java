@@ -0,0 +1,45 @@
+package io.demo.storage.service.grpc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque page tokens of vertex listing. A token holds the name of the last vertex of a page, the next page starts after it.
+ * Clients must not rely on token contents, the prefix allows to change the cursor later and still reject old tokens
+ */
+final class PageTokens {
+
+    private static final String NAME_CURSOR = "n:";
+
+    private PageTokens() {
+    }
+
+    /**
+     * Create token of the page following specified vertex
+     * @param lastName name of the last vertex of a page
+     * @return page token
+     */
+    static String encode(String lastName) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((NAME_CURSOR + lastName).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Get the name of the vertex the page starts after
+     * @param token page token, empty for the first page
+     * @return vertex name, null for the first page
+     * @throws IllegalArgumentException if token is not a valid page token
+     */
+    static String decode(String token) {
+        if (token.isEmpty()) {
+            return null;
+        }
+
+        String cursor = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+
+        if (!cursor.startsWith(NAME_CURSOR)) {
+            throw new IllegalArgumentException("Invalid page token " + token);
+        }
+
+        return cursor.substring(NAME_CURSOR.length());
+    }
+}
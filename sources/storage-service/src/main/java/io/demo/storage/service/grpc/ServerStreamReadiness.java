@@ -0,0 +1,53 @@
+package io.demo.storage.service.grpc;
+
+import io.grpc.stub.ServerCallStreamObserver;
+
+/**
+ * Outbound flow control of a server streaming call. A producer thread waits in {@link #awaitReady()}
+ * until transport buffers have room, instead of queueing an unbounded number of messages.
+ * The producer must not be a gRPC callback thread, otherwise onReady handler is never delivered while it waits
+ */
+class ServerStreamReadiness {
+
+    private final ServerCallStreamObserver<?> observer;
+    private final Object lock = new Object();
+
+    ServerStreamReadiness(ServerCallStreamObserver<?> observer) {
+        this.observer = observer;
+        observer.setOnReadyHandler(this::signal);
+        observer.setOnCancelHandler(this::signal);
+    }
+
+    /**
+     * Block until the call is ready to accept another message, or cancelled
+     * @return false if the call was cancelled, or waiting thread was interrupted
+     */
+    boolean awaitReady() {
+        synchronized (lock) {
+            while (!observer.isReady() && !observer.isCancelled()) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+
+        return !observer.isCancelled();
+    }
+
+    /**
+     * Check if the call was cancelled by the client
+     * @return true if cancelled
+     */
+    boolean isCancelled() {
+        return observer.isCancelled();
+    }
+
+    private void signal() {
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+}
@@ -1,15 +1,35 @@
 package io.demo.storage.service.grpc;
 
+import io.demo.storage.config.ImportProperties;
+import io.demo.storage.config.ListProperties;
+import io.demo.storage.config.LookupProperties;
+import io.demo.storage.config.PathSearchProperties;
+import io.demo.storage.domain.GraphEdge;
 import io.demo.storage.domain.GraphRoute;
+import io.demo.storage.domain.GraphVertex;
+import io.demo.storage.domain.PathSearchLimits;
 import io.demo.storage.service.StorageService;
 import io.demo.storage.service.grpc.domain.*;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import org.lognet.springboot.grpc.GRpcService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.ToLongBiFunction;
 
 /**
  * Implementation of gRPC interface
@@ -22,6 +42,33 @@ public class StorageServiceGrpcImpl extends StorageServiceGrpc.StorageServiceImp
     @Autowired
     private StorageService storageService;
 
+    @Autowired
+    private PathSearchProperties pathSearchProperties;
+
+    @Autowired
+    private ImportProperties importProperties;
+
+    @Autowired
+    private ListProperties listProperties;
+
+    @Autowired
+    private LookupProperties lookupProperties;
+
+    private ExecutorService streamExecutor;
+    private ExecutorService importExecutor;
+
+    @PostConstruct
+    private void init() {
+        streamExecutor = Executors.newFixedThreadPool(pathSearchProperties.getStreamThreads());
+        importExecutor = Executors.newFixedThreadPool(importProperties.getThreads());
+    }
+
+    @PreDestroy
+    private void destroy() {
+        streamExecutor.shutdownNow();
+        importExecutor.shutdownNow();
+    }
+
     @Override
     public void createVertex(Vertex request, StreamObserver<CreateVertexResponse> responseObserver) {
         if (LOGGER.isTraceEnabled()) {
@@ -45,8 +92,33 @@ public class StorageServiceGrpcImpl extends StorageServiceGrpc.StorageServiceImp
             LOGGER.trace("server received {}", request);
         }
 
-        List<String> vertices = storageService.listAllVertexNamesByLabel(request.getLabel());
-        ListVerticesResponse response = ListVerticesResponse.newBuilder().addAllNames(vertices).build();
+        ListVerticesResponse response;
+
+        if (request.getPageSize() <= 0 && request.getPageToken().isEmpty()) {
+            List<String> vertices = storageService.listAllVertexNamesByLabel(request.getLabel());
+            response = ListVerticesResponse.newBuilder().addAllNames(vertices).build();
+        } else {
+            String after;
+
+            try {
+                after = PageTokens.decode(request.getPageToken());
+            } catch (IllegalArgumentException e) {
+                responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("invalid page token").asRuntimeException());
+                return;
+            }
+
+            int pageSize = toPageSize(request.getPageSize());
+            // one more name tells if there is a next page, without an extra query
+            List<String> vertices = storageService.listVertexNamesByLabel(request.getLabel(), after, pageSize + 1);
+            ListVerticesResponse.Builder builder = ListVerticesResponse.newBuilder();
+
+            if (vertices.size() > pageSize) {
+                vertices = vertices.subList(0, pageSize);
+                builder.setNextPageToken(PageTokens.encode(vertices.get(pageSize - 1)));
+            }
+
+            response = builder.addAllNames(vertices).build();
+        }
 
         if (LOGGER.isTraceEnabled()) {
             LOGGER.trace("server responded {}", response);
@@ -56,6 +128,61 @@ public class StorageServiceGrpcImpl extends StorageServiceGrpc.StorageServiceImp
         responseObserver.onCompleted();
     }
 
+    @Override
+    public void listAllVertexNamesByLabelStream(ListVerticesRequest request, StreamObserver<ListVerticesResponse> responseObserver) {
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("server received {}", request);
+        }
+
+        String start;
+
+        try {
+            start = PageTokens.decode(request.getPageToken());
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("invalid page token").asRuntimeException());
+            return;
+        }
+
+        ServerCallStreamObserver<ListVerticesResponse> serverObserver = (ServerCallStreamObserver<ListVerticesResponse>) responseObserver;
+        ServerStreamReadiness readiness = new ServerStreamReadiness(serverObserver);
+        int pageSize = toPageSize(request.getPageSize());
+
+        // each page is read in its own short transaction, so neither side holds more than a page in memory
+        streamExecutor.execute(() -> {
+            try {
+                String after = start;
+                List<String> vertices;
+
+                do {
+                    vertices = storageService.listVertexNamesByLabel(request.getLabel(), after, pageSize);
+
+                    if (vertices.isEmpty() || !readiness.awaitReady()) {
+                        break;
+                    }
+
+                    ListVerticesResponse response = ListVerticesResponse.newBuilder().addAllNames(vertices).build();
+
+                    if (LOGGER.isTraceEnabled()) {
+                        LOGGER.trace("server streamed {}", response);
+                    }
+
+                    serverObserver.onNext(response);
+                    after = vertices.get(vertices.size() - 1);
+                } while (vertices.size() == pageSize);
+
+                if (!readiness.isCancelled()) {
+                    serverObserver.onCompleted();
+                }
+            } catch (RuntimeException e) {
+                LOGGER.error("streaming vertex listing failed", e);
+
+                if (!readiness.isCancelled()) {
+                    serverObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+                }
+            }
+        });
+    }
+
     @Override
     public void deleteVertex(Vertex request, StreamObserver<DeleteVertexResponse> responseObserver) {
         if (LOGGER.isTraceEnabled()) {
@@ -120,6 +247,40 @@ public class StorageServiceGrpcImpl extends StorageServiceGrpc.StorageServiceImp
         responseObserver.onCompleted();
     }
 
+    @Override
+    public void edgesExistBidirectional(EdgesExistBidirectionalRequest request, StreamObserver<EdgesExistBidirectionalResponse> responseObserver) {
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("server received {}", request);
+        }
+
+        if (request.getEdgesCount() > lookupProperties.getMaxEdges()) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("too many edges: " + request.getEdgesCount() + ", max " + lookupProperties.getMaxEdges()).asRuntimeException());
+            return;
+        }
+
+        List<GraphEdge> edges = new ArrayList<>(request.getEdgesCount());
+        request.getEdgesList().forEach(edge -> edges.add(new GraphEdge(toGraphVertex(edge.getVertex1()), toGraphVertex(edge.getVertex2()), edge.getLabel(), 0)));
+        EdgesExistBidirectionalResponse.Builder builder = EdgesExistBidirectionalResponse.newBuilder();
+
+        for (Double weight : storageService.edgesExistBidirectional(edges)) {
+            EdgeExistsBidirectionalResponse.Builder edge = builder.addEdgesBuilder();
+
+            if (weight != null) {
+                edge.setWeight(DoubleValue.newBuilder().setValue(weight).build());
+            }
+        }
+
+        EdgesExistBidirectionalResponse response = builder.build();
+
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("server responded {}", response);
+        }
+
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
+
     @Override
     public void deleteEdgeBidirectional(Edge request, StreamObserver<DeleteEdgeBidirectionalResponse> responseObserver) {
         if (LOGGER.isTraceEnabled()) {
@@ -149,18 +310,75 @@ public class StorageServiceGrpcImpl extends StorageServiceGrpc.StorageServiceImp
         List<GraphRoute> paths = storageService.findPathsBidirectional(
                 request.getVertex1().getLabel(), request.getVertex1().getName(),
                 request.getVertex2().getLabel(), request.getVertex2().getName(),
-                request.getLabel());
+                request.getLabel(), toLimits(request.getLimits()));
+
+        FindPathsBidirectionalResponse response = CompactRoutes.encode(paths, request.getRouteEncoding());
 
-        FindPathsBidirectionalResponse.Builder builder = FindPathsBidirectionalResponse.newBuilder();
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("server responded {}", response);
+        }
 
-        paths.forEach(path -> {
-            builder.addPaths(io.demo.storage.service.grpc.domain.GraphRoute.newBuilder()
-                    .setTotalWeight(DoubleValue.newBuilder().setValue(path.getTotalWeight()).build())
-                    .addAllVertices(path.getVertices())
-                    .build());
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void findPathsBidirectionalStream(Edge request, StreamObserver<io.demo.storage.service.grpc.domain.GraphRoute> responseObserver) {
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("server received {}", request);
+        }
+
+        ServerCallStreamObserver<io.demo.storage.service.grpc.domain.GraphRoute> serverObserver =
+                (ServerCallStreamObserver<io.demo.storage.service.grpc.domain.GraphRoute>) responseObserver;
+        ServerStreamReadiness readiness = new ServerStreamReadiness(serverObserver);
+
+        // traversal runs on its own thread: it has to wait for flow control, and keeps graph transaction on a single thread
+        streamExecutor.execute(() -> {
+            try {
+                storageService.streamPathsBidirectional(
+                        request.getVertex1().getLabel(), request.getVertex1().getName(),
+                        request.getVertex2().getLabel(), request.getVertex2().getName(),
+                        request.getLabel(), toLimits(request.getLimits()), path -> {
+                            if (!readiness.awaitReady()) {
+                                return false;
+                            }
+
+                            io.demo.storage.service.grpc.domain.GraphRoute response = toGrpcRoute(path);
+
+                            if (LOGGER.isTraceEnabled()) {
+                                LOGGER.trace("server streamed {}", response);
+                            }
+
+                            serverObserver.onNext(response);
+                            return true;
+                        });
+
+                if (!readiness.isCancelled()) {
+                    serverObserver.onCompleted();
+                }
+            } catch (RuntimeException e) {
+                LOGGER.error("streaming path search failed", e);
+
+                if (!readiness.isCancelled()) {
+                    serverObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+                }
+            }
         });
+    }
 
-        FindPathsBidirectionalResponse response = builder.build();
+    @Override
+    public void findShortestPathsBidirectional(FindShortestPathsRequest request, StreamObserver<FindPathsBidirectionalResponse> responseObserver) {
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("server received {}", request);
+        }
+
+        Edge edge = request.getEdge();
+        List<GraphRoute> paths = storageService.findShortestPathsBidirectional(
+                edge.getVertex1().getLabel(), edge.getVertex1().getName(),
+                edge.getVertex2().getLabel(), edge.getVertex2().getName(),
+                edge.getLabel(), Math.max(request.getCount(), 1), toLimits(edge.getLimits()));
+
+        FindPathsBidirectionalResponse response = CompactRoutes.encode(paths, edge.getRouteEncoding());
 
         if (LOGGER.isTraceEnabled()) {
             LOGGER.trace("server responded {}", response);
@@ -169,4 +387,123 @@ public class StorageServiceGrpcImpl extends StorageServiceGrpc.StorageServiceImp
         responseObserver.onNext(response);
         responseObserver.onCompleted();
     }
+
+    @Override
+    public void estimateMinTotalWeight(Edge request, StreamObserver<EstimateMinTotalWeightResponse> responseObserver) {
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("server received {}", request);
+        }
+
+        Double minTotalWeight = storageService.estimateMinTotalWeight(
+                request.getVertex1().getLabel(), request.getVertex1().getName(),
+                request.getVertex2().getLabel(), request.getVertex2().getName(),
+                request.getLabel());
+
+        EstimateMinTotalWeightResponse.Builder builder = EstimateMinTotalWeightResponse.newBuilder();
+
+        if (minTotalWeight != null) {
+            builder.setMinTotalWeight(DoubleValue.newBuilder().setValue(minTotalWeight).build());
+        }
+
+        EstimateMinTotalWeightResponse response = builder.build();
+
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("server responded {}", response);
+        }
+
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void getGraphVersion(GraphVersionRequest request, StreamObserver<GraphVersionResponse> responseObserver) {
+        GraphVersionResponse response = GraphVersionResponse.newBuilder()
+                .setVersion(storageService.getGraphVersion())
+                .setShared(storageService.isGraphVersionShared())
+                .build();
+
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("server responded {}", response);
+        }
+
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public StreamObserver<Vertex> importVertices(StreamObserver<ImportProgress> responseObserver) {
+        return importChunks(responseObserver, StorageServiceGrpcImpl::toGraphVertex, storageService::importVertices);
+    }
+
+    @Override
+    public StreamObserver<Edge> importEdges(StreamObserver<ImportProgress> responseObserver) {
+        return importChunks(responseObserver, request -> new GraphEdge(
+                toGraphVertex(request.getVertex1()), toGraphVertex(request.getVertex2()),
+                request.getLabel(), request.getWeight().getValue()), storageService::importEdges);
+    }
+
+    private <T, D> StreamObserver<T> importChunks(StreamObserver<ImportProgress> responseObserver, Function<T, D> mapper,
+                                                  ToLongBiFunction<Iterator<List<D>>, IntConsumer> importer) {
+        ServerCallStreamObserver<ImportProgress> serverObserver = (ServerCallStreamObserver<ImportProgress>) responseObserver;
+        ChunkedRequestObserver<T, D> requestObserver = new ChunkedRequestObserver<>(serverObserver, importProperties.getChunkSize(), mapper);
+
+        // import runs on its own thread: it waits for chunks, and keeps graph transaction on a single thread
+        importExecutor.execute(() -> {
+            AtomicInteger chunks = new AtomicInteger();
+            AtomicLong imported = new AtomicLong();
+
+            try {
+                importer.applyAsLong(requestObserver, count -> {
+                    ImportProgress progress = ImportProgress.newBuilder()
+                            .setChunks(chunks.incrementAndGet())
+                            .setImported(imported.addAndGet(count))
+                            .build();
+
+                    if (LOGGER.isTraceEnabled()) {
+                        LOGGER.trace("server responded {}", progress);
+                    }
+
+                    serverObserver.onNext(progress);
+                });
+
+                serverObserver.onCompleted();
+            } catch (RuntimeException e) {
+                LOGGER.error("import failed, transaction rolled back", e);
+
+                if (!requestObserver.isFailed() && !serverObserver.isCancelled()) {
+                    serverObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+                }
+            }
+        });
+
+        return requestObserver;
+    }
+
+    private int toPageSize(int requested) {
+        return requested > 0 ? Math.min(requested, listProperties.getMaxPageSize()) : listProperties.getMaxPageSize();
+    }
+
+    private static GraphVertex toGraphVertex(Vertex vertex) {
+        return new GraphVertex(vertex.getLabel(), vertex.getName());
+    }
+
+    private static PathSearchLimits toLimits(io.demo.storage.service.grpc.domain.PathSearchLimits request) {
+        PathSearchLimits limits = new PathSearchLimits();
+        limits.setMaxHops(request.getMaxHops());
+        limits.setMaxPaths(request.getMaxPaths());
+        limits.setTimeoutMillis(request.getTimeoutMillis());
+
+        if (request.hasMaxTotalWeight()) {
+            limits.setMaxTotalWeight(request.getMaxTotalWeight().getValue());
+        }
+
+        return limits;
+    }
+
+    static io.demo.storage.service.grpc.domain.GraphRoute toGrpcRoute(GraphRoute path) {
+        return io.demo.storage.service.grpc.domain.GraphRoute.newBuilder()
+                .setTotalWeight(DoubleValue.newBuilder().setValue(path.getTotalWeight()).build())
+                .addAllVertices(path.getVertices())
+                .build();
+    }
 }
@@ -0,0 +1,540 @@
+package io.demo.storage.util;
+
+import io.demo.storage.domain.GraphEdge;
+import io.demo.storage.domain.GraphRoute;
+import io.demo.storage.domain.GraphVertex;
+import io.demo.storage.domain.PathSearchLimits;
+import io.demo.storage.graph.CsrGraph;
+import io.demo.storage.graph.IntPath;
+import io.demo.storage.graph.PathFinder;
+import org.apache.tinkerpop.gremlin.process.traversal.Operator;
+import org.apache.tinkerpop.gremlin.process.traversal.P;
+import org.apache.tinkerpop.gremlin.process.traversal.Path;
+import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.__;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.T;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.umlg.sqlg.structure.SqlgGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+
+/**
+ * A statically compiled {@link GremlinBackend}, the same traversals as {@link GremlinManager} runs, without Groovy dispatch.
+ * A single {@link GraphTraversalSource} is created for the graph and reused by all calls, it is immutable and thread safe.
+ * Parts of traversals which do not depend on call arguments are built once, as templates, and cloned into each traversal,
+ * because a traversal holds iteration state and can't be shared
+ */
+public class CompiledGremlinBackend implements GremlinBackend {
+
+    private static final String NAME = "name";
+    private static final String WEIGHT = "weight";
+    private static final String VERTEX = "vertex";
+    private static final String EDGE = "edge";
+    private static final String ALL_LABELS = "all";
+
+    private static final Traversal<Object, Object> WEIGHT_OR_ZERO = __.coalesce(__.values(WEIGHT), __.constant(0.0d));
+    private static final Traversal<Path, Number> PATH_WEIGHT = __.<Path>unfold().coalesce(__.values(WEIGHT), __.constant(0.0d)).sum();
+
+    private final Graph graph;
+    private final GraphTraversalSource g;
+    private final boolean batchCapable;
+    private final boolean bidirectionalSearch;
+
+    public CompiledGremlinBackend(Graph graph) {
+        this(graph, true);
+    }
+
+    /**
+     * @param graph graph
+     * @param bidirectionalSearch search cheapest paths from both ends at once
+     */
+    public CompiledGremlinBackend(Graph graph, boolean bidirectionalSearch) {
+        this.graph = graph;
+        this.g = graph.traversal();
+        this.batchCapable = graph instanceof SqlgGraph;
+        this.bidirectionalSearch = bidirectionalSearch;
+    }
+
+    @Override
+    public Object createVertex(boolean commit, String label, String name) {
+        Object id = GremlinMetrics.traversal("createVertex", label, () -> g.addV(label).property(NAME, name).next().id());
+
+        if (commit) {
+            GremlinMetrics.commit(graph, "createVertex", label);
+        }
+
+        return id;
+    }
+
+    @Override
+    public Object findVertexId(boolean commit, String label, String name) {
+        Object id = GremlinMetrics.traversal("findVertexId", label, () -> g.V().has(label, NAME, name).id().tryNext().orElse(null));
+
+        if (commit) {
+            GremlinMetrics.commit(graph, "findVertexId", label);
+        }
+
+        return id;
+    }
+
+    @Override
+    public List<String> listAllVertexNamesByLabel(boolean commit, String label) {
+        List<String> result = GremlinMetrics.traversal("listAllVertexNamesByLabel", label,
+                () -> g.V().has(T.label, label).<String>values(NAME).toList());
+
+        if (commit) {
+            GremlinMetrics.commit(graph, "listAllVertexNamesByLabel", label);
+        }
+
+        return result;
+    }
+
+    @Override
+    public List<String> listVertexNamesByLabel(boolean commit, String label, String after, int limit) {
+        List<String> result = GremlinMetrics.traversal("listVertexNamesByLabel", label, () -> {
+            GraphTraversal<Vertex, Vertex> search = g.V().has(T.label, label);
+
+            if (after != null) {
+                search = search.has(NAME, P.gt(after));
+            }
+
+            return search.order().by(NAME).limit(limit).<String>values(NAME).toList();
+        });
+
+        if (commit) {
+            GremlinMetrics.commit(graph, "listVertexNamesByLabel", label);
+        }
+
+        return result;
+    }
+
+    @Override
+    public void deleteVertex(boolean commit, String label, String name) {
+        GremlinMetrics.traversal("deleteVertex", label, () -> {
+            g.V().has(label, NAME, name).tryNext().ifPresent(Vertex::remove);
+            return null;
+        });
+
+        if (commit) {
+            GremlinMetrics.commit(graph, "deleteVertex", label);
+        }
+    }
+
+    @Override
+    public void createEdgeBidirectional(boolean commit, String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2, String eLabel, double weight) {
+        GremlinMetrics.traversal("createEdgeBidirectional", eLabel, () -> {
+            GraphTraversal<Vertex, Vertex> first = startAt(vLabel1, name1, id1).as(VERTEX);
+            GraphTraversal<Vertex, Vertex> second = id2 != null ? first.V(id2) : first.V().has(vLabel2, NAME, name2);
+            return second.coalesce(
+                    __.bothE(eLabel).where(__.bothV().as(VERTEX)).property(WEIGHT, weight),
+                    __.addE(eLabel).from(VERTEX).property(WEIGHT, weight)).next();
+        });
+
+        if (commit) {
+            GremlinMetrics.commit(graph, "createEdgeBidirectional", eLabel);
+        }
+    }
+
+    @Override
+    public Double edgeExistsBidirectional(boolean commit, String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2, String eLabel) {
+        Double weight = GremlinMetrics.traversal("edgeExistsBidirectional", eLabel, () -> {
+            GraphTraversal<Vertex, Vertex> search = startAt(vLabel1, name1, id1).bothE(eLabel).as(EDGE).bothV();
+            return matching(search, vLabel2, name2, id2).as(VERTEX).<Edge>select(EDGE).<Double>values(WEIGHT).tryNext().orElse(null);
+        });
+
+        if (weight != null) {
+            return weight;
+        }
+
+        if (commit) {
+            GremlinMetrics.commit(graph, "edgeExistsBidirectional", eLabel);
+        }
+
+        return null;
+    }
+
+    @Override
+    public void deleteEdgeBidirectional(boolean commit, String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2, String eLabel) {
+        GremlinMetrics.traversal("deleteEdgeBidirectional", eLabel, () -> {
+            GraphTraversal<Vertex, Vertex> search = startAt(vLabel1, name1, id1).bothE(eLabel).as(EDGE).bothV();
+            matching(search, vLabel2, name2, id2).<Edge>select(EDGE).tryNext().ifPresent(Edge::remove);
+            return null;
+        });
+
+        if (commit) {
+            GremlinMetrics.commit(graph, "deleteEdgeBidirectional", eLabel);
+        }
+    }
+
+    @Override
+    public List<GraphRoute> findPathsBidirectional(boolean commit, String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2, String eLabel, PathSearchLimits limits) {
+        List<GraphRoute> result = new ArrayList<>();
+        streamPathsBidirectional(commit, vLabel1, name1, id1, vLabel2, name2, id2, eLabel, limits, result::add);
+        return result;
+    }
+
+    @Override
+    public void streamPathsBidirectional(boolean commit, String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2, String eLabel, PathSearchLimits limits, Predicate<GraphRoute> consumer) {
+        GraphTraversalSource source = g;
+        GraphTraversal<Vertex, Vertex> step;
+
+        if (limits.getMaxTotalWeight() != null) {
+            // accumulate weight of the partial path in traverser's sack, drop the path when it gets too expensive
+            source = source.withSack(0.0d);
+            step = __.<Vertex>bothE().sack(Operator.sum).by(copy(WEIGHT_OR_ZERO))
+                    .bothV().simplePath().filter(__.sack().is(P.lte(limits.getMaxTotalWeight())));
+        } else {
+            step = __.<Vertex>bothE().bothV().simplePath();
+        }
+
+        if (limits.getTimeoutMillis() > 0) {
+            step = step.timeLimit(limits.getTimeoutMillis());
+        }
+
+        GraphTraversal<Vertex, Vertex> until = matching(__.start(), vLabel2, name2, id2);
+
+        if (limits.getMaxHops() > 0) {
+            until = __.or(until, __.loops().is(P.gte(limits.getMaxHops())));
+        }
+
+        GraphTraversal<Vertex, Vertex> found = startAt(source, vLabel1, name1, id1).repeat(step).until(until);
+
+        if (limits.getMaxHops() > 0) {
+            // paths stopped by hops limit did not reach the target
+            found = matching(found, vLabel2, name2, id2);
+        }
+
+        GraphTraversal<Vertex, Map<String, Object>> weighted = found.path().as(eLabel)
+                .map(copy(PATH_WEIGHT)).as(WEIGHT)
+                .select(WEIGHT, eLabel);
+        GraphTraversal<Vertex, Map<String, Object>> search = limits.getMaxPaths() > 0 ? weighted.limit(limits.getMaxPaths()) : weighted;
+
+        long deadline = limits.getTimeoutMillis() > 0 ? System.currentTimeMillis() + limits.getTimeoutMillis() : Long.MAX_VALUE;
+        int count = 0;
+        // consumer is not timed, it sends paths to the client
+        GremlinMetrics.StreamTimer timer = GremlinMetrics.streamTimer("streamPathsBidirectional", eLabel);
+
+        // consumer may be slow (or fail), the read transaction must be closed anyway
+        try {
+            boolean proceed = true;
+
+            while (proceed && System.currentTimeMillis() < deadline && timer.step(search::hasNext)) {
+                Map<String, Object> path = timer.step(search::next);
+                GraphRoute graphRoute = new GraphRoute();
+                graphRoute.setTotalWeight(((Number) path.get(WEIGHT)).doubleValue());
+
+                for (Object item : (Path) path.get(eLabel)) {
+                    if (item instanceof Vertex) {
+                        graphRoute.getVertices().add(((Vertex) item).value(NAME));
+                    }
+                }
+
+                count++;
+                proceed = consumer.test(graphRoute);
+            }
+        } finally {
+            timer.close();
+            GremlinMetrics.paths("streamPathsBidirectional", eLabel, count);
+
+            if (commit) {
+                GremlinMetrics.commit(graph, "streamPathsBidirectional", eLabel);
+            }
+        }
+    }
+
+    @Override
+    public List<GraphRoute> findShortestPathsBidirectional(boolean commit, String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2, String eLabel, int count, PathSearchLimits limits) {
+        List<GraphRoute> result = new ArrayList<>();
+
+        GremlinMetrics.traversal("findShortestPathsBidirectional", eLabel, () -> {
+            Object source = startAt(vLabel1, name1, id1).id().tryNext().orElse(null);
+            Object target = source != null ? startAt(vLabel2, name2, id2).id().tryNext().orElse(null) : null;
+
+            if (source == null || target == null) {
+                return null;
+            }
+
+            GremlinAdjacency adjacency = new GremlinAdjacency(g, eLabel);
+            int sourceIndex = adjacency.indexOf(source);
+            int targetIndex = adjacency.indexOf(target);
+            PathFinder pathFinder = new PathFinder(adjacency).withBidirectionalSearch(bidirectionalSearch).withMaxHops(limits.getMaxHops());
+
+            if (limits.getMaxTotalWeight() != null) {
+                pathFinder.withMaxTotalWeight(limits.getMaxTotalWeight());
+            }
+
+            if (limits.getTimeoutMillis() > 0) {
+                pathFinder.withTimeout(limits.getTimeoutMillis());
+            }
+
+            List<IntPath> paths = new ArrayList<>();
+            Set<Integer> vertices = new HashSet<>();
+
+            for (IntPath path : pathFinder.shortestPaths(sourceIndex, targetIndex, limits.getMaxPaths() > 0 ? Math.min(count, limits.getMaxPaths()) : count)) {
+                paths.add(path);
+
+                for (int vertex : path.getVertices()) {
+                    vertices.add(vertex);
+                }
+            }
+
+            Map<Integer, String> names = adjacency.namesOf(vertices);
+
+            for (IntPath path : paths) {
+                GraphRoute graphRoute = new GraphRoute();
+                graphRoute.setTotalWeight(path.getTotalWeight());
+
+                for (int vertex : path.getVertices()) {
+                    graphRoute.getVertices().add(names.get(vertex));
+                }
+
+                result.add(graphRoute);
+            }
+
+            GremlinMetrics.verticesVisited("findShortestPathsBidirectional", eLabel, pathFinder.getSettledVertices());
+            return null;
+        });
+
+        GremlinMetrics.paths("findShortestPathsBidirectional", eLabel, result.size());
+
+        if (commit) {
+            GremlinMetrics.commit(graph, "findShortestPathsBidirectional", eLabel);
+        }
+
+        return result;
+    }
+
+    @Override
+    public CsrGraph loadCsrGraph(boolean commit, String vLabel, String eLabel) {
+        CsrGraph.Builder builder = CsrGraph.builder();
+
+        GremlinMetrics.traversal("loadCsrGraph", eLabel, () -> {
+            g.V().hasLabel(vLabel).<String>values(NAME).forEachRemaining(builder::addVertex);
+
+            g.E().hasLabel(eLabel)
+                    .where(__.outV().hasLabel(vLabel)).where(__.inV().hasLabel(vLabel))
+                    .<Object>project(VERTEX + 1, VERTEX + 2, WEIGHT)
+                        .by(__.outV().values(NAME))
+                        .by(__.inV().values(NAME))
+                        .by(copy(WEIGHT_OR_ZERO))
+                    .forEachRemaining(edge -> builder.putEdge((String) edge.get(VERTEX + 1), (String) edge.get(VERTEX + 2),
+                            ((Number) edge.get(WEIGHT)).doubleValue()));
+            return null;
+        });
+
+        if (commit) {
+            GremlinMetrics.commit(graph, "loadCsrGraph", eLabel);
+        }
+
+        return builder.build();
+    }
+
+    @Override
+    public long importVertices(boolean commit, Iterator<List<GraphVertex>> chunks, IntConsumer chunkImported) {
+        return importChunks(commit, "importVertices", chunks, chunkImported, chunk -> {
+            Map<String, Set<String>> namesByLabel = new LinkedHashMap<>();
+
+            for (GraphVertex vertex : chunk) {
+                namesByLabel.computeIfAbsent(vertex.getLabel(), label -> new LinkedHashSet<>()).add(vertex.getName());
+            }
+
+            int created = 0;
+
+            for (Map.Entry<String, Set<String>> entry : namesByLabel.entrySet()) {
+                Set<String> existing = new HashSet<>(g.V().hasLabel(entry.getKey()).has(NAME, P.within(entry.getValue())).<String>values(NAME).toList());
+
+                for (String name : entry.getValue()) {
+                    if (existing.add(name)) {
+                        graph.addVertex(T.label, entry.getKey(), NAME, name);
+                        created++;
+                    }
+                }
+            }
+
+            return created;
+        });
+    }
+
+    @Override
+    public long importEdges(boolean commit, Iterator<List<GraphEdge>> chunks, IntConsumer chunkImported) {
+        return importChunks(commit, "importEdges", chunks, chunkImported, chunk -> {
+            Map<List<String>, Vertex> vertices = verticesOf(chunk);
+            Map<List<Object>, Edge> edges = edgesBetween(vertices, chunk);
+            int imported = 0;
+
+            for (GraphEdge item : chunk) {
+                Vertex vertex1 = vertices.get(Arrays.asList(item.getVertex1().getLabel(), item.getVertex1().getName()));
+                Vertex vertex2 = vertices.get(Arrays.asList(item.getVertex2().getLabel(), item.getVertex2().getName()));
+
+                if (vertex1 == null || vertex2 == null) {
+                    continue;
+                }
+
+                List<Object> key = edgeKey(item.getLabel(), vertex1, vertex2);
+                Edge edge = edges.get(key);
+
+                if (edge != null) {
+                    edge.property(WEIGHT, item.getWeight());
+                } else {
+                    edges.put(key, vertex1.addEdge(item.getLabel(), vertex2, WEIGHT, item.getWeight()));
+                }
+
+                imported++;
+            }
+
+            return imported;
+        });
+    }
+
+    @Override
+    public List<Double> edgesExistBidirectional(boolean commit, List<GraphEdge> edges) {
+        List<Double> weights = GremlinMetrics.traversal("edgesExistBidirectional", ALL_LABELS, () -> {
+            Map<List<String>, Vertex> vertices = verticesOf(edges);
+            Map<List<Object>, Edge> existing = edgesBetween(vertices, edges);
+            List<Double> result = new ArrayList<>(edges.size());
+
+            for (GraphEdge item : edges) {
+                Vertex vertex1 = vertices.get(Arrays.asList(item.getVertex1().getLabel(), item.getVertex1().getName()));
+                Vertex vertex2 = vertices.get(Arrays.asList(item.getVertex2().getLabel(), item.getVertex2().getName()));
+                Edge edge = vertex1 != null && vertex2 != null ? existing.get(edgeKey(item.getLabel(), vertex1, vertex2)) : null;
+                result.add(edge != null ? edge.<Double>property(WEIGHT).orElse(null) : null);
+            }
+
+            return result;
+        });
+
+        if (commit) {
+            GremlinMetrics.commit(graph, "edgesExistBidirectional", ALL_LABELS);
+        }
+
+        return weights;
+    }
+
+    /**
+     * Resolve both vertices of all edges, a single query per vertex label
+     * @return vertices keyed by label and name
+     */
+    private Map<List<String>, Vertex> verticesOf(List<GraphEdge> edges) {
+        Map<String, Set<String>> namesByLabel = new HashMap<>();
+
+        for (GraphEdge item : edges) {
+            namesByLabel.computeIfAbsent(item.getVertex1().getLabel(), label -> new HashSet<>()).add(item.getVertex1().getName());
+            namesByLabel.computeIfAbsent(item.getVertex2().getLabel(), label -> new HashSet<>()).add(item.getVertex2().getName());
+        }
+
+        Map<List<String>, Vertex> vertices = new HashMap<>();
+
+        for (Map.Entry<String, Set<String>> entry : namesByLabel.entrySet()) {
+            g.V().hasLabel(entry.getKey()).has(NAME, P.within(entry.getValue())).forEachRemaining(vertex ->
+                    vertices.put(Arrays.asList(entry.getKey(), vertex.value(NAME)), vertex));
+        }
+
+        return vertices;
+    }
+
+    /**
+     * Existing edges between the vertices with labels of the edges, a single query. Edges to other vertices are filtered
+     * in the query, a hub station must not load all its routes
+     * @return edges keyed by label and unordered pair of vertex ids, so direction does not matter
+     */
+    private Map<List<Object>, Edge> edgesBetween(Map<List<String>, Vertex> vertices, List<GraphEdge> edges) {
+        Map<List<Object>, Edge> existing = new HashMap<>();
+
+        if (!vertices.isEmpty()) {
+            Set<String> eLabels = new HashSet<>();
+            edges.forEach(item -> eLabels.add(item.getLabel()));
+            Object[] ids = vertices.values().stream().map(Vertex::id).toArray();
+            g.V(ids).bothE(eLabels.toArray(new String[0])).where(__.otherV().hasId(P.within(ids))).dedup().forEachRemaining(edge ->
+                    existing.put(edgeKey(edge.label(), edge.outVertex(), edge.inVertex()), edge));
+        }
+
+        return existing;
+    }
+
+    /**
+     * Start traversal at a vertex, by id if known, by label and name otherwise
+     */
+    private GraphTraversal<Vertex, Vertex> startAt(String label, String name, Object id) {
+        return startAt(g, label, name, id);
+    }
+
+    private static GraphTraversal<Vertex, Vertex> startAt(GraphTraversalSource source, String label, String name, Object id) {
+        return id != null ? source.V(id) : source.V().has(label, NAME, name);
+    }
+
+    /**
+     * Keep traversers at a vertex, matched by id if known, by label and name otherwise
+     */
+    private static <S> GraphTraversal<S, Vertex> matching(GraphTraversal<S, Vertex> traversal, String label, String name, Object id) {
+        return id != null ? traversal.hasId(id) : traversal.has(label, NAME, name);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S, E> Traversal<S, E> copy(Traversal<S, E> template) {
+        return template.asAdmin().clone();
+    }
+
+    private static List<Object> edgeKey(String eLabel, Vertex vertex1, Vertex vertex2) {
+        return Arrays.asList(eLabel, new HashSet<>(Arrays.asList(vertex1.id(), vertex2.id())));
+    }
+
+    /**
+     * Import chunks one by one, the same way as GremlinManager does: in Sqlg batch mode if commit is true, flushing every chunk
+     */
+    private <T> long importChunks(boolean commit, String operation, Iterator<List<T>> chunks, IntConsumer chunkImported,
+                                  Function<List<T>, Integer> importChunk) {
+        boolean batch = commit && batchCapable;
+
+        if (batch) {
+            ((SqlgGraph) graph).tx().normalBatchModeOn();
+        }
+
+        long imported = 0;
+
+        try {
+            while (chunks.hasNext()) {
+                List<T> chunk = chunks.next();
+                int count = GremlinMetrics.traversal(operation, ALL_LABELS, () -> {
+                    int created = importChunk.apply(chunk);
+
+                    if (batch) {
+                        ((SqlgGraph) graph).tx().flush();
+                    }
+
+                    return created;
+                });
+
+                imported += count;
+                chunkImported.accept(count);
+            }
+
+            if (commit) {
+                GremlinMetrics.commit(graph, operation, ALL_LABELS);
+            }
+        } catch (RuntimeException e) {
+            if (commit) {
+                graph.tx().rollback();
+            }
+
+            throw e;
+        }
+
+        return imported;
+    }
+}
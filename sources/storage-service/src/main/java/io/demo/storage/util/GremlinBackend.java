@@ -0,0 +1,188 @@
+package io.demo.storage.util;
+
+import io.demo.storage.domain.GraphEdge;
+import io.demo.storage.domain.GraphRoute;
+import io.demo.storage.domain.GraphVertex;
+import io.demo.storage.domain.PathSearchLimits;
+import io.demo.storage.graph.CsrGraph;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+
+/**
+ * A {@link GremlinBackend} runs graph operations behind {@link io.demo.storage.service.StorageService} on a TinkerPop graph,
+ * it is bound to. Operations are the same as of {@link GremlinManager}, which documents them in detail.
+ * Implementations: {@link CompiledGremlinBackend}, statically compiled, and {@link GroovyGremlinBackend}, which delegates to
+ * dynamically typed {@link GremlinManager}
+ */
+public interface GremlinBackend {
+
+    /**
+     * Create Vertex
+     * @param commit if true, perform transaction commit at the end
+     * @param label vertex label
+     * @param name value of vertex "name" property
+     * @return id of created vertex
+     */
+    Object createVertex(boolean commit, String label, String name);
+
+    /**
+     * Find id of Vertex by label and name
+     * @param commit if true, perform transaction commit at the end
+     * @param label vertex label
+     * @param name value of vertex "name" property
+     * @return vertex id, null if there is no such vertex
+     */
+    Object findVertexId(boolean commit, String label, String name);
+
+    /**
+     * Find all Vertices with specified label
+     * @param commit if true, perform transaction commit at the end
+     * @param label vertex label
+     * @return a list of names
+     */
+    List<String> listAllVertexNamesByLabel(boolean commit, String label);
+
+    /**
+     * Find a page of Vertices with specified label, ordered by name
+     * @param commit if true, perform transaction commit at the end
+     * @param label vertex label
+     * @param after name of the last vertex of previous page, null for the first page
+     * @param limit max number of names to return
+     * @return a list of names
+     */
+    List<String> listVertexNamesByLabel(boolean commit, String label, String after, int limit);
+
+    /**
+     * Delete Vertex found by label and name
+     * @param commit if true, perform transaction commit at the end
+     * @param label vertex label
+     * @param name value of vertex "name" property
+     */
+    void deleteVertex(boolean commit, String label, String name);
+
+    /**
+     * Create an edge between two vertices, set it's "weight" property. If edge exists already, update it's "weight" property
+     * @param commit if true, perform transaction commit at the end
+     * @param vLabel1 vertex label of first vertex
+     * @param name1 name of first vertex
+     * @param id1 id of first vertex if known, null otherwise
+     * @param vLabel2 vertex label of second vertex
+     * @param name2 name of second vertex
+     * @param id2 id of second vertex if known, null otherwise
+     * @param eLabel edge label
+     * @param weight value of edge "weight" property
+     */
+    void createEdgeBidirectional(boolean commit, String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2, String eLabel, double weight);
+
+    /**
+     * Check if edge does exist, return it's weight
+     * @param commit if true, perform transaction commit at the end
+     * @param vLabel1 vertex label of first vertex
+     * @param name1 name of first vertex
+     * @param id1 id of first vertex if known, null otherwise
+     * @param vLabel2 vertex label of second vertex
+     * @param name2 name of second vertex
+     * @param id2 id of second vertex if known, null otherwise
+     * @param eLabel edge label
+     * @return value of edge "weight" property, null if there is no such edge
+     */
+    Double edgeExistsBidirectional(boolean commit, String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2, String eLabel);
+
+    /**
+     * Check if many edges exist, return their weights. Set-based: vertices of all edges are resolved by a single query per vertex label,
+     * then edges between them by a single query, instead of a traversal per edge
+     * @param commit if true, perform transaction commit at the end
+     * @param edges edges to check, weights are ignored
+     * @return value of "weight" property of every edge, in the same order, null if there is no such edge
+     */
+    List<Double> edgesExistBidirectional(boolean commit, List<GraphEdge> edges);
+
+    /**
+     * Delete edge between two vertices, if exists
+     * @param commit if true, perform transaction commit at the end
+     * @param vLabel1 vertex label of first vertex
+     * @param name1 name of first vertex
+     * @param id1 id of first vertex if known, null otherwise
+     * @param vLabel2 vertex label of second vertex
+     * @param name2 name of second vertex
+     * @param id2 id of second vertex if known, null otherwise
+     * @param eLabel edge label
+     */
+    void deleteEdgeBidirectional(boolean commit, String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2, String eLabel);
+
+    /**
+     * Find paths between two vertices, calculate total weights as well
+     * @param commit if true, perform transaction commit at the end
+     * @param vLabel1 vertex label of first vertex
+     * @param name1 name of first vertex
+     * @param id1 id of first vertex if known, null otherwise
+     * @param vLabel2 vertex label of second vertex
+     * @param name2 name of second vertex
+     * @param id2 id of second vertex if known, null otherwise
+     * @param eLabel edge label
+     * @param limits search limits
+     * @return list of paths found and their total weights
+     */
+    List<GraphRoute> findPathsBidirectional(boolean commit, String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2, String eLabel, PathSearchLimits limits);
+
+    /**
+     * Same as {@link #findPathsBidirectional}, but paths are passed to consumer one by one, as soon as traversal yields them
+     * @param commit if true, perform transaction commit at the end
+     * @param vLabel1 vertex label of first vertex
+     * @param name1 name of first vertex
+     * @param id1 id of first vertex if known, null otherwise
+     * @param vLabel2 vertex label of second vertex
+     * @param name2 name of second vertex
+     * @param id2 id of second vertex if known, null otherwise
+     * @param eLabel edge label
+     * @param limits search limits
+     * @param consumer receives paths found, returns false to stop the search
+     */
+    void streamPathsBidirectional(boolean commit, String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2, String eLabel, PathSearchLimits limits, Predicate<GraphRoute> consumer);
+
+    /**
+     * Find cheapest paths between two vertices, ordered by total weight
+     * @param commit if true, perform transaction commit at the end
+     * @param vLabel1 vertex label of first vertex
+     * @param name1 name of first vertex
+     * @param id1 id of first vertex if known, null otherwise
+     * @param vLabel2 vertex label of second vertex
+     * @param name2 name of second vertex
+     * @param id2 id of second vertex if known, null otherwise
+     * @param eLabel edge label
+     * @param count max number of paths to return
+     * @param limits search limits
+     * @return list of paths found and their total weights, ordered by total weight
+     */
+    List<GraphRoute> findShortestPathsBidirectional(boolean commit, String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2, String eLabel, int count, PathSearchLimits limits);
+
+    /**
+     * Load all vertices with specified label, and all edges between them, into in-memory {@link CsrGraph}
+     * @param commit if true, perform transaction commit at the end
+     * @param vLabel vertex label
+     * @param eLabel edge label
+     * @return in-memory graph
+     */
+    CsrGraph loadCsrGraph(boolean commit, String vLabel, String eLabel);
+
+    /**
+     * Create vertices in bulk, vertices which exist already are skipped
+     * @param commit if true, perform transaction commit at the end, or rollback on failure
+     * @param chunks chunks of vertices
+     * @param chunkImported receives number of vertices created from each chunk, after the chunk is flushed
+     * @return number of vertices created
+     */
+    long importVertices(boolean commit, Iterator<List<GraphVertex>> chunks, IntConsumer chunkImported);
+
+    /**
+     * Create edges in bulk, if edge exists already, it's "weight" property is updated
+     * @param commit if true, perform transaction commit at the end, or rollback on failure
+     * @param chunks chunks of edges
+     * @param chunkImported receives number of edges created or updated from each chunk, after the chunk is flushed
+     * @return number of edges created or updated
+     */
+    long importEdges(boolean commit, Iterator<List<GraphEdge>> chunks, IntConsumer chunkImported);
+}
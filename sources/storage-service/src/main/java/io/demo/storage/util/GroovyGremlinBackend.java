@@ -0,0 +1,111 @@
+package io.demo.storage.util;
+
+import io.demo.storage.domain.GraphEdge;
+import io.demo.storage.domain.GraphRoute;
+import io.demo.storage.domain.GraphVertex;
+import io.demo.storage.domain.PathSearchLimits;
+import io.demo.storage.graph.CsrGraph;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+
+/**
+ * A {@link GremlinBackend} which delegates to dynamically typed {@link GremlinManager}.
+ * Every call goes through Groovy meta-object protocol and builds a new traversal source, kept as a reference for benchmarks
+ */
+public class GroovyGremlinBackend implements GremlinBackend {
+
+    private final Graph graph;
+    private final boolean bidirectionalSearch;
+
+    public GroovyGremlinBackend(Graph graph) {
+        this(graph, true);
+    }
+
+    /**
+     * @param graph graph
+     * @param bidirectionalSearch search cheapest paths from both ends at once
+     */
+    public GroovyGremlinBackend(Graph graph, boolean bidirectionalSearch) {
+        this.graph = graph;
+        this.bidirectionalSearch = bidirectionalSearch;
+    }
+
+    @Override
+    public Object createVertex(boolean commit, String label, String name) {
+        return GremlinManager.createVertex(graph, commit, label, name);
+    }
+
+    @Override
+    public Object findVertexId(boolean commit, String label, String name) {
+        return GremlinManager.findVertexId(graph, commit, label, name);
+    }
+
+    @Override
+    public List<String> listAllVertexNamesByLabel(boolean commit, String label) {
+        return GremlinManager.listAllVertexNamesByLabel(graph, commit, label);
+    }
+
+    @Override
+    public List<String> listVertexNamesByLabel(boolean commit, String label, String after, int limit) {
+        return GremlinManager.listVertexNamesByLabel(graph, commit, label, after, limit);
+    }
+
+    @Override
+    public void deleteVertex(boolean commit, String label, String name) {
+        GremlinManager.deleteVertex(graph, commit, label, name);
+    }
+
+    @Override
+    public void createEdgeBidirectional(boolean commit, String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2, String eLabel, double weight) {
+        GremlinManager.createEdgeBidirectional(graph, commit, vLabel1, name1, id1, vLabel2, name2, id2, eLabel, weight);
+    }
+
+    @Override
+    public Double edgeExistsBidirectional(boolean commit, String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2, String eLabel) {
+        return GremlinManager.edgeExistsBidirectional(graph, commit, vLabel1, name1, id1, vLabel2, name2, id2, eLabel);
+    }
+
+    @Override
+    public List<Double> edgesExistBidirectional(boolean commit, List<GraphEdge> edges) {
+        return GremlinManager.edgesExistBidirectional(graph, commit, edges);
+    }
+
+    @Override
+    public void deleteEdgeBidirectional(boolean commit, String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2, String eLabel) {
+        GremlinManager.deleteEdgeBidirectional(graph, commit, vLabel1, name1, id1, vLabel2, name2, id2, eLabel);
+    }
+
+    @Override
+    public List<GraphRoute> findPathsBidirectional(boolean commit, String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2, String eLabel, PathSearchLimits limits) {
+        return GremlinManager.findPathsBidirectional(graph, commit, vLabel1, name1, id1, vLabel2, name2, id2, eLabel, limits);
+    }
+
+    @Override
+    public void streamPathsBidirectional(boolean commit, String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2, String eLabel, PathSearchLimits limits, Predicate<GraphRoute> consumer) {
+        GremlinManager.streamPathsBidirectional(graph, commit, vLabel1, name1, id1, vLabel2, name2, id2, eLabel, limits, consumer);
+    }
+
+    @Override
+    public List<GraphRoute> findShortestPathsBidirectional(boolean commit, String vLabel1, String name1, Object id1, String vLabel2, String name2, Object id2, String eLabel, int count, PathSearchLimits limits) {
+        return GremlinManager.findShortestPathsBidirectional(graph, commit, vLabel1, name1, id1, vLabel2, name2, id2, eLabel, count, limits, bidirectionalSearch);
+    }
+
+    @Override
+    public CsrGraph loadCsrGraph(boolean commit, String vLabel, String eLabel) {
+        return GremlinManager.loadCsrGraph(graph, commit, vLabel, eLabel);
+    }
+
+    @Override
+    public long importVertices(boolean commit, Iterator<List<GraphVertex>> chunks, IntConsumer chunkImported) {
+        return GremlinManager.importVertices(graph, commit, chunks, chunkImported);
+    }
+
+    @Override
+    public long importEdges(boolean commit, Iterator<List<GraphEdge>> chunks, IntConsumer chunkImported) {
+        return GremlinManager.importEdges(graph, commit, chunks, chunkImported);
+    }
+}
@@ -1,17 +1,38 @@
 package io.demo.storage;
 
+import io.demo.storage.service.EdgeFilter;
+import io.demo.storage.service.RouteGraphSnapshot;
+import io.demo.storage.service.VertexIdCache;
+import io.demo.storage.service.grpc.GraphVersionInterceptor;
 import io.demo.storage.service.grpc.domain.*;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.MetadataUtils;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
 /**
  * Testing scenario:
  * 1. test basic operations like vertex creation/deletion
@@ -26,6 +47,14 @@ import org.springframework.test.context.junit4.SpringRunner;
  *    As a result we should get 2 paths:
  *       1 - 3 - 2, with total cost 80
  *       1 - 5 - 4 - 2, with total cost 25
+ * 5. perform cheapest paths search between stations 1 and 2
+ *    As a result we should get the same 2 paths, ordered by total cost, and min cost estimated by the snapshot should not exceed the cheapest one
+ * 6. perform path searches with limits, only paths within limits should be found
+ * 7. perform streaming path search, the same paths should be streamed
+ * 8. import stations 6 and 7, and routes 6 - 7 - 2 in bulk, existing stations should be skipped
+ * 9. check that vertex ids were resolved from cache
+ * 10. list stations page by page, and stream them, all 7 stations should be listed in name order
+ * 11. check that gRPC calls and graph traversals were timed, and missing routes were answered by the edge filter
  */
 @RunWith(SpringRunner.class)
 @DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
@@ -36,16 +65,30 @@ public class ITApplicationTests {
 //    @Autowired
 //    private StorageService storageService;
 
+    @Autowired
+    private VertexIdCache vertexIdCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private EdgeFilter edgeFilter;
+
+    @Autowired
+    private RouteGraphSnapshot routeGraphSnapshot;
+
     private StorageServiceGrpc.StorageServiceBlockingStub storageService;
+    private StorageServiceGrpc.StorageServiceStub asyncStorageService;
 
     @Before
     public void prepareForTest() {
         ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", 6565).usePlaintext().build();
         storageService = StorageServiceGrpc.newBlockingStub(channel);
+        asyncStorageService = StorageServiceGrpc.newStub(channel);
     }
 
     @Test
-    public void testGraphLogicViaGrpc() {
+    public void testGraphLogicViaGrpc() throws InterruptedException {
         String vLabel = "train_station";
         String eLabel = "route";
 
@@ -59,7 +102,13 @@ public class ITApplicationTests {
         Vertex station4 = Vertex.newBuilder().setLabel(vLabel).setName("Station 4").build();
         Vertex station5 = Vertex.newBuilder().setLabel(vLabel).setName("Station 5").build();
 
-        storageService.createVertex(station1);
+        AtomicReference<Metadata> headers = new AtomicReference<>();
+        MetadataUtils.captureMetadata(storageService, headers, new AtomicReference<>()).createVertex(station1);
+        Assert.assertNotEquals("graph version should change on write",
+                headers.get().get(GraphVersionInterceptor.GRAPH_VERSION), headers.get().get(GraphVersionInterceptor.GRAPH_VERSION_BEFORE));
+        MetadataUtils.captureMetadata(storageService, headers, new AtomicReference<>()).listAllVertexNamesByLabel(listStationsRequest);
+        Assert.assertEquals("graph version should not change on read",
+                headers.get().get(GraphVersionInterceptor.GRAPH_VERSION), headers.get().get(GraphVersionInterceptor.GRAPH_VERSION_BEFORE));
         stations = storageService.listAllVertexNamesByLabel(listStationsRequest);
         Assert.assertEquals("vertices count should be 1", stations.getNamesList().size(), 1);
 
@@ -144,6 +193,20 @@ public class ITApplicationTests {
 
         storageService.createEdgeBidirectional(route);
 
+        EdgesExistBidirectionalResponse routes = storageService.edgesExistBidirectional(EdgesExistBidirectionalRequest.newBuilder()
+                .addEdges(Edge.newBuilder().setLabel(eLabel).setVertex1(station1).setVertex2(station3))
+                .addEdges(Edge.newBuilder().setLabel(eLabel).setVertex1(station2).setVertex2(station3))
+                .addEdges(Edge.newBuilder().setLabel(eLabel).setVertex1(station1).setVertex2(station2))
+                .addEdges(Edge.newBuilder().setLabel(eLabel).setVertex1(station4).setVertex2(station2))
+                .addEdges(Edge.newBuilder().setLabel(eLabel).setVertex1(station1).setVertex2(Vertex.newBuilder(station1).setName("No such station")))
+                .build());
+        Assert.assertEquals("a result should be returned per route", routes.getEdgesCount(), 5);
+        Assert.assertEquals("route 1-3 should cost 38.5", routes.getEdges(0).getWeight().getValue(), 38.5, 0);
+        Assert.assertEquals("route 2-3 should be found in any direction", routes.getEdges(1).getWeight().getValue(), 41.5, 0);
+        Assert.assertFalse("route 1-2 should not exist", routes.getEdges(2).hasWeight());
+        Assert.assertEquals("route 4-2 should cost 10", routes.getEdges(3).getWeight().getValue(), 10, 0);
+        Assert.assertFalse("route to a missing station should not exist", routes.getEdges(4).hasWeight());
+
         route = Edge.newBuilder()
                 .setVertex1(station1)
                 .setVertex2(station2)
@@ -155,6 +218,225 @@ public class ITApplicationTests {
         Assert.assertEquals("second route should cost 25", Double.valueOf(findPathsBidirectionalResponse.getPaths(1).getTotalWeight().getValue()), Double.valueOf("25.0"));
         Assert.assertEquals("first route should be 3 items length", findPathsBidirectionalResponse.getPaths(0).getVerticesList().size(), 3);
         Assert.assertEquals("second route should be 4 items length", findPathsBidirectionalResponse.getPaths(1).getVerticesList().size(), 4);
+
+        FindPathsBidirectionalResponse compactResponse = storageService.findPathsBidirectional(
+                Edge.newBuilder(route).setRouteEncoding(RouteEncoding.COMPACT).build());
+        Assert.assertEquals("compact response should not repeat names", new HashSet<>(compactResponse.getNamesList()).size(), compactResponse.getNamesCount());
+        Assert.assertEquals("compact response should hold the same routes", compactResponse.getCompactPathsCount(), findPathsBidirectionalResponse.getPathsCount());
+
+        for (int i = 0; i < compactResponse.getCompactPathsCount(); i++) {
+            CompactGraphRoute compactPath = compactResponse.getCompactPaths(i);
+            List<String> names = new ArrayList<>();
+            compactPath.getVerticesList().forEach(index -> names.add(compactResponse.getNames(index)));
+            Assert.assertEquals("compact route should decode to the same stations", names, findPathsBidirectionalResponse.getPaths(i).getVerticesList());
+            Assert.assertEquals("compact route should cost the same", compactPath.getTotalWeight(),
+                    findPathsBidirectionalResponse.getPaths(i).getTotalWeight().getValue(), 0);
+        }
+
+        FindShortestPathsRequest shortestPathsRequest = FindShortestPathsRequest.newBuilder().setEdge(route).setCount(5).build();
+        findPathsBidirectionalResponse = storageService.findShortestPathsBidirectional(shortestPathsRequest);
+        Assert.assertEquals("2 cheapest routes should be found", findPathsBidirectionalResponse.getPathsList().size(), 2);
+        Assert.assertEquals("cheapest route should cost 25", Double.valueOf(findPathsBidirectionalResponse.getPaths(0).getTotalWeight().getValue()), Double.valueOf("25.0"));
+        Assert.assertEquals("next route should cost 80", Double.valueOf(findPathsBidirectionalResponse.getPaths(1).getTotalWeight().getValue()), Double.valueOf("80.0"));
+        Assert.assertEquals("cheapest route should go through stations 5 and 4", findPathsBidirectionalResponse.getPaths(0).getVerticesList(),
+                Arrays.asList("Station 1", "Station 5", "Station 4", "Station 2"));
+
+        EstimateMinTotalWeightResponse estimate = storageService.estimateMinTotalWeight(route);
+
+        if (routeGraphSnapshot.coversEdge(vLabel, vLabel, eLabel)) {
+            // landmarks are recomputed in background after new routes, bounds themselves are tested by LandmarksTests
+            Assert.assertTrue("estimated min cost should not exceed cheapest route cost",
+                    !estimate.hasMinTotalWeight() || estimate.getMinTotalWeight().getValue() <= 25);
+        } else {
+            Assert.assertFalse("min cost should not be estimated without snapshot", estimate.hasMinTotalWeight());
+        }
+
+        shortestPathsRequest = FindShortestPathsRequest.newBuilder().setEdge(route).build();
+        findPathsBidirectionalResponse = storageService.findShortestPathsBidirectional(shortestPathsRequest);
+        Assert.assertEquals("only the cheapest route should be found by default", findPathsBidirectionalResponse.getPathsList().size(), 1);
+
+        route = Edge.newBuilder(route).setLimits(PathSearchLimits.newBuilder().setMaxHops(2).build()).build();
+        findPathsBidirectionalResponse = storageService.findPathsBidirectional(route);
+        Assert.assertEquals("1 route should be found within 2 hops", findPathsBidirectionalResponse.getPathsList().size(), 1);
+        Assert.assertEquals("route within 2 hops should cost 80", Double.valueOf(findPathsBidirectionalResponse.getPaths(0).getTotalWeight().getValue()), Double.valueOf("80.0"));
+
+        route = Edge.newBuilder(route).setLimits(PathSearchLimits.newBuilder()
+                .setMaxTotalWeight(DoubleValue.newBuilder().setValue(30).build()).build()).build();
+        findPathsBidirectionalResponse = storageService.findPathsBidirectional(route);
+        Assert.assertEquals("1 route should be found within cost 30", findPathsBidirectionalResponse.getPathsList().size(), 1);
+        Assert.assertEquals("route within cost 30 should cost 25", Double.valueOf(findPathsBidirectionalResponse.getPaths(0).getTotalWeight().getValue()), Double.valueOf("25.0"));
+
+        route = Edge.newBuilder(route).setLimits(PathSearchLimits.newBuilder().setMaxPaths(1).setTimeoutMillis(10000).build()).build();
+        findPathsBidirectionalResponse = storageService.findPathsBidirectional(route);
+        Assert.assertEquals("1 route should be found with max paths 1", findPathsBidirectionalResponse.getPathsList().size(), 1);
+
+        shortestPathsRequest = FindShortestPathsRequest.newBuilder().setCount(5).setEdge(Edge.newBuilder(route)
+                .setLimits(PathSearchLimits.newBuilder().setMaxTotalWeight(DoubleValue.newBuilder().setValue(30).build()).build())).build();
+        findPathsBidirectionalResponse = storageService.findShortestPathsBidirectional(shortestPathsRequest);
+        Assert.assertEquals("1 cheapest route should be found within cost 30", findPathsBidirectionalResponse.getPathsList().size(), 1);
+
+        route = Edge.newBuilder(route).clearLimits().build();
+        List<GraphRoute> streamedRoutes = new ArrayList<>();
+        storageService.findPathsBidirectionalStream(route).forEachRemaining(streamedRoutes::add);
+        findPathsBidirectionalResponse = storageService.findPathsBidirectional(route);
+        Assert.assertEquals("streamed routes should be the same", streamedRoutes, findPathsBidirectionalResponse.getPathsList());
+
+        Vertex station6 = Vertex.newBuilder().setLabel(vLabel).setName("Station 6").build();
+        Vertex station7 = Vertex.newBuilder().setLabel(vLabel).setName("Station 7").build();
+        Vertex station9 = Vertex.newBuilder().setLabel(vLabel).setName("Station 9").build();
+
+        List<ImportProgress> progress = importAll(asyncStorageService::importVertices, Arrays.asList(station6, station7, station1, station6));
+        Assert.assertEquals("progress should be reported for 2 chunks", progress.size(), 2);
+        Assert.assertEquals("2 new stations should be imported", progress.get(1).getImported(), 2);
+        stations = storageService.listAllVertexNamesByLabel(listStationsRequest);
+        Assert.assertEquals("vertices count should be 7", stations.getNamesList().size(), 7);
+
+        progress = importAll(asyncStorageService::importEdges, Arrays.asList(
+                Edge.newBuilder().setVertex1(station6).setVertex2(station7).setLabel(eLabel).setWeight(DoubleValue.newBuilder().setValue(3)).build(),
+                Edge.newBuilder().setVertex1(station7).setVertex2(station2).setLabel(eLabel).setWeight(DoubleValue.newBuilder().setValue(4)).build(),
+                Edge.newBuilder().setVertex1(station5).setVertex2(station1).setLabel(eLabel).setWeight(DoubleValue.newBuilder().setValue(10)).build(),
+                Edge.newBuilder().setVertex1(station6).setVertex2(station9).setLabel(eLabel).setWeight(DoubleValue.newBuilder().setValue(1)).build()));
+        Assert.assertEquals("3 routes should be imported, route to unknown station skipped", progress.get(progress.size() - 1).getImported(), 3);
+
+        routeStation1Station2 = storageService.edgeExistsBidirectional(Edge.newBuilder().setLabel(eLabel).setVertex1(station7).setVertex2(station6).build());
+        Assert.assertEquals("imported edge should exist with weight 3", Double.valueOf(routeStation1Station2.getWeight().getValue()), Double.valueOf(3));
+
+        findPathsBidirectionalResponse = storageService.findPathsBidirectional(route);
+        Assert.assertEquals("existing route should be updated, not duplicated", findPathsBidirectionalResponse.getPathsList().size(), 2);
+
+        route = Edge.newBuilder().setLabel(eLabel).setVertex1(station6).setVertex2(station2).build();
+        findPathsBidirectionalResponse = storageService.findShortestPathsBidirectional(FindShortestPathsRequest.newBuilder().setEdge(route).build());
+        Assert.assertEquals("imported route should cost 7", Double.valueOf(findPathsBidirectionalResponse.getPaths(0).getTotalWeight().getValue()), Double.valueOf(7));
+
+        Assert.assertTrue("vertex ids should be resolved from cache", vertexIdCache.stats().hitCount() > 0);
+
+        List<String> names = new ArrayList<>();
+        ListVerticesRequest pageRequest = ListVerticesRequest.newBuilder().setLabel(vLabel).setPageSize(3).build();
+
+        do {
+            ListVerticesResponse page = storageService.listAllVertexNamesByLabel(pageRequest);
+            Assert.assertTrue("page should not exceed page size", page.getNamesCount() <= 3);
+            names.addAll(page.getNamesList());
+            pageRequest = pageRequest.toBuilder().setPageToken(page.getNextPageToken()).build();
+        } while (!pageRequest.getPageToken().isEmpty());
+
+        Assert.assertEquals("7 stations should be listed in 3 pages, ordered by name", names, Arrays.asList(
+                "Station 1", "Station 2", "Station 3", "Station 4", "Station 5", "Station 6", "Station 7"));
+
+        List<String> streamed = new ArrayList<>();
+        storageService.listAllVertexNamesByLabelStream(ListVerticesRequest.newBuilder().setLabel(vLabel).setPageSize(2).build())
+                .forEachRemaining(page -> streamed.addAll(page.getNamesList()));
+        Assert.assertEquals("the same stations should be streamed", streamed, names);
+
+        Assert.assertTrue("gRPC calls should be timed", meterRegistry.get("grpc.server.calls")
+                .tag("method", "createVertex").tag("status", "OK").timer().count() >= 5);
+        Assert.assertTrue("traversals should be timed", meterRegistry.get("gremlin.traversal")
+                .tag("operation", "createVertex").tag("label", vLabel).timer().count() >= 5);
+        Assert.assertTrue("returned paths should be counted", meterRegistry.get("graph.paths")
+                .tag("operation", "findShortestPathsBidirectional").tag("label", eLabel)
+                .tag("backend", routeGraphSnapshot.coversEdge(vLabel, vLabel, eLabel) ? "snapshot" : "gremlin").summary().totalAmount() > 0);
+
+        if (edgeFilter.covers(vLabel, vLabel, eLabel)) {
+            Assert.assertTrue("missing route should be answered by the edge filter", meterRegistry.get("edge.filter.checks")
+                    .tag("result", "negative").counter().count() > 0);
+        }
+    }
+
+    /**
+     * Write calls in flight are limited to 4 in tests, imports which are never completed hold their slots
+     */
+    @Test
+    public void testWriteCallsAboveLimitAreRejected() throws InterruptedException {
+        List<StreamObserver<Vertex>> imports = new ArrayList<>();
+        Vertex vertex = Vertex.newBuilder().setLabel("train_station").setName("No such station").build();
+
+        StreamObserver<ImportProgress> ignored = new StreamObserver<ImportProgress>() {
+            @Override
+            public void onNext(ImportProgress value) {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        };
+
+        try {
+            Status.Code rejected = Status.Code.OK;
+
+            // imports reach the server asynchronously, so one of them may take the place of a probe, open another one then
+            for (int i = 0; i < 50 && rejected != Status.Code.RESOURCE_EXHAUSTED; i++) {
+                if (imports.size() < 4 + i / 10) {
+                    imports.add(asyncStorageService.importVertices(ignored));
+                    continue;
+                }
+
+                try {
+                    storageService.deleteVertex(vertex);
+                    Thread.sleep(100);
+                } catch (StatusRuntimeException e) {
+                    rejected = e.getStatus().getCode();
+                }
+            }
+
+            Assert.assertEquals("write above the limit should be rejected", Status.Code.RESOURCE_EXHAUSTED, rejected);
+            Assert.assertTrue("rejected call should be counted", meterRegistry.get("grpc.server.rejected")
+                    .tag("category", "write").tag("method", "deleteVertex").counter().count() > 0);
+            Assert.assertFalse("reads should not be limited by writes", storageService.edgeExistsBidirectional(
+                    Edge.newBuilder().setLabel("route").setVertex1(vertex).setVertex2(vertex).build()).hasWeight());
+        } finally {
+            imports.forEach(requestObserver -> requestObserver.onError(Status.CANCELLED.asRuntimeException()));
+        }
+
+        boolean admitted = false;
+
+        for (int i = 0; i < 50 && !admitted; i++) {
+            try {
+                storageService.deleteVertex(vertex);
+                admitted = true;
+            } catch (StatusRuntimeException e) {
+                Thread.sleep(100);
+            }
+        }
+
+        Assert.assertTrue("writes should be admitted when imports are cancelled", admitted);
+    }
+
+    private static <T> List<ImportProgress> importAll(Function<StreamObserver<ImportProgress>, StreamObserver<T>> call, List<T> items) throws InterruptedException {
+        List<ImportProgress> progress = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+
+        StreamObserver<T> requestObserver = call.apply(new StreamObserver<ImportProgress>() {
+            @Override
+            public void onNext(ImportProgress value) {
+                progress.add(value);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                error.set(t);
+                done.countDown();
+            }
+
+            @Override
+            public void onCompleted() {
+                done.countDown();
+            }
+        });
+
+        items.forEach(requestObserver::onNext);
+        requestObserver.onCompleted();
+        Assert.assertTrue("import should complete", done.await(10, TimeUnit.SECONDS));
+
+        if (error.get() != null) {
+            throw new AssertionError("import should not fail", error.get());
+        }
+
+        return progress;
     }
 
 //    @Test
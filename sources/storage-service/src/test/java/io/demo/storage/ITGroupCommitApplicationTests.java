@@ -0,0 +1,76 @@
+package io.demo.storage;
+
+import io.demo.storage.service.StorageService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single writes are committed in groups when group commit is enabled
+ */
+@RunWith(SpringRunner.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+@SpringBootTest(properties = "grpc.enabled=false")
+@ActiveProfiles("test")
+@TestPropertySource(properties = {"storage.group-commit.enabled=true", "storage.group-commit.max-size=2"})
+public class ITGroupCommitApplicationTests {
+
+    private static final String LABEL = "group_commit_station";
+
+    @Autowired
+    private StorageService storageService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Concurrent writes go through the group commit writer, a failing write fails its own call only
+     */
+    @Test
+    public void testConcurrentWritesAreCommittedInGroups() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<?>> creates = new ArrayList<>();
+
+            for (int i = 0; i < 32; i++) {
+                String name = "Station " + i;
+                creates.add(executor.submit(() -> storageService.createVertex(LABEL, name)));
+            }
+
+            Future<?> failing = executor.submit(() -> storageService.createEdgeBidirectional(LABEL, "No such station",
+                    LABEL, "No other station", "route", 1.0));
+
+            for (Future<?> create : creates) {
+                create.get(10, TimeUnit.SECONDS);
+            }
+
+            try {
+                failing.get(10, TimeUnit.SECONDS);
+                Assert.fail("edge between missing stations should not be created");
+            } catch (ExecutionException e) {
+                // expected, other writes are not affected
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(32, storageService.listAllVertexNamesByLabel(LABEL).size());
+        Assert.assertTrue("writes should be grouped", meterRegistry.get("graph.write.group.size").summary().count() > 0);
+    }
+}
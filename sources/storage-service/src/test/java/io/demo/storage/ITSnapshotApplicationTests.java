@@ -0,0 +1,99 @@
+package io.demo.storage;
+
+import io.demo.storage.domain.GraphRoute;
+import io.demo.storage.domain.PathSearchLimits;
+import io.demo.storage.service.RouteGraphSnapshot;
+import io.demo.storage.service.StorageService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Path and edge queries of a separate snapshot label are served by in-memory route graph snapshot, which follows writes,
+ * and paths are enumerated in parallel. Search algorithms themselves are tested by unit tests of io.demo.storage.graph
+ */
+@RunWith(SpringRunner.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+@SpringBootTest(properties = "grpc.enabled=false")
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "storage.snapshot.enabled=true",
+        "storage.snapshot.vertex-label=" + ITSnapshotApplicationTests.V_LABEL,
+        "storage.snapshot.edge-label=" + ITSnapshotApplicationTests.E_LABEL,
+        "storage.path-search.parallelism=4"
+})
+public class ITSnapshotApplicationTests {
+
+    static final String V_LABEL = "snapshot_station";
+    static final String E_LABEL = "snapshot_route";
+
+    @Autowired
+    private StorageService storageService;
+
+    @Autowired
+    private RouteGraphSnapshot routeGraphSnapshot;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Routes 1 - 2 - 4 cost 3, 1 - 3 - 4 cost 5, 1 - 4 costs 10
+     */
+    @Test
+    public void testQueriesAreServedBySnapshot() {
+        for (String name : Arrays.asList("Station 1", "Station 2", "Station 3", "Station 4")) {
+            storageService.createVertex(V_LABEL, name);
+        }
+
+        storageService.createEdgeBidirectional(V_LABEL, "Station 1", V_LABEL, "Station 2", E_LABEL, 1);
+        storageService.createEdgeBidirectional(V_LABEL, "Station 2", V_LABEL, "Station 4", E_LABEL, 2);
+        storageService.createEdgeBidirectional(V_LABEL, "Station 1", V_LABEL, "Station 3", E_LABEL, 1);
+        storageService.createEdgeBidirectional(V_LABEL, "Station 3", V_LABEL, "Station 4", E_LABEL, 4);
+        storageService.createEdgeBidirectional(V_LABEL, "Station 1", V_LABEL, "Station 4", E_LABEL, 10);
+
+        Assert.assertTrue(routeGraphSnapshot.coversEdge(V_LABEL, V_LABEL, E_LABEL));
+        Assert.assertEquals("writes should be applied to the snapshot", Collections.emptyList(), routeGraphSnapshot.checkConsistency());
+        Assert.assertEquals(2, storageService.edgeExistsBidirectional(V_LABEL, "Station 4", V_LABEL, "Station 2", E_LABEL), 0);
+
+        List<GraphRoute> paths = storageService.findPathsBidirectional(V_LABEL, "Station 1", V_LABEL, "Station 4", E_LABEL, new PathSearchLimits());
+        Assert.assertEquals("paths should be ordered by total weight", Arrays.asList(3.0, 5.0, 10.0), weights(paths));
+
+        List<GraphRoute> streamed = new ArrayList<>();
+        storageService.streamPathsBidirectional(V_LABEL, "Station 1", V_LABEL, "Station 4", E_LABEL, new PathSearchLimits(), streamed::add);
+        Assert.assertEquals("the same paths should be streamed", 3, streamed.size());
+
+        List<GraphRoute> cheapest = storageService.findShortestPathsBidirectional(V_LABEL, "Station 1", V_LABEL, "Station 4", E_LABEL, 2, new PathSearchLimits());
+        Assert.assertEquals(Arrays.asList(3.0, 5.0), weights(cheapest));
+        Assert.assertEquals(Arrays.asList("Station 1", "Station 2", "Station 4"), cheapest.get(0).getVertices());
+
+        storageService.deleteEdgeBidirectional(V_LABEL, "Station 2", V_LABEL, "Station 4", E_LABEL);
+        Assert.assertNull(storageService.edgeExistsBidirectional(V_LABEL, "Station 2", V_LABEL, "Station 4", E_LABEL));
+        Assert.assertEquals("deleted route should not be found", Arrays.asList(5.0, 10.0),
+                weights(storageService.findPathsBidirectional(V_LABEL, "Station 1", V_LABEL, "Station 4", E_LABEL, new PathSearchLimits())));
+
+        Double estimate = storageService.estimateMinTotalWeight(V_LABEL, "Station 1", V_LABEL, "Station 4", E_LABEL);
+        // landmarks are recomputed in background after new routes
+        Assert.assertTrue("estimated min cost should not exceed cheapest route cost", estimate == null || estimate <= 5);
+
+        Assert.assertTrue("paths should be found by the snapshot", meterRegistry.get("graph.paths")
+                .tag("operation", "findPathsBidirectional").tag("backend", "snapshot").summary().count() >= 2);
+    }
+
+    private static List<Double> weights(List<GraphRoute> routes) {
+        List<Double> weights = new ArrayList<>();
+        routes.forEach(route -> weights.add(route.getTotalWeight()));
+        return weights;
+    }
+}
@@ -0,0 +1,140 @@
+package io.demo.storage.config;
+
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+import org.apache.commons.configuration.MapConfiguration;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Pool settings of {@link SqlgSettings} take effect on a pool which has connections already, as the pool of Sqlg has
+ * when it is configured, over a stub JDBC driver
+ */
+public class SqlgSettingsTests {
+
+    private static final String URL = "jdbc:stub:pool";
+
+    private final StubDriver driver = new StubDriver();
+    private ComboPooledDataSource pooled;
+
+    @Before
+    public void prepareForTest() throws SQLException {
+        DriverManager.registerDriver(driver);
+        // as Sqlg creates it
+        pooled = new ComboPooledDataSource();
+        pooled.setJdbcUrl(URL);
+        pooled.setMaxPoolSize(100);
+        pooled.setMaxIdleTime(3600);
+    }
+
+    @After
+    public void cleanUp() throws SQLException {
+        pooled.close();
+        DriverManager.deregisterDriver(driver);
+    }
+
+    @Test
+    public void maxPoolSizeIsPassedOnlyIfSet() {
+        DatabaseProperties databaseProperties = new DatabaseProperties();
+        Assert.assertFalse("Sqlg's default should be kept", SqlgSettings.configuration(databaseProperties).containsKey("maxPoolSize"));
+
+        databaseProperties.getPool().setMaxSize(30);
+        MapConfiguration configuration = SqlgSettings.configuration(databaseProperties);
+        Assert.assertEquals(30, configuration.getInt("maxPoolSize"));
+        Assert.assertEquals(3600, configuration.getInt("maxIdleTime"));
+    }
+
+    @Test
+    public void poolSettingsApplyToPoolInUse() throws Exception {
+        pooled.getConnection().close();
+        int acquired = driver.connections.get();
+
+        DatabaseProperties.Pool pool = new DatabaseProperties.Pool();
+        pool.setMinSize(8);
+        pool.setAcquireTimeoutMillis(2000);
+        pool.setIdleTestPeriodSeconds(30);
+        pool.setTestOnCheckin(false);
+        pool.setStatementCacheSize(50);
+        SqlgSettings.configurePool(pooled, pool);
+
+        Assert.assertEquals(8, pooled.getMinPoolSize());
+        Assert.assertEquals(8, pooled.getInitialPoolSize());
+        Assert.assertEquals(2000, pooled.getCheckoutTimeout());
+        Assert.assertEquals(30, pooled.getIdleConnectionTestPeriod());
+        Assert.assertFalse(pooled.isTestConnectionOnCheckin());
+        Assert.assertEquals(50, pooled.getMaxStatementsPerConnection());
+        Assert.assertEquals("max pool size of Sqlg should be kept", 100, pooled.getMaxPoolSize());
+
+        // the pool is replaced by one of the new min size
+        pooled.getConnection().close();
+        long deadline = System.currentTimeMillis() + 10000;
+
+        while (pooled.getNumConnectionsDefaultUser() < 8 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        Assert.assertEquals("pool should grow to the new min size", 8, pooled.getNumConnectionsDefaultUser());
+        Assert.assertTrue("new pool should acquire its own connections", driver.connections.get() >= acquired + 8);
+    }
+
+    /**
+     * Driver of {@link #URL}, its connections are valid and do nothing
+     */
+    private static class StubDriver implements Driver {
+
+        final AtomicInteger connections = new AtomicInteger();
+
+        @Override
+        public Connection connect(String url, Properties info) throws SQLException {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+
+            Connection connection = Mockito.mock(Connection.class);
+            Mockito.when(connection.isValid(Mockito.anyInt())).thenReturn(true);
+            connections.incrementAndGet();
+            return connection;
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return URL.equals(url);
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() {
+            return Logger.getGlobal();
+        }
+    }
+}
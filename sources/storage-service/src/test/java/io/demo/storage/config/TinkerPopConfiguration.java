@@ -1,6 +1,7 @@
 package io.demo.storage.config;
 
 import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
 import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -12,6 +13,9 @@ public class TinkerPopConfiguration {
 
     @Bean
     public Graph sqlgGraph() {
-        return TinkerGraph.open();
+        TinkerGraph graph = TinkerGraph.open();
+        // the same lookup index as GraphSchema creates on Sqlg, TinkerGraph indexes are not per label
+        graph.createIndex("name", Vertex.class);
+        return graph;
     }
 }
@@ -0,0 +1,56 @@
+package io.demo.storage.graph;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A {@link BloomFilter} never misses a key added, and at its expected number of keys gives false positives
+ * with about the configured probability
+ */
+public class BloomFilterTests {
+
+    private static final int EXPECTED_INSERTIONS = 100000;
+    private static final int LOOKUPS = 200000;
+
+    @Test
+    public void noFalseNegatives() {
+        BloomFilter filter = new BloomFilter(EXPECTED_INSERTIONS, 0.01);
+
+        for (int i = 0; i < 2 * EXPECTED_INSERTIONS; i++) {
+            filter.put(key(i));
+        }
+
+        for (int i = 0; i < 2 * EXPECTED_INSERTIONS; i++) {
+            Assert.assertTrue("should contain every key added, even when overfilled: " + key(i), filter.mightContain(key(i)));
+        }
+    }
+
+    @Test
+    public void falsePositiveProbabilityCloseToConfigured() {
+        for (double fpp : new double[]{0.01, 0.001}) {
+            BloomFilter filter = new BloomFilter(EXPECTED_INSERTIONS, fpp);
+
+            for (int i = 0; i < EXPECTED_INSERTIONS; i++) {
+                filter.put(key(i));
+            }
+
+            int falsePositives = 0;
+
+            for (int i = EXPECTED_INSERTIONS; i < EXPECTED_INSERTIONS + LOOKUPS; i++) {
+                if (filter.mightContain(key(i))) {
+                    falsePositives++;
+                }
+            }
+
+            double measured = (double) falsePositives / LOOKUPS;
+            Assert.assertTrue("measured false positive probability " + measured + " should be close to " + fpp,
+                    measured > fpp / 2 && measured < fpp * 1.5);
+            Assert.assertEquals("estimated false positive probability should be close to measured one",
+                    measured, filter.expectedFalsePositiveProbability(), fpp / 2);
+        }
+    }
+
+    private static String key(int i) {
+        return "route\u0000Station " + i + "\u0000Station " + (i + 1);
+    }
+}
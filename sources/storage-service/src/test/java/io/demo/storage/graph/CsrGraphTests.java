@@ -0,0 +1,93 @@
+package io.demo.storage.graph;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Changes of a {@link CsrGraph} kept in its overlay give the same graph as a rebuild, before and after compaction,
+ * and versions derived from the same one do not see each other's changes
+ */
+public class CsrGraphTests {
+
+    private static final int VERTICES = 50;
+    private static final int CHANGES = 5000;
+
+    @Test
+    public void overlayChangesEqualRebuild() {
+        Random random = new Random(42);
+        CsrGraph graph = CsrGraph.empty();
+        CsrGraph.Builder expected = CsrGraph.builder();
+
+        for (int i = 0; i < CHANGES; i++) {
+            String name1 = "Station " + random.nextInt(VERTICES);
+            String name2 = "Station " + random.nextInt(VERTICES);
+            int operation = random.nextInt(10);
+
+            if (operation == 0) {
+                graph = graph.withoutVertex(name1);
+                expected.removeVertex(name1);
+            } else if (operation < 4) {
+                graph = graph.withVertex(name1);
+                expected.addVertex(name1);
+            } else if (operation < 8) {
+                double weight = random.nextInt(5) + 1;
+                graph = graph.withEdge(name1, name2, weight);
+                expected.putEdge(name1, name2, weight);
+            } else {
+                graph = graph.withoutEdge(name1, name2);
+                int vertex1 = graph.indexOf(name1);
+                int vertex2 = graph.indexOf(name2);
+
+                if (vertex1 >= 0 && vertex2 >= 0) {
+                    expected.removeEdge(vertex1, vertex2);
+                }
+            }
+
+            if (i % 1000 == 999) {
+                assertEquals(expected.build(), graph);
+                graph = graph.compact();
+                assertEquals(expected.build(), graph);
+            }
+        }
+    }
+
+    @Test
+    public void versionsDerivedFromTheSameGraphAreIndependent() {
+        CsrGraph base = CsrGraph.builder().addVertex("A").addVertex("B").addVertex("C").putEdge("A", "B", 1).build()
+                .withEdge("B", "C", 2);
+        CsrGraph first = base.withEdge("A", "C", 3);
+        CsrGraph second = base.withEdge("A", "C", 4).withoutEdge("A", "B");
+
+        Assert.assertNull(base.edgeWeight(base.indexOf("A"), base.indexOf("C")));
+        Assert.assertEquals(3, first.edgeWeight(first.indexOf("A"), first.indexOf("C")), 0);
+        Assert.assertEquals(1, first.edgeWeight(first.indexOf("A"), first.indexOf("B")), 0);
+        Assert.assertEquals(4, second.edgeWeight(second.indexOf("A"), second.indexOf("C")), 0);
+        Assert.assertNull(second.edgeWeight(second.indexOf("A"), second.indexOf("B")));
+        Assert.assertEquals(3, first.getEdgeCount());
+        Assert.assertEquals(2, second.getEdgeCount());
+    }
+
+    @Test
+    public void compactionKeepsIndexes() {
+        CsrGraph graph = CsrGraph.builder().addVertex("A").addVertex("B").putEdge("A", "B", 1).build()
+                .withVertex("C").withEdge("B", "C", 2).withoutVertex("A");
+        CsrGraph compacted = graph.compact();
+
+        Assert.assertEquals(graph.getIndexCount(), compacted.getIndexCount());
+        Assert.assertEquals(2, compacted.getVertexCount());
+
+        for (int vertex = 0; vertex < graph.getIndexCount(); vertex++) {
+            Assert.assertEquals(graph.nameOf(vertex), compacted.nameOf(vertex));
+        }
+
+        Assert.assertSame("should not copy a graph without changes", compacted, compacted.compact());
+    }
+
+    private static void assertEquals(CsrGraph expected, CsrGraph actual) {
+        Assert.assertEquals("graphs should be equal", "[]", actual.differences(expected, 10).toString());
+        Assert.assertEquals("graphs should be equal", "[]", expected.differences(actual, 10).toString());
+        Assert.assertEquals(expected.getVertexCount(), actual.getVertexCount());
+    }
+}
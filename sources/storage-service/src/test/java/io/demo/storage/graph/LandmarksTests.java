@@ -0,0 +1,68 @@
+package io.demo.storage.graph;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link Landmarks} are picked farthest first and bound distances from below, and they stay valid for changes which do not shorten distances
+ */
+public class LandmarksTests {
+
+    /**
+     * A - B - C - D - E costs 1, 2, 3, 4, X - Y costs 5 in another component
+     */
+    private static CsrGraph twoComponents() {
+        return CsrGraph.builder()
+                .addVertex("A").addVertex("B").addVertex("C").addVertex("D").addVertex("E").addVertex("X").addVertex("Y")
+                .putEdge("A", "B", 1).putEdge("B", "C", 2).putEdge("C", "D", 3).putEdge("D", "E", 4)
+                .putEdge("X", "Y", 5)
+                .build();
+    }
+
+    @Test
+    public void landmarksArePickedFarthestFirst() {
+        CsrGraph graph = twoComponents();
+        Landmarks landmarks = Landmarks.select(graph, 3);
+
+        Assert.assertEquals(3, landmarks.getCount());
+        // X is unreachable from A, so the farthest, then A is the farthest from X, and E from both
+        Assert.assertEquals("X", graph.nameOf(landmarks.landmarkAt(0)));
+        Assert.assertEquals("A", graph.nameOf(landmarks.landmarkAt(1)));
+        Assert.assertEquals("E", graph.nameOf(landmarks.landmarkAt(2)));
+        Assert.assertEquals("fewer landmarks should be picked than vertices", 7, Landmarks.select(graph, 10).getCount());
+    }
+
+    @Test
+    public void lowerBoundsOfDistances() {
+        CsrGraph graph = twoComponents();
+        Landmarks landmarks = Landmarks.select(graph, 3);
+
+        // on a path through landmarks bounds are exact
+        Assert.assertEquals(5, landmarks.lowerBound(graph.indexOf("B"), graph.indexOf("D")), 0);
+        Assert.assertEquals(10, landmarks.lowerBound(graph.indexOf("A"), graph.indexOf("E")), 0);
+        Assert.assertEquals(0, landmarks.lowerBound(graph.indexOf("C"), graph.indexOf("C")), 0);
+        Assert.assertEquals(Double.POSITIVE_INFINITY, landmarks.lowerBound(graph.indexOf("A"), graph.indexOf("Y")), 0);
+    }
+
+    @Test
+    public void landmarksAreKeptUnlessDistancesMayGetShorter() {
+        CsrGraph graph = twoComponents();
+        Landmarks landmarks = Landmarks.select(graph, 3);
+
+        CsrGraph higherWeight = graph.withEdge("B", "C", 7);
+        Assert.assertTrue("should be kept after a weight increase", landmarks.isFor(higherWeight));
+        Assert.assertTrue(landmarks.lowerBound(graph.indexOf("B"), graph.indexOf("D")) <= 10);
+
+        CsrGraph removedEdge = higherWeight.withoutEdge("D", "E").compact();
+        Assert.assertTrue("should be kept after an edge removal and compaction", landmarks.isFor(removedEdge));
+
+        CsrGraph addedVertex = removedEdge.withVertex("Z").withoutVertex("Y");
+        Assert.assertTrue("should be kept after vertices added or removed", landmarks.isFor(addedVertex));
+        Assert.assertEquals("should give no bound for a vertex added later",
+                0, landmarks.lowerBound(addedVertex.indexOf("Z"), addedVertex.indexOf("A")), 0);
+
+        Assert.assertFalse("should be dropped after a weight decrease", landmarks.isFor(graph.withEdge("B", "C", 1)));
+        Assert.assertFalse("should be dropped after an edge insertion", landmarks.isFor(graph.withEdge("A", "E", 1)));
+        Assert.assertFalse("should be dropped after a reload", landmarks.isFor(twoComponents()));
+    }
+}
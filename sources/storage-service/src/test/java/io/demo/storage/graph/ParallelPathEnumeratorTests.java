@@ -0,0 +1,108 @@
+package io.demo.storage.graph;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * {@link ParallelPathEnumerator} finds the same paths as {@link PathEnumerator}, in {@link IntPath} order, on a 4x4 grid
+ * with distinct edge weights, so the order of paths is defined by weight alone
+ */
+public class ParallelPathEnumeratorTests {
+
+    private static final int SIDE = 4;
+    // simple paths between opposite corners of a 4x4 grid
+    private static final int CORNER_PATHS = 184;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final CsrGraph graph = grid();
+    private final int source = graph.indexOf(station(0, 0));
+    private final int target = graph.indexOf(station(SIDE - 1, SIDE - 1));
+
+    @After
+    public void cleanUp() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void parallelPathsEqualSequentialOnes() {
+        List<IntPath> parallel = new ParallelPathEnumerator(graph, pool).enumerate(source, target);
+
+        Assert.assertEquals(CORNER_PATHS, parallel.size());
+        Assert.assertEquals("paths should be sorted", sorted(parallel), parallel);
+        Assert.assertEquals(sorted(sequential(new PathEnumerator(graph))), parallel);
+    }
+
+    @Test
+    public void limitsAreApplied() {
+        Assert.assertEquals("shortest paths of a grid are monotone lattice paths", 20,
+                new ParallelPathEnumerator(graph, pool).withMaxHops(2 * (SIDE - 1)).enumerate(source, target).size());
+        Assert.assertEquals(sorted(sequential(new PathEnumerator(graph).withMaxHops(8))),
+                new ParallelPathEnumerator(graph, pool).withMaxHops(8).enumerate(source, target));
+        Assert.assertEquals(sorted(sequential(new PathEnumerator(graph).withMaxTotalWeight(7.5))),
+                new ParallelPathEnumerator(graph, pool).withMaxTotalWeight(7.5).enumerate(source, target));
+    }
+
+    @Test
+    public void maxPathsKeepsSequentialPaths() {
+        // 20 paths of 6 hops, then paths of 8 hops
+        for (int maxPaths : new int[]{1, 7, 20, 33, 100}) {
+            List<IntPath> parallel = new ParallelPathEnumerator(graph, pool).withMaxPaths(maxPaths).enumerate(source, target);
+
+            Assert.assertEquals(maxPaths, parallel.size());
+            Assert.assertEquals("max paths " + maxPaths, sorted(sequential(new PathEnumerator(graph).withMaxPaths(maxPaths))), parallel);
+        }
+
+        Assert.assertEquals(sorted(sequential(new PathEnumerator(graph).withMaxHops(10).withMaxTotalWeight(11).withMaxPaths(40))),
+                new ParallelPathEnumerator(graph, pool).withMaxHops(10).withMaxTotalWeight(11).withMaxPaths(40).enumerate(source, target));
+    }
+
+    /**
+     * Grid of SIDE x SIDE stations, edges weigh 1 and a distinct fraction
+     */
+    private static CsrGraph grid() {
+        CsrGraph.Builder builder = CsrGraph.builder();
+        int edge = 0;
+
+        for (int row = 0; row < SIDE; row++) {
+            for (int column = 0; column < SIDE; column++) {
+                builder.addVertex(station(row, column));
+            }
+        }
+
+        for (int row = 0; row < SIDE; row++) {
+            for (int column = 0; column < SIDE; column++) {
+                if (column + 1 < SIDE) {
+                    builder.putEdge(station(row, column), station(row, column + 1), 1 + ++edge / 64.0);
+                }
+
+                if (row + 1 < SIDE) {
+                    builder.putEdge(station(row, column), station(row + 1, column), 1 + ++edge / 64.0);
+                }
+            }
+        }
+
+        return builder.build();
+    }
+
+    private List<IntPath> sequential(PathEnumerator enumerator) {
+        List<IntPath> paths = new ArrayList<>();
+        enumerator.enumerate(source, target, paths::add);
+        return paths;
+    }
+
+    private static List<IntPath> sorted(List<IntPath> paths) {
+        List<IntPath> sorted = new ArrayList<>(paths);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    private static String station(int row, int column) {
+        return "Station " + row + "-" + column;
+    }
+}
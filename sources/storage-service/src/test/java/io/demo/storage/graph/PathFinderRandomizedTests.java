@@ -0,0 +1,156 @@
+package io.demo.storage.graph;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * {@link PathFinder} strategies, one-sided Dijkstra, bidirectional Dijkstra and A* over {@link Landmarks}, agree with each other
+ * and with exhaustive enumeration of loopless paths on seeded random graphs. Alternative paths of Yen's algorithm, which bans
+ * vertices of the root path and edges of accepted paths, are the cheapest loopless paths in order, within hop and weight limits
+ */
+public class PathFinderRandomizedTests {
+
+    private static final int GRAPHS = 200;
+    private static final int VERTICES = 10;
+    private static final int PATHS = 6;
+
+    @Test
+    public void strategiesAgreeWithExhaustiveSearch() {
+        Random random = new Random(20191017);
+
+        for (int seed = 0; seed < GRAPHS; seed++) {
+            CsrGraph graph = randomGraph(random);
+            Landmarks landmarks = Landmarks.select(graph, 3);
+
+            // removed edges and higher weights keep landmarks valid
+            if (seed % 2 == 1) {
+                CsrGraph changed = graph.withoutEdge(name(random.nextInt(VERTICES)), name(random.nextInt(VERTICES)));
+                boolean insertion = changed.edgeWeight(0, 1) == null;
+                changed = changed.withEdge(name(0), name(1), 20);
+                Assert.assertEquals("landmarks should be kept unless an edge is inserted", !insertion, landmarks.isFor(changed));
+                graph = changed;
+            }
+
+            int source = random.nextInt(VERTICES);
+            int target = random.nextInt(VERTICES);
+            int maxHops = random.nextInt(5);
+            double maxTotalWeight = random.nextBoolean() ? Double.MAX_VALUE : 5 + random.nextInt(20);
+            List<Double> expected = exhaustiveWeights(graph, source, target, maxHops, maxTotalWeight);
+            String description = "graph " + seed + " from " + source + " to " + target + " within " + maxHops + " hops, weight " + maxTotalWeight;
+
+            for (int strategy = 0; strategy < 3; strategy++) {
+                PathFinder pathFinder = new PathFinder(graph).withBidirectionalSearch(strategy == 1).withMaxHops(maxHops);
+
+                if (maxTotalWeight < Double.MAX_VALUE) {
+                    pathFinder.withMaxTotalWeight(maxTotalWeight);
+                }
+
+                if (strategy == 2 && landmarks.isFor(graph)) {
+                    pathFinder.withLowerBound(landmarks);
+                }
+
+                List<IntPath> paths = pathFinder.shortestPaths(source, target, PATHS);
+                List<Double> weights = new ArrayList<>();
+
+                for (IntPath path : paths) {
+                    assertValid(graph, path, source, target, maxHops, maxTotalWeight, description);
+                    weights.add(path.getTotalWeight());
+                }
+
+                Assert.assertEquals("paths should be distinct: " + description, paths.size(), new HashSet<>(paths).size());
+                Assert.assertEquals("strategy " + strategy + " should find the cheapest paths in order: " + description,
+                        expected.subList(0, Math.min(PATHS, expected.size())), weights);
+            }
+        }
+    }
+
+    private static CsrGraph randomGraph(Random random) {
+        CsrGraph.Builder builder = CsrGraph.builder();
+
+        for (int vertex = 0; vertex < VERTICES; vertex++) {
+            builder.addVertex(name(vertex));
+        }
+
+        for (int vertex1 = 0; vertex1 < VERTICES; vertex1++) {
+            for (int vertex2 = vertex1 + 1; vertex2 < VERTICES; vertex2++) {
+                if (random.nextInt(10) < 3) {
+                    // integer weights, so totals are exact and ties are common
+                    builder.putEdge(name(vertex1), name(vertex2), 1 + random.nextInt(9));
+                }
+            }
+        }
+
+        return builder.build();
+    }
+
+    private static void assertValid(CsrGraph graph, IntPath path, int source, int target, int maxHops, double maxTotalWeight, String description) {
+        int[] vertices = path.getVertices();
+        double total = 0;
+        BitSet visited = new BitSet();
+
+        Assert.assertEquals("path should start at source: " + description, source, vertices[0]);
+        Assert.assertEquals("path should end at target: " + description, target, vertices[vertices.length - 1]);
+        Assert.assertTrue("path should be within max hops: " + description, maxHops == 0 || path.getHops() <= maxHops);
+
+        for (int i = 0; i < vertices.length; i++) {
+            Assert.assertFalse("path should be loopless: " + description, visited.get(vertices[i]));
+            visited.set(vertices[i]);
+
+            if (i > 0) {
+                Double weight = graph.edgeWeight(vertices[i - 1], vertices[i]);
+                Assert.assertNotNull("path should follow edges: " + description, weight);
+                Assert.assertEquals("leg weight should be edge weight: " + description, weight, path.getLegWeights()[i - 1], 0);
+                total += weight;
+            }
+        }
+
+        Assert.assertEquals("total weight should be sum of legs: " + description, total, path.getTotalWeight(), 0);
+        Assert.assertTrue("path should be within max total weight: " + description, total <= maxTotalWeight);
+    }
+
+    /**
+     * Total weights of all loopless paths within limits, ascending
+     */
+    private static List<Double> exhaustiveWeights(CsrGraph graph, int source, int target, int maxHops, double maxTotalWeight) {
+        List<Double> weights = new ArrayList<>();
+        BitSet visited = new BitSet();
+        visited.set(source);
+        enumerate(graph, source, target, 0, 0, maxHops, maxTotalWeight, visited, weights);
+        Collections.sort(weights);
+        return weights;
+    }
+
+    private static void enumerate(CsrGraph graph, int vertex, int target, int hops, double weight, int maxHops, double maxTotalWeight,
+                                  BitSet visited, List<Double> weights) {
+        if (vertex == target) {
+            weights.add(weight);
+            return;
+        }
+
+        if (maxHops > 0 && hops == maxHops) {
+            return;
+        }
+
+        for (int i = graph.neighborsStart(vertex); i < graph.neighborsEnd(vertex); i++) {
+            int neighbor = graph.neighborAt(i);
+            double reached = weight + graph.weightAt(i);
+
+            if (!visited.get(neighbor) && reached <= maxTotalWeight) {
+                visited.set(neighbor);
+                enumerate(graph, neighbor, target, hops + 1, reached, maxHops, maxTotalWeight, visited, weights);
+                visited.clear(neighbor);
+            }
+        }
+    }
+
+    private static String name(int vertex) {
+        return "Station " + vertex;
+    }
+}
@@ -0,0 +1,147 @@
+package io.demo.storage.graph;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Limits of {@link PathFinder} searches are applied during the search, so paths within limits are found
+ * even when cheaper paths outside of limits exist
+ */
+public class PathFinderTests {
+
+    /**
+     * S - A - B - T costs 3 in 3 hops, S - C - T costs 4 in 2 hops, S - T costs 10 in 1 hop
+     */
+    private static CsrGraph threeRoutes() {
+        return CsrGraph.builder()
+                .addVertex("S").addVertex("A").addVertex("B").addVertex("C").addVertex("T")
+                .putEdge("S", "A", 1).putEdge("A", "B", 1).putEdge("B", "T", 1)
+                .putEdge("S", "C", 2).putEdge("C", "T", 2)
+                .putEdge("S", "T", 10)
+                .build();
+    }
+
+    @Test
+    public void cheapestPathsWithinMaxHops() {
+        CsrGraph graph = threeRoutes();
+
+        for (boolean bidirectional : new boolean[]{false, true}) {
+            PathFinder pathFinder = new PathFinder(graph).withBidirectionalSearch(bidirectional).withMaxHops(2);
+            List<IntPath> paths = pathFinder.shortestPaths(graph.indexOf("S"), graph.indexOf("T"), 2);
+
+            Assert.assertEquals(Arrays.asList("[S, C, T] 4.0", "[S, T] 10.0"), names(graph, paths));
+        }
+    }
+
+    @Test
+    public void cheapestPathWithinMaxHopsThroughVertexReachedCheaperWithMoreHops() {
+        // C is reached at cost 3 in 3 hops, but only the 1 hop edge of cost 5 leaves a hop for C - T
+        CsrGraph graph = CsrGraph.builder()
+                .addVertex("S").addVertex("A").addVertex("B").addVertex("C").addVertex("T")
+                .putEdge("S", "A", 1).putEdge("A", "B", 1).putEdge("B", "C", 1)
+                .putEdge("S", "C", 5).putEdge("C", "T", 1)
+                .build();
+        int source = graph.indexOf("S");
+        int target = graph.indexOf("T");
+
+        Assert.assertEquals("[S, A, B, C, T] 4.0", names(graph, Arrays.asList(new PathFinder(graph).shortestPath(source, target))).get(0));
+        Assert.assertEquals("[S, C, T] 6.0", names(graph, Arrays.asList(new PathFinder(graph).withMaxHops(2).shortestPath(source, target))).get(0));
+        Assert.assertEquals("[S, C, T] 6.0", names(graph, Arrays.asList(new PathFinder(graph).withMaxHops(2)
+                .withLowerBound(Landmarks.select(graph, 2)).shortestPath(source, target))).get(0));
+        Assert.assertNull(new PathFinder(graph).withMaxHops(1).shortestPath(source, target));
+    }
+
+    @Test
+    public void alternativePathsWithinMaxTotalWeight() {
+        // spur path A - X - T costs 3, within the limit alone, but 4 together with root path S - A
+        CsrGraph graph = CsrGraph.builder()
+                .addVertex("S").addVertex("A").addVertex("X").addVertex("T")
+                .putEdge("S", "A", 1).putEdge("A", "T", 1)
+                .putEdge("A", "X", 1).putEdge("X", "T", 2)
+                .build();
+
+        for (boolean bidirectional : new boolean[]{false, true}) {
+            PathFinder pathFinder = new PathFinder(graph).withBidirectionalSearch(bidirectional).withMaxTotalWeight(3);
+            List<IntPath> paths = pathFinder.shortestPaths(graph.indexOf("S"), graph.indexOf("T"), 3);
+
+            Assert.assertEquals(Arrays.asList("[S, A, T] 2.0"), names(graph, paths));
+        }
+    }
+
+    @Test
+    public void alternativePathsWithinMaxHopsAndMaxTotalWeight() {
+        CsrGraph graph = threeRoutes();
+        PathFinder pathFinder = new PathFinder(graph).withMaxHops(2).withMaxTotalWeight(9);
+        List<IntPath> paths = pathFinder.shortestPaths(graph.indexOf("S"), graph.indexOf("T"), 3);
+
+        Assert.assertEquals(Arrays.asList("[S, C, T] 4.0"), names(graph, paths));
+    }
+
+    @Test
+    public void noPathToUnreachableTarget() {
+        CsrGraph graph = threeRoutes().withVertex("Z");
+        int source = graph.indexOf("S");
+        int target = graph.indexOf("Z");
+
+        for (boolean bidirectional : new boolean[]{false, true}) {
+            PathFinder pathFinder = new PathFinder(graph).withBidirectionalSearch(bidirectional);
+
+            Assert.assertNull(pathFinder.shortestPath(source, target));
+            Assert.assertTrue(pathFinder.shortestPaths(source, target, 3).isEmpty());
+        }
+
+        Assert.assertNull(new PathFinder(graph).withLowerBound(Landmarks.select(graph, 2)).shortestPath(source, target));
+    }
+
+    @Test
+    public void landmarksSettleFewerVertices() {
+        // 20 x 20 grid of unit edges, corner to corner
+        int size = 20;
+        CsrGraph.Builder builder = CsrGraph.builder();
+
+        for (int i = 0; i < size * size; i++) {
+            builder.addVertex("V" + i);
+        }
+
+        for (int i = 0; i < size * size; i++) {
+            if (i % size < size - 1) {
+                builder.putEdge("V" + i, "V" + (i + 1), 1);
+            }
+
+            if (i + size < size * size) {
+                builder.putEdge("V" + i, "V" + (i + size), 1);
+            }
+        }
+
+        CsrGraph graph = builder.build();
+        int source = graph.indexOf("V0");
+        int target = graph.indexOf("V" + (size * size - 1));
+        PathFinder dijkstra = new PathFinder(graph);
+        PathFinder alt = new PathFinder(graph).withLowerBound(Landmarks.select(graph, 4));
+
+        Assert.assertEquals(2 * (size - 1), dijkstra.shortestPath(source, target).getTotalWeight(), 0);
+        Assert.assertEquals(2 * (size - 1), alt.shortestPath(source, target).getTotalWeight(), 0);
+        Assert.assertTrue("A* over landmarks should settle fewer vertices than Dijkstra's algorithm",
+                alt.getSettledVertices() < dijkstra.getSettledVertices());
+    }
+
+    private static List<String> names(CsrGraph graph, List<IntPath> paths) {
+        List<String> result = new ArrayList<>();
+
+        for (IntPath path : paths) {
+            List<String> names = new ArrayList<>();
+
+            for (int vertex : path.getVertices()) {
+                names.add(graph.nameOf(vertex));
+            }
+
+            result.add(names + " " + path.getTotalWeight());
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,87 @@
+package io.demo.storage.service;
+
+import io.demo.storage.config.SchemaProperties;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link GraphSchema} reports labels and indexes missing from database metadata, stubbed as Sqlg would create tables
+ * of the default schema: train_station vertices with unique name index, route edges with indexed foreign keys
+ */
+public class GraphSchemaTests {
+
+    private static final String SCHEMA = "public";
+    private static final String OUT_KEY = "public.train_station__O";
+    private static final String IN_KEY = "public.train_station__I";
+
+    private final GraphSchema graphSchema = new GraphSchema();
+    private final Map<String, List<Object[]>> indexes = new HashMap<>();
+
+    @Before
+    public void prepareForTest() {
+        ReflectionTestUtils.setField(graphSchema, "schemaProperties", new SchemaProperties());
+        // rows of column name, non-unique flag and position of the column in its index
+        indexes.put("V_train_station", new ArrayList<>(Arrays.asList(index("ID", false, 1), index("name", false, 1))));
+        indexes.put("E_route", new ArrayList<>(Arrays.asList(index("ID", false, 1), index(OUT_KEY, true, 1), index(IN_KEY, true, 1))));
+    }
+
+    @Test
+    public void completeSchema() throws SQLException {
+        Assert.assertEquals(Collections.emptyList(), graphSchema.checkIndexes(metaData(), SCHEMA));
+    }
+
+    @Test
+    public void missingIndexes() throws SQLException {
+        indexes.put("V_train_station", Arrays.asList(index("ID", false, 1), index("name", true, 1)));
+        indexes.put("E_route", Arrays.asList(index("ID", false, 1), index(OUT_KEY, true, 1), index("weight", true, 1), index(IN_KEY, true, 2)));
+
+        Assert.assertEquals(Arrays.asList("unique index of train_station.name",
+                "index of foreign key of edge label route to in vertex label train_station"), graphSchema.checkIndexes(metaData(), SCHEMA));
+    }
+
+    @Test
+    public void missingLabels() throws SQLException {
+        indexes.remove("E_route");
+
+        Assert.assertEquals(Collections.singletonList("edge label route"), graphSchema.checkIndexes(metaData(), SCHEMA));
+    }
+
+    private static Object[] index(String column, boolean nonUnique, int position) {
+        return new Object[] {column, nonUnique, (short) position};
+    }
+
+    private DatabaseMetaData metaData() throws SQLException {
+        DatabaseMetaData metaData = Mockito.mock(DatabaseMetaData.class);
+        Mockito.when(metaData.supportsSchemasInTableDefinitions()).thenReturn(true);
+        Mockito.when(metaData.getTables(Mockito.isNull(), Mockito.eq(SCHEMA), Mockito.anyString(), Mockito.isNull()))
+                .thenAnswer(invocation -> resultSet(indexes.containsKey(invocation.<String>getArgument(2))
+                        ? Collections.singletonList(new Object[0]) : Collections.emptyList()));
+        Mockito.when(metaData.getIndexInfo(Mockito.isNull(), Mockito.eq(SCHEMA), Mockito.anyString(), Mockito.eq(false), Mockito.eq(true)))
+                .thenAnswer(invocation -> resultSet(indexes.getOrDefault(invocation.<String>getArgument(2), Collections.emptyList())));
+        return metaData;
+    }
+
+    private static ResultSet resultSet(List<Object[]> rows) throws SQLException {
+        ResultSet resultSet = Mockito.mock(ResultSet.class);
+        AtomicInteger row = new AtomicInteger(-1);
+        Mockito.when(resultSet.next()).thenAnswer(invocation -> row.incrementAndGet() < rows.size());
+        Mockito.when(resultSet.getString("COLUMN_NAME")).thenAnswer(invocation -> rows.get(row.get())[0]);
+        Mockito.when(resultSet.getBoolean("NON_UNIQUE")).thenAnswer(invocation -> rows.get(row.get())[1]);
+        Mockito.when(resultSet.getShort("ORDINAL_POSITION")).thenAnswer(invocation -> rows.get(row.get())[2]);
+        return resultSet;
+    }
+}
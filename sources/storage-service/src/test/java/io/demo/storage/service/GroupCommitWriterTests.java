@@ -0,0 +1,202 @@
+package io.demo.storage.service;
+
+import io.demo.storage.config.GraphVersionProperties;
+import io.demo.storage.config.GroupCommitProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.configuration.Configuration;
+import org.apache.tinkerpop.gremlin.process.computer.GraphComputer;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Transaction;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.structure.util.AbstractThreadLocalTransaction;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests of {@link GroupCommitWriter} against a graph stub, which supports transactions and counts commits and rollbacks
+ */
+public class GroupCommitWriterTests {
+
+    private static final int WRITES = 8;
+    private static final int FAILING = 5;
+
+    private final TransactionalGraph graph = new TransactionalGraph();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private GroupCommitWriter groupCommitWriter;
+    private ExecutorService callers;
+
+    @Before
+    public void prepareForTest() {
+        GraphVersion graphVersion = new GraphVersion();
+        ReflectionTestUtils.setField(graphVersion, "graph", graph);
+        ReflectionTestUtils.setField(graphVersion, "graphVersionProperties", new GraphVersionProperties());
+        ReflectionTestUtils.setField(graphVersion, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.invokeMethod(graphVersion, "init");
+
+        GroupCommitProperties groupCommitProperties = new GroupCommitProperties();
+        groupCommitProperties.setEnabled(true);
+        groupCommitProperties.setMaxSize(WRITES);
+        // the first write waits for the rest, the group is complete as soon as all of them are queued
+        groupCommitProperties.setMaxDelayMicros(10000000);
+
+        groupCommitWriter = new GroupCommitWriter();
+        ReflectionTestUtils.setField(groupCommitWriter, "graph", graph);
+        ReflectionTestUtils.setField(groupCommitWriter, "groupCommitProperties", groupCommitProperties);
+        ReflectionTestUtils.setField(groupCommitWriter, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(groupCommitWriter, "graphVersion", graphVersion);
+        ReflectionTestUtils.invokeMethod(groupCommitWriter, "init");
+        callers = Executors.newFixedThreadPool(WRITES);
+    }
+
+    @After
+    public void cleanUp() {
+        ReflectionTestUtils.invokeMethod(groupCommitWriter, "destroy");
+        callers.shutdownNow();
+    }
+
+    @Test
+    public void failingWriteFailsItsOwnCallOnly() throws Exception {
+        // writes in order of the writer thread
+        List<Integer> applied = new CopyOnWriteArrayList<>();
+        AtomicInteger committed = new AtomicInteger();
+        List<Future<Integer>> results = new ArrayList<>();
+
+        for (int i = 0; i < WRITES; i++) {
+            int write = i;
+            results.add(callers.submit(() -> groupCommitWriter.write(() -> {
+                applied.add(write);
+
+                if (write == FAILING) {
+                    throw new IllegalArgumentException("write " + write + " fails");
+                }
+
+                return write;
+            }, result -> committed.incrementAndGet())));
+        }
+
+        for (int i = 0; i < WRITES; i++) {
+            try {
+                Assert.assertEquals("should return result of its own write", i, (int) results.get(i).get());
+                Assert.assertNotEquals("failing write should fail its call", FAILING, i);
+            } catch (ExecutionException e) {
+                Assert.assertEquals("only the failing write should fail", FAILING, i);
+                Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+            }
+        }
+
+        Assert.assertEquals("should gather all writes in one group", WRITES, (long) meterRegistry.summary("graph.write.group.size").max());
+        Assert.assertEquals("should retry the group one by one", 1, meterRegistry.counter("graph.write.group.retries").count(), 0);
+
+        // the group runs writes up to the failing one, then all writes are replayed one by one
+        int replays = applied.size() - WRITES;
+        Assert.assertEquals("group should stop at the failing write", FAILING, (int) applied.get(replays - 1));
+        Assert.assertEquals("group should apply every write once at most", replays, new HashSet<>(applied.subList(0, replays)).size());
+        Assert.assertEquals("every write should be replayed once", WRITES, new HashSet<>(applied.subList(replays, applied.size())).size());
+
+        Assert.assertEquals("group and failing replay should be rolled back", 2, graph.rollbacks.get());
+        Assert.assertEquals("every other replay should be committed in its own transaction", WRITES - 1, graph.commits.get());
+        Assert.assertEquals("committed writes should update views", WRITES - 1, committed.get());
+    }
+
+    @Test(timeout = 10000)
+    public void writeAfterStopFails() {
+        ReflectionTestUtils.invokeMethod(groupCommitWriter, "destroy");
+
+        try {
+            groupCommitWriter.write(() -> 1, result -> { });
+            Assert.fail("write should fail once the writer is stopped");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals(0, graph.commits.get());
+        }
+    }
+
+    /**
+     * Graph with transactions only, counts commits and rollbacks
+     */
+    private static class TransactionalGraph implements Graph {
+
+        final AtomicInteger commits = new AtomicInteger();
+        final AtomicInteger rollbacks = new AtomicInteger();
+
+        private final Transaction transaction = new AbstractThreadLocalTransaction(this) {
+            @Override
+            protected void doOpen() {
+            }
+
+            @Override
+            protected void doCommit() {
+                commits.incrementAndGet();
+            }
+
+            @Override
+            protected void doRollback() {
+                rollbacks.incrementAndGet();
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+        };
+
+        @Override
+        public Transaction tx() {
+            return transaction;
+        }
+
+        @Override
+        public Vertex addVertex(Object... keyValues) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <C extends GraphComputer> C compute(Class<C> graphComputerClass) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public GraphComputer compute() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Iterator<Vertex> vertices(Object... vertexIds) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Iterator<Edge> edges(Object... edgeIds) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public Variables variables() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Configuration configuration() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package io.demo.storage.service.grpc;
+
+import io.demo.storage.service.grpc.domain.CreateVertexResponse;
+import io.demo.storage.service.grpc.domain.StorageServiceGrpc;
+import io.demo.storage.service.grpc.domain.Vertex;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.Status;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * {@link GrpcServerMetricsInterceptor} times every call once, closed or cancelled
+ */
+public class GrpcServerMetricsInterceptorTests {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final GrpcServerMetricsInterceptor interceptor = new GrpcServerMetricsInterceptor();
+
+    @SuppressWarnings("unchecked")
+    private final ServerCall<Vertex, CreateVertexResponse> call = Mockito.mock(ServerCall.class);
+
+    @SuppressWarnings("unchecked")
+    private final ServerCall.Listener<Vertex> listener = Mockito.mock(ServerCall.Listener.class);
+
+    private ServerCall<Vertex, CreateVertexResponse> intercepted;
+
+    @Before
+    public void prepareForTest() {
+        ReflectionTestUtils.setField(interceptor, "meterRegistry", meterRegistry);
+        Mockito.when(call.getMethodDescriptor()).thenReturn(StorageServiceGrpc.getCreateVertexMethod());
+    }
+
+    @Test
+    public void closedCallIsTimedWithItsStatus() {
+        interceptor.interceptCall(call, new Metadata(), this::startCall);
+        intercepted.close(Status.NOT_FOUND, new Metadata());
+
+        Assert.assertEquals(1, timed("NOT_FOUND"));
+        Mockito.verify(call).close(Mockito.eq(Status.NOT_FOUND), Mockito.any());
+    }
+
+    @Test
+    public void cancelledCallIsTimedOnce() {
+        ServerCall.Listener<Vertex> timedListener = interceptor.interceptCall(call, new Metadata(), this::startCall);
+        timedListener.onCancel();
+        // a handler still running may close the call after the cancellation
+        intercepted.close(Status.CANCELLED, new Metadata());
+
+        Assert.assertEquals(1, timed("CANCELLED"));
+        Assert.assertEquals(1, meterRegistry.get("grpc.server.calls").timers().size());
+        Mockito.verify(listener).onCancel();
+    }
+
+    private ServerCall.Listener<Vertex> startCall(ServerCall<Vertex, CreateVertexResponse> call, Metadata headers) {
+        intercepted = call;
+        return listener;
+    }
+
+    private long timed(String status) {
+        return meterRegistry.get("grpc.server.calls").tag("method", "createVertex").tag("status", status).timer().count();
+    }
+}
@@ -0,0 +1,170 @@
+package io.demo.storage.util;
+
+import io.demo.storage.domain.GraphEdge;
+import io.demo.storage.domain.GraphRoute;
+import io.demo.storage.domain.GraphVertex;
+import io.demo.storage.domain.PathSearchLimits;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * {@link CompiledGremlinBackend} and {@link GroovyGremlinBackend} give the same results for the same operations,
+ * each on its own TinkerGraph
+ */
+public class GremlinBackendTests {
+
+    private static final String STATION = "station";
+    private static final String ROUTE = "route";
+    private static final int SIZE = 4;
+
+    private TinkerGraph compiledGraph;
+    private TinkerGraph groovyGraph;
+    private GremlinBackend compiled;
+    private GremlinBackend groovy;
+
+    @Before
+    public void prepareForTest() {
+        compiledGraph = TinkerGraph.open();
+        compiledGraph.createIndex("name", Vertex.class);
+        groovyGraph = TinkerGraph.open();
+        groovyGraph.createIndex("name", Vertex.class);
+        compiled = new CompiledGremlinBackend(compiledGraph);
+        groovy = new GroovyGremlinBackend(groovyGraph);
+
+        for (GremlinBackend backend : Arrays.asList(compiled, groovy)) {
+            grid(backend);
+        }
+    }
+
+    @After
+    public void cleanUp() {
+        compiledGraph.close();
+        groovyGraph.close();
+    }
+
+    @Test
+    public void vertexOperationsAgree() {
+        Assert.assertEquals(SIZE * SIZE, compiled.listAllVertexNamesByLabel(false, STATION).size());
+        Assert.assertEquals(sorted(compiled.listAllVertexNamesByLabel(false, STATION)), sorted(groovy.listAllVertexNamesByLabel(false, STATION)));
+        Assert.assertEquals(compiled.listVertexNamesByLabel(false, STATION, null, 5), groovy.listVertexNamesByLabel(false, STATION, null, 5));
+        Assert.assertEquals(compiled.listVertexNamesByLabel(false, STATION, name(1, 1), 5), groovy.listVertexNamesByLabel(false, STATION, name(1, 1), 5));
+        Assert.assertNull(compiled.findVertexId(false, STATION, "Nowhere"));
+        Assert.assertNull(groovy.findVertexId(false, STATION, "Nowhere"));
+
+        for (GremlinBackend backend : Arrays.asList(compiled, groovy)) {
+            backend.deleteVertex(false, STATION, name(0, 0));
+            Assert.assertNull(backend.findVertexId(false, STATION, name(0, 0)));
+        }
+
+        Assert.assertEquals(compiled.listAllVertexNamesByLabel(false, STATION).size(), groovy.listAllVertexNamesByLabel(false, STATION).size());
+    }
+
+    @Test
+    public void edgeOperationsAgree() {
+        List<GraphEdge> edges = new ArrayList<>();
+        edges.add(edge(name(0, 0), name(0, 1), 0));
+        edges.add(edge(name(0, 1), name(0, 0), 0));
+        edges.add(edge(name(0, 0), name(1, 1), 0));
+        edges.add(edge(name(0, 0), "Nowhere", 0));
+
+        Assert.assertEquals(Arrays.asList(1.0, 1.0, null, null), compiled.edgesExistBidirectional(false, edges));
+        Assert.assertEquals(compiled.edgesExistBidirectional(false, edges), groovy.edgesExistBidirectional(false, edges));
+
+        for (GremlinBackend backend : Arrays.asList(compiled, groovy)) {
+            backend.createEdgeBidirectional(false, STATION, name(0, 0), null, STATION, name(0, 1), null, ROUTE, 7);
+            backend.deleteEdgeBidirectional(false, STATION, name(1, 0), null, STATION, name(1, 1), null, ROUTE);
+            Assert.assertEquals(7, backend.edgeExistsBidirectional(false, STATION, name(0, 1), null, STATION, name(0, 0), null, ROUTE), 0);
+            Assert.assertNull(backend.edgeExistsBidirectional(false, STATION, name(1, 1), null, STATION, name(1, 0), null, ROUTE));
+        }
+
+        Assert.assertEquals("[]", compiled.loadCsrGraph(false, STATION, ROUTE).differences(groovy.loadCsrGraph(false, STATION, ROUTE), 10).toString());
+    }
+
+    @Test
+    public void pathSearchesAgree() {
+        PathSearchLimits limits = new PathSearchLimits();
+        limits.setMaxHops(4);
+        String from = name(0, 0);
+        String to = name(2, 2);
+
+        List<String> paths = routes(compiled.findPathsBidirectional(false, STATION, from, null, STATION, to, null, ROUTE, limits));
+        // 6 monotone paths of 4 hops on a grid
+        Assert.assertEquals(6, paths.size());
+        Assert.assertEquals(paths, routes(groovy.findPathsBidirectional(false, STATION, from, null, STATION, to, null, ROUTE, limits)));
+
+        for (GremlinBackend backend : Arrays.asList(compiled, groovy)) {
+            List<GraphRoute> streamed = new ArrayList<>();
+            backend.streamPathsBidirectional(false, STATION, from, null, STATION, to, null, ROUTE, limits, streamed::add);
+            Assert.assertEquals(paths, routes(streamed));
+        }
+
+        List<GraphRoute> compiledShortest = compiled.findShortestPathsBidirectional(false, STATION, from, null, STATION, to, null, ROUTE, 3, new PathSearchLimits());
+        List<GraphRoute> groovyShortest = groovy.findShortestPathsBidirectional(false, STATION, from, null, STATION, to, null, ROUTE, 3, new PathSearchLimits());
+        Assert.assertEquals(3, compiledShortest.size());
+
+        for (int i = 0; i < compiledShortest.size(); i++) {
+            Assert.assertEquals(compiledShortest.get(i).getTotalWeight(), groovyShortest.get(i).getTotalWeight());
+        }
+    }
+
+    /**
+     * SIZE x SIZE grid, an edge of weight 1 between horizontal and vertical neighbours, imported in chunks
+     */
+    private static void grid(GremlinBackend backend) {
+        List<GraphVertex> vertices = new ArrayList<>();
+        List<GraphEdge> edges = new ArrayList<>();
+
+        for (int row = 0; row < SIZE; row++) {
+            for (int column = 0; column < SIZE; column++) {
+                vertices.add(new GraphVertex(STATION, name(row, column)));
+
+                if (column + 1 < SIZE) {
+                    edges.add(edge(name(row, column), name(row, column + 1), 1));
+                }
+
+                if (row + 1 < SIZE) {
+                    edges.add(edge(name(row, column), name(row + 1, column), 1));
+                }
+            }
+        }
+
+        Assert.assertEquals(SIZE * SIZE, backend.importVertices(false, Arrays.asList(vertices.subList(0, 5), vertices.subList(5, vertices.size())).iterator(), chunk -> { }));
+        Assert.assertEquals(edges.size(), backend.importEdges(false, Collections.singletonList(edges).iterator(), chunk -> { }));
+    }
+
+    private static GraphEdge edge(String name1, String name2, double weight) {
+        return new GraphEdge(new GraphVertex(STATION, name1), new GraphVertex(STATION, name2), ROUTE, weight);
+    }
+
+    private static String name(int row, int column) {
+        return "Station " + row + "-" + column;
+    }
+
+    /**
+     * Paths as text, sorted, since traversals of both backends may yield them in different order
+     */
+    private static List<String> routes(List<GraphRoute> routes) {
+        List<String> result = new ArrayList<>();
+
+        for (GraphRoute route : routes) {
+            result.add(route.getVertices() + " " + route.getTotalWeight());
+        }
+
+        Collections.sort(result);
+        return result;
+    }
+
+    private static List<String> sorted(List<String> names) {
+        return new ArrayList<>(new TreeSet<>(names));
+    }
+}
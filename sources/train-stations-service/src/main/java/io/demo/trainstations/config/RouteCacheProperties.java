@@ -0,0 +1,51 @@
+package io.demo.trainstations.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "route-cache")
+public class RouteCacheProperties {
+
+    private boolean enabled = true;
+    private long maxSize = 10000;
+    private long ttlSeconds = 60;
+    private long versionRefreshMillis = 1000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    /**
+     * Interval of graph version checks, which notice writes of other clients: cached results may be returned for about
+     * that long after such writes
+     * @return version refresh interval in milliseconds, zero to notice versions of responses only
+     */
+    public long getVersionRefreshMillis() {
+        return versionRefreshMillis;
+    }
+
+    public void setVersionRefreshMillis(long versionRefreshMillis) {
+        this.versionRefreshMillis = versionRefreshMillis;
+    }
+}
@@ -3,12 +3,30 @@ package io.demo.trainstations.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 @ConfigurationProperties(prefix = "storage-service")
 public class StorageServiceProperties {
 
     private String host;
     private int port;
+    // host:port of each replica, host and port are used if empty. A host resolving to several addresses stands for several replicas
+    private List<String> endpoints = new ArrayList<>();
+    // pick_first or round_robin
+    private String loadBalancingPolicy = "round_robin";
+    // listAllVertexNamesByLabel, edgeExistsBidirectional, edgesExistBidirectional, getGraphVersion
+    private MethodPolicy read = new MethodPolicy(5000, 3, 50);
+    // findPathsBidirectional, findShortestPathsBidirectional; retried, not hedged: a hedged attempt would run
+    // the same enumeration twice, for up to the deadline, and take another slot of the search bulkhead
+    private MethodPolicy search = new MethodPolicy(60000, 2, 0);
+    // create and delete operations, not retried
+    private MethodPolicy write = new MethodPolicy(10000, 1, 0);
+    // route search responses send every station name once, routes refer to names by index
+    private boolean compactRoutes = true;
+    // max routes of a lookup, larger ones are rejected without a call; storage.lookup.max-edges of storage-service
+    private int lookupMaxRoutes = 10000;
 
     public String getHost() {
         return host;
@@ -25,4 +43,107 @@ public class StorageServiceProperties {
     public void setPort(int port) {
         this.port = port;
     }
+
+    public List<String> getEndpoints() {
+        return endpoints;
+    }
+
+    public void setEndpoints(List<String> endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    public String getLoadBalancingPolicy() {
+        return loadBalancingPolicy;
+    }
+
+    public void setLoadBalancingPolicy(String loadBalancingPolicy) {
+        this.loadBalancingPolicy = loadBalancingPolicy;
+    }
+
+    public MethodPolicy getRead() {
+        return read;
+    }
+
+    public void setRead(MethodPolicy read) {
+        this.read = read;
+    }
+
+    public MethodPolicy getSearch() {
+        return search;
+    }
+
+    public void setSearch(MethodPolicy search) {
+        this.search = search;
+    }
+
+    public MethodPolicy getWrite() {
+        return write;
+    }
+
+    public void setWrite(MethodPolicy write) {
+        this.write = write;
+    }
+
+    public boolean isCompactRoutes() {
+        return compactRoutes;
+    }
+
+    public void setCompactRoutes(boolean compactRoutes) {
+        this.compactRoutes = compactRoutes;
+    }
+
+    public int getLookupMaxRoutes() {
+        return lookupMaxRoutes;
+    }
+
+    public void setLookupMaxRoutes(int lookupMaxRoutes) {
+        this.lookupMaxRoutes = lookupMaxRoutes;
+    }
+
+    /**
+     * Deadline and retry policy of a group of storage service methods.
+     * Calls are hedged if hedging delay is set, i.e. another attempt is sent to another replica when the first one is slow,
+     * otherwise they are retried on UNAVAILABLE status only
+     */
+    public static class MethodPolicy {
+
+        // zero means no deadline
+        private long deadlineMillis;
+        // one means no retries
+        private int maxAttempts;
+        private long hedgingDelayMillis;
+
+        public MethodPolicy() {
+        }
+
+        public MethodPolicy(long deadlineMillis, int maxAttempts, long hedgingDelayMillis) {
+            this.deadlineMillis = deadlineMillis;
+            this.maxAttempts = maxAttempts;
+            this.hedgingDelayMillis = hedgingDelayMillis;
+        }
+
+        public long getDeadlineMillis() {
+            return deadlineMillis;
+        }
+
+        public void setDeadlineMillis(long deadlineMillis) {
+            this.deadlineMillis = deadlineMillis;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public long getHedgingDelayMillis() {
+            return hedgingDelayMillis;
+        }
+
+        public void setHedgingDelayMillis(long hedgingDelayMillis) {
+            this.hedgingDelayMillis = hedgingDelayMillis;
+        }
+    }
 }
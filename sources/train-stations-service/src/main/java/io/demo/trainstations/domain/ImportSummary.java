@@ -0,0 +1,98 @@
+package io.demo.trainstations.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A summary of network import
+ */
+public class ImportSummary {
+
+    private long stations;
+    private long routes;
+    private long importedStations;
+    private long importedRoutes;
+    private long rejected;
+    private List<String> rejectedRows = new ArrayList<>();
+    private long elapsedMillis;
+
+    /**
+     * Number of valid station rows received
+     * @return stations count
+     */
+    public long getStations() {
+        return stations;
+    }
+
+    public void setStations(long stations) {
+        this.stations = stations;
+    }
+
+    /**
+     * Number of valid route rows received
+     * @return routes count
+     */
+    public long getRoutes() {
+        return routes;
+    }
+
+    public void setRoutes(long routes) {
+        this.routes = routes;
+    }
+
+    /**
+     * Number of stations created, existing stations are not counted
+     * @return stations count
+     */
+    public long getImportedStations() {
+        return importedStations;
+    }
+
+    public void setImportedStations(long importedStations) {
+        this.importedStations = importedStations;
+    }
+
+    /**
+     * Number of routes created or updated, routes between unknown stations are not counted
+     * @return routes count
+     */
+    public long getImportedRoutes() {
+        return importedRoutes;
+    }
+
+    public void setImportedRoutes(long importedRoutes) {
+        this.importedRoutes = importedRoutes;
+    }
+
+    /**
+     * Number of rows which could not be parsed
+     * @return rejected rows count
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    /**
+     * Descriptions of first rejected rows, with line numbers
+     * @return rejected rows
+     */
+    public List<String> getRejectedRows() {
+        return rejectedRows;
+    }
+
+    /**
+     * Time taken by the import
+     * @return elapsed time in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+}
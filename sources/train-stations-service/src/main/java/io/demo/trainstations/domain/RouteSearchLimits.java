@@ -0,0 +1,60 @@
+package io.demo.trainstations.domain;
+
+/**
+ * Optional limits of a route search. Storage service stops searching as soon as any limit is reached
+ */
+public class RouteSearchLimits {
+
+    private Integer maxHops;
+    private Double maxCost;
+    private Integer maxRoutes;
+    private Long timeoutMillis;
+
+    /**
+     * Max number of stations a route may pass, not including the first one
+     * @return max hops
+     */
+    public Integer getMaxHops() {
+        return maxHops;
+    }
+
+    public void setMaxHops(Integer maxHops) {
+        this.maxHops = maxHops;
+    }
+
+    /**
+     * Max total cost of a route
+     * @return max cost
+     */
+    public Double getMaxCost() {
+        return maxCost;
+    }
+
+    public void setMaxCost(Double maxCost) {
+        this.maxCost = maxCost;
+    }
+
+    /**
+     * Max number of routes to return
+     * @return max routes
+     */
+    public Integer getMaxRoutes() {
+        return maxRoutes;
+    }
+
+    public void setMaxRoutes(Integer maxRoutes) {
+        this.maxRoutes = maxRoutes;
+    }
+
+    /**
+     * Time budget of the search, in milliseconds
+     * @return timeout
+     */
+    public Long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(Long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+}
@@ -0,0 +1,29 @@
+package io.demo.trainstations.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A page of stations, ordered by name
+ */
+public class StationsPage {
+
+    private List<String> stations = new ArrayList<>();
+    private String nextPageToken;
+
+    public List<String> getStations() {
+        return stations;
+    }
+
+    /**
+     * Opaque token of the next page
+     * @return token, null on the last page
+     */
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    public void setNextPageToken(String nextPageToken) {
+        this.nextPageToken = nextPageToken;
+    }
+}
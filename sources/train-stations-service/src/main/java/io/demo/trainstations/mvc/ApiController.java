@@ -1,43 +1,122 @@
 package io.demo.trainstations.mvc;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import io.demo.trainstations.domain.GraphRoute;
+import io.demo.trainstations.domain.ImportSummary;
+import io.demo.trainstations.domain.RouteSearchLimits;
+import io.demo.trainstations.domain.StationPair;
 import io.demo.trainstations.mvc.dto.CreateRouteRequest;
+import io.demo.trainstations.service.NetworkImport;
 import io.demo.trainstations.service.TrainStationService;
+import io.grpc.StatusRuntimeException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.annotation.PostConstruct;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * RESTful API implementation
+ * RESTful API implementation. Handlers of single request/response operations return futures,
+ * so servlet threads are released while storage service is working
  */
 @RestController
 @RequestMapping("/api")
 public class ApiController {
 
+    /**
+     * Newline delimited JSON, one JSON document per line
+     */
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    /**
+     * Comma separated values
+     */
+    public static final String TEXT_CSV_VALUE = "text/csv";
+
+    /**
+     * Response header with token of the next page of a paged listing
+     */
+    public static final String NEXT_PAGE_TOKEN = "X-Next-Page-Token";
+
     @Autowired
     private TrainStationService trainStationService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private ObjectWriter ndjsonWriter;
+    private NetworkImportReader networkImportReader;
+
+    @PostConstruct
+    private void init() {
+        // routes are written to response stream one by one, which must not be closed after each of them
+        ndjsonWriter = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        networkImportReader = new NetworkImportReader(objectMapper);
+    }
+
     /**
      * Create station
      * @param name station name
      * @return OK if no exception
      */
     @PostMapping(value = "/stations")
-    public ResponseEntity<String> createStation(@RequestBody String name) {
-        trainStationService.createStation(name);
-        return ResponseEntity.ok("OK");
+    public CompletableFuture<ResponseEntity<String>> createStation(@RequestBody String name) {
+        return trainStationService.createStation(name).thenApply(result -> ResponseEntity.ok("OK"));
     }
 
     /**
-     * List all stations
+     * List all stations, or a page of stations ordered by name if page size is set.
+     * Token of the next page is returned in X-Next-Page-Token header, which is absent on the last page
+     * @param pageSize optional max number of stations in the page
+     * @param pageToken optional token of the page, from X-Next-Page-Token header of the previous one
      * @return list of stations names
      */
     @GetMapping(value = "/stations")
-    public ResponseEntity<List<String>> listAllStations() {
-        List<String> stations = trainStationService.listAllStations();
-        return ResponseEntity.ok(stations);
+    public CompletableFuture<ResponseEntity<List<String>>> listAllStations(@RequestParam(name = "pageSize", required = false) Integer pageSize,
+                                                                           @RequestParam(name = "pageToken", required = false) String pageToken) {
+        if (pageSize == null && pageToken == null) {
+            return trainStationService.listAllStations().thenApply(ResponseEntity::ok);
+        }
+
+        return trainStationService.listStations(pageSize != null ? pageSize : 0, pageToken).thenApply(page -> {
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+
+            if (page.getNextPageToken() != null) {
+                response.header(NEXT_PAGE_TOKEN, page.getNextPageToken());
+            }
+
+            return response.body(page.getStations());
+        });
+    }
+
+    /**
+     * Stream all stations as newline delimited JSON, ordered by name. Stations are not buffered, slow client slows down the listing
+     * @return stream of stations names, one JSON string per line
+     */
+    @GetMapping(value = "/stations/stream", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamStations() {
+        // names come in pages, flushing once per page is enough
+        StreamingResponseBody body = out -> trainStationService.streamStations(stations -> {
+            stations.forEach(station -> writeLine(out, station, false));
+            flush(out);
+        });
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE)).body(body);
     }
 
     /**
@@ -46,9 +125,8 @@ public class ApiController {
      * @return OK if no exception
      */
     @DeleteMapping(value = "/stations/{name:.+}")
-    public ResponseEntity<String> deleteStation(@PathVariable(name = "name") String name) {
-        trainStationService.deleteStation(name);
-        return ResponseEntity.ok("OK");
+    public CompletableFuture<ResponseEntity<String>> deleteStation(@PathVariable(name = "name") String name) {
+        return trainStationService.deleteStation(name).thenApply(result -> ResponseEntity.ok("OK"));
     }
 
     /**
@@ -57,9 +135,9 @@ public class ApiController {
      * @return OK if no exception
      */
     @PostMapping(value = "/routes")
-    public ResponseEntity<String> createRoute(@RequestBody CreateRouteRequest request) {
-        trainStationService.createRoute(request.getStation1(), request.getStation2(), request.getCost());
-        return ResponseEntity.ok("OK");
+    public CompletableFuture<ResponseEntity<String>> createRoute(@RequestBody CreateRouteRequest request) {
+        return trainStationService.createRoute(request.getStation1(), request.getStation2(), request.getCost())
+                .thenApply(result -> ResponseEntity.ok("OK"));
     }
 
     /**
@@ -69,15 +147,25 @@ public class ApiController {
      * @return cost of route, HTTP 404 if route does not exist
      */
     @GetMapping(value = "/route/{station1}/{station2:.+}")
-    public ResponseEntity<Double> routeExists(@PathVariable(name = "station1") String station1,
-                                              @PathVariable(name = "station2") String station2) {
-        Double cost = trainStationService.routeExists(station1, station2);
-
-        if (cost != null) {
-            return ResponseEntity.ok(cost);
-        } else {
-            return ResponseEntity.notFound().build();
-        }
+    public CompletableFuture<ResponseEntity<Double>> routeExists(@PathVariable(name = "station1") String station1,
+                                                                 @PathVariable(name = "station2") String station2) {
+        return trainStationService.routeExists(station1, station2).thenApply(cost -> {
+            if (cost != null) {
+                return ResponseEntity.ok(cost);
+            } else {
+                return ResponseEntity.notFound().build();
+            }
+        });
+    }
+
+    /**
+     * Check if routes exist between pairs of stations, return their costs, with a single storage-service call
+     * @param pairs stations of every route
+     * @return cost of every route, in the same order, null if route does not exist
+     */
+    @PostMapping(value = "/routes/lookup")
+    public CompletableFuture<ResponseEntity<List<Double>>> lookupRoutes(@RequestBody List<StationPair> pairs) {
+        return trainStationService.lookupRoutes(pairs).thenApply(ResponseEntity::ok);
     }
 
     /**
@@ -87,22 +175,140 @@ public class ApiController {
      * @return OK if no exception
      */
     @DeleteMapping(value = "/route/{station1}/{station2:.+}")
-    public ResponseEntity<String> deleteRoute(@PathVariable(name = "station1") String station1,
-                                              @PathVariable(name = "station2") String station2) {
-        trainStationService.deleteRoute(station1, station2);
-        return ResponseEntity.ok("OK");
+    public CompletableFuture<ResponseEntity<String>> deleteRoute(@PathVariable(name = "station1") String station1,
+                                                                 @PathVariable(name = "station2") String station2) {
+        return trainStationService.deleteRoute(station1, station2).thenApply(result -> ResponseEntity.ok("OK"));
     }
 
     /**
      * Find routes between two stations, also calculate total costs
      * @param station1 first station
      * @param station2 second station
+     * @param limits optional search limits, bound from query parameters maxHops, maxCost, maxRoutes, timeoutMillis
      * @return list of found routes and their total costs
      */
     @GetMapping(value = "/routes/{station1}/{station2:.+}")
-    public ResponseEntity<List<GraphRoute>> findRoutes(@PathVariable(name = "station1") String station1,
-                                                       @PathVariable(name = "station2") String station2) {
-        List<GraphRoute> routes = trainStationService.findRoutes(station1, station2);
-        return ResponseEntity.ok(routes);
+    public CompletableFuture<ResponseEntity<List<GraphRoute>>> findRoutes(@PathVariable(name = "station1") String station1,
+                                                                          @PathVariable(name = "station2") String station2,
+                                                                          RouteSearchLimits limits) {
+        return trainStationService.findRoutes(station1, station2, limits).thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * Find routes between two stations, stream them as newline delimited JSON as soon as they are found.
+     * Routes are not buffered, slow client slows down the search
+     * @param station1 first station
+     * @param station2 second station
+     * @param limits optional search limits, bound from query parameters maxHops, maxCost, maxRoutes, timeoutMillis
+     * @return stream of found routes, one JSON object per line
+     */
+    @GetMapping(value = "/routes/{station1}/{station2}/stream", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamRoutes(@PathVariable(name = "station1") String station1,
+                                                              @PathVariable(name = "station2") String station2,
+                                                              RouteSearchLimits limits) {
+        StreamingResponseBody body = out -> trainStationService.streamRoutes(station1, station2, limits, route -> writeLine(out, route, true));
+
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE)).body(body);
+    }
+
+    /**
+     * Find cheapest routes between two stations, ordered by total cost
+     * @param station1 first station
+     * @param station2 second station
+     * @param count max number of routes to return
+     * @param limits optional search limits, bound from query parameters maxHops, maxCost, maxRoutes, timeoutMillis
+     * @return list of found routes and their total costs
+     */
+    @GetMapping(value = "/routes/{station1}/{station2}/cheapest")
+    public CompletableFuture<ResponseEntity<List<GraphRoute>>> findCheapestRoutes(@PathVariable(name = "station1") String station1,
+                                                                                  @PathVariable(name = "station2") String station2,
+                                                                                  @RequestParam(name = "count", defaultValue = "1") int count,
+                                                                                  RouteSearchLimits limits) {
+        return trainStationService.findCheapestRoutes(station1, station2, count, limits).thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * Import stations and routes in bulk. Body is parsed and forwarded to storage service row by row, so it is never kept in memory.
+     * Stations should go before routes between them. Existing stations are skipped, existing routes are updated.
+     * CSV rows are "station,name" or "route,station1,station2,cost",
+     * NDJSON rows are {"station":"name"} or {"station1":"station1","station2":"station2","cost":cost}
+     * @param contentType text/csv or application/x-ndjson
+     * @param body CSV or NDJSON rows
+     * @return counts of received and imported stations and routes, rejected rows and elapsed time
+     * @throws IOException if body can't be read
+     */
+    @PostMapping(value = "/import", consumes = {TEXT_CSV_VALUE, APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<ImportSummary> importNetwork(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                       InputStream body) throws IOException {
+        Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, charset));
+        NetworkImport networkImport = trainStationService.startImport();
+        ImportSummary summary = null;
+
+        try {
+            if (contentType.isCompatibleWith(MediaType.parseMediaType(TEXT_CSV_VALUE))) {
+                networkImportReader.readCsv(reader, networkImport);
+            } else {
+                networkImportReader.readNdjson(reader, networkImport);
+            }
+
+            summary = networkImport.finish();
+        } finally {
+            if (summary == null) {
+                networkImport.abort();
+            }
+        }
+
+        return ResponseEntity.ok(summary);
+    }
+
+    /**
+     * Map errors of storage service calls to HTTP statuses, other errors are internal ones
+     * @param e storage service error
+     * @return error description
+     */
+    @ExceptionHandler(StatusRuntimeException.class)
+    public ResponseEntity<String> handleStorageServiceError(StatusRuntimeException e) {
+        HttpStatus status;
+
+        switch (e.getStatus().getCode()) {
+            case INVALID_ARGUMENT:
+                status = HttpStatus.BAD_REQUEST;
+                break;
+            case UNAVAILABLE:
+                status = HttpStatus.SERVICE_UNAVAILABLE;
+                break;
+            case DEADLINE_EXCEEDED:
+                status = HttpStatus.GATEWAY_TIMEOUT;
+                break;
+            case RESOURCE_EXHAUSTED:
+                status = HttpStatus.TOO_MANY_REQUESTS;
+                break;
+            default:
+                status = HttpStatus.INTERNAL_SERVER_ERROR;
+        }
+
+        return ResponseEntity.status(status).body(e.getStatus().getDescription());
+    }
+
+    private void writeLine(OutputStream out, Object value, boolean flush) {
+        try {
+            ndjsonWriter.writeValue(out, value);
+            out.write('\n');
+
+            if (flush) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void flush(OutputStream out) {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
@@ -0,0 +1,169 @@
+package io.demo.trainstations.mvc;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.demo.trainstations.service.NetworkImport;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses stations and routes line by line, and passes them to {@link NetworkImport} as soon as they are parsed.
+ * Rows which can't be parsed are rejected, the rest of input is still imported. Blank lines and lines starting with # are skipped.
+ * <p>
+ * CSV rows: {@code station,<name>} or {@code route,<station1>,<station2>,<cost>}, values may be quoted with ".
+ * <p>
+ * NDJSON rows: {@code {"station":"<name>"}} or {@code {"station1":"<station1>","station2":"<station2>","cost":<cost>}}
+ */
+class NetworkImportReader {
+
+    private static final String STATION = "station";
+    private static final String ROUTE = "route";
+
+    private final ObjectMapper objectMapper;
+
+    NetworkImportReader(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Read CSV rows
+     * @param reader input
+     * @param networkImport receives parsed rows
+     * @throws IOException if input can't be read
+     */
+    void readCsv(BufferedReader reader, NetworkImport networkImport) throws IOException {
+        long lineNumber = 0;
+        String line;
+
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+
+            if (isSkipped(line)) {
+                continue;
+            }
+
+            List<String> values = splitCsv(line);
+
+            if (values == null) {
+                networkImport.reject(lineNumber, "unterminated quote");
+            } else if (STATION.equals(values.get(0)) && values.size() == 2) {
+                addStation(lineNumber, values.get(1), networkImport);
+            } else if (ROUTE.equals(values.get(0)) && values.size() == 4) {
+                addRoute(lineNumber, values.get(1), values.get(2), values.get(3), networkImport);
+            } else {
+                networkImport.reject(lineNumber, "expected 'station,<name>' or 'route,<station1>,<station2>,<cost>'");
+            }
+        }
+    }
+
+    /**
+     * Read NDJSON rows
+     * @param reader input
+     * @param networkImport receives parsed rows
+     * @throws IOException if input can't be read
+     */
+    void readNdjson(BufferedReader reader, NetworkImport networkImport) throws IOException {
+        long lineNumber = 0;
+        String line;
+
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+
+            if (isSkipped(line)) {
+                continue;
+            }
+
+            JsonNode node;
+
+            try {
+                node = objectMapper.readTree(line);
+            } catch (JsonProcessingException e) {
+                networkImport.reject(lineNumber, "invalid JSON");
+                continue;
+            }
+
+            if (node.hasNonNull(STATION)) {
+                addStation(lineNumber, node.get(STATION).asText(), networkImport);
+            } else if (node.hasNonNull("station1") && node.hasNonNull("station2") && node.hasNonNull("cost")) {
+                addRoute(lineNumber, node.get("station1").asText(), node.get("station2").asText(), node.get("cost").asText(), networkImport);
+            } else {
+                networkImport.reject(lineNumber, "expected 'station', or 'station1', 'station2' and 'cost' fields");
+            }
+        }
+    }
+
+    private static boolean isSkipped(String line) {
+        String trimmed = line.trim();
+        return trimmed.isEmpty() || trimmed.startsWith("#");
+    }
+
+    private static void addStation(long lineNumber, String name, NetworkImport networkImport) {
+        if (name.isEmpty()) {
+            networkImport.reject(lineNumber, "station name is empty");
+            return;
+        }
+
+        networkImport.addStation(name);
+    }
+
+    private static void addRoute(long lineNumber, String station1, String station2, String cost, NetworkImport networkImport) {
+        if (station1.isEmpty() || station2.isEmpty()) {
+            networkImport.reject(lineNumber, "station name is empty");
+            return;
+        }
+
+        double value;
+
+        try {
+            value = Double.parseDouble(cost);
+        } catch (NumberFormatException e) {
+            networkImport.reject(lineNumber, "cost '" + cost + "' is not a number");
+            return;
+        }
+
+        networkImport.addRoute(station1, station2, value);
+    }
+
+    /**
+     * Split CSV line into values, "" inside of a quoted value stands for a single quote
+     * @return values, null if a quote is not terminated
+     */
+    private static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append(c);
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString().trim());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+
+        if (quoted) {
+            return null;
+        }
+
+        values.add(value.toString().trim());
+        return values;
+    }
+}
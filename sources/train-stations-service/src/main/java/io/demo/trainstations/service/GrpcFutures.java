@@ -0,0 +1,48 @@
+package io.demo.trainstations.service;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Adapts futures returned by gRPC future stubs to {@link CompletableFuture}
+ */
+final class GrpcFutures {
+
+    private GrpcFutures() {
+    }
+
+    /**
+     * Convert gRPC call future. Result is completed on gRPC callback thread, so dependent stages must not block.
+     * Cancelling the result cancels the call
+     * @param listenableFuture future of a gRPC call
+     * @param <T> type of result
+     * @return completable future
+     */
+    static <T> CompletableFuture<T> toCompletableFuture(ListenableFuture<T> listenableFuture) {
+        CompletableFuture<T> result = new CompletableFuture<T>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                listenableFuture.cancel(mayInterruptIfRunning);
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+
+        Futures.addCallback(listenableFuture, new FutureCallback<T>() {
+            @Override
+            public void onSuccess(T value) {
+                result.complete(value);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+
+        return result;
+    }
+}
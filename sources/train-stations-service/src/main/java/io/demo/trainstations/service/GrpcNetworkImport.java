@@ -0,0 +1,225 @@
+package io.demo.trainstations.service;
+
+import io.demo.storage.service.grpc.domain.DoubleValue;
+import io.demo.storage.service.grpc.domain.Edge;
+import io.demo.storage.service.grpc.domain.ImportProgress;
+import io.demo.storage.service.grpc.domain.StorageServiceGrpc;
+import io.demo.storage.service.grpc.domain.Vertex;
+import io.demo.trainstations.domain.ImportSummary;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.function.Function;
+
+import static io.demo.trainstations.service.TrainStationServiceImpl.E_LABEL;
+import static io.demo.trainstations.service.TrainStationServiceImpl.V_LABEL;
+
+/**
+ * {@link NetworkImport} based on importVertices and importEdges streaming calls of storage service.
+ * Consecutive stations are sent within a single importVertices call, consecutive routes within a single importEdges call.
+ * A call is completed (and its transaction committed) before the next one starts, so routes can refer to stations added before them.
+ * Sending waits for gRPC flow control, so a slow storage service slows down the caller instead of buffering rows in memory
+ */
+class GrpcNetworkImport implements NetworkImport {
+
+    private static final int MAX_REJECTED_ROWS = 100;
+
+    private final StorageServiceGrpc.StorageServiceStub storageService;
+    private final ImportSummary summary = new ImportSummary();
+    private final long started = System.currentTimeMillis();
+
+    private StreamingCall<Vertex> stationsCall;
+    private StreamingCall<Edge> routesCall;
+
+    GrpcNetworkImport(StorageServiceGrpc.StorageServiceStub storageService) {
+        this.storageService = storageService;
+    }
+
+    @Override
+    public void addStation(String name) {
+        if (routesCall != null) {
+            summary.setImportedRoutes(summary.getImportedRoutes() + routesCall.finish());
+            routesCall = null;
+        }
+
+        if (stationsCall == null) {
+            stationsCall = new StreamingCall<>(storageService::importVertices);
+        }
+
+        stationsCall.send(Vertex.newBuilder().setLabel(V_LABEL).setName(name).build());
+        summary.setStations(summary.getStations() + 1);
+    }
+
+    @Override
+    public void addRoute(String station1, String station2, double cost) {
+        if (stationsCall != null) {
+            summary.setImportedStations(summary.getImportedStations() + stationsCall.finish());
+            stationsCall = null;
+        }
+
+        if (routesCall == null) {
+            routesCall = new StreamingCall<>(storageService::importEdges);
+        }
+
+        routesCall.send(Edge.newBuilder()
+                .setVertex1(Vertex.newBuilder().setLabel(V_LABEL).setName(station1))
+                .setVertex2(Vertex.newBuilder().setLabel(V_LABEL).setName(station2))
+                .setLabel(E_LABEL)
+                .setWeight(DoubleValue.newBuilder().setValue(cost)).build());
+        summary.setRoutes(summary.getRoutes() + 1);
+    }
+
+    @Override
+    public void reject(long line, String reason) {
+        summary.setRejected(summary.getRejected() + 1);
+
+        if (summary.getRejectedRows().size() < MAX_REJECTED_ROWS) {
+            summary.getRejectedRows().add("line " + line + ": " + reason);
+        }
+    }
+
+    @Override
+    public ImportSummary finish() {
+        if (stationsCall != null) {
+            summary.setImportedStations(summary.getImportedStations() + stationsCall.finish());
+            stationsCall = null;
+        }
+
+        if (routesCall != null) {
+            summary.setImportedRoutes(summary.getImportedRoutes() + routesCall.finish());
+            routesCall = null;
+        }
+
+        summary.setElapsedMillis(System.currentTimeMillis() - started);
+        return summary;
+    }
+
+    @Override
+    public void abort() {
+        if (stationsCall != null) {
+            stationsCall.cancel();
+            stationsCall = null;
+        }
+
+        if (routesCall != null) {
+            routesCall.cancel();
+            routesCall = null;
+        }
+    }
+
+    /**
+     * A streaming import call, with outbound flow control
+     * @param <T> type of sent messages
+     */
+    private static class StreamingCall<T> implements ClientResponseObserver<T, ImportProgress> {
+
+        private final Object lock = new Object();
+        private final StreamObserver<T> requestObserver;
+
+        private ClientCallStreamObserver<T> requestStream;
+        private long imported;
+        private Throwable error;
+        private boolean done;
+
+        StreamingCall(Function<StreamObserver<ImportProgress>, StreamObserver<T>> call) {
+            requestObserver = call.apply(this);
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<T> requestStream) {
+            this.requestStream = requestStream;
+            requestStream.setOnReadyHandler(this::signal);
+        }
+
+        /**
+         * Send a message, wait until transport buffers have room for it
+         * @param value message
+         */
+        void send(T value) {
+            synchronized (lock) {
+                while (!requestStream.isReady() && !done) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        cancel();
+                        throw Status.CANCELLED.withDescription("import interrupted").asRuntimeException();
+                    }
+                }
+
+                if (error != null) {
+                    throw toStatusException(error);
+                }
+            }
+
+            requestObserver.onNext(value);
+        }
+
+        /**
+         * Complete the call, wait until storage service commits the transaction
+         * @return number of elements imported
+         */
+        long finish() {
+            requestObserver.onCompleted();
+
+            synchronized (lock) {
+                while (!done) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        cancel();
+                        throw Status.CANCELLED.withDescription("import interrupted").asRuntimeException();
+                    }
+                }
+
+                if (error != null) {
+                    throw toStatusException(error);
+                }
+
+                return imported;
+            }
+        }
+
+        void cancel() {
+            requestStream.cancel("import aborted", null);
+        }
+
+        @Override
+        public void onNext(ImportProgress value) {
+            synchronized (lock) {
+                imported = value.getImported();
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            synchronized (lock) {
+                error = t;
+                done = true;
+                lock.notifyAll();
+            }
+        }
+
+        @Override
+        public void onCompleted() {
+            synchronized (lock) {
+                done = true;
+                lock.notifyAll();
+            }
+        }
+
+        private void signal() {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+
+        private static StatusRuntimeException toStatusException(Throwable t) {
+            return t instanceof StatusRuntimeException ? (StatusRuntimeException) t : Status.fromThrowable(t).asRuntimeException();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package io.demo.trainstations.service;
+
+import io.demo.trainstations.domain.ImportSummary;
+
+/**
+ * A {@link NetworkImport} forwards stations and routes to storage service as they are added, with bounded memory usage.
+ * Stations have to be added before routes between them. Either {@link #finish()} or {@link #abort()} must be called at the end
+ */
+public interface NetworkImport {
+
+    /**
+     * Add station, existing stations are skipped
+     * @param name station name
+     */
+    void addStation(String name);
+
+    /**
+     * Add route, or update cost of existing route
+     * @param station1 first station
+     * @param station2 second station
+     * @param cost cost of the route
+     */
+    void addRoute(String station1, String station2, double cost);
+
+    /**
+     * Report a row which could not be parsed
+     * @param line line number
+     * @param reason description of the problem
+     */
+    void reject(long line, String reason);
+
+    /**
+     * Wait until storage service writes everything added
+     * @return import summary
+     */
+    ImportSummary finish();
+
+    /**
+     * Cancel import, storage service rolls back current transaction
+     */
+    void abort();
+}
@@ -0,0 +1,237 @@
+package io.demo.trainstations.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.demo.storage.service.grpc.domain.GraphVersionRequest;
+import io.demo.storage.service.grpc.domain.GraphVersionResponse;
+import io.demo.storage.service.grpc.domain.StorageServiceGrpc;
+import io.demo.trainstations.config.RouteCacheProperties;
+import io.demo.trainstations.config.StorageServiceProperties;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.stub.MetadataUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * A {@link RouteCache} is a bounded cache of storage-service query results, validated by graph version.
+ * storage-service returns the version of the graph in "graph-version" response header, along with "graph-version-before",
+ * the version at the start of the call. Results are cached only if the graph did not change during the call, with that version.
+ * A cached result is returned while its version is the latest version known to this service, without a storage-service call.
+ * The latest version is the highest one seen in responses of all storage-service calls of stubs intercepted by this cache,
+ * so writes of this service invalidate cached results right away, and the one returned by a getGraphVersion call sent every
+ * refresh interval in background, which reads the version from the database. Results may be stale for about a refresh interval
+ * after writes of other clients. The version is shared by all storage-service replicas, but a replica notices writes of other
+ * replicas with a delay, so responses of a replica may report an older version, their results are not cached.
+ * Replicas with their own in-memory graphs have their own versions, unrelated to each other: if version checks report
+ * a version which is not shared, and calls are spread over replicas by round_robin, results are not cached. Metrics: "route.cache.stale" entries dropped by version checks
+ */
+@Component
+public class RouteCache implements ClientInterceptor {
+
+    static final Metadata.Key<String> GRAPH_VERSION = Metadata.Key.of("graph-version", Metadata.ASCII_STRING_MARSHALLER);
+    static final Metadata.Key<String> GRAPH_VERSION_BEFORE = Metadata.Key.of("graph-version-before", Metadata.ASCII_STRING_MARSHALLER);
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RouteCache.class);
+    private static final long UNKNOWN_VERSION = Long.MIN_VALUE;
+    private static final String ROUND_ROBIN = "round_robin";
+
+    @Autowired
+    private RouteCacheProperties routeCacheProperties;
+
+    @Autowired
+    private StorageServiceProperties storageServiceProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<List<Object>, CachedValue> cache;
+    // as reported by the last version check, assumed until the first one
+    private volatile boolean sharedVersion = true;
+    // the highest version seen in responses and version checks
+    private final AtomicLong latestVersion = new AtomicLong(UNKNOWN_VERSION);
+    private ScheduledExecutorService refreshExecutor;
+    private ScheduledFuture<?> refresh;
+
+    @PostConstruct
+    private void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(routeCacheProperties.getMaxSize())
+                .expireAfterWrite(routeCacheProperties.getTtlSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "routes");
+        refreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "route-cache-version-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    private void destroy() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * Check graph version by the storage-service stub every refresh interval, replaces the stub of previous calls
+     * @param storageService storage-service stub
+     */
+    public synchronized void refreshVersion(StorageServiceGrpc.StorageServiceFutureStub storageService) {
+        long interval = routeCacheProperties.getVersionRefreshMillis();
+
+        if (!routeCacheProperties.isEnabled() || interval <= 0) {
+            return;
+        }
+
+        if (refresh != null) {
+            refresh.cancel(false);
+        }
+
+        refresh = refreshExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                GraphVersionResponse response = storageService.withDeadlineAfter(Math.max(interval, 1000), TimeUnit.MILLISECONDS)
+                        .getGraphVersion(GraphVersionRequest.getDefaultInstance()).get();
+                sharedVersion = response.getShared();
+                observe(response.getVersion());
+            } catch (ExecutionException e) {
+                LOGGER.debug("Graph version check failed: {}", e.getCause().toString());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get cached result of a storage-service call, if graph version did not change since it was cached,
+     * or perform the call and cache its result
+     * @param key cache key, should identify the call and its parameters
+     * @param storageService storage-service stub
+     * @param call storage-service call
+     * @param <T> type of result
+     * @return future of result
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> get(List<Object> key, StorageServiceGrpc.StorageServiceFutureStub storageService,
+                                        Function<StorageServiceGrpc.StorageServiceFutureStub, ListenableFuture<T>> call) {
+        if (!routeCacheProperties.isEnabled()) {
+            return GrpcFutures.toCompletableFuture(call.apply(storageService));
+        }
+
+        CachedValue cached = cache.getIfPresent(key);
+
+        if (cached == null) {
+            return load(key, storageService, call);
+        }
+
+        if (cached.version == latestVersion.get() && isCacheable()) {
+            return CompletableFuture.completedFuture((T) cached.value);
+        }
+
+        meterRegistry.counter("route.cache.stale").increment();
+        cache.asMap().remove(key, cached);
+        return load(key, storageService, call);
+    }
+
+    /**
+     * Note graph versions of responses of all calls, so results cached before writes of this service are not returned after them
+     */
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(next.newCall(method, callOptions)) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
+                    @Override
+                    public void onHeaders(Metadata responseHeaders) {
+                        observe(parseVersion(responseHeaders, GRAPH_VERSION));
+                        super.onHeaders(responseHeaders);
+                    }
+
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        observe(parseVersion(trailers, GRAPH_VERSION));
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+        };
+    }
+
+    private <T> CompletableFuture<T> load(List<Object> key, StorageServiceGrpc.StorageServiceFutureStub storageService,
+                                          Function<StorageServiceGrpc.StorageServiceFutureStub, ListenableFuture<T>> call) {
+        AtomicReference<Metadata> headers = new AtomicReference<>();
+
+        return GrpcFutures.toCompletableFuture(call.apply(MetadataUtils.captureMetadata(storageService, headers, new AtomicReference<>())))
+                .thenApply(value -> {
+                    long version = parseVersion(headers.get(), GRAPH_VERSION);
+                    observe(version);
+
+                    if (version != UNKNOWN_VERSION && version == parseVersion(headers.get(), GRAPH_VERSION_BEFORE)
+                            && version == latestVersion.get() && isCacheable()) {
+                        cache.put(key, new CachedValue(version, value));
+                    }
+
+                    return value;
+                });
+    }
+
+    private boolean isCacheable() {
+        return sharedVersion || !ROUND_ROBIN.equals(storageServiceProperties.getLoadBalancingPolicy());
+    }
+
+    private void observe(long version) {
+        if (version != UNKNOWN_VERSION) {
+            latestVersion.accumulateAndGet(version, Math::max);
+        }
+    }
+
+    private static long parseVersion(Metadata headers, Metadata.Key<String> key) {
+        String value = headers != null ? headers.get(key) : null;
+
+        if (value == null) {
+            return UNKNOWN_VERSION;
+        }
+
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return UNKNOWN_VERSION;
+        }
+    }
+
+    private static class CachedValue {
+        final long version;
+        final Object value;
+
+        CachedValue(long version, Object value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package io.demo.trainstations.service;
+
+import io.demo.storage.service.grpc.domain.StorageServiceGrpc;
+import io.demo.trainstations.config.StorageServiceProperties;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.MethodDescriptor;
+import io.grpc.NameResolver;
+import io.grpc.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Builds a channel to storage service replicas. Each address of configured endpoints gets its own subchannel,
+ * calls are spread over them by configured load balancing policy. Deadlines, retries and hedging are set per method group
+ * with a service config, see {@link StorageServiceProperties.MethodPolicy}
+ */
+public final class StorageServiceChannels {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StorageServiceChannels.class);
+
+    private StorageServiceChannels() {
+    }
+
+    /**
+     * Build a channel to storage service
+     * @param properties storage service endpoints and call policies
+     * @return channel, connected lazily
+     */
+    public static ManagedChannel build(StorageServiceProperties properties) {
+        List<String> endpoints = properties.getEndpoints().isEmpty()
+                ? Collections.singletonList(properties.getHost() + ":" + properties.getPort())
+                : properties.getEndpoints();
+        List<InetSocketAddress> addresses = new ArrayList<>();
+
+        for (String endpoint : endpoints) {
+            addresses.add(parseEndpoint(endpoint));
+        }
+
+        return ManagedChannelBuilder.forTarget("storage-service")
+                .nameResolverFactory(new EndpointsNameResolverFactory(addresses))
+                .defaultLoadBalancingPolicy(properties.getLoadBalancingPolicy())
+                .defaultServiceConfig(serviceConfig(properties))
+                // the service config above is the only one, storage service does not publish its own
+                .disableServiceConfigLookUp()
+                .enableRetry()
+                .usePlaintext()
+                .build();
+    }
+
+    /**
+     * Build service config with deadlines, retry and hedging policies, in the format of gRPC service config JSON.
+     * Channels built elsewhere, e.g. in-process ones, get the same policies with it
+     * @param properties storage service call policies
+     * @return service config
+     */
+    public static Map<String, Object> serviceConfig(StorageServiceProperties properties) {
+        List<Object> methodConfigs = new ArrayList<>();
+        methodConfigs.add(methodConfig(properties.getRead(),
+                StorageServiceGrpc.getListAllVertexNamesByLabelMethod(),
+                StorageServiceGrpc.getEdgeExistsBidirectionalMethod(),
+                StorageServiceGrpc.getEdgesExistBidirectionalMethod(),
+                StorageServiceGrpc.getGetGraphVersionMethod()));
+        methodConfigs.add(methodConfig(properties.getSearch(),
+                StorageServiceGrpc.getFindPathsBidirectionalMethod(),
+                StorageServiceGrpc.getFindShortestPathsBidirectionalMethod()));
+        methodConfigs.add(methodConfig(properties.getWrite(),
+                StorageServiceGrpc.getCreateVertexMethod(),
+                StorageServiceGrpc.getDeleteVertexMethod(),
+                StorageServiceGrpc.getCreateEdgeBidirectionalMethod(),
+                StorageServiceGrpc.getDeleteEdgeBidirectionalMethod()));
+        return Collections.singletonMap("methodConfig", methodConfigs);
+    }
+
+    private static Map<String, Object> methodConfig(StorageServiceProperties.MethodPolicy policy, MethodDescriptor<?, ?>... methods) {
+        Map<String, Object> methodConfig = new LinkedHashMap<>();
+        List<Object> names = new ArrayList<>();
+
+        for (MethodDescriptor<?, ?> method : methods) {
+            Map<String, Object> name = new LinkedHashMap<>();
+            name.put("service", MethodDescriptor.extractFullServiceName(method.getFullMethodName()));
+            name.put("method", method.getFullMethodName().substring(method.getFullMethodName().lastIndexOf('/') + 1));
+            names.add(name);
+        }
+
+        methodConfig.put("name", names);
+
+        if (policy.getDeadlineMillis() > 0) {
+            methodConfig.put("timeout", toDuration(policy.getDeadlineMillis()));
+        }
+
+        // numbers of service config are doubles, as if parsed from JSON
+        if (policy.getMaxAttempts() > 1 && policy.getHedgingDelayMillis() > 0) {
+            Map<String, Object> hedgingPolicy = new LinkedHashMap<>();
+            hedgingPolicy.put("maxAttempts", (double) policy.getMaxAttempts());
+            hedgingPolicy.put("hedgingDelay", toDuration(policy.getHedgingDelayMillis()));
+            hedgingPolicy.put("nonFatalStatusCodes", Collections.singletonList(Status.Code.UNAVAILABLE.name()));
+            methodConfig.put("hedgingPolicy", hedgingPolicy);
+        } else if (policy.getMaxAttempts() > 1) {
+            Map<String, Object> retryPolicy = new LinkedHashMap<>();
+            retryPolicy.put("maxAttempts", (double) policy.getMaxAttempts());
+            retryPolicy.put("initialBackoff", "0.1s");
+            retryPolicy.put("maxBackoff", "1s");
+            retryPolicy.put("backoffMultiplier", 2.0);
+            retryPolicy.put("retryableStatusCodes", Collections.singletonList(Status.Code.UNAVAILABLE.name()));
+            methodConfig.put("retryPolicy", retryPolicy);
+        }
+
+        return methodConfig;
+    }
+
+    private static String toDuration(long millis) {
+        return String.format("%d.%03ds", millis / 1000, millis % 1000);
+    }
+
+    private static InetSocketAddress parseEndpoint(String endpoint) {
+        int separator = endpoint.lastIndexOf(':');
+
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Storage service endpoint should be host:port, got '" + endpoint + "'");
+        }
+
+        try {
+            return InetSocketAddress.createUnresolved(endpoint.substring(0, separator).trim(),
+                    Integer.parseInt(endpoint.substring(separator + 1).trim()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Storage service endpoint should be host:port, got '" + endpoint + "'", e);
+        }
+    }
+
+    /**
+     * Resolves configured endpoints, whatever the channel target is
+     */
+    private static class EndpointsNameResolverFactory extends NameResolver.Factory {
+
+        private final List<InetSocketAddress> endpoints;
+
+        EndpointsNameResolverFactory(List<InetSocketAddress> endpoints) {
+            this.endpoints = endpoints;
+        }
+
+        @Override
+        public NameResolver newNameResolver(URI targetUri, NameResolver.Args args) {
+            return new EndpointsNameResolver(endpoints);
+        }
+
+        @Override
+        public String getDefaultScheme() {
+            return "storage";
+        }
+    }
+
+    /**
+     * Resolves host names of endpoints to all their addresses, on start and whenever the channel asks to refresh,
+     * e.g. after a replica becomes unreachable
+     */
+    private static class EndpointsNameResolver extends NameResolver {
+
+        private final List<InetSocketAddress> endpoints;
+        // DNS lookups block, they must not run on channel threads
+        private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "storage-service-resolver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private final AtomicBoolean resolving = new AtomicBoolean();
+        private Listener2 listener;
+
+        EndpointsNameResolver(List<InetSocketAddress> endpoints) {
+            this.endpoints = endpoints;
+        }
+
+        @Override
+        public String getServiceAuthority() {
+            InetSocketAddress endpoint = endpoints.get(0);
+            return endpoint.getHostString() + ":" + endpoint.getPort();
+        }
+
+        @Override
+        public void start(Listener2 listener) {
+            this.listener = listener;
+            resolve();
+        }
+
+        @Override
+        public void refresh() {
+            resolve();
+        }
+
+        @Override
+        public void shutdown() {
+            executor.shutdownNow();
+        }
+
+        private void resolve() {
+            if (executor.isShutdown() || !resolving.compareAndSet(false, true)) {
+                return;
+            }
+
+            executor.execute(() -> {
+                try {
+                    List<EquivalentAddressGroup> groups = new ArrayList<>();
+                    UnknownHostException lastError = null;
+
+                    for (InetSocketAddress endpoint : endpoints) {
+                        try {
+                            for (InetAddress address : InetAddress.getAllByName(endpoint.getHostString())) {
+                                groups.add(new EquivalentAddressGroup(new InetSocketAddress(address, endpoint.getPort())));
+                            }
+                        } catch (UnknownHostException e) {
+                            // other replicas are still usable
+                            LOGGER.warn("Storage service endpoint {} can't be resolved", endpoint);
+                            lastError = e;
+                        }
+                    }
+
+                    if (groups.isEmpty()) {
+                        listener.onError(Status.UNAVAILABLE.withDescription("No storage service endpoint can be resolved: " + endpoints)
+                                .withCause(lastError));
+                    } else {
+                        LOGGER.debug("Storage service endpoints resolved: {}", groups);
+                        listener.onResult(ResolutionResult.newBuilder().setAddresses(groups).build());
+                    }
+                } finally {
+                    resolving.set(false);
+                }
+            });
+        }
+    }
+}
@@ -1,60 +1,120 @@
 package io.demo.trainstations.service;
 
 import io.demo.trainstations.domain.GraphRoute;
+import io.demo.trainstations.domain.RouteSearchLimits;
+import io.demo.trainstations.domain.StationPair;
+import io.demo.trainstations.domain.StationsPage;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
- * A {@link TrainStationService} is a core service for train stations management
+ * A {@link TrainStationService} is a core service for train stations management.
+ * Operations return futures, completed when storage service responds, so no thread is blocked while waiting
  */
 public interface TrainStationService {
 
     /**
      * Create new station
      * @param name unique name of the station
+     * @return future, completed when station is created
      */
-    void createStation(String name);
+    CompletableFuture<Void> createStation(String name);
 
     /**
      * Liust all stations
-     * @return list of stations names
+     * @return future of list of stations names
      */
-    List<String> listAllStations();
+    CompletableFuture<List<String>> listAllStations();
+
+    /**
+     * List a page of stations, ordered by name
+     * @param pageSize max number of stations in the page, storage service may reduce it
+     * @param pageToken token of the page, null for the first page
+     * @return future of page of stations names
+     */
+    CompletableFuture<StationsPage> listStations(int pageSize, String pageToken);
+
+    /**
+     * List all stations ordered by name, pass them to consumer page by page, as soon as storage service sends them.
+     * Unlike other operations, it blocks the calling thread. If consumer throws an exception, listing is cancelled
+     * @param consumer receives pages of stations names
+     */
+    void streamStations(Consumer<List<String>> consumer);
 
     /**
      * Delete station
      * @param name name of station
+     * @return future, completed when station is deleted
      */
-    void deleteStation(String name);
+    CompletableFuture<Void> deleteStation(String name);
 
     /**
      * Create/update route between two stations, with specified cost
      * @param station1 first station
      * @param station2 second station
      * @param cost cost of the route
+     * @return future, completed when route is created
      */
-    void createRoute(String station1, String station2, double cost);
+    CompletableFuture<Void> createRoute(String station1, String station2, double cost);
 
     /**
      * Check if route exists, return it's cost
      * @param station1 first station
      * @param station2 second station
-     * @return cost of the route
+     * @return future of cost of the route, completed with null if route does not exist
      */
-    Double routeExists(String station1, String station2);
+    CompletableFuture<Double> routeExists(String station1, String station2);
+
+    /**
+     * Check if routes exist, return their costs, with a single storage-service call
+     * @param pairs stations of every route
+     * @return future of cost of every route, in the same order, null if route does not exist
+     * The future fails with INVALID_ARGUMENT status if a pair misses a station, or there are more pairs than the lookup limit
+     */
+    CompletableFuture<List<Double>> lookupRoutes(List<StationPair> pairs);
 
     /**
      * Delete route between two stations, if exists
      * @param station1 first station
      * @param station2 second station
+     * @return future, completed when route is deleted
      */
-    void deleteRoute(String station1, String station2);
+    CompletableFuture<Void> deleteRoute(String station1, String station2);
 
     /**
      * Find routes between two stations, including total costs
      * @param station1 first station
      * @param station2 second station
-     * @return list of found routes
+     * @param limits search limits
+     * @return future of list of found routes
+     */
+    CompletableFuture<List<GraphRoute>> findRoutes(String station1, String station2, RouteSearchLimits limits);
+
+    /**
+     * Find routes between two stations, pass each route to consumer as soon as storage service finds it.
+     * Unlike other operations, it blocks the calling thread. If consumer throws an exception, search is cancelled
+     * @param station1 first station
+     * @param station2 second station
+     * @param limits search limits
+     * @param consumer receives found routes
+     */
+    void streamRoutes(String station1, String station2, RouteSearchLimits limits, Consumer<GraphRoute> consumer);
+
+    /**
+     * Find cheapest routes between two stations, ordered by total cost
+     * @param station1 first station
+     * @param station2 second station
+     * @param count max number of routes to return
+     * @param limits search limits
+     * @return future of list of found routes
+     */
+    CompletableFuture<List<GraphRoute>> findCheapestRoutes(String station1, String station2, int count, RouteSearchLimits limits);
+
+    /**
+     * Start bulk import of stations and routes
+     * @return import session, stations and routes are sent to storage service as they are added
      */
-    List<GraphRoute> findRoutes(String station1, String station2);
+    NetworkImport startImport();
 }
@@ -3,14 +3,23 @@ package io.demo.trainstations.service;
 import io.demo.storage.service.grpc.domain.*;
 import io.demo.trainstations.config.StorageServiceProperties;
 import io.demo.trainstations.domain.GraphRoute;
+import io.demo.trainstations.domain.RouteSearchLimits;
+import io.demo.trainstations.domain.StationPair;
+import io.demo.trainstations.domain.StationsPage;
+import io.grpc.Context;
 import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 @Service
 public class TrainStationServiceImpl implements TrainStationService {
@@ -21,35 +30,83 @@ public class TrainStationServiceImpl implements TrainStationService {
     @Autowired
     private StorageServiceProperties storageServiceProperties;
 
+    @Autowired
+    private RouteCache routeCache;
+
+    @Autowired
+    private GrpcClientMetrics grpcClientMetrics;
+
+    private ManagedChannel channel;
     private StorageServiceGrpc.StorageServiceBlockingStub storageService;
+    private StorageServiceGrpc.StorageServiceStub asyncStorageService;
+    private StorageServiceGrpc.StorageServiceFutureStub futureStorageService;
 
     @PostConstruct
     private void init() {
-        ManagedChannel channel = ManagedChannelBuilder.forAddress(storageServiceProperties.getHost(), storageServiceProperties.getPort()).usePlaintext().build();
-        storageService = StorageServiceGrpc.newBlockingStub(channel);
+        channel = StorageServiceChannels.build(storageServiceProperties);
+        setStorageService(StorageServiceGrpc.newBlockingStub(channel));
+    }
+
+    @PreDestroy
+    private void destroy() {
+        channel.shutdown();
     }
 
     @Override
-    public void createStation(String name) {
+    public CompletableFuture<Void> createStation(String name) {
         Vertex vertex = Vertex.newBuilder().setLabel(V_LABEL).setName(name).build();
-        storageService.createVertex(vertex);
+        return GrpcFutures.toCompletableFuture(futureStorageService.createVertex(vertex)).thenAccept(response -> { });
     }
 
     @Override
-    public List<String> listAllStations() {
+    public CompletableFuture<List<String>> listAllStations() {
         ListVerticesRequest request = ListVerticesRequest.newBuilder().setLabel(V_LABEL).build();
-        ListVerticesResponse response = storageService.listAllVertexNamesByLabel(request);
-        return response.getNamesList();
+        return GrpcFutures.toCompletableFuture(futureStorageService.listAllVertexNamesByLabel(request))
+                .thenApply(ListVerticesResponse::getNamesList);
+    }
+
+    @Override
+    public CompletableFuture<StationsPage> listStations(int pageSize, String pageToken) {
+        ListVerticesRequest.Builder request = ListVerticesRequest.newBuilder().setLabel(V_LABEL).setPageSize(pageSize);
+
+        if (pageToken != null) {
+            request.setPageToken(pageToken);
+        }
+
+        return GrpcFutures.toCompletableFuture(futureStorageService.listAllVertexNamesByLabel(request.build()))
+                .thenApply(response -> {
+                    StationsPage page = new StationsPage();
+                    page.getStations().addAll(response.getNamesList());
+
+                    if (!response.getNextPageToken().isEmpty()) {
+                        page.setNextPageToken(response.getNextPageToken());
+                    }
+
+                    return page;
+                });
     }
 
     @Override
-    public void deleteStation(String name) {
+    public void streamStations(Consumer<List<String>> consumer) {
+        ListVerticesRequest request = ListVerticesRequest.newBuilder().setLabel(V_LABEL).build();
+        Context.CancellableContext context = Context.current().withCancellation();
+
+        try {
+            context.run(() -> storageService.listAllVertexNamesByLabelStream(request)
+                    .forEachRemaining(response -> consumer.accept(response.getNamesList())));
+        } finally {
+            context.cancel(null);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteStation(String name) {
         Vertex vertex = Vertex.newBuilder().setLabel(V_LABEL).setName(name).build();
-        storageService.deleteVertex(vertex);
+        return GrpcFutures.toCompletableFuture(futureStorageService.deleteVertex(vertex)).thenAccept(response -> { });
     }
 
     @Override
-    public void createRoute(String station1, String station2, double cost) {
+    public CompletableFuture<Void> createRoute(String station1, String station2, double cost) {
         Vertex vertex1 = Vertex.newBuilder().setLabel(V_LABEL).setName(station1).build();
         Vertex vertex2 = Vertex.newBuilder().setLabel(V_LABEL).setName(station2).build();
         Edge route = Edge.newBuilder()
@@ -57,55 +114,183 @@ public class TrainStationServiceImpl implements TrainStationService {
                 .setVertex2(vertex2)
                 .setLabel(E_LABEL)
                 .setWeight(DoubleValue.newBuilder().setValue(cost).build()).build();
-        storageService.createEdgeBidirectional(route);
+        return GrpcFutures.toCompletableFuture(futureStorageService.createEdgeBidirectional(route)).thenAccept(response -> { });
     }
 
     @Override
-    public Double routeExists(String station1, String station2) {
+    public CompletableFuture<Double> routeExists(String station1, String station2) {
         Vertex vertex1 = Vertex.newBuilder().setLabel(V_LABEL).setName(station1).build();
         Vertex vertex2 = Vertex.newBuilder().setLabel(V_LABEL).setName(station2).build();
         Edge route = Edge.newBuilder().setLabel(E_LABEL).setVertex1(vertex1).setVertex2(vertex2).build();
-        EdgeExistsBidirectionalResponse response = storageService.edgeExistsBidirectional(route);
+        return routeCache.get(Arrays.asList("routeExists", station1, station2), futureStorageService, stub -> stub.edgeExistsBidirectional(route))
+                .thenApply(response -> response.hasWeight() ? response.getWeight().getValue() : null);
+    }
 
-        if (response.hasWeight()) {
-            return response.getWeight().getValue();
+    @Override
+    public CompletableFuture<List<Double>> lookupRoutes(List<StationPair> pairs) {
+        // storage-service would reject it too, after the request was built and sent
+        if (pairs.size() > storageServiceProperties.getLookupMaxRoutes()) {
+            return invalidArgument("Too many routes to look up: " + pairs.size() + ", limit is " + storageServiceProperties.getLookupMaxRoutes());
         }
 
-        return null;
+        for (int i = 0; i < pairs.size(); i++) {
+            StationPair pair = pairs.get(i);
+
+            if (pair == null || pair.getStation1() == null || pair.getStation2() == null) {
+                return invalidArgument("Route " + i + " should have both stations");
+            }
+        }
+
+        EdgesExistBidirectionalRequest.Builder request = EdgesExistBidirectionalRequest.newBuilder();
+        List<Object> key = new ArrayList<>();
+        key.add("lookupRoutes");
+
+        for (StationPair pair : pairs) {
+            Vertex vertex1 = Vertex.newBuilder().setLabel(V_LABEL).setName(pair.getStation1()).build();
+            Vertex vertex2 = Vertex.newBuilder().setLabel(V_LABEL).setName(pair.getStation2()).build();
+            request.addEdges(Edge.newBuilder().setLabel(E_LABEL).setVertex1(vertex1).setVertex2(vertex2));
+            key.add(pair.getStation1());
+            key.add(pair.getStation2());
+        }
+
+        return routeCache.get(key, futureStorageService, stub -> stub.edgesExistBidirectional(request.build())).thenApply(response -> {
+            List<Double> costs = new ArrayList<>(response.getEdgesCount());
+            response.getEdgesList().forEach(route -> costs.add(route.hasWeight() ? route.getWeight().getValue() : null));
+            return costs;
+        });
     }
 
     @Override
-    public void deleteRoute(String station1, String station2) {
+    public CompletableFuture<Void> deleteRoute(String station1, String station2) {
         Vertex vertex1 = Vertex.newBuilder().setLabel(V_LABEL).setName(station1).build();
         Vertex vertex2 = Vertex.newBuilder().setLabel(V_LABEL).setName(station2).build();
         Edge route = Edge.newBuilder().setLabel(E_LABEL).setVertex1(vertex1).setVertex2(vertex2).build();
-        storageService.deleteEdgeBidirectional(route);
+        return GrpcFutures.toCompletableFuture(futureStorageService.deleteEdgeBidirectional(route)).thenAccept(response -> { });
+    }
+
+    @Override
+    public CompletableFuture<List<GraphRoute>> findRoutes(String station1, String station2, RouteSearchLimits limits) {
+        Vertex vertex1 = Vertex.newBuilder().setLabel(V_LABEL).setName(station1).build();
+        Vertex vertex2 = Vertex.newBuilder().setLabel(V_LABEL).setName(station2).build();
+        Edge edge = Edge.newBuilder().setLabel(E_LABEL).setVertex1(vertex1).setVertex2(vertex2).setLimits(toPathSearchLimits(limits))
+                .setRouteEncoding(routeEncoding()).build();
+        List<Object> key = Arrays.asList("findRoutes", station1, station2,
+                limits.getMaxHops(), limits.getMaxCost(), limits.getMaxRoutes(), limits.getTimeoutMillis());
+        return routeCache.get(key, futureStorageService, stub -> stub.findPathsBidirectional(edge))
+                .thenApply(TrainStationServiceImpl::toRoutes);
+    }
+
+    @Override
+    public void streamRoutes(String station1, String station2, RouteSearchLimits limits, Consumer<GraphRoute> consumer) {
+        Vertex vertex1 = Vertex.newBuilder().setLabel(V_LABEL).setName(station1).build();
+        Vertex vertex2 = Vertex.newBuilder().setLabel(V_LABEL).setName(station2).build();
+        Edge edge = Edge.newBuilder().setLabel(E_LABEL).setVertex1(vertex1).setVertex2(vertex2).setLimits(toPathSearchLimits(limits)).build();
+
+        // blocking iterator requests next route only when previous one is consumed, cancellation stops the search on storage side
+        Context.CancellableContext context = Context.current().withCancellation();
+
+        try {
+            context.run(() -> {
+                Iterator<io.demo.storage.service.grpc.domain.GraphRoute> it = storageService.findPathsBidirectionalStream(edge);
+
+                while (it.hasNext()) {
+                    consumer.accept(toRoute(it.next()));
+                }
+            });
+        } finally {
+            context.cancel(null);
+        }
     }
 
     @Override
-    public List<GraphRoute> findRoutes(String station1, String station2) {
+    public CompletableFuture<List<GraphRoute>> findCheapestRoutes(String station1, String station2, int count, RouteSearchLimits limits) {
         Vertex vertex1 = Vertex.newBuilder().setLabel(V_LABEL).setName(station1).build();
         Vertex vertex2 = Vertex.newBuilder().setLabel(V_LABEL).setName(station2).build();
-        Edge edge = Edge.newBuilder().setLabel(E_LABEL).setVertex1(vertex1).setVertex2(vertex2).build();
-        FindPathsBidirectionalResponse findPathsBidirectionalResponse = storageService.findPathsBidirectional(edge);
+        Edge edge = Edge.newBuilder().setLabel(E_LABEL).setVertex1(vertex1).setVertex2(vertex2).setLimits(toPathSearchLimits(limits))
+                .setRouteEncoding(routeEncoding()).build();
+        FindShortestPathsRequest request = FindShortestPathsRequest.newBuilder().setEdge(edge).setCount(count).build();
+        return GrpcFutures.toCompletableFuture(futureStorageService.findShortestPathsBidirectional(request))
+                .thenApply(TrainStationServiceImpl::toRoutes);
+    }
 
+    @Override
+    public NetworkImport startImport() {
+        return new GrpcNetworkImport(asyncStorageService);
+    }
+
+    private RouteEncoding routeEncoding() {
+        return storageServiceProperties.isCompactRoutes() ? RouteEncoding.COMPACT : RouteEncoding.NAMES;
+    }
+
+    private static PathSearchLimits toPathSearchLimits(RouteSearchLimits limits) {
+        PathSearchLimits.Builder builder = PathSearchLimits.newBuilder();
+
+        if (limits.getMaxHops() != null) {
+            builder.setMaxHops(limits.getMaxHops());
+        }
+
+        if (limits.getMaxCost() != null) {
+            builder.setMaxTotalWeight(DoubleValue.newBuilder().setValue(limits.getMaxCost()).build());
+        }
+
+        if (limits.getMaxRoutes() != null) {
+            builder.setMaxPaths(limits.getMaxRoutes());
+        }
+
+        if (limits.getTimeoutMillis() != null) {
+            builder.setTimeoutMillis(limits.getTimeoutMillis());
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Fail like storage-service does on invalid arguments, so errors map to the same HTTP status
+     */
+    private static <T> CompletableFuture<T> invalidArgument(String description) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        result.completeExceptionally(Status.INVALID_ARGUMENT.withDescription(description).asRuntimeException());
+        return result;
+    }
+
+    /**
+     * Routes of a response, with names or dictionary encoded, see {@link RouteEncoding}
+     */
+    private static List<GraphRoute> toRoutes(FindPathsBidirectionalResponse findPathsBidirectionalResponse) {
         List<GraphRoute> result = new ArrayList<>();
 
-        findPathsBidirectionalResponse.getPathsList().forEach(graphRoute -> {
+        findPathsBidirectionalResponse.getPathsList().forEach(graphRoute -> result.add(toRoute(graphRoute)));
+
+        for (CompactGraphRoute compactRoute : findPathsBidirectionalResponse.getCompactPathsList()) {
             GraphRoute route = new GraphRoute();
-            route.setTotalCost(graphRoute.getTotalWeight().getValue());
-            route.getStations().addAll(graphRoute.getVerticesList());
+            route.setTotalCost(compactRoute.getTotalWeight());
+
+            for (int i = 0; i < compactRoute.getVerticesCount(); i++) {
+                route.getStations().add(findPathsBidirectionalResponse.getNames(compactRoute.getVertices(i)));
+            }
+
             result.add(route);
-        });
+        }
 
         return result;
     }
 
+    private static GraphRoute toRoute(io.demo.storage.service.grpc.domain.GraphRoute graphRoute) {
+        GraphRoute route = new GraphRoute();
+        route.setTotalCost(graphRoute.getTotalWeight().getValue());
+        route.getStations().addAll(graphRoute.getVerticesList());
+        return route;
+    }
+
     public StorageServiceGrpc.StorageServiceBlockingStub getStorageService() {
         return storageService;
     }
 
     public void setStorageService(StorageServiceGrpc.StorageServiceBlockingStub storageService) {
-        this.storageService = storageService;
+        this.storageService = storageService.withInterceptors(grpcClientMetrics, routeCache);
+        // other stub kinds share channel and interceptors with blocking one
+        this.asyncStorageService = StorageServiceGrpc.newStub(this.storageService.getChannel());
+        this.futureStorageService = StorageServiceGrpc.newFutureStub(this.storageService.getChannel());
+        routeCache.refreshVersion(futureStorageService);
     }
 }
@@ -3,12 +3,21 @@ package io.demo.trainstations;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.demo.storage.service.grpc.domain.Edge;
 import io.demo.storage.service.grpc.domain.StorageServiceGrpc;
+import io.demo.trainstations.config.StorageServiceProperties;
 import io.demo.trainstations.domain.GraphRoute;
+import io.demo.trainstations.domain.ImportSummary;
+import io.demo.trainstations.domain.StationPair;
 import io.demo.trainstations.grpc.StorageServiceImpl;
+import io.demo.trainstations.mvc.ApiController;
 import io.demo.trainstations.mvc.dto.CreateRouteRequest;
+import io.demo.trainstations.service.StorageServiceChannels;
 import io.demo.trainstations.service.TrainStationServiceImpl;
 import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.ServerInterceptors;
 import io.grpc.inprocess.InProcessChannelBuilder;
 import io.grpc.inprocess.InProcessServerBuilder;
 import io.grpc.testing.GrpcCleanupRule;
@@ -25,22 +34,30 @@ import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 
 import static com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES;
 import static com.fasterxml.jackson.databind.SerializationFeature.WRITE_DATES_AS_TIMESTAMPS;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Testing scenario:
  *   call every RESTful endpoint
  *   check if data returned correctly
+ *   check if requests and storage-service calls are exported to Prometheus
  */
 @RunWith(SpringRunner.class)
 @DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
@@ -62,10 +79,14 @@ public class ITApplicationTests {
     @Rule
     public final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
 
+    private StorageServiceImpl storageServiceStub;
+
     @Before
     public void prepareForTest() throws IOException {
         String serverName = InProcessServerBuilder.generateName();
-        grpcCleanup.register(InProcessServerBuilder.forName(serverName).directExecutor().addService(new StorageServiceImpl()).build().start());
+        storageServiceStub = new StorageServiceImpl();
+        grpcCleanup.register(InProcessServerBuilder.forName(serverName).directExecutor()
+                .addService(ServerInterceptors.intercept(storageServiceStub, storageServiceStub.graphVersionInterceptor())).build().start());
         ManagedChannel channel = grpcCleanup.register(InProcessChannelBuilder.forName(serverName).directExecutor().build());
         StorageServiceGrpc.StorageServiceBlockingStub storageServiceMock = StorageServiceGrpc.newBlockingStub(channel);
 
@@ -76,18 +97,36 @@ public class ITApplicationTests {
     @Test
     public void testRESTAPI() throws Exception {
         // create station request
-        String stringResponse = mvc.perform(post("/api/stations")
+        String stringResponse = performAsync(post("/api/stations")
                 .content(asJsonString("Station 1"))
                 .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON))
                 .andExpect(content().string("OK")).andReturn().getResponse().getContentAsString();
 
         // list stations request
-        MvcResult mvcResult = mvc.perform(get("/api/stations")).andExpect(status().isOk()).andReturn();
+        MvcResult mvcResult = performAsync(get("/api/stations")).andExpect(status().isOk()).andReturn();
         List<String> stations = parseResponse(mvcResult, new TypeReference<List<String>>() {});
         Assert.assertTrue("should return 5 stations", (stations.size() == 5) && stations.get(0).equals("Station 1"));
 
+        // list stations pages requests
+        mvcResult = performAsync(get("/api/stations").param("pageSize", "3"))
+                .andExpect(status().isOk()).andExpect(header().exists(ApiController.NEXT_PAGE_TOKEN)).andReturn();
+        stations = parseResponse(mvcResult, new TypeReference<List<String>>() {});
+        Assert.assertEquals("should return first page", stations, Arrays.asList("Station 1", "Station 2", "Station 3"));
+        mvcResult = performAsync(get("/api/stations").param("pageSize", "3")
+                .param("pageToken", mvcResult.getResponse().getHeader(ApiController.NEXT_PAGE_TOKEN)))
+                .andExpect(status().isOk()).andExpect(header().doesNotExist(ApiController.NEXT_PAGE_TOKEN)).andReturn();
+        stations = parseResponse(mvcResult, new TypeReference<List<String>>() {});
+        Assert.assertEquals("should return last page", stations, Arrays.asList("Station 4", "Station 5"));
+        performAsync(get("/api/stations").param("pageToken", "invalid")).andExpect(status().isBadRequest());
+
+        // stream stations request
+        mvcResult = mvc.perform(get("/api/stations/stream")).andExpect(request().asyncStarted()).andReturn();
+        String[] stationLines = mvc.perform(asyncDispatch(mvcResult)).andExpect(status().isOk()).andReturn().getResponse().getContentAsString().split("\n");
+        Assert.assertEquals("should stream 5 stations", stationLines.length, 5);
+        Assert.assertEquals("should stream stations as json lines", MAPPER.readValue(stationLines[4], String.class), "Station 5");
+
         // delete station request
-        stringResponse = mvc.perform(delete("/api/stations/Station 1"))
+        stringResponse = performAsync(delete("/api/stations/Station 1"))
                 .andExpect(content().string("OK")).andReturn().getResponse().getContentAsString();
 
         // create route request
@@ -95,27 +134,132 @@ public class ITApplicationTests {
         createRouteRequest.setStation1("Station 1");
         createRouteRequest.setStation2("Station 2");
         createRouteRequest.setCost(0.123);
-        stringResponse = mvc.perform(post("/api/routes")
+        stringResponse = performAsync(post("/api/routes")
                 .content(asJsonString(createRouteRequest))
                 .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON))
                 .andExpect(content().string("OK")).andReturn().getResponse().getContentAsString();
 
         // check existing route
-        mvcResult = mvc.perform(get("/api/route/Station 1/Station 2")).andExpect(status().isOk()).andReturn();
+        mvcResult = performAsync(get("/api/route/Station 1/Station 2")).andExpect(status().isOk()).andReturn();
         Double cost = parseResponse(mvcResult, new TypeReference<Double>() {});
         Assert.assertEquals("should return 0.123", cost, Double.valueOf(0.123));
 
         // check route which does not exist
-        mvc.perform(get("/api/route/Station 1/Station 9")).andExpect(status().isNotFound());
+        performAsync(get("/api/route/Station 1/Station 9")).andExpect(status().isNotFound());
+
+        // check existing route again, result should be cached
+        performAsync(get("/api/route/Station 1/Station 2")).andExpect(status().isOk());
+        Assert.assertEquals("should not call storage service again", storageServiceStub.getEdgeExistsCalls(), 2);
+
+        // batch lookup of routes, costs in the order of requested pairs
+        mvcResult = performAsync(post("/api/routes/lookup")
+                .content(asJsonString(Arrays.asList(new StationPair("Station 1", "Station 2"), new StationPair("Station 1", "Station 9"))))
+                .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk()).andReturn();
+        List<Double> costs = parseResponse(mvcResult, new TypeReference<List<Double>>() {});
+        Assert.assertEquals("should return cost of existing route and null for missing route", costs, Arrays.asList(0.123, null));
+        int lookups = storageServiceStub.getEdgesExistCalls();
+        performAsync(post("/api/routes/lookup").content("[{\"station1\": \"Station 1\"}]")
+                .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        performAsync(post("/api/routes/lookup").content(asJsonString(Collections.nCopies(10001, new StationPair("Station 1", "Station 2"))))
+                .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        Assert.assertEquals("should reject invalid lookups without a call", lookups, storageServiceStub.getEdgesExistCalls());
 
         // delete route request
-        mvc.perform(delete("/api/route/Station 1/Station 2"))
+        performAsync(delete("/api/route/Station 1/Station 2"))
                 .andExpect(content().string("OK"));
 
+        // check route after write, cache should be invalidated by new graph version
+        performAsync(get("/api/route/Station 1/Station 2")).andExpect(status().isOk());
+        Assert.assertEquals("should call storage service after write", storageServiceStub.getEdgeExistsCalls(), 3);
+
         // find routes request
-        mvcResult = mvc.perform(get("/api/routes/Station 1/Station 2")).andExpect(status().isOk()).andReturn();
+        mvcResult = performAsync(get("/api/routes/Station 1/Station 2")).andExpect(status().isOk()).andReturn();
         List<GraphRoute> routes = parseResponse(mvcResult, new TypeReference<List<GraphRoute>>() {});
         Assert.assertTrue("should return 1 route with cost 1.0", (routes.size() == 1) && routes.get(0).getTotalCost().equals(1.0));
+        Assert.assertEquals("should decode compact route stations", routes.get(0).getStations(), Arrays.asList("Station 1", "Station 2"));
+
+        // find routes request with limits, stub returns limits as route costs
+        mvcResult = performAsync(get("/api/routes/Station 1/Station 2")
+                .param("maxHops", "3").param("maxCost", "50.5").param("maxRoutes", "10").param("timeoutMillis", "1000"))
+                .andExpect(status().isOk()).andReturn();
+        routes = parseResponse(mvcResult, new TypeReference<List<GraphRoute>>() {});
+        Assert.assertEquals("should pass max hops", routes.get(0).getTotalCost(), Double.valueOf(3));
+        Assert.assertEquals("should pass max cost", routes.get(1).getTotalCost(), Double.valueOf(50.5));
+        Assert.assertEquals("should pass max routes", routes.get(2).getTotalCost(), Double.valueOf(10));
+        Assert.assertEquals("should pass timeout", routes.get(3).getTotalCost(), Double.valueOf(1000));
+
+        // stream routes request
+        mvcResult = mvc.perform(get("/api/routes/Station 1/Station 2/stream")).andExpect(request().asyncStarted()).andReturn();
+        String[] lines = mvc.perform(asyncDispatch(mvcResult)).andExpect(status().isOk()).andReturn().getResponse().getContentAsString().split("\n");
+        Assert.assertEquals("should stream 3 routes", lines.length, 3);
+        Assert.assertEquals("should stream routes as json lines", MAPPER.readValue(lines[2], GraphRoute.class).getTotalCost(), Double.valueOf(3));
+
+        // find cheapest routes request
+        mvcResult = performAsync(get("/api/routes/Station 1/Station 2/cheapest").param("count", "3")).andExpect(status().isOk()).andReturn();
+        routes = parseResponse(mvcResult, new TypeReference<List<GraphRoute>>() {});
+        Assert.assertTrue("should return 3 routes, cheapest first", (routes.size() == 3) && routes.get(0).getTotalCost().equals(1.0));
+
+        // import CSV request, stations go first, then routes, invalid rows are rejected
+        String csv = "# demo network\n"
+                + "station,Station 1\n"
+                + "station,\"Station, 2\"\n"
+                + "route,Station 1,\"Station, 2\",10.5\n"
+                + "route,Station 1,Station 3,abc\n";
+        mvcResult = mvc.perform(post("/api/import").content(csv).contentType("text/csv")).andExpect(status().isOk()).andReturn();
+        ImportSummary summary = parseResponse(mvcResult, new TypeReference<ImportSummary>() {});
+        Assert.assertEquals("should import 2 stations", summary.getImportedStations(), 2);
+        Assert.assertEquals("should import 1 route", summary.getImportedRoutes(), 1);
+        Assert.assertEquals("should reject route with invalid cost", summary.getRejectedRows(), Collections.singletonList("line 5: cost 'abc' is not a number"));
+
+        // import NDJSON request
+        String ndjson = "{\"station\":\"Station 6\"}\n"
+                + "{\"station1\":\"Station 6\",\"station2\":\"Station 1\",\"cost\":3}\n"
+                + "{\"name\":\"Station 7\"}\n"
+                + "not a json\n";
+        mvcResult = mvc.perform(post("/api/import").content(ndjson).contentType("application/x-ndjson")).andExpect(status().isOk()).andReturn();
+        summary = parseResponse(mvcResult, new TypeReference<ImportSummary>() {});
+        Assert.assertTrue("should import 1 station and 1 route", summary.getStations() == 1 && summary.getRoutes() == 1
+                && summary.getImportedStations() == 1 && summary.getImportedRoutes() == 1);
+        Assert.assertEquals("should reject 2 rows", summary.getRejected(), 2);
+
+        // metrics of REST requests and storage-service calls
+        String metrics = mvc.perform(get("/actuator/prometheus")).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        Assert.assertTrue("REST requests should be timed", metrics.contains("http_server_requests_seconds_bucket{"));
+        Assert.assertTrue("storage-service calls should be timed", metrics.contains("grpc_client_calls_seconds_count{method=\"createVertex\",status=\"OK\",}"));
+    }
+
+    @Test
+    public void testStorageServiceEndpoints() throws Exception {
+        // two replicas, calls should be spread over both of them
+        StorageServiceImpl replica1 = new StorageServiceImpl();
+        StorageServiceImpl replica2 = new StorageServiceImpl();
+        Server server1 = grpcCleanup.register(ServerBuilder.forPort(0).addService(replica1).build().start());
+        Server server2 = grpcCleanup.register(ServerBuilder.forPort(0).addService(replica2).build().start());
+
+        StorageServiceProperties properties = new StorageServiceProperties();
+        properties.setEndpoints(Arrays.asList("127.0.0.1:" + server1.getPort(), "127.0.0.1:" + server2.getPort()));
+        // no hedging, while connecting to replicas calls may be slow enough to be sent twice
+        properties.setRead(new StorageServiceProperties.MethodPolicy(5000, 1, 0));
+        ManagedChannel channel = grpcCleanup.register(StorageServiceChannels.build(properties));
+        StorageServiceGrpc.StorageServiceBlockingStub storageService = StorageServiceGrpc.newBlockingStub(channel);
+
+        for (int i = 0; i < 10; i++) {
+            storageService.edgeExistsBidirectional(Edge.getDefaultInstance());
+        }
+
+        Assert.assertEquals("should serve all calls", replica1.getEdgeExistsCalls() + replica2.getEdgeExistsCalls(), 10);
+        Assert.assertTrue("should balance calls over replicas", replica1.getEdgeExistsCalls() > 0 && replica2.getEdgeExistsCalls() > 0);
+    }
+
+    /**
+     * Perform request handled asynchronously, and dispatch its result
+     */
+    private ResultActions performAsync(RequestBuilder requestBuilder) throws Exception {
+        MvcResult mvcResult = mvc.perform(requestBuilder).andExpect(request().asyncStarted()).andReturn();
+        return mvc.perform(asyncDispatch(mvcResult));
     }
 
     public static String asJsonString(final Object obj) {
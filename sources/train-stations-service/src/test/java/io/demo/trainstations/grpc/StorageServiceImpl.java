@@ -1,15 +1,100 @@
 package io.demo.trainstations.grpc;
 
 import io.demo.storage.service.grpc.domain.*;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Stub implementation
  */
 public class StorageServiceImpl extends StorageServiceGrpc.StorageServiceImplBase {
 
+    private static final Metadata.Key<String> GRAPH_VERSION = Metadata.Key.of("graph-version", Metadata.ASCII_STRING_MARSHALLER);
+    private static final Metadata.Key<String> GRAPH_VERSION_BEFORE = Metadata.Key.of("graph-version-before", Metadata.ASCII_STRING_MARSHALLER);
+
+    private static final List<String> STATIONS = Arrays.asList("Station 1", "Station 2", "Station 3", "Station 4", "Station 5");
+
+    private final AtomicLong graphVersion = new AtomicLong();
+    private volatile boolean sharedVersion = true;
+    private final AtomicInteger edgeExistsCalls = new AtomicInteger();
+    private final AtomicInteger edgesExistCalls = new AtomicInteger();
+    private final AtomicInteger graphVersionCalls = new AtomicInteger();
+
+    /**
+     * Interceptor which sends graph version headers, like storage-service does. Version is incremented by every write
+     * @return interceptor
+     */
+    public ServerInterceptor graphVersionInterceptor() {
+        return new ServerInterceptor() {
+            @Override
+            public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+                long before = graphVersion.get();
+
+                return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT>(call) {
+                    @Override
+                    public void sendHeaders(Metadata responseHeaders) {
+                        responseHeaders.put(GRAPH_VERSION_BEFORE, Long.toString(before));
+                        responseHeaders.put(GRAPH_VERSION, Long.toString(graphVersion.get()));
+                        super.sendHeaders(responseHeaders);
+                    }
+                }, headers);
+            }
+        };
+    }
+
+    /**
+     * Set current graph version, e.g. to make replicas differ
+     * @param version graph version
+     */
+    public void setGraphVersion(long version) {
+        graphVersion.set(version);
+    }
+
+    /**
+     * Set if graph version is reported as shared by replicas, as it is by storage-service on a database
+     * @param sharedVersion true if version is shared
+     */
+    public void setSharedVersion(boolean sharedVersion) {
+        this.sharedVersion = sharedVersion;
+    }
+
+    /**
+     * Number of getGraphVersion calls served, to check version checks of the cache
+     * @return calls count
+     */
+    public int getGraphVersionCalls() {
+        return graphVersionCalls.get();
+    }
+
+    /**
+     * Number of edgeExistsBidirectional calls served, to check caching
+     * @return calls count
+     */
+    public int getEdgeExistsCalls() {
+        return edgeExistsCalls.get();
+    }
+
+    /**
+     * Number of edgesExistBidirectional calls served, to check invalid lookups are rejected without a call
+     * @return calls count
+     */
+    public int getEdgesExistCalls() {
+        return edgesExistCalls.get();
+    }
+
     @Override
     public void createVertex(Vertex request, StreamObserver<CreateVertexResponse> responseObserver) {
+        graphVersion.incrementAndGet();
         CreateVertexResponse response = CreateVertexResponse.newBuilder().build();
         responseObserver.onNext(response);
         responseObserver.onCompleted();
@@ -17,19 +102,46 @@ public class StorageServiceImpl extends StorageServiceGrpc.StorageServiceImplBas
 
     @Override
     public void listAllVertexNamesByLabel(ListVerticesRequest request, StreamObserver<ListVerticesResponse> responseObserver) {
-        ListVerticesResponse response = ListVerticesResponse.newBuilder()
-                .addNames("Station 1")
-                .addNames("Station 2")
-                .addNames("Station 3")
-                .addNames("Station 4")
-                .addNames("Station 5")
-                .build();
-        responseObserver.onNext(response);
+        if (request.getPageSize() == 0 && request.getPageToken().isEmpty()) {
+            responseObserver.onNext(ListVerticesResponse.newBuilder().addAllNames(STATIONS).build());
+            responseObserver.onCompleted();
+            return;
+        }
+
+        // page token is the index of the first station of the page
+        int from;
+
+        try {
+            from = request.getPageToken().isEmpty() ? 0 : Integer.parseInt(request.getPageToken());
+        } catch (NumberFormatException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Invalid page token").asRuntimeException());
+            return;
+        }
+
+        int to = Math.min(STATIONS.size(), from + (request.getPageSize() > 0 ? request.getPageSize() : STATIONS.size()));
+        ListVerticesResponse.Builder builder = ListVerticesResponse.newBuilder().addAllNames(STATIONS.subList(from, to));
+
+        if (to < STATIONS.size()) {
+            builder.setNextPageToken(Integer.toString(to));
+        }
+
+        responseObserver.onNext(builder.build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void listAllVertexNamesByLabelStream(ListVerticesRequest request, StreamObserver<ListVerticesResponse> responseObserver) {
+        // pages of 2 stations
+        for (int i = 0; i < STATIONS.size(); i += 2) {
+            responseObserver.onNext(ListVerticesResponse.newBuilder().addAllNames(STATIONS.subList(i, Math.min(STATIONS.size(), i + 2))).build());
+        }
+
         responseObserver.onCompleted();
     }
 
     @Override
     public void deleteVertex(Vertex request, StreamObserver<DeleteVertexResponse> responseObserver) {
+        graphVersion.incrementAndGet();
         DeleteVertexResponse response = DeleteVertexResponse.newBuilder().build();
         responseObserver.onNext(response);
         responseObserver.onCompleted();
@@ -37,6 +149,7 @@ public class StorageServiceImpl extends StorageServiceGrpc.StorageServiceImplBas
 
     @Override
     public void createEdgeBidirectional(Edge request, StreamObserver<CreateEdgeBidirectionalResponse> responseObserver) {
+        graphVersion.incrementAndGet();
         CreateEdgeBidirectionalResponse response = CreateEdgeBidirectionalResponse.newBuilder().build();
         responseObserver.onNext(response);
         responseObserver.onCompleted();
@@ -45,6 +158,7 @@ public class StorageServiceImpl extends StorageServiceGrpc.StorageServiceImplBas
     @Override
     public void edgeExistsBidirectional(Edge request, StreamObserver<EdgeExistsBidirectionalResponse> responseObserver) {
         EdgeExistsBidirectionalResponse response;
+        edgeExistsCalls.incrementAndGet();
 
         if (request.getVertex1().getName().equals("Station 1") && request.getVertex2().getName().equals("Station 2")) {
             response = EdgeExistsBidirectionalResponse.newBuilder().setWeight(DoubleValue.newBuilder().setValue(0.123).build()).build();
@@ -56,8 +170,26 @@ public class StorageServiceImpl extends StorageServiceGrpc.StorageServiceImplBas
         responseObserver.onCompleted();
     }
 
+    @Override
+    public void edgesExistBidirectional(EdgesExistBidirectionalRequest request, StreamObserver<EdgesExistBidirectionalResponse> responseObserver) {
+        edgesExistCalls.incrementAndGet();
+        EdgesExistBidirectionalResponse.Builder response = EdgesExistBidirectionalResponse.newBuilder();
+
+        for (Edge edge : request.getEdgesList()) {
+            if (edge.getVertex1().getName().equals("Station 1") && edge.getVertex2().getName().equals("Station 2")) {
+                response.addEdges(EdgeExistsBidirectionalResponse.newBuilder().setWeight(DoubleValue.newBuilder().setValue(0.123).build()));
+            } else {
+                response.addEdges(EdgeExistsBidirectionalResponse.newBuilder());
+            }
+        }
+
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
     @Override
     public void deleteEdgeBidirectional(Edge request, StreamObserver<DeleteEdgeBidirectionalResponse> responseObserver) {
+        graphVersion.incrementAndGet();
         DeleteEdgeBidirectionalResponse response = DeleteEdgeBidirectionalResponse.newBuilder().build();
         responseObserver.onNext(response);
         responseObserver.onCompleted();
@@ -65,14 +197,99 @@ public class StorageServiceImpl extends StorageServiceGrpc.StorageServiceImplBas
 
     @Override
     public void findPathsBidirectional(Edge request, StreamObserver<FindPathsBidirectionalResponse> responseObserver) {
-        FindPathsBidirectionalResponse response = FindPathsBidirectionalResponse.newBuilder()
-                .addPaths(GraphRoute.newBuilder()
-                        .setTotalWeight(DoubleValue.newBuilder().setValue(1).build())
-                        .addVertices(request.getVertex1().getName())
-                        .addVertices(request.getVertex2().getName())
-                        .build())
-                .build();
+        FindPathsBidirectionalResponse.Builder builder = FindPathsBidirectionalResponse.newBuilder();
+
+        // a single route with cost 1.0 by default, or a route with cost equal to each limit sent, to check limits are passed
+        if (!request.getLimits().equals(PathSearchLimits.getDefaultInstance())) {
+            builder.addPaths(GraphRoute.newBuilder().setTotalWeight(DoubleValue.newBuilder().setValue(request.getLimits().getMaxHops()).build()));
+            builder.addPaths(GraphRoute.newBuilder().setTotalWeight(request.getLimits().getMaxTotalWeight()));
+            builder.addPaths(GraphRoute.newBuilder().setTotalWeight(DoubleValue.newBuilder().setValue(request.getLimits().getMaxPaths()).build()));
+            builder.addPaths(GraphRoute.newBuilder().setTotalWeight(DoubleValue.newBuilder().setValue(request.getLimits().getTimeoutMillis()).build()));
+        } else if (request.getRouteEncoding() == RouteEncoding.COMPACT) {
+            builder.addNames(request.getVertex1().getName())
+                    .addNames(request.getVertex2().getName())
+                    .addCompactPaths(CompactGraphRoute.newBuilder().setTotalWeight(1).addVertices(0).addVertices(1));
+        } else {
+            builder.addPaths(GraphRoute.newBuilder()
+                    .setTotalWeight(DoubleValue.newBuilder().setValue(1).build())
+                    .addVertices(request.getVertex1().getName())
+                    .addVertices(request.getVertex2().getName())
+                    .build());
+        }
+
+        FindPathsBidirectionalResponse response = builder.build();
         responseObserver.onNext(response);
         responseObserver.onCompleted();
     }
+
+    @Override
+    public void findPathsBidirectionalStream(Edge request, StreamObserver<GraphRoute> responseObserver) {
+        for (int i = 1; i <= 3; i++) {
+            responseObserver.onNext(GraphRoute.newBuilder()
+                    .setTotalWeight(DoubleValue.newBuilder().setValue(i).build())
+                    .addVertices(request.getVertex1().getName())
+                    .addVertices(request.getVertex2().getName())
+                    .build());
+        }
+
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void findShortestPathsBidirectional(FindShortestPathsRequest request, StreamObserver<FindPathsBidirectionalResponse> responseObserver) {
+        FindPathsBidirectionalResponse.Builder builder = FindPathsBidirectionalResponse.newBuilder();
+
+        for (int i = 0; i < request.getCount(); i++) {
+            builder.addPaths(GraphRoute.newBuilder()
+                    .setTotalWeight(DoubleValue.newBuilder().setValue(i + 1).build())
+                    .addVertices(request.getEdge().getVertex1().getName())
+                    .addVertices(request.getEdge().getVertex2().getName())
+                    .build());
+        }
+
+        responseObserver.onNext(builder.build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void getGraphVersion(GraphVersionRequest request, StreamObserver<GraphVersionResponse> responseObserver) {
+        graphVersionCalls.incrementAndGet();
+        responseObserver.onNext(GraphVersionResponse.newBuilder().setVersion(graphVersion.get()).setShared(sharedVersion).build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public StreamObserver<Vertex> importVertices(StreamObserver<ImportProgress> responseObserver) {
+        return countingImport(responseObserver);
+    }
+
+    @Override
+    public StreamObserver<Edge> importEdges(StreamObserver<ImportProgress> responseObserver) {
+        return countingImport(responseObserver);
+    }
+
+    /**
+     * Import which accepts every element, and reports their count when completed
+     */
+    private <T> StreamObserver<T> countingImport(StreamObserver<ImportProgress> responseObserver) {
+        return new StreamObserver<T>() {
+            private long count;
+
+            @Override
+            public void onNext(T value) {
+                count++;
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+
+            @Override
+            public void onCompleted() {
+                graphVersion.incrementAndGet();
+                responseObserver.onNext(ImportProgress.newBuilder().setChunks(1).setImported(count).build());
+                responseObserver.onCompleted();
+            }
+        };
+    }
 }
@@ -0,0 +1,166 @@
+package io.demo.trainstations.service;
+
+import io.demo.storage.service.grpc.domain.Edge;
+import io.demo.storage.service.grpc.domain.EdgeExistsBidirectionalResponse;
+import io.demo.storage.service.grpc.domain.StorageServiceGrpc;
+import io.demo.storage.service.grpc.domain.Vertex;
+import io.demo.trainstations.config.RouteCacheProperties;
+import io.demo.trainstations.config.StorageServiceProperties;
+import io.demo.trainstations.grpc.StorageServiceImpl;
+import io.grpc.ManagedChannel;
+import io.grpc.ServerInterceptors;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.testing.GrpcCleanupRule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests of {@link RouteCache} against replica stubs, which report graph versions
+ */
+public class RouteCacheTests {
+
+    private static final List<Object> KEY = Arrays.asList("routeExists", "Station 1", "Station 2");
+    private static final Edge ROUTE = Edge.newBuilder().setLabel("route")
+            .setVertex1(Vertex.newBuilder().setLabel("train_station").setName("Station 1"))
+            .setVertex2(Vertex.newBuilder().setLabel("train_station").setName("Station 2")).build();
+
+    @Rule
+    public final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+    private final RouteCacheProperties routeCacheProperties = new RouteCacheProperties();
+    private RouteCache routeCache;
+
+    @Before
+    public void prepareForTest() {
+        routeCache = new RouteCache();
+        routeCacheProperties.setVersionRefreshMillis(10);
+        ReflectionTestUtils.setField(routeCache, "routeCacheProperties", routeCacheProperties);
+        ReflectionTestUtils.setField(routeCache, "storageServiceProperties", new StorageServiceProperties());
+        ReflectionTestUtils.setField(routeCache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.invokeMethod(routeCache, "init");
+    }
+
+    @After
+    public void cleanUp() {
+        ReflectionTestUtils.invokeMethod(routeCache, "destroy");
+    }
+
+    @Test
+    public void cacheHitMakesNoStorageCall() throws Exception {
+        StorageServiceImpl replica = new StorageServiceImpl();
+        StorageServiceGrpc.StorageServiceFutureStub stub = start(replica);
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(0.123, routeExists(stub), 0);
+        }
+
+        Assert.assertEquals("should call replica once", 1, replica.getEdgeExistsCalls());
+        Assert.assertEquals("should not check version of hits", 0, replica.getGraphVersionCalls());
+    }
+
+    @Test
+    public void writesOfThisServiceInvalidateResults() throws Exception {
+        StorageServiceImpl replica = new StorageServiceImpl();
+        StorageServiceGrpc.StorageServiceFutureStub stub = start(replica);
+
+        routeExists(stub);
+        stub.createVertex(Vertex.newBuilder().setLabel("train_station").setName("Station 6").build()).get();
+        routeExists(stub);
+        Assert.assertEquals("should call replica after version of the write response", 2, replica.getEdgeExistsCalls());
+
+        routeExists(stub);
+        Assert.assertEquals("should return result cached under the new version", 2, replica.getEdgeExistsCalls());
+    }
+
+    @Test
+    public void versionChecksNoticeWritesOfOtherClients() throws Exception {
+        StorageServiceImpl replica = new StorageServiceImpl();
+        StorageServiceGrpc.StorageServiceFutureStub stub = start(replica);
+        routeCache.refreshVersion(stub);
+        awaitVersionChecks(replica, 1);
+
+        routeExists(stub);
+        routeExists(stub);
+        Assert.assertEquals(1, replica.getEdgeExistsCalls());
+
+        // another client changes the graph, a check started after that notices it
+        replica.setGraphVersion(5);
+        awaitVersionChecks(replica, replica.getGraphVersionCalls() + 2);
+        routeExists(stub);
+        Assert.assertEquals("should call replica again after version changed", 2, replica.getEdgeExistsCalls());
+    }
+
+    @Test
+    public void resultsOfOlderVersionsAreNotCached() throws Exception {
+        StorageServiceImpl replica1 = new StorageServiceImpl();
+        StorageServiceImpl replica2 = new StorageServiceImpl();
+        StorageServiceGrpc.StorageServiceFutureStub stub1 = start(replica1);
+        StorageServiceGrpc.StorageServiceFutureStub stub2 = start(replica2);
+        // replica 1 has not noticed the latest writes yet
+        replica1.setGraphVersion(10);
+        replica2.setGraphVersion(20);
+
+        routeExists(stub1);
+        // this service changes the graph through replica 2
+        stub2.createVertex(Vertex.newBuilder().setLabel("train_station").setName("Station 6").build()).get();
+        routeExists(stub1);
+        routeExists(stub1);
+        Assert.assertEquals("should not cache results older than the write", 3, replica1.getEdgeExistsCalls());
+
+        routeExists(stub2);
+        routeExists(stub1);
+        Assert.assertEquals(1, replica2.getEdgeExistsCalls());
+        Assert.assertEquals("should return result cached from replica 2", 3, replica1.getEdgeExistsCalls());
+    }
+
+    @Test
+    public void resultsAreNotCachedWithoutSharedVersion() throws Exception {
+        StorageServiceImpl replica = new StorageServiceImpl();
+        StorageServiceGrpc.StorageServiceFutureStub stub = start(replica);
+        replica.setSharedVersion(false);
+        routeCache.refreshVersion(stub);
+        awaitVersionChecks(replica, 1);
+
+        for (int i = 0; i < 3; i++) {
+            routeExists(stub);
+        }
+
+        Assert.assertEquals("should call replica every time, round_robin spreads calls over replicas", 3, replica.getEdgeExistsCalls());
+    }
+
+    private double routeExists(StorageServiceGrpc.StorageServiceFutureStub stub) throws Exception {
+        EdgeExistsBidirectionalResponse response = routeCache.get(KEY, stub, storageService -> storageService.edgeExistsBidirectional(ROUTE)).get();
+        return response.getWeight().getValue();
+    }
+
+    private static void awaitVersionChecks(StorageServiceImpl replica, int calls) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+
+        while (replica.getGraphVersionCalls() < calls && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        Assert.assertTrue("version should be checked in background", replica.getGraphVersionCalls() >= calls);
+    }
+
+    /**
+     * Stub of a replica, intercepted by the cache as stubs of train-stations-service are
+     */
+    private StorageServiceGrpc.StorageServiceFutureStub start(StorageServiceImpl replica) throws IOException {
+        String serverName = InProcessServerBuilder.generateName();
+        grpcCleanup.register(InProcessServerBuilder.forName(serverName).directExecutor()
+                .addService(ServerInterceptors.intercept(replica, replica.graphVersionInterceptor())).build().start());
+        ManagedChannel channel = grpcCleanup.register(InProcessChannelBuilder.forName(serverName).directExecutor().build());
+        return StorageServiceGrpc.newFutureStub(channel).withInterceptors(routeCache);
+    }
+}